@@ -33,12 +33,14 @@ import com.googlecode.jmxtrans.cli.JmxTransConfigurationFactory;
 import com.googlecode.jmxtrans.exceptions.LifecycleException;
 import com.googlecode.jmxtrans.executors.ExecutorRepository;
 import com.googlecode.jmxtrans.guice.JmxTransModule;
+import com.googlecode.jmxtrans.jmx.ResultProcessor;
 import com.googlecode.jmxtrans.model.JmxProcess;
 import com.googlecode.jmxtrans.model.OutputWriter;
 import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Server;
 import com.googlecode.jmxtrans.model.ValidationException;
 import com.googlecode.jmxtrans.monitoring.ManagedThreadPoolExecutor;
+import com.googlecode.jmxtrans.scheduler.ConnectionWarmUp;
 import com.googlecode.jmxtrans.scheduler.ServerScheduler;
 import com.googlecode.jmxtrans.util.WatchDir;
 import com.googlecode.jmxtrans.util.WatchedCallback;
@@ -56,11 +58,9 @@ import java.io.FileNotFoundException;
 import java.lang.management.ManagementFactory;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -98,8 +98,9 @@ public class JmxTransformer implements WatchedCallback {
 	private volatile boolean isRunning = false;
 	@Nonnull private ExecutorRepository queryExecutorRepository;
 	private final ServerScheduler serverScheduler;
+	private final ConnectionWarmUp connectionWarmUp;
+	private final ResultProcessor resultProcessor;
 	@Nonnull private ExecutorRepository resultExecutorRepository;
-	@Nonnull private final ThreadLocalRandom random = ThreadLocalRandom.current();
 	@Nonnull private final MBeanServer platformMBeanServer;
 	@Nullable private ManagedJmxTransformerProcess jmxTransformerProcessMBean;
 	@Nullable private ImmutableList<ManagedThreadPoolExecutor> queryExecutorMBeans;
@@ -114,9 +115,13 @@ public class JmxTransformer implements WatchedCallback {
 			Injector injector,
 			@Nonnull @Named("queryExecutorRepository") ExecutorRepository queryExecutorRepository,
 			@Nonnull @Named("resultExecutorRepository") ExecutorRepository resultExecutorRepository,
-			@Nonnull ScheduledExecutorService scheduledExecutor
+			@Nonnull ScheduledExecutorService scheduledExecutor,
+			@Nonnull ConnectionWarmUp connectionWarmUp,
+			@Nonnull ResultProcessor resultProcessor
 	) {
 		this.serverScheduler = serverScheduler;
+		this.connectionWarmUp = connectionWarmUp;
+		this.resultProcessor = resultProcessor;
 		this.configuration = configuration;
 		this.configurationParser = configurationParser;
 		this.injector = injector;
@@ -221,12 +226,16 @@ public class JmxTransformer implements WatchedCallback {
 	private synchronized void stopServices() throws LifecycleException {
 		try {
 			// Shutdown the scheduler
+			connectionWarmUp.stop();
 			serverScheduler.stop();
 
 			for (ThreadPoolExecutor executor : queryExecutorRepository.getExecutors()) {
 				shutdownAndAwaitTermination(executor, 10, SECONDS);
 			}
 
+			// Queries are done, write the results they left in the ring buffer
+			resultProcessor.stop();
+
 			for (ThreadPoolExecutor executor : resultExecutorRepository.getExecutors()) {
 				shutdownAndAwaitTermination(executor, 10, SECONDS);
 			}
@@ -310,6 +319,7 @@ public class JmxTransformer implements WatchedCallback {
 	 */
 	private void startupSystem() throws Exception {
 		this.processFilesIntoServers();
+		this.connectionWarmUp.start(masterServersList);
 		this.processServersIntoJobs();
 	}
 
@@ -321,6 +331,7 @@ public class JmxTransformer implements WatchedCallback {
 		this.removeExecutors();
 		this.processFilesIntoServers();
 		this.startExecutors();
+		this.connectionWarmUp.start(masterServersList);
 		this.processServersIntoJobs();
 	}
 
@@ -403,6 +414,9 @@ public class JmxTransformer implements WatchedCallback {
 						writer.start();
 					}
 				}
+				for (OutputWriter writer : server.getOutputWriters()) {
+					writer.start();
+				}
 
 				// Now validate the setup of each of the OutputWriter's per
 				// query.
@@ -419,9 +433,12 @@ public class JmxTransformer implements WatchedCallback {
 	private void registerMBeans() throws Exception {
 		jmxTransformerProcessMBean = new ManagedJmxTransformerProcess(this, configuration);
 		platformMBeanServer.registerMBean(jmxTransformerProcessMBean, jmxTransformerProcessMBean.getObjectName());
+		platformMBeanServer.registerMBean(connectionWarmUp, connectionWarmUp.getObjectName());
+		platformMBeanServer.registerMBean(serverScheduler, serverScheduler.getObjectName());
 
 		queryExecutorMBeans = registerExecutors(queryExecutorRepository);
 		resultExecutorMBeans = registerExecutors(resultExecutorRepository);
+		platformMBeanServer.registerMBean(resultProcessor, resultProcessor.getObjectName());
 	}
 
 	private ImmutableList<ManagedThreadPoolExecutor> registerExecutors(ExecutorRepository executorRepository) throws Exception {
@@ -438,9 +455,18 @@ public class JmxTransformer implements WatchedCallback {
 		if (jmxTransformerProcessMBean != null) {
 			platformMBeanServer.unregisterMBean(jmxTransformerProcessMBean.getObjectName());
 		}
+		if (platformMBeanServer.isRegistered(connectionWarmUp.getObjectName())) {
+			platformMBeanServer.unregisterMBean(connectionWarmUp.getObjectName());
+		}
+		if (platformMBeanServer.isRegistered(serverScheduler.getObjectName())) {
+			platformMBeanServer.unregisterMBean(serverScheduler.getObjectName());
+		}
 
 		unregisterExecutors(queryExecutorMBeans);
 		unregisterExecutors(resultExecutorMBeans);
+		if (platformMBeanServer.isRegistered(resultProcessor.getObjectName())) {
+			platformMBeanServer.unregisterMBean(resultProcessor.getObjectName());
+		}
 	}
 
 	private void unregisterExecutors(ImmutableList<ManagedThreadPoolExecutor> executorMBeans) throws Exception {
@@ -452,12 +478,6 @@ public class JmxTransformer implements WatchedCallback {
 	}
 
 
-	@VisibleForTesting
-	Date computeSpreadStartDate(int runPeriod) {
-		long spread = random.nextLong(MILLISECONDS.convert(runPeriod, SECONDS));
-		return new Date(new Date().getTime() + spread);
-	}
-
 	/**
 	 * If getJsonFile() is a file, then that is all we load. Otherwise, look in
 	 * the jsonDir for files.
@@ -0,0 +1,156 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.agent;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.googlecode.jmxtrans.JmxTransformer;
+import com.googlecode.jmxtrans.cli.JmxTransConfiguration;
+import com.googlecode.jmxtrans.cli.JmxTransConfigurationFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.Instrumentation;
+import java.util.Map;
+import java.util.Properties;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Java agent running jmxtrans inside the monitored JVM.
+ *
+ * Start the JVM with {@code -javaagent:jmxtrans-agent.jar=<args>}, where args
+ * is a {@code ;} separated list of {@code key=value} pairs using the same keys
+ * as {@code jmxtrans.properties} (for example
+ * {@code json.file=/etc/jmxtrans/app.json;run.period.in.seconds=10}). The
+ * special key {@code config.file} points to a properties file loaded before
+ * the inline pairs. Servers in the process configuration should be declared
+ * with {@code "local": true} so that queries go to the platform MBean server,
+ * without RMI nor serialization.
+ *
+ * Unless configured otherwise, the agent runs with a small budget of low
+ * priority daemon threads so that it stays out of the way of the application.
+ */
+public final class JmxTransAgent {
+
+	private static final Logger log = LoggerFactory.getLogger(JmxTransAgent.class);
+
+	private static final String CONFIG_FILE_PROPERTY = "config.file";
+	private static final String STARTUP_DELAY_PROPERTY = "agent.startup.delay.seconds";
+
+	@GuardedBy("JmxTransAgent.class") private static boolean started;
+	@Nullable private static volatile JmxTransformer transformer;
+
+	private JmxTransAgent() {}
+
+	public static void premain(String agentArgs, Instrumentation instrumentation) {
+		start(agentArgs);
+	}
+
+	public static void agentmain(String agentArgs, Instrumentation instrumentation) {
+		start(agentArgs);
+	}
+
+	/**
+	 * Runs on the thread of premain: nothing may be thrown from here, or the
+	 * monitored JVM would not start.
+	 */
+	private static synchronized void start(String agentArgs) {
+		if (started) {
+			log.warn("Jmxtrans agent already started, ignoring arguments {}", agentArgs);
+			return;
+		}
+
+		final Properties properties;
+		final long startupDelay;
+		try {
+			properties = agentProperties(agentArgs);
+			startupDelay = Long.parseLong(properties.getProperty(STARTUP_DELAY_PROPERTY, "0"));
+		} catch (IOException | RuntimeException e) {
+			log.error("Could not load jmxtrans agent configuration from {}", agentArgs, e);
+			return;
+		}
+		started = true;
+
+		// Start outside of premain: the application should not wait for the
+		// injector and configuration parsing. Some containers also need to
+		// install their own MBean server builder before the platform MBean
+		// server is first requested, which the startup delay allows for.
+		Thread starter = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					SECONDS.sleep(startupDelay);
+					JmxTransConfiguration configuration = JmxTransConfigurationFactory.fromProperties(properties);
+					JmxTransformer jmxTransformer = JmxTransformer.create(configuration);
+					jmxTransformer.start();
+					transformer = jmxTransformer;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (Exception e) {
+					log.error("Could not start jmxtrans agent", e);
+				}
+			}
+		}, "jmxtrans-agent-starter");
+		starter.setDaemon(true);
+		starter.setPriority(Thread.MIN_PRIORITY);
+		starter.start();
+	}
+
+	/**
+	 * Agent defaults, overridden by the properties file and then by the inline arguments.
+	 */
+	@VisibleForTesting
+	static Properties agentProperties(@Nullable String agentArgs) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty("query.processor.executor.pool.size", "2");
+		properties.setProperty("result.processor.executor.pool.size", "1");
+		properties.setProperty("scheduled.executor.pool.size", "1");
+		properties.setProperty("executor.thread.priority", Integer.toString(Thread.MIN_PRIORITY));
+
+		if (agentArgs == null || agentArgs.trim().isEmpty()) {
+			return properties;
+		}
+
+		Map<String, String> arguments = Splitter.on(';')
+				.omitEmptyStrings()
+				.trimResults()
+				.withKeyValueSeparator('=')
+				.split(agentArgs);
+
+		String configFile = arguments.get(CONFIG_FILE_PROPERTY);
+		if (configFile != null) {
+			try (InputStream in = new FileInputStream(new File(configFile))) {
+				properties.load(in);
+			}
+		}
+		properties.putAll(arguments);
+		return properties;
+	}
+}
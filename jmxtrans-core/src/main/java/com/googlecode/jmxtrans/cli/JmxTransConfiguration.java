@@ -28,12 +28,15 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.jmx.WaitStrategy;
+import com.googlecode.jmxtrans.scheduler.OverrunPolicy;
 import lombok.Getter;
 import lombok.Setter;
 
 import javax.annotation.Nullable;
 import java.io.File;
 import java.util.List;
+import java.util.Locale;
 import java.util.Properties;
 
 @SuppressWarnings("squid:S1213") // having instance variables close to their getters is more readable in this class
@@ -166,6 +169,229 @@ public class JmxTransConfiguration {
 	@Getter @Setter
 	private int scheduledExecutorPoolSize = 2;
 
+	private static final String EXECUTOR_THREAD_PRIORITY_PROPERTY = "executor.thread.priority";
+	@Parameter(
+			names = {"--executor-thread-priority"},
+			description = "Priority of the threads used to run the scheduler, queries and results, between 1 and 10.",
+			validateWith = ThreadPriorityValidator.class
+	)
+	@Getter @Setter
+	private int executorThreadPriority = Thread.NORM_PRIORITY;
+
+	private static final String MAX_IN_FLIGHT_CALLS_PER_HOST_PROPERTY = "max.in.flight.calls.per.host";
+	@Parameter(
+			names = {"--max-in-flight-calls-per-host"},
+			description = "Maximum number of queries running at the same time against one target host, 0 for no limit.",
+			validateWith = PositiveInteger.class
+	)
+	@Getter @Setter
+	private int maxInFlightCallsPerHost = 0;
+
+	private static final String MAX_CALLS_PER_SECOND_PER_HOST_PROPERTY = "max.calls.per.second.per.host";
+	@Parameter(
+			names = {"--max-calls-per-second-per-host"},
+			description = "Maximum number of queries started per second against one target host, 0 for no limit.",
+			validateWith = PositiveInteger.class
+	)
+	@Getter @Setter
+	private int maxCallsPerSecondPerHost = 0;
+
+	private static final String STARTUP_CONNECTION_PARALLELISM_PROPERTY = "startup.connection.parallelism";
+	@Parameter(
+			names = {"--startup-connection-parallelism"},
+			description = "Number of connections opened at the same time when spreading connections over the first run period after a start or a reload, 0 to let the first run open them.",
+			validateWith = PositiveInteger.class
+	)
+	@Getter @Setter
+	private int startupConnectionParallelism = 4;
+
+	private static final String SPREAD_SERVER_JOBS_PROPERTY = "spread.server.jobs";
+	@Parameter(
+			names = {"--spread-server-jobs"},
+			description = "Run each server at a stable offset within the run period instead of running all servers at once.",
+			arity = 1
+	)
+	@Getter @Setter
+	private boolean spreadServerJobs = true;
+
+	private static final String OVERRUN_POLICY_PROPERTY = "overrun.policy";
+	@Parameter(
+			names = {"--overrun-policy"},
+			description = "What a server run does when queries of its previous run are still queued or running: NONE, SKIP, COALESCE or CANCEL."
+	)
+	@Getter @Setter
+	private OverrunPolicy overrunPolicy = OverrunPolicy.COALESCE;
+
+	private static final String USE_HASHED_WHEEL_SCHEDULER_PROPERTY = "use.hashed.wheel.scheduler";
+	@Parameter(
+			names = {"--use-hashed-wheel-scheduler"},
+			description = "Schedule servers on a hashed timing wheel instead of the scheduled executor, for very large numbers of servers.",
+			arity = 1
+	)
+	@Getter @Setter
+	private boolean useHashedWheelScheduler = false;
+
+	private static final String HASHED_WHEEL_TICK_MILLIS_PROPERTY = "hashed.wheel.tick.millis";
+	@Parameter(
+			names = {"--hashed-wheel-tick-millis"},
+			description = "Tick duration of the hashed wheel scheduler, which is also its precision.",
+			validateWith = PositiveInteger.class
+	)
+	@Getter @Setter
+	private int hashedWheelTickMillis = 100;
+
+	private static final String USE_VIRTUAL_THREADS_PROPERTY = "use.virtual.threads";
+	@Parameter(
+			names = {"--use-virtual-threads"},
+			description = "Run queries and results on virtual threads (Java 21 or later), limited by virtual.thread.concurrency instead of the pool sizes.",
+			arity = 1
+	)
+	@Getter @Setter
+	private boolean useVirtualThreads = false;
+
+	private static final String VIRTUAL_THREAD_CONCURRENCY_PROPERTY = "virtual.thread.concurrency";
+	@Parameter(
+			names = {"--virtual-thread-concurrency"},
+			description = "Maximum number of queries, and of results, processed at the same time on virtual threads.",
+			validateWith = PositiveInteger.class
+	)
+	@Getter @Setter
+	private int virtualThreadConcurrency = 1000;
+
+	private static final String USE_BULKHEAD_EXECUTORS_PROPERTY = "use.bulkhead.executors";
+	@Parameter(
+			names = {"--use-bulkhead-executors"},
+			description = "Share one executor between all servers, with a queue and a limited number of threads per server, served in turn. Takes precedence over use.separate.executors.",
+			arity = 1
+	)
+	@Getter @Setter
+	private boolean useBulkheadExecutors = false;
+
+	private static final String BULKHEAD_PERMITS_PER_SERVER_PROPERTY = "bulkhead.permits.per.server";
+	@Parameter(
+			names = {"--bulkhead-permits-per-server"},
+			description = "Maximum number of tasks of one server running at the same time on the shared executor.",
+			validateWith = PositiveInteger.class
+	)
+	@Getter @Setter
+	private int bulkheadPermitsPerServer = 2;
+
+	private static final String BULKHEAD_QUEUE_CAPACITY_PER_SERVER_PROPERTY = "bulkhead.queue.capacity.per.server";
+	@Parameter(
+			names = {"--bulkhead-queue-capacity-per-server"},
+			description = "Maximum number of tasks of one server waiting for the shared executor.",
+			validateWith = PositiveInteger.class
+	)
+	@Getter @Setter
+	private int bulkheadQueueCapacityPerServer = 1000;
+
+	private static final String USE_ADAPTIVE_EXECUTORS_PROPERTY = "use.adaptive.executors";
+	@Parameter(
+			names = {"--use-adaptive-executors"},
+			description = "Resize the query and result executors between adaptive.executor.min.pool.size and adaptive.executor.max.pool.size, from the time tasks wait in the queue. Ignored with virtual threads.",
+			arity = 1
+	)
+	@Getter @Setter
+	private boolean useAdaptiveExecutors = false;
+
+	private static final String ADAPTIVE_EXECUTOR_MIN_POOL_SIZE_PROPERTY = "adaptive.executor.min.pool.size";
+	@Parameter(
+			names = {"--adaptive-executor-min-pool-size"},
+			description = "Smallest size of an adaptive executor.",
+			validateWith = PositiveInteger.class
+	)
+	@Getter @Setter
+	private int adaptiveExecutorMinPoolSize = 2;
+
+	private static final String ADAPTIVE_EXECUTOR_MAX_POOL_SIZE_PROPERTY = "adaptive.executor.max.pool.size";
+	@Parameter(
+			names = {"--adaptive-executor-max-pool-size"},
+			description = "Largest size of an adaptive executor.",
+			validateWith = PositiveInteger.class
+	)
+	@Getter @Setter
+	private int adaptiveExecutorMaxPoolSize = 50;
+
+	private static final String ADAPTIVE_EXECUTOR_TARGET_QUEUE_WAIT_MILLIS_PROPERTY = "adaptive.executor.target.queue.wait.millis";
+	@Parameter(
+			names = {"--adaptive-executor-target-queue-wait-millis"},
+			description = "Adaptive executors grow when tasks wait longer than this in the queue, and may shrink when they wait less than half of it.",
+			validateWith = PositiveInteger.class
+	)
+	@Getter @Setter
+	private int adaptiveExecutorTargetQueueWaitMillis = 1000;
+
+	private static final String ALIGN_SERVER_JOBS_PROPERTY = "align.server.jobs";
+	@Parameter(
+			names = {"--align-server-jobs"},
+			description = "Start server runs on multiples of their run period in wall-clock time, at most aligned.spread.millis later, and stamp results with the start of the period. Takes precedence over spread.server.jobs.",
+			arity = 1
+	)
+	@Getter @Setter
+	private boolean alignServerJobs = false;
+
+	private static final String ALIGNED_SPREAD_MILLIS_PROPERTY = "aligned.spread.millis";
+	@Parameter(
+			names = {"--aligned-spread-millis"},
+			description = "Servers with aligned runs start at a stable offset, hashed from their id, within this many milliseconds after the tick. 0 starts them all on the tick.",
+			validateWith = PositiveInteger.class
+	)
+	@Getter @Setter
+	private int alignedSpreadMillis = 0;
+
+	private static final String USE_RESULT_RING_BUFFER_PROPERTY = "use.result.ring.buffer";
+	@Parameter(
+			names = {"--use-result-ring-buffer"},
+			description = "Dispatch results to output writers through a pre-allocated ring buffer instead of the result executors.",
+			arity = 1
+	)
+	@Getter @Setter
+	private boolean useResultRingBuffer = false;
+
+	private static final String RESULT_RING_BUFFER_SIZE_PROPERTY = "result.ring.buffer.size";
+	@Parameter(
+			names = {"--result-ring-buffer-size"},
+			description = "Number of slots of the result ring buffer, rounded up to a power of 2. Each write of results to an output writer takes a slot.",
+			validateWith = PositiveInteger.class
+	)
+	@Getter @Setter
+	private int resultRingBufferSize = 65536;
+
+	private static final String RESULT_RING_BUFFER_HANDLERS_PROPERTY = "result.ring.buffer.handlers";
+	@Parameter(
+			names = {"--result-ring-buffer-handlers"},
+			description = "Number of threads writing results taken from the result ring buffer.",
+			validateWith = PositiveInteger.class
+	)
+	@Getter @Setter
+	private int resultRingBufferHandlers = 10;
+
+	private static final String RESULT_RING_BUFFER_WAIT_STRATEGY_PROPERTY = "result.ring.buffer.wait.strategy";
+	@Parameter(
+			names = {"--result-ring-buffer-wait-strategy"},
+			description = "How result ring buffer threads wait for results: BLOCKING, SLEEPING, YIELDING or BUSY_SPIN."
+	)
+	@Getter @Setter
+	private WaitStrategy resultRingBufferWaitStrategy = WaitStrategy.BLOCKING;
+
+	private static final String ASYNC_WRITER_MAX_IN_FLIGHT_PROPERTY = "async.writer.max.in.flight";
+	@Parameter(
+			names = {"--async-writer-max-in-flight"},
+			description = "Number of writes an asynchronous output writer can have in flight before result threads wait for one to complete.",
+			validateWith = PositiveInteger.class
+	)
+	@Getter @Setter
+	private int asyncWriterMaxInFlight = 100;
+
+	private static final String ASYNC_WRITER_ADMISSION_TIMEOUT_MILLIS_PROPERTY = "async.writer.admission.timeout.millis";
+	@Parameter(
+			names = {"--async-writer-admission-timeout-millis"},
+			description = "How long a result thread waits for a write of an asynchronous output writer to complete before giving up a new one.",
+			validateWith = PositiveInteger.class
+	)
+	@Getter @Setter
+	private int asyncWriterAdmissionTimeoutMillis = 1000;
+
 	private static abstract class PropertySetter<T> {
 		protected final String key;
 		protected final Class<T> type;
@@ -283,6 +509,157 @@ public class JmxTransConfiguration {
 				protected void doSetValue(Integer value, JmxTransConfiguration configuration) {
 					configuration.setScheduledExecutorPoolSize(value);
 				}
+			},
+			new SinglePropertySetter<Integer>(EXECUTOR_THREAD_PRIORITY_PROPERTY, Integer.class) {
+				@Override
+				protected void doSetValue(Integer value, JmxTransConfiguration configuration) {
+					new ThreadPriorityValidator().validate(EXECUTOR_THREAD_PRIORITY_PROPERTY, value.toString());
+					configuration.setExecutorThreadPriority(value);
+				}
+			},
+			new SinglePropertySetter<Integer>(MAX_IN_FLIGHT_CALLS_PER_HOST_PROPERTY, Integer.class) {
+				@Override
+				protected void doSetValue(Integer value, JmxTransConfiguration configuration) {
+					configuration.setMaxInFlightCallsPerHost(value);
+				}
+			},
+			new SinglePropertySetter<Integer>(MAX_CALLS_PER_SECOND_PER_HOST_PROPERTY, Integer.class) {
+				@Override
+				protected void doSetValue(Integer value, JmxTransConfiguration configuration) {
+					configuration.setMaxCallsPerSecondPerHost(value);
+				}
+			},
+			new SinglePropertySetter<Integer>(STARTUP_CONNECTION_PARALLELISM_PROPERTY, Integer.class) {
+				@Override
+				protected void doSetValue(Integer value, JmxTransConfiguration configuration) {
+					configuration.setStartupConnectionParallelism(value);
+				}
+			},
+			new SinglePropertySetter<Boolean>(SPREAD_SERVER_JOBS_PROPERTY, Boolean.class) {
+				@Override
+				protected void doSetValue(Boolean value, JmxTransConfiguration configuration) {
+					configuration.setSpreadServerJobs(value);
+				}
+			},
+			new SinglePropertySetter<String>(OVERRUN_POLICY_PROPERTY, String.class) {
+				@Override
+				protected void doSetValue(String value, JmxTransConfiguration configuration) {
+					configuration.setOverrunPolicy(OverrunPolicy.valueOf(value.trim().toUpperCase(Locale.ENGLISH)));
+				}
+			},
+			new SinglePropertySetter<Boolean>(USE_HASHED_WHEEL_SCHEDULER_PROPERTY, Boolean.class) {
+				@Override
+				protected void doSetValue(Boolean value, JmxTransConfiguration configuration) {
+					configuration.setUseHashedWheelScheduler(value);
+				}
+			},
+			new SinglePropertySetter<Integer>(HASHED_WHEEL_TICK_MILLIS_PROPERTY, Integer.class) {
+				@Override
+				protected void doSetValue(Integer value, JmxTransConfiguration configuration) {
+					configuration.setHashedWheelTickMillis(value);
+				}
+			},
+			new SinglePropertySetter<Boolean>(USE_VIRTUAL_THREADS_PROPERTY, Boolean.class) {
+				@Override
+				protected void doSetValue(Boolean value, JmxTransConfiguration configuration) {
+					configuration.setUseVirtualThreads(value);
+				}
+			},
+			new SinglePropertySetter<Integer>(VIRTUAL_THREAD_CONCURRENCY_PROPERTY, Integer.class) {
+				@Override
+				protected void doSetValue(Integer value, JmxTransConfiguration configuration) {
+					configuration.setVirtualThreadConcurrency(value);
+				}
+			},
+			new SinglePropertySetter<Boolean>(USE_BULKHEAD_EXECUTORS_PROPERTY, Boolean.class) {
+				@Override
+				protected void doSetValue(Boolean value, JmxTransConfiguration configuration) {
+					configuration.setUseBulkheadExecutors(value);
+				}
+			},
+			new SinglePropertySetter<Integer>(BULKHEAD_PERMITS_PER_SERVER_PROPERTY, Integer.class) {
+				@Override
+				protected void doSetValue(Integer value, JmxTransConfiguration configuration) {
+					configuration.setBulkheadPermitsPerServer(value);
+				}
+			},
+			new SinglePropertySetter<Integer>(BULKHEAD_QUEUE_CAPACITY_PER_SERVER_PROPERTY, Integer.class) {
+				@Override
+				protected void doSetValue(Integer value, JmxTransConfiguration configuration) {
+					configuration.setBulkheadQueueCapacityPerServer(value);
+				}
+			},
+			new SinglePropertySetter<Boolean>(USE_ADAPTIVE_EXECUTORS_PROPERTY, Boolean.class) {
+				@Override
+				protected void doSetValue(Boolean value, JmxTransConfiguration configuration) {
+					configuration.setUseAdaptiveExecutors(value);
+				}
+			},
+			new SinglePropertySetter<Integer>(ADAPTIVE_EXECUTOR_MIN_POOL_SIZE_PROPERTY, Integer.class) {
+				@Override
+				protected void doSetValue(Integer value, JmxTransConfiguration configuration) {
+					configuration.setAdaptiveExecutorMinPoolSize(value);
+				}
+			},
+			new SinglePropertySetter<Integer>(ADAPTIVE_EXECUTOR_MAX_POOL_SIZE_PROPERTY, Integer.class) {
+				@Override
+				protected void doSetValue(Integer value, JmxTransConfiguration configuration) {
+					configuration.setAdaptiveExecutorMaxPoolSize(value);
+				}
+			},
+			new SinglePropertySetter<Integer>(ADAPTIVE_EXECUTOR_TARGET_QUEUE_WAIT_MILLIS_PROPERTY, Integer.class) {
+				@Override
+				protected void doSetValue(Integer value, JmxTransConfiguration configuration) {
+					configuration.setAdaptiveExecutorTargetQueueWaitMillis(value);
+				}
+			},
+			new SinglePropertySetter<Boolean>(ALIGN_SERVER_JOBS_PROPERTY, Boolean.class) {
+				@Override
+				protected void doSetValue(Boolean value, JmxTransConfiguration configuration) {
+					configuration.setAlignServerJobs(value);
+				}
+			},
+			new SinglePropertySetter<Integer>(ALIGNED_SPREAD_MILLIS_PROPERTY, Integer.class) {
+				@Override
+				protected void doSetValue(Integer value, JmxTransConfiguration configuration) {
+					configuration.setAlignedSpreadMillis(value);
+				}
+			},
+			new SinglePropertySetter<Boolean>(USE_RESULT_RING_BUFFER_PROPERTY, Boolean.class) {
+				@Override
+				protected void doSetValue(Boolean value, JmxTransConfiguration configuration) {
+					configuration.setUseResultRingBuffer(value);
+				}
+			},
+			new SinglePropertySetter<Integer>(RESULT_RING_BUFFER_SIZE_PROPERTY, Integer.class) {
+				@Override
+				protected void doSetValue(Integer value, JmxTransConfiguration configuration) {
+					configuration.setResultRingBufferSize(value);
+				}
+			},
+			new SinglePropertySetter<Integer>(RESULT_RING_BUFFER_HANDLERS_PROPERTY, Integer.class) {
+				@Override
+				protected void doSetValue(Integer value, JmxTransConfiguration configuration) {
+					configuration.setResultRingBufferHandlers(value);
+				}
+			},
+			new SinglePropertySetter<String>(RESULT_RING_BUFFER_WAIT_STRATEGY_PROPERTY, String.class) {
+				@Override
+				protected void doSetValue(String value, JmxTransConfiguration configuration) {
+					configuration.setResultRingBufferWaitStrategy(WaitStrategy.valueOf(value.trim().toUpperCase(Locale.ENGLISH)));
+				}
+			},
+			new SinglePropertySetter<Integer>(ASYNC_WRITER_MAX_IN_FLIGHT_PROPERTY, Integer.class) {
+				@Override
+				protected void doSetValue(Integer value, JmxTransConfiguration configuration) {
+					configuration.setAsyncWriterMaxInFlight(value);
+				}
+			},
+			new SinglePropertySetter<Integer>(ASYNC_WRITER_ADMISSION_TIMEOUT_MILLIS_PROPERTY, Integer.class) {
+				@Override
+				protected void doSetValue(Integer value, JmxTransConfiguration configuration) {
+					configuration.setAsyncWriterAdmissionTimeoutMillis(value);
+				}
 			}
 	};
 
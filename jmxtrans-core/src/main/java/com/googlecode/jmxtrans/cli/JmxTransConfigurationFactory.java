@@ -65,6 +65,21 @@ public class JmxTransConfigurationFactory {
 		return configuration;
 	}
 
+	/**
+	 * Builds a configuration from the default properties overridden by the given ones,
+	 * without looking for a configuration file.
+	 */
+	public static JmxTransConfiguration fromProperties(Properties overrides) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream in = JmxTransConfiguration.class.getResourceAsStream("/jmxtrans.properties")) {
+			properties.load(in);
+		}
+		properties.putAll(overrides);
+		JmxTransConfiguration configuration = new JmxTransConfiguration();
+		configuration.loadProperties(properties);
+		return configuration;
+	}
+
 	public static JmxTransConfiguration fromArgs(String... args) throws IOException {
 		return new JCommanderArgumentParser().parseOptions(args);
 	}
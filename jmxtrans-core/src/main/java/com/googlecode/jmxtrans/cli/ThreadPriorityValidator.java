@@ -0,0 +1,44 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.cli;
+
+import com.beust.jcommander.IParameterValidator;
+import com.beust.jcommander.ParameterException;
+
+import static java.lang.String.format;
+
+public class ThreadPriorityValidator implements IParameterValidator {
+	@Override
+	public void validate(String name, String value) throws ParameterException {
+		int priority;
+		try {
+			priority = Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new ParameterException(format("Parameter %s should be an integer (found %s)", name, value));
+		}
+		if (priority < Thread.MIN_PRIORITY || priority > Thread.MAX_PRIORITY) {
+			throw new ParameterException(format("Parameter %s should be between %d and %d (found %s)",
+					name, Thread.MIN_PRIORITY, Thread.MAX_PRIORITY, value));
+		}
+	}
+}
@@ -22,6 +22,7 @@
  */
 package com.googlecode.jmxtrans.connections;
 
+import com.googlecode.jmxtrans.jmx.BulkAttributeReader;
 import lombok.Getter;
 import lombok.ToString;
 import org.slf4j.Logger;
@@ -30,7 +31,9 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
+import javax.management.ListenerNotFoundException;
 import javax.management.MBeanServerConnection;
+import javax.management.NotificationListener;
 import javax.management.remote.JMXConnector;
 import java.io.Closeable;
 import java.io.IOException;
@@ -41,6 +44,8 @@ public class JMXConnection implements Closeable {
 	@Nullable private final JMXConnector connector;
 	@Nonnull @Getter private final MBeanServerConnection mBeanServerConnection;
 	private boolean markedAsDestroyed;
+	/** Lazily checked, null until the first query on this connection. */
+	@Nullable private volatile Boolean bulkAttributeReaderAvailable;
 	private static final Logger logger = LoggerFactory.getLogger(JMXConnection.class);
 
 	public JMXConnection(@Nullable JMXConnector connector, @Nonnull MBeanServerConnection mBeanServerConnection) {
@@ -58,6 +63,48 @@ public class JMXConnection implements Closeable {
 		markedAsDestroyed = true;
 	}
 
+	/**
+	 * Whether a {@link BulkAttributeReader} is registered on the other side of
+	 * this connection. Only remote connections benefit from it, so local ones
+	 * always answer false. The answer is cached for the life of the connection.
+	 */
+	public boolean isBulkAttributeReaderAvailable() throws IOException {
+		Boolean available = bulkAttributeReaderAvailable;
+		if (available == null) {
+			available = connector != null && mBeanServerConnection.isRegistered(BulkAttributeReader.OBJECT_NAME);
+			bulkAttributeReaderAvailable = available;
+		}
+		return available;
+	}
+
+	/**
+	 * Stops using the {@link BulkAttributeReader} on this connection, for
+	 * example after it has been unregistered from the remote JVM.
+	 */
+	public void disableBulkAttributeReader() {
+		bulkAttributeReaderAvailable = false;
+	}
+
+	/**
+	 * Listens to the state of the underlying connector, to know when a remote
+	 * connection fails. Local connections never emit such notifications.
+	 */
+	public void addConnectionNotificationListener(@Nonnull NotificationListener listener) {
+		if (connector != null) {
+			connector.addConnectionNotificationListener(listener, null, null);
+		}
+	}
+
+	public void removeConnectionNotificationListener(@Nonnull NotificationListener listener) {
+		if (connector != null) {
+			try {
+				connector.removeConnectionNotificationListener(listener);
+			} catch (ListenerNotFoundException e) {
+				logger.debug("Connection listener {} was not registered on {}", listener, this);
+			}
+		}
+	}
+
 	@Override
 	public void close() {
 		if (connector != null) {
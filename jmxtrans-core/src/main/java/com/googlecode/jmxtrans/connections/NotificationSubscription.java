@@ -0,0 +1,155 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.connections;
+
+import org.apache.commons.pool.KeyedObjectPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MBeanServerConnection;
+import javax.management.Notification;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnectionNotification;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A notification listener registered on all the MBeans matching a pattern.
+ *
+ * The connection used to register the listener stays borrowed from the pool
+ * until the subscription is closed. The listener receives the
+ * {@link ObjectInstance} of the emitting MBean as handback.
+ *
+ * MBeans registered after the subscription are not listened to, and a failed
+ * remote connection makes the subscription inactive: in both cases the owner
+ * is expected to close it and subscribe again.
+ */
+@ThreadSafe
+public class NotificationSubscription implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(NotificationSubscription.class);
+
+	@Nonnull private final KeyedObjectPool<JmxConnectionProvider, JMXConnection> pool;
+	@Nonnull private final JmxConnectionProvider provider;
+	@Nonnull private final JMXConnection jmxConnection;
+	@Nonnull private final NotificationListener listener;
+	private final List<ObjectName> registeredNames = new ArrayList<>();
+	private final NotificationListener connectionListener = new NotificationListener() {
+		@Override
+		public void handleNotification(Notification notification, Object handback) {
+			String type = notification.getType();
+			if (JMXConnectionNotification.FAILED.equals(type) || JMXConnectionNotification.CLOSED.equals(type)) {
+				logger.info("Connection of notification subscription {} lost: {}", NotificationSubscription.this, type);
+				active = false;
+			}
+		}
+	};
+	private volatile boolean active = true;
+	private boolean closed = false;
+
+	private NotificationSubscription(
+			@Nonnull KeyedObjectPool<JmxConnectionProvider, JMXConnection> pool,
+			@Nonnull JmxConnectionProvider provider,
+			@Nonnull JMXConnection jmxConnection,
+			@Nonnull NotificationListener listener) {
+		this.pool = pool;
+		this.provider = provider;
+		this.jmxConnection = jmxConnection;
+		this.listener = listener;
+	}
+
+	@Nonnull
+	public static NotificationSubscription subscribe(
+			@Nonnull KeyedObjectPool<JmxConnectionProvider, JMXConnection> pool,
+			@Nonnull JmxConnectionProvider provider,
+			@Nonnull ObjectName pattern,
+			@Nonnull NotificationFilter filter,
+			@Nonnull NotificationListener listener) throws Exception {
+		JMXConnection jmxConnection = pool.borrowObject(provider);
+		NotificationSubscription subscription = new NotificationSubscription(pool, provider, jmxConnection, listener);
+		try {
+			subscription.register(pattern, filter);
+			return subscription;
+		} catch (Exception e) {
+			subscription.active = false;
+			subscription.close();
+			throw e;
+		}
+	}
+
+	private synchronized void register(ObjectName pattern, NotificationFilter filter) throws Exception {
+		jmxConnection.addConnectionNotificationListener(connectionListener);
+		MBeanServerConnection connection = jmxConnection.getMBeanServerConnection();
+		for (ObjectName name : connection.queryNames(pattern, null)) {
+			ObjectInstance instance = connection.getObjectInstance(name);
+			connection.addNotificationListener(name, listener, filter, instance);
+			registeredNames.add(name);
+			logger.debug("Listening to notifications of {}", name);
+		}
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	public synchronized int getListenedMBeanCount() {
+		return registeredNames.size();
+	}
+
+	@Override
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		jmxConnection.removeConnectionNotificationListener(connectionListener);
+		if (active) {
+			MBeanServerConnection connection = jmxConnection.getMBeanServerConnection();
+			for (ObjectName name : registeredNames) {
+				try {
+					connection.removeNotificationListener(name, listener);
+				} catch (Exception e) {
+					logger.debug("Could not remove notification listener from {}", name, e);
+				}
+			}
+		}
+		registeredNames.clear();
+
+		try {
+			if (active) {
+				pool.returnObject(provider, jmxConnection);
+			} else {
+				pool.invalidateObject(provider, jmxConnection);
+			}
+		} catch (Exception e) {
+			logger.warn("Could not release connection of notification subscription", e);
+		}
+	}
+}
@@ -0,0 +1,205 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.executors;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Thread pool resizing itself between a minimum and a maximum size.
+ *
+ * Every adjustment interval the pool looks at how long tasks waited in the
+ * queue, how many arrived and how long they ran. When tasks wait longer than
+ * the target, the pool grows by one thread, or straight to the number of
+ * threads Little's law asks for (arrival rate times run time) if that is more.
+ * When tasks hardly wait and fewer threads would do, the pool is halved, but
+ * never below what Little's law asks for. Adjustments are made by the threads
+ * submitting and running tasks, so an idle pool keeps its size until it is
+ * used again.
+ */
+@ThreadSafe
+public class AdaptiveThreadPoolExecutor extends ThreadPoolExecutor {
+
+	private final int minPoolSize;
+	private final long targetQueueWaitNanos;
+	private final long adjustmentIntervalNanos;
+
+	private final AtomicLong windowStart;
+	private final AtomicLong arrivals = new AtomicLong();
+	private final AtomicLong startedTasks = new AtomicLong();
+	private final AtomicLong queueWaitNanos = new AtomicLong();
+	private final AtomicLong completedTasks = new AtomicLong();
+	private final AtomicLong runNanos = new AtomicLong();
+	private final AtomicLong resizeCount = new AtomicLong();
+	private final ThreadLocal<Long> runStart = new ThreadLocal<>();
+
+	private volatile long averageQueueWaitMillis = 0;
+	private volatile double completionRatePerSecond = 0;
+	private volatile int estimatedPoolSize = 0;
+	@Nonnull private volatile String lastResizeDecision = "none";
+
+	public AdaptiveThreadPoolExecutor(
+			int initialPoolSize, int minPoolSize, int maxPoolSize,
+			long targetQueueWaitMillis, long adjustmentIntervalMillis,
+			BlockingQueue<Runnable> workQueue, ThreadFactory threadFactory) {
+		super(clamp(initialPoolSize, minPoolSize, maxPoolSize), maxPoolSize, 60L, SECONDS, workQueue, threadFactory);
+		if (minPoolSize <= 0 || minPoolSize > maxPoolSize) {
+			throw new IllegalArgumentException("Pool bounds must satisfy 0 < min <= max, were " + minPoolSize + " and " + maxPoolSize);
+		}
+		this.minPoolSize = minPoolSize;
+		this.targetQueueWaitNanos = MILLISECONDS.toNanos(targetQueueWaitMillis);
+		this.adjustmentIntervalNanos = MILLISECONDS.toNanos(adjustmentIntervalMillis);
+		this.windowStart = new AtomicLong(System.nanoTime());
+	}
+
+	private static int clamp(int value, int min, int max) {
+		return Math.max(min, Math.min(max, value));
+	}
+
+	@Override
+	public void execute(@Nonnull Runnable command) {
+		arrivals.incrementAndGet();
+		maybeAdjust();
+		super.execute(new TimedTask(command));
+	}
+
+	@Override
+	protected void beforeExecute(Thread t, Runnable r) {
+		super.beforeExecute(t, r);
+		long now = System.nanoTime();
+		if (r instanceof TimedTask) {
+			startedTasks.incrementAndGet();
+			queueWaitNanos.addAndGet(now - ((TimedTask) r).enqueuedAt);
+		}
+		runStart.set(now);
+	}
+
+	@Override
+	protected void afterExecute(Runnable r, Throwable t) {
+		Long start = runStart.get();
+		if (start != null) {
+			runNanos.addAndGet(System.nanoTime() - start);
+			runStart.remove();
+		}
+		completedTasks.incrementAndGet();
+		super.afterExecute(r, t);
+		maybeAdjust();
+	}
+
+	private void maybeAdjust() {
+		long start = windowStart.get();
+		long now = System.nanoTime();
+		if (now - start >= adjustmentIntervalNanos && windowStart.compareAndSet(start, now)) {
+			adjust(now - start);
+		}
+	}
+
+	/**
+	 * Resizes the pool from what was observed during the last window.
+	 */
+	@VisibleForTesting
+	synchronized void adjust(long windowNanos) {
+		long arrived = arrivals.getAndSet(0);
+		long started = startedTasks.getAndSet(0);
+		long waitNanos = queueWaitNanos.getAndSet(0);
+		long completed = completedTasks.getAndSet(0);
+		long ranNanos = runNanos.getAndSet(0);
+		double windowSeconds = Math.max(windowNanos, 1L) / (double) SECONDS.toNanos(1);
+
+		long averageWait = started == 0 ? 0 : waitNanos / started;
+		// tasks still in the queue have been waiting too, without being counted yet
+		Runnable oldest = getQueue().peek();
+		if (oldest instanceof TimedTask) {
+			averageWait = Math.max(averageWait, System.nanoTime() - ((TimedTask) oldest).enqueuedAt);
+		}
+		double arrivalRate = arrived / windowSeconds;
+		double averageRunSeconds = completed == 0 ? 0 : ranNanos / (double) completed / SECONDS.toNanos(1);
+		int needed = (int) Math.ceil(arrivalRate * averageRunSeconds);
+
+		averageQueueWaitMillis = NANOSECONDS.toMillis(averageWait);
+		completionRatePerSecond = completed / windowSeconds;
+		estimatedPoolSize = needed;
+
+		int current = getCorePoolSize();
+		int target = current;
+		if (averageWait > targetQueueWaitNanos) {
+			target = clamp(Math.max(current + 1, needed), minPoolSize, getMaximumPoolSize());
+		} else if (averageWait <= targetQueueWaitNanos / 2 && needed < current) {
+			target = clamp(Math.max(current / 2, needed), minPoolSize, getMaximumPoolSize());
+		}
+
+		if (target != current) {
+			setCorePoolSize(target);
+			resizeCount.incrementAndGet();
+			lastResizeDecision = String.format(
+					"%s from %d to %d threads: queue wait %d ms, %.1f tasks/s arriving, %.1f tasks/s completed, %d threads needed",
+					target > current ? "grew" : "shrank", current, target,
+					averageQueueWaitMillis, arrivalRate, completionRatePerSecond, needed);
+		}
+	}
+
+	public long getAverageQueueWaitMillis() {
+		return averageQueueWaitMillis;
+	}
+
+	public double getCompletionRatePerSecond() {
+		return completionRatePerSecond;
+	}
+
+	public int getEstimatedPoolSize() {
+		return estimatedPoolSize;
+	}
+
+	public long getResizeCount() {
+		return resizeCount.get();
+	}
+
+	@Nonnull
+	public String getLastResizeDecision() {
+		return lastResizeDecision;
+	}
+
+	private static final class TimedTask implements Runnable {
+		private final Runnable task;
+		private final long enqueuedAt = System.nanoTime();
+
+		private TimedTask(Runnable task) {
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			task.run();
+		}
+	}
+}
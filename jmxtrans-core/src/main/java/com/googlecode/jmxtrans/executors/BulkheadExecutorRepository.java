@@ -0,0 +1,258 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.executors;
+
+import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.monitoring.ManagedThreadPoolExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MalformedObjectNameException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.util.concurrent.MoreExecutors.shutdownAndAwaitTermination;
+
+/**
+ * Runs the tasks of all servers on one shared thread pool, keeping each server
+ * in its own bulkhead.
+ *
+ * Every server gets a bounded queue and a number of permits, which is how many
+ * of its tasks may run at the same time. Servers with waiting tasks are served
+ * in turn, so a slow server only ever holds its own permits and fills its own
+ * queue, while the number of threads stays the size of the shared pool.
+ */
+@ThreadSafe
+public class BulkheadExecutorRepository implements ExecutorRepository {
+
+	private static final Logger log = LoggerFactory.getLogger(BulkheadExecutorRepository.class);
+
+	@Nonnull private final ManagedThreadPoolExecutor managedThreadPoolExecutor;
+	private final int permitsPerServer;
+	private final int queueCapacityPerServer;
+	@Nonnull private final ConcurrentHashMap<Server, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+	/** Bulkheads with waiting tasks, in the order they will be served. */
+	@GuardedBy("this") private final Deque<Bulkhead> ready = new ArrayDeque<>();
+	@GuardedBy("this") private int running = 0;
+
+	public BulkheadExecutorRepository(ExecutorFactory executorFactory, int permitsPerServer, int queueCapacityPerServer) throws MalformedObjectNameException {
+		if (permitsPerServer <= 0) throw new IllegalArgumentException("Permits per server must be positive, was " + permitsPerServer);
+		if (queueCapacityPerServer <= 0) throw new IllegalArgumentException("Queue capacity per server must be positive, was " + queueCapacityPerServer);
+		this.managedThreadPoolExecutor = executorFactory.create(null);
+		this.permitsPerServer = permitsPerServer;
+		this.queueCapacityPerServer = queueCapacityPerServer;
+	}
+
+	@Override
+	public void put(Server server) throws MalformedObjectNameException {
+		if (bulkheads.putIfAbsent(server, new Bulkhead(server.getId())) == null) {
+			log.debug("Created bulkhead for server {}", server);
+		}
+	}
+
+	@Override
+	public void remove(Server server) {
+		Bulkhead bulkhead = bulkheads.remove(server);
+		if (bulkhead != null) {
+			shutdownAndAwaitTermination(bulkhead, 10, TimeUnit.SECONDS);
+		}
+	}
+
+	@Override
+	public Collection<ThreadPoolExecutor> getExecutors() {
+		return Arrays.asList(managedThreadPoolExecutor.getExecutor());
+	}
+
+	@Override
+	public ExecutorService getExecutor(Server server) {
+		return bulkheads.get(server);
+	}
+
+	@Override
+	public Collection<ManagedThreadPoolExecutor> getMBeans() {
+		return Arrays.asList(managedThreadPoolExecutor);
+	}
+
+	private synchronized void enqueue(Bulkhead bulkhead, Runnable task) {
+		if (bulkhead.shutdown) {
+			throw new RejectedExecutionException("Bulkhead of server " + bulkhead.serverId + " is shut down");
+		}
+		if (bulkhead.queue.size() >= queueCapacityPerServer) {
+			throw new RejectedExecutionException("Queue of server " + bulkhead.serverId + " is full (" + queueCapacityPerServer + " tasks)");
+		}
+		bulkhead.queue.add(task);
+		if (bulkhead.queue.size() == 1) {
+			ready.addLast(bulkhead);
+		}
+		dispatch();
+	}
+
+	/**
+	 * Hands waiting tasks to the shared pool, one per server in turn, as long
+	 * as the pool has idle threads. Servers out of permits keep their place
+	 * and are served again when one of their tasks completes.
+	 */
+	@GuardedBy("this")
+	private void dispatch() {
+		final ThreadPoolExecutor executor = managedThreadPoolExecutor.getExecutor();
+		int blocked = 0;
+		while (running < executor.getMaximumPoolSize() && blocked < ready.size()) {
+			Bulkhead bulkhead = ready.pollFirst();
+			if (bulkhead.queue.isEmpty()) {
+				continue;
+			}
+			if (bulkhead.running >= permitsPerServer) {
+				ready.addLast(bulkhead);
+				blocked++;
+				continue;
+			}
+			blocked = 0;
+			Runnable task = bulkhead.queue.pollFirst();
+			if (!bulkhead.queue.isEmpty()) {
+				ready.addLast(bulkhead);
+			}
+			bulkhead.running++;
+			running++;
+			try {
+				executor.execute(new BulkheadTask(bulkhead, task));
+			} catch (RejectedExecutionException ree) {
+				bulkhead.running--;
+				running--;
+				if (task instanceof Future) {
+					((Future<?>) task).cancel(false);
+				}
+				log.error("Could not run task of server {} on the shared executor", bulkhead.serverId, ree);
+			}
+		}
+	}
+
+	private synchronized void complete(Bulkhead bulkhead) {
+		bulkhead.running--;
+		running--;
+		dispatch();
+		notifyAll();
+	}
+
+	private final class BulkheadTask implements Runnable {
+		private final Bulkhead bulkhead;
+		private final Runnable task;
+
+		private BulkheadTask(Bulkhead bulkhead, Runnable task) {
+			this.bulkhead = bulkhead;
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			try {
+				task.run();
+			} finally {
+				complete(bulkhead);
+			}
+		}
+	}
+
+	/**
+	 * The view of the shared pool given to one server. Its state is guarded by
+	 * the repository, so that servers can be served in turn.
+	 */
+	private final class Bulkhead extends AbstractExecutorService {
+		private final String serverId;
+		@GuardedBy("BulkheadExecutorRepository.this") private final Deque<Runnable> queue = new ArrayDeque<>();
+		@GuardedBy("BulkheadExecutorRepository.this") private int running = 0;
+		@GuardedBy("BulkheadExecutorRepository.this") private boolean shutdown = false;
+
+		private Bulkhead(String serverId) {
+			this.serverId = serverId;
+		}
+
+		@Override
+		public void execute(@Nonnull Runnable command) {
+			enqueue(this, command);
+		}
+
+		@Override
+		public void shutdown() {
+			synchronized (BulkheadExecutorRepository.this) {
+				shutdown = true;
+				BulkheadExecutorRepository.this.notifyAll();
+			}
+		}
+
+		@Nonnull
+		@Override
+		public List<Runnable> shutdownNow() {
+			synchronized (BulkheadExecutorRepository.this) {
+				shutdown = true;
+				List<Runnable> dropped = new ArrayList<>(queue);
+				queue.clear();
+				BulkheadExecutorRepository.this.notifyAll();
+				return dropped;
+			}
+		}
+
+		@Override
+		public boolean isShutdown() {
+			synchronized (BulkheadExecutorRepository.this) {
+				return shutdown;
+			}
+		}
+
+		@Override
+		public boolean isTerminated() {
+			synchronized (BulkheadExecutorRepository.this) {
+				return shutdown && queue.isEmpty() && running == 0;
+			}
+		}
+
+		@Override
+		public boolean awaitTermination(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+			long deadline = System.nanoTime() + unit.toNanos(timeout);
+			synchronized (BulkheadExecutorRepository.this) {
+				while (!isTerminated()) {
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0) {
+						return false;
+					}
+					TimeUnit.NANOSECONDS.timedWait(BulkheadExecutorRepository.this, remaining);
+				}
+				return true;
+			}
+		}
+	}
+}
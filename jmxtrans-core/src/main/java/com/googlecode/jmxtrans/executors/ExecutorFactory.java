@@ -24,7 +24,10 @@ package com.googlecode.jmxtrans.executors;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.googlecode.jmxtrans.monitoring.ManagedThreadPoolExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.management.MalformedObjectNameException;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -32,38 +35,114 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 public class ExecutorFactory {
+	private static final Logger log = LoggerFactory.getLogger(ExecutorFactory.class);
+	private static final long ADJUSTMENT_INTERVAL_MILLIS = 5000L;
+
 	private final int defaultPoolSize;
 	private final int defaultWorkQueueCapacity;
 	private final String executorAlias;
+	private final int threadPriority;
+	private final boolean virtualThreads;
+	@Nullable private final AdaptiveSizing adaptiveSizing;
 
 	public ExecutorFactory(int defaultPoolSize, int defaultWorkQueueCapacity, String executorAlias) {
+		this(defaultPoolSize, defaultWorkQueueCapacity, executorAlias, Thread.NORM_PRIORITY);
+	}
+
+	public ExecutorFactory(int defaultPoolSize, int defaultWorkQueueCapacity, String executorAlias, int threadPriority) {
+		this(defaultPoolSize, defaultWorkQueueCapacity, executorAlias, threadPriority, false);
+	}
+
+	/**
+	 * @param virtualThreads run tasks on virtual threads when the JVM supports
+	 *                       them. The pool size is then the maximum number of
+	 *                       tasks running at the same time, and idle threads
+	 *                       are not kept around.
+	 */
+	public ExecutorFactory(int defaultPoolSize, int defaultWorkQueueCapacity, String executorAlias, int threadPriority, boolean virtualThreads) {
+		this(defaultPoolSize, defaultWorkQueueCapacity, executorAlias, threadPriority, virtualThreads, null);
+	}
+
+	private ExecutorFactory(int defaultPoolSize, int defaultWorkQueueCapacity, String executorAlias, int threadPriority, boolean virtualThreads, @Nullable AdaptiveSizing adaptiveSizing) {
 		this.defaultPoolSize = defaultPoolSize;
 		this.defaultWorkQueueCapacity = defaultWorkQueueCapacity;
 		this.executorAlias = executorAlias;
+		this.threadPriority = threadPriority;
+		this.virtualThreads = virtualThreads;
+		this.adaptiveSizing = adaptiveSizing;
+	}
+
+	/**
+	 * Creates executors starting at the default pool size, and resizing
+	 * themselves between the given bounds to keep the time tasks wait in the
+	 * queue under the target.
+	 *
+	 * @see AdaptiveThreadPoolExecutor
+	 */
+	public static ExecutorFactory adaptive(
+			int defaultPoolSize, int minPoolSize, int maxPoolSize, long targetQueueWaitMillis,
+			int defaultWorkQueueCapacity, String executorAlias, int threadPriority) {
+		return new ExecutorFactory(defaultPoolSize, defaultWorkQueueCapacity, executorAlias, threadPriority, false,
+				new AdaptiveSizing(minPoolSize, maxPoolSize, targetQueueWaitMillis));
 	}
 
 	public ManagedThreadPoolExecutor create(String aliasSuffix) throws MalformedObjectNameException {
 		final String serverAlias = aliasSuffix == null
 				? executorAlias
 				: String.format("%s-%s", executorAlias, aliasSuffix);
-		ThreadFactory threadFactory = threadFactory(serverAlias);
+		ThreadFactory virtualThreadFactory = virtualThreads
+				? VirtualThreads.threadFactory("jmxtrans-" + serverAlias + "-")
+				: null;
+		if (virtualThreads && virtualThreadFactory == null) {
+			log.warn("Virtual threads need Java 21 or later, executor {} uses platform threads", serverAlias);
+		}
 
 		BlockingQueue<Runnable> workQueue = new LinkedBlockingQueue<>(defaultWorkQueueCapacity);
 
 		// each server can have different settings in separate thread pool strategy
 		// this logic can be implemented in json/yaml configs if it will be needed
-		final ThreadPoolExecutor executor = new ThreadPoolExecutor(defaultPoolSize, defaultPoolSize, 0L, MILLISECONDS, workQueue, threadFactory);
+		final ThreadPoolExecutor executor;
+		if (virtualThreadFactory != null) {
+			// the pool size only bounds concurrency, virtual threads are cheap to create again
+			executor = new ThreadPoolExecutor(defaultPoolSize, defaultPoolSize, 1L, SECONDS, workQueue, virtualThreadFactory);
+			executor.allowCoreThreadTimeOut(true);
+		} else if (adaptiveSizing != null) {
+			executor = new AdaptiveThreadPoolExecutor(
+					defaultPoolSize, adaptiveSizing.minPoolSize, adaptiveSizing.maxPoolSize,
+					adaptiveSizing.targetQueueWaitMillis, ADJUSTMENT_INTERVAL_MILLIS,
+					workQueue, threadFactory(serverAlias, threadPriority));
+		} else {
+			executor = new ThreadPoolExecutor(defaultPoolSize, defaultPoolSize, 0L, MILLISECONDS, workQueue, threadFactory(serverAlias, threadPriority));
+		}
 		ManagedThreadPoolExecutor executorMBean = new ManagedThreadPoolExecutor(executor, serverAlias);
 
 		return executorMBean;
 	}
 
 	public static ThreadFactory threadFactory(String alias) {
+		return threadFactory(alias, Thread.NORM_PRIORITY);
+	}
+
+	public static ThreadFactory threadFactory(String alias, int priority) {
 		return new ThreadFactoryBuilder()
 				.setDaemon(true)
+				.setPriority(priority)
 				.setNameFormat("jmxtrans-" + alias + "-%d")
 				.build();
 	}
+
+	private static final class AdaptiveSizing {
+		private final int minPoolSize;
+		private final int maxPoolSize;
+		private final long targetQueueWaitMillis;
+
+		private AdaptiveSizing(int minPoolSize, int maxPoolSize, long targetQueueWaitMillis) {
+			this.minPoolSize = minPoolSize;
+			this.maxPoolSize = maxPoolSize;
+			this.targetQueueWaitMillis = targetQueueWaitMillis;
+		}
+	}
 }
@@ -27,13 +27,14 @@ import com.googlecode.jmxtrans.monitoring.ManagedThreadPoolExecutor;
 
 import javax.management.MalformedObjectNameException;
 import java.util.Collection;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 
 public interface ExecutorRepository {
 	void remove(Server server);
 	void put(Server server) throws MalformedObjectNameException;
 	Collection<ThreadPoolExecutor> getExecutors();
-	ThreadPoolExecutor getExecutor(Server server);
+	ExecutorService getExecutor(Server server);
 	Collection<ManagedThreadPoolExecutor> getMBeans();
 }
 
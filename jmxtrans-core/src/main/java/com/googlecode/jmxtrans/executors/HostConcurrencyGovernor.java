@@ -0,0 +1,246 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.executors;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.googlecode.jmxtrans.model.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Limits the JMX work running at the same time against one target host, so
+ * that several servers living on the same machine are not all queried at
+ * once.
+ *
+ * Work over the limits is queued per host, in submission order, and handed
+ * to its executor once a previous task of the same host completes (or once
+ * the rate allows it). No thread ever waits for a permit, so queries to other
+ * hosts are never held back. Connections are opened by the queries
+ * themselves, so connection attempts are bounded by the same limit. The
+ * queue of a host holds at most maxQueuedPerHost tasks, further tasks being
+ * rejected with a {@link RejectedExecutionException}, as an executor with a
+ * full work queue would.
+ *
+ * A limit of 0 means unlimited.
+ */
+@ThreadSafe
+public class HostConcurrencyGovernor {
+
+	private static final Logger log = LoggerFactory.getLogger(HostConcurrencyGovernor.class);
+
+	private final int maxInFlightPerHost;
+	private final long minIntervalNanos;
+	private final int maxQueuedPerHost;
+	@Nullable private final ScheduledExecutorService scheduler;
+	private final ConcurrentMap<String, HostQueue> hosts = new ConcurrentHashMap<>();
+
+	public HostConcurrencyGovernor(int maxInFlightPerHost, int maxCallsPerSecondPerHost, @Nullable ScheduledExecutorService scheduler) {
+		this(maxInFlightPerHost, maxCallsPerSecondPerHost, 0, scheduler);
+	}
+
+	public HostConcurrencyGovernor(
+			int maxInFlightPerHost, int maxCallsPerSecondPerHost, int maxQueuedPerHost,
+			@Nullable ScheduledExecutorService scheduler) {
+		if (maxCallsPerSecondPerHost > 0 && scheduler == null) {
+			throw new IllegalArgumentException("A scheduler is needed to enforce a rate of calls");
+		}
+		this.maxInFlightPerHost = maxInFlightPerHost;
+		this.minIntervalNanos = maxCallsPerSecondPerHost > 0 ? SECONDS.toNanos(1) / maxCallsPerSecondPerHost : 0;
+		this.maxQueuedPerHost = maxQueuedPerHost;
+		this.scheduler = scheduler;
+	}
+
+	public static HostConcurrencyGovernor unlimited() {
+		return new HostConcurrencyGovernor(0, 0, null);
+	}
+
+	public boolean isLimited() {
+		return maxInFlightPerHost > 0 || minIntervalNanos > 0;
+	}
+
+	/**
+	 * Runs the task on the executor as soon as the limits of the server host
+	 * allow it.
+	 *
+	 * @throws RejectedExecutionException if the queue of the host is full
+	 */
+	public void execute(@Nonnull Server server, @Nonnull ExecutorService executor, @Nonnull Runnable task) {
+		if (!isLimited()) {
+			executor.submit(task);
+			return;
+		}
+		hostQueue(hostKey(server)).submit(executor, task);
+	}
+
+	public int getQueuedCount(@Nonnull Server server) {
+		HostQueue queue = hosts.get(hostKey(server));
+		return queue == null ? 0 : queue.getQueuedCount();
+	}
+
+	public int getInFlightCount(@Nonnull Server server) {
+		HostQueue queue = hosts.get(hostKey(server));
+		return queue == null ? 0 : queue.getInFlightCount();
+	}
+
+	@VisibleForTesting
+	static String hostKey(@Nonnull Server server) {
+		if (server.isLocal() || server.getHost() == null) {
+			return "localhost";
+		}
+		return server.getHost().toLowerCase(Locale.ENGLISH);
+	}
+
+	private HostQueue hostQueue(String host) {
+		HostQueue queue = hosts.get(host);
+		if (queue == null) {
+			HostQueue created = new HostQueue(host);
+			queue = hosts.putIfAbsent(host, created);
+			if (queue == null) {
+				queue = created;
+			}
+		}
+		return queue;
+	}
+
+	private static final class Pending {
+		private final ExecutorService executor;
+		private final Runnable task;
+
+		private Pending(ExecutorService executor, Runnable task) {
+			this.executor = executor;
+			this.task = task;
+		}
+	}
+
+	private final class HostQueue {
+		private final String host;
+		@GuardedBy("this") private final Queue<Pending> pending = new ArrayDeque<>();
+		@GuardedBy("this") private int inFlight = 0;
+		@GuardedBy("this") private long nextCallNanos = System.nanoTime();
+		@GuardedBy("this") private boolean drainScheduled = false;
+
+		private final Runnable drain = new Runnable() {
+			@Override
+			public void run() {
+				synchronized (HostQueue.this) {
+					drainScheduled = false;
+				}
+				drain();
+			}
+		};
+
+		private HostQueue(String host) {
+			this.host = host;
+		}
+
+		private void submit(ExecutorService executor, Runnable task) {
+			synchronized (this) {
+				if (maxQueuedPerHost > 0 && pending.size() >= maxQueuedPerHost) {
+					throw new RejectedExecutionException("Queue of host " + host + " is full with " + pending.size() + " tasks");
+				}
+				pending.add(new Pending(executor, task));
+			}
+			drain();
+		}
+
+		private synchronized int getQueuedCount() {
+			return pending.size();
+		}
+
+		private synchronized int getInFlightCount() {
+			return inFlight;
+		}
+
+		private void drain() {
+			while (true) {
+				final Pending next;
+				synchronized (this) {
+					if (pending.isEmpty() || (maxInFlightPerHost > 0 && inFlight >= maxInFlightPerHost)) {
+						return;
+					}
+					if (minIntervalNanos > 0) {
+						long now = System.nanoTime();
+						if (now - nextCallNanos < 0) {
+							if (!drainScheduled) {
+								drainScheduled = true;
+								scheduler.schedule(drain, nextCallNanos - now, NANOSECONDS);
+							}
+							return;
+						}
+						nextCallNanos = Math.max(nextCallNanos, now) + minIntervalNanos;
+					}
+					next = pending.poll();
+					inFlight++;
+				}
+				dispatch(next);
+			}
+		}
+
+		private void dispatch(final Pending next) {
+			try {
+				next.executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							next.task.run();
+						} finally {
+							release();
+						}
+					}
+				});
+			} catch (RejectedExecutionException ree) {
+				log.error("Could not submit {} for host {}. You could try to size the 'queryProcessorExecutor' to a larger size.", next.task, host, ree);
+				if (next.task instanceof Future) {
+					((Future<?>) next.task).cancel(false);
+				}
+				synchronized (this) {
+					inFlight--;
+				}
+			}
+		}
+
+		private void release() {
+			synchronized (this) {
+				inFlight--;
+			}
+			drain();
+		}
+	}
+}
@@ -36,10 +36,16 @@ import com.google.inject.name.Named;
 import com.google.inject.name.Names;
 import com.googlecode.jmxtrans.cli.JmxTransConfiguration;
 import com.googlecode.jmxtrans.connections.MBeanServerConnectionFactory;
+import com.googlecode.jmxtrans.executors.BulkheadExecutorRepository;
 import com.googlecode.jmxtrans.executors.CommonExecutorRepository;
 import com.googlecode.jmxtrans.executors.ExecutorFactory;
 import com.googlecode.jmxtrans.executors.ExecutorRepository;
+import com.googlecode.jmxtrans.executors.HostConcurrencyGovernor;
 import com.googlecode.jmxtrans.executors.SeparateExecutorRepository;
+import com.googlecode.jmxtrans.executors.VirtualThreads;
+import com.googlecode.jmxtrans.jmx.ResultProcessor;
+import com.googlecode.jmxtrans.jmx.ResultRingBuffer;
+import com.googlecode.jmxtrans.jmx.WriteDispatcher;
 import com.googlecode.jmxtrans.monitoring.ManagedGenericKeyedObjectPool;
 import org.apache.commons.pool.KeyedObjectPool;
 import org.apache.commons.pool.KeyedPoolableObjectFactory;
@@ -82,7 +88,17 @@ public class JmxTransModule extends AbstractModule {
 	public ScheduledExecutorService scheduledExecutor() {
 		return Executors.newScheduledThreadPool(
 				configuration.getScheduledExecutorPoolSize(),
-				ExecutorFactory.threadFactory("scheduler"));
+				ExecutorFactory.threadFactory("scheduler", configuration.getExecutorThreadPriority()));
+	}
+
+	@Provides
+	@Singleton
+	HostConcurrencyGovernor hostConcurrencyGovernor(ScheduledExecutorService scheduledExecutor) {
+		return new HostConcurrencyGovernor(
+				configuration.getMaxInFlightCallsPerHost(),
+				configuration.getMaxCallsPerSecondPerHost(),
+				configuration.getQueryProcessorExecutorWorkQueueCapacity(),
+				scheduledExecutor);
 	}
 
 	@Provides
@@ -105,8 +121,54 @@ public class JmxTransModule extends AbstractModule {
 		return createExecutorRepository(poolSize, workQueueCapacity, executorAlias);
 	}
 
+	@Provides
+	@Singleton
+	ResultProcessor resultProcessor(@Named("resultExecutorRepository") ExecutorRepository resultExecutorRepository) throws MalformedObjectNameException {
+		WriteDispatcher writeDispatcher = new WriteDispatcher(
+				configuration.getAsyncWriterMaxInFlight(),
+				configuration.getAsyncWriterAdmissionTimeoutMillis());
+		if (!configuration.isUseResultRingBuffer()) {
+			return new ResultProcessor(resultExecutorRepository, writeDispatcher, null);
+		}
+		int requestedSize = configuration.getResultRingBufferSize();
+		int bufferSize = Integer.bitCount(requestedSize) == 1 ? requestedSize : Integer.highestOneBit(requestedSize) << 1;
+		return new ResultProcessor(
+				resultExecutorRepository,
+				writeDispatcher,
+				new ResultRingBuffer(
+						bufferSize,
+						Math.min(configuration.getResultRingBufferHandlers(), bufferSize),
+						configuration.getResultRingBufferWaitStrategy(),
+						writeDispatcher,
+						ExecutorFactory.threadFactory("result-ring-buffer", configuration.getExecutorThreadPriority())));
+	}
+
 	private ExecutorRepository createExecutorRepository(int poolSize, int workQueueCapacity, String executorAlias) throws MalformedObjectNameException {
-		final ExecutorFactory executorFactory = new ExecutorFactory(poolSize, workQueueCapacity, executorAlias);
+		final boolean virtualThreads = configuration.isUseVirtualThreads() && VirtualThreads.isAvailable();
+		if (configuration.isUseVirtualThreads() && !virtualThreads) {
+			log.warn("Virtual threads need Java 21 or later, {} executors use platform threads", executorAlias);
+		}
+		final ExecutorFactory executorFactory = configuration.isUseAdaptiveExecutors() && !virtualThreads
+				? ExecutorFactory.adaptive(
+						poolSize,
+						configuration.getAdaptiveExecutorMinPoolSize(),
+						configuration.getAdaptiveExecutorMaxPoolSize(),
+						configuration.getAdaptiveExecutorTargetQueueWaitMillis(),
+						workQueueCapacity,
+						executorAlias,
+						configuration.getExecutorThreadPriority())
+				: new ExecutorFactory(
+						virtualThreads ? configuration.getVirtualThreadConcurrency() : poolSize,
+						workQueueCapacity,
+						executorAlias,
+						configuration.getExecutorThreadPriority(),
+						virtualThreads);
+		if (configuration.isUseBulkheadExecutors()) {
+			return new BulkheadExecutorRepository(
+					executorFactory,
+					configuration.getBulkheadPermitsPerServer(),
+					configuration.getBulkheadQueueCapacityPerServer());
+		}
 		final boolean useSeparateExecutors = configuration.isUseSeparateExecutors();
 		return useSeparateExecutors
 				? new SeparateExecutorRepository(executorFactory)
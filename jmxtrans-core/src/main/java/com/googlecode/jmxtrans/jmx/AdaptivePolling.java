@@ -0,0 +1,127 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.Result;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.ObjectName;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which MBeans of a query are fetched on a run, from how often their
+ * values changed.
+ *
+ * An MBean whose values did not change since its previous fetch is fetched
+ * half as often, until it is fetched only once per maximum period. As soon as
+ * a fetch finds a change, the MBean is fetched every run again. Runs on which
+ * an MBean is not fetched produce no result for it.
+ */
+@ThreadSafe
+public class AdaptivePolling {
+
+	private final long basePeriodMillis;
+	private final long maxPeriodMillis;
+
+	@GuardedBy("this") private final Map<ObjectName, MBeanState> states = new HashMap<>();
+	private final AtomicLong fetches = new AtomicLong();
+	private final AtomicLong skippedFetches = new AtomicLong();
+
+	public AdaptivePolling(long basePeriodMillis, long maxPeriodMillis) {
+		if (basePeriodMillis <= 0 || maxPeriodMillis < basePeriodMillis) {
+			throw new IllegalArgumentException("Periods must satisfy 0 < base <= max, were " + basePeriodMillis + " and " + maxPeriodMillis);
+		}
+		this.basePeriodMillis = basePeriodMillis;
+		this.maxPeriodMillis = maxPeriodMillis;
+	}
+
+	/**
+	 * @return true if the MBean should be fetched on the run starting now,
+	 * false if the fetch is skipped
+	 */
+	public synchronized boolean isDue(@Nonnull ObjectName name, long nowMillis) {
+		MBeanState state = states.get(name);
+		// runs do not start exactly one period apart, half a period is enough slack
+		if (state == null || nowMillis >= state.nextFetchMillis - basePeriodMillis / 2) {
+			fetches.incrementAndGet();
+			return true;
+		}
+		skippedFetches.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * Records the values of a fetch, and when the MBean should be fetched next.
+	 */
+	public synchronized void fetched(@Nonnull ObjectName name, @Nonnull Iterable<Result> results, long nowMillis) {
+		ImmutableList.Builder<Result> values = ImmutableList.builder();
+		for (Result result : results) {
+			values.add(result.withEpoch(0));
+		}
+		ImmutableList<Result> currentValues = values.build();
+
+		MBeanState state = states.get(name);
+		long periodMillis = state != null && state.values.equals(currentValues)
+				? Math.min(state.periodMillis * 2, maxPeriodMillis)
+				: basePeriodMillis;
+		states.put(name, new MBeanState(currentValues, periodMillis, nowMillis + periodMillis));
+	}
+
+	/**
+	 * Forgets the MBeans not matched by the query anymore.
+	 */
+	public synchronized void retain(@Nonnull Collection<ObjectName> names) {
+		states.keySet().retainAll(names);
+	}
+
+	public synchronized long getPeriodMillis(@Nonnull ObjectName name) {
+		MBeanState state = states.get(name);
+		return state == null ? basePeriodMillis : state.periodMillis;
+	}
+
+	public long getFetches() {
+		return fetches.get();
+	}
+
+	public long getSkippedFetches() {
+		return skippedFetches.get();
+	}
+
+	private static final class MBeanState {
+		private final ImmutableList<Result> values;
+		private final long periodMillis;
+		private final long nextFetchMillis;
+
+		private MBeanState(ImmutableList<Result> values, long periodMillis, long nextFetchMillis) {
+			this.values = values;
+			this.periodMillis = periodMillis;
+			this.nextFetchMillis = nextFetchMillis;
+		}
+	}
+}
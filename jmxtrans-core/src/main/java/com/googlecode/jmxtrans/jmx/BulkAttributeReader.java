@@ -0,0 +1,172 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import javax.management.AttributeList;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.IntrospectionException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanRegistration;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Helper MBean that can be installed in a monitored JVM to read the
+ * attributes of many MBeans in a single remote call.
+ *
+ * With plain RMI, a wildcard query costs one {@code getAttributes} round trip
+ * per matched MBean. When this MBean is registered under {@link #OBJECT_NAME},
+ * {@link com.googlecode.jmxtrans.model.Server#execute} uses it to fetch all the
+ * matching MBeans of a query with one {@code invoke}.
+ *
+ * This class only depends on the JDK, so it can be copied as is in the
+ * monitored application if adding jmxtrans-core to its classpath is not
+ * an option. Install it with {@link #install()} or {@link #install(MBeanServer)}.
+ */
+public class BulkAttributeReader implements BulkAttributeReaderMBean, MBeanRegistration {
+
+	public static final String OBJECT_NAME_STRING = "com.googlecode.jmxtrans:Type=BulkAttributeReader";
+	public static final ObjectName OBJECT_NAME = objectName(OBJECT_NAME_STRING);
+	public static final String FETCH_OPERATION = "fetchAttributes";
+	public static final String[] FETCH_SIGNATURE = new String[]{
+			ObjectName[].class.getName(),
+			String[][].class.getName()
+	};
+
+	private final AtomicLong fetchCount = new AtomicLong();
+	private volatile MBeanServer mBeanServer;
+
+	/**
+	 * Registers a reader in the platform MBean server.
+	 */
+	public static ObjectName install() throws JMException {
+		return install(ManagementFactory.getPlatformMBeanServer());
+	}
+
+	/**
+	 * Registers a reader in the given MBean server, doing nothing if one
+	 * is already registered.
+	 */
+	public static ObjectName install(MBeanServer mBeanServer) throws JMException {
+		try {
+			mBeanServer.registerMBean(new BulkAttributeReader(), OBJECT_NAME);
+		} catch (InstanceAlreadyExistsException ignored) {
+			// already installed, by another agent or a previous call
+		}
+		return OBJECT_NAME;
+	}
+
+	@Override
+	public Map<ObjectInstance, AttributeList> fetchAttributes(ObjectName[] patterns, String[][] attributes) {
+		MBeanServer server = mBeanServer;
+		if (server == null) {
+			throw new IllegalStateException("BulkAttributeReader is not registered in an MBean server");
+		}
+		if (attributes != null && attributes.length != patterns.length) {
+			throw new IllegalArgumentException("Expected one attribute list per pattern, got "
+					+ attributes.length + " for " + patterns.length + " patterns");
+		}
+		fetchCount.incrementAndGet();
+
+		Map<ObjectInstance, AttributeList> values = new HashMap<>();
+		for (int i = 0; i < patterns.length; i++) {
+			String[] wanted = attributes == null ? null : attributes[i];
+			for (ObjectName name : server.queryNames(patterns[i], null)) {
+				try {
+					ObjectInstance instance = server.getObjectInstance(name);
+					String[] names = (wanted == null || wanted.length == 0) ? readableAttributes(server, name) : wanted;
+					if (names.length == 0) {
+						continue;
+					}
+					AttributeList list = server.getAttributes(name, names);
+					AttributeList previous = values.get(instance);
+					if (previous != null) {
+						// several patterns matched the same MBean
+						previous.addAll(list);
+					} else {
+						values.put(instance, list);
+					}
+				} catch (InstanceNotFoundException ignored) {
+					// MBean unregistered between queryNames and getAttributes
+				} catch (IntrospectionException | ReflectionException e) {
+					// skip this MBean, the others are still worth returning
+				}
+			}
+		}
+		return values;
+	}
+
+	private static String[] readableAttributes(MBeanServer server, ObjectName name)
+			throws InstanceNotFoundException, IntrospectionException, ReflectionException {
+		List<String> names = new ArrayList<>();
+		for (MBeanAttributeInfo info : server.getMBeanInfo(name).getAttributes()) {
+			if (info.isReadable()) {
+				names.add(info.getName());
+			}
+		}
+		return names.toArray(new String[names.size()]);
+	}
+
+	@Override
+	public long getFetchCount() {
+		return fetchCount.get();
+	}
+
+	@Override
+	public ObjectName preRegister(MBeanServer server, ObjectName name) {
+		this.mBeanServer = server;
+		return name == null ? OBJECT_NAME : name;
+	}
+
+	@Override
+	public void postRegister(Boolean registrationDone) {
+	}
+
+	@Override
+	public void preDeregister() {
+	}
+
+	@Override
+	public void postDeregister() {
+		this.mBeanServer = null;
+	}
+
+	private static ObjectName objectName(String name) {
+		try {
+			return new ObjectName(name);
+		} catch (MalformedObjectNameException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import javax.management.AttributeList;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import java.util.Map;
+
+/**
+ * Management interface of {@link BulkAttributeReader}.
+ *
+ * Only JDK types are used in the signature so that the results can be
+ * unmarshalled by any client, without jmxtrans classes on its classpath.
+ */
+public interface BulkAttributeReaderMBean {
+
+	/**
+	 * Reads the attributes of all the MBeans matching the given patterns.
+	 *
+	 * @param patterns   object name patterns, as used by {@code queryNames}
+	 * @param attributes attributes to read for the pattern at the same index,
+	 *                   an empty (or null) array meaning all readable attributes
+	 * @return the attribute values, by matched MBean
+	 */
+	Map<ObjectInstance, AttributeList> fetchAttributes(ObjectName[] patterns, String[][] attributes);
+
+	/** Number of bulk fetches served since registration. */
+	long getFetchCount();
+}
@@ -0,0 +1,120 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import com.googlecode.jmxtrans.model.JmxResultProcessor;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import lombok.ToString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.Attribute;
+import javax.management.AttributeChangeNotification;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.ObjectInstance;
+import javax.management.openmbean.CompositeData;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns the notifications received for a notification driven query into
+ * results, and hands them over to the output writers.
+ *
+ * <ul>
+ * <li>an {@link AttributeChangeNotification} gives the new value of the changed attribute,</li>
+ * <li>a notification carrying {@link CompositeData} (e.g. garbage collection
+ * notifications) gives one attribute per item,</li>
+ * <li>any other user data is reported as the "UserData" attribute, and a
+ * notification without data as its "SequenceNumber".</li>
+ * </ul>
+ *
+ * The query attributes, when defined, filter the attributes reported. Results
+ * are stamped with the time the notification was emitted.
+ */
+@ThreadSafe
+@ToString(exclude = {"resultProcessor"})
+public class NotificationResultListener implements NotificationListener {
+
+	private static final Logger log = LoggerFactory.getLogger(NotificationResultListener.class);
+
+	@Nonnull private final Server server;
+	@Nonnull private final Query query;
+	@Nonnull private final ResultProcessor resultProcessor;
+
+	public NotificationResultListener(@Nonnull ResultProcessor resultProcessor, @Nonnull Server server, @Nonnull Query query) {
+		this.resultProcessor = resultProcessor;
+		this.server = server;
+		this.query = query;
+	}
+
+	@Override
+	public void handleNotification(Notification notification, Object handback) {
+		if (!(handback instanceof ObjectInstance)) {
+			log.debug("Ignoring notification {} without emitter instance", notification);
+			return;
+		}
+		ObjectInstance instance = (ObjectInstance) handback;
+		List<Attribute> attributes = attributes(notification);
+		if (attributes.isEmpty()) {
+			return;
+		}
+
+		long epoch = notification.getTimeStamp() > 0 ? notification.getTimeStamp() : System.currentTimeMillis();
+		Iterable<Result> results = new JmxResultProcessor(
+				query, instance, attributes, instance.getClassName(), instance.getObjectName().getDomain(), epoch)
+				.getResults();
+		resultProcessor.submit(server, query, results);
+	}
+
+	@Nonnull
+	List<Attribute> attributes(@Nonnull Notification notification) {
+		List<Attribute> attributes = new ArrayList<>();
+		Object userData = notification.getUserData();
+
+		if (notification instanceof AttributeChangeNotification) {
+			AttributeChangeNotification change = (AttributeChangeNotification) notification;
+			addIfQueried(attributes, change.getAttributeName(), change.getNewValue());
+		} else if (userData instanceof CompositeData) {
+			CompositeData data = (CompositeData) userData;
+			for (String key : data.getCompositeType().keySet()) {
+				addIfQueried(attributes, key, data.get(key));
+			}
+		} else if (userData != null) {
+			addIfQueried(attributes, "UserData", userData);
+		} else {
+			addIfQueried(attributes, "SequenceNumber", notification.getSequenceNumber());
+		}
+		return attributes;
+	}
+
+	private void addIfQueried(List<Attribute> attributes, String name, Object value) {
+		if (query.getAttr().isEmpty() || query.getAttr().contains(name)) {
+			attributes.add(new Attribute(name, value));
+		}
+	}
+}
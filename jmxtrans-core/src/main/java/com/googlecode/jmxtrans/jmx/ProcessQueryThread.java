@@ -22,6 +22,8 @@
  */
 package com.googlecode.jmxtrans.jmx;
 
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
 import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.Server;
@@ -30,10 +32,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
+import static com.google.common.collect.Iterables.transform;
+
 @ThreadSafe
-@ToString(exclude = {"resultProcessor"})
+@ToString(exclude = {"resultProcessor", "adaptivePolling"})
 public class ProcessQueryThread implements Runnable {
 
 	private final Logger log = LoggerFactory.getLogger(getClass());
@@ -42,20 +47,50 @@ public class ProcessQueryThread implements Runnable {
 	@Nonnull private final Query query;
 	@Nonnull private final ResultProcessor resultProcessor;
 
+	/** Time the results are stamped with, instead of the time they are collected. */
+	@Nullable private final Long epoch;
+	@Nullable private final AdaptivePolling adaptivePolling;
+
 	public ProcessQueryThread(@Nonnull ResultProcessor resultProcessor, @Nonnull Server server, @Nonnull Query query) {
+		this(resultProcessor, server, query, null);
+	}
+
+	public ProcessQueryThread(@Nonnull ResultProcessor resultProcessor, @Nonnull Server server, @Nonnull Query query, @Nullable Long epoch) {
+		this(resultProcessor, server, query, epoch, null);
+	}
+
+	public ProcessQueryThread(
+			@Nonnull ResultProcessor resultProcessor, @Nonnull Server server, @Nonnull Query query,
+			@Nullable Long epoch, @Nullable AdaptivePolling adaptivePolling) {
 		this.resultProcessor = resultProcessor;
 		this.server = server;
 		this.query = query;
+		this.epoch = epoch;
+		this.adaptivePolling = adaptivePolling;
 	}
 
 	@Override
 	public void run() {
 		try {
-			Iterable<Result> results = server.execute(query);
+			Iterable<Result> results = adaptivePolling == null
+					? server.execute(query)
+					: server.execute(query, adaptivePolling);
+			if (epoch != null) {
+				results = stamp(results, epoch);
+			}
 			resultProcessor.submit(server, query, results);
 		} catch (Exception e) {
 			log.error("Error executing query {} on server {}", query, server, e);
 			throw new RuntimeException(e);
 		}
 	}
+
+	private static Iterable<Result> stamp(Iterable<Result> results, final long epoch) {
+		return ImmutableList.copyOf(transform(results, new Function<Result, Result>() {
+			@Override
+			public Result apply(Result result) {
+				return result.withEpoch(epoch);
+			}
+		}));
+	}
 }
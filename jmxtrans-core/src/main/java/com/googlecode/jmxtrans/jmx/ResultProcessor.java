@@ -22,6 +22,7 @@
  */
 package com.googlecode.jmxtrans.jmx;
 
+import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import com.googlecode.jmxtrans.executors.ExecutorRepository;
@@ -29,41 +30,82 @@ import com.googlecode.jmxtrans.model.OutputWriter;
 import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.output.support.SharedBatchCache;
+import com.googlecode.jmxtrans.monitoring.ResultProcessorMXBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ThreadPoolExecutor;
 
 import static com.google.common.collect.Iterables.concat;
 
-public class ResultProcessor {
+public class ResultProcessor implements ResultProcessorMXBean {
 
 	private final Logger logger = LoggerFactory.getLogger(ResultProcessor.class);
 
 	@Nonnull private final ExecutorRepository resultExecutorRepository;
+	@Nonnull private final WriteDispatcher writeDispatcher;
+	@Nullable private final ResultRingBuffer ringBuffer;
+	@Nonnull private final ObjectName objectName;
 
 	@Inject
 	public ResultProcessor(
 			@Nonnull @Named("resultExecutorRepository") ExecutorRepository resultExecutorRepository
-	) {
+	) throws MalformedObjectNameException {
+		this(resultExecutorRepository, new WriteDispatcher(), null);
+	}
+
+	/**
+	 * @param ringBuffer when not null, results are dispatched through this ring
+	 *                   buffer instead of the result executors. It should call
+	 *                   the writers through the same write dispatcher.
+	 */
+	public ResultProcessor(
+			@Nonnull ExecutorRepository resultExecutorRepository,
+			@Nonnull WriteDispatcher writeDispatcher,
+			@Nullable ResultRingBuffer ringBuffer
+	) throws MalformedObjectNameException {
 		this.resultExecutorRepository = resultExecutorRepository;
+		this.writeDispatcher = writeDispatcher;
+		this.ringBuffer = ringBuffer;
+		this.objectName = new ObjectName("com.googlecode.jmxtrans:Type=ResultProcessor");
 	}
 
-	public void submit(@Nonnull final Server server, @Nonnull final Query query, @Nonnull final Iterable<Result> results) {
-		final ThreadPoolExecutor executor = resultExecutorRepository.getExecutor(server);
+	/**
+	 * Runs the processors of the query on the results, then hands them to the
+	 * output writers of the query and of the server. A batch going to several
+	 * output writers is shared, so that they format it only once when they
+	 * format it the same way.
+	 */
+	public void submit(@Nonnull Server server, @Nonnull Query query, @Nonnull Iterable<Result> results) {
+		Iterable<OutputWriter> writers = concat(query.getOutputWriterInstances(), server.getOutputWriters());
+		Iterable<Result> processed = query.getProcessorChain().process(server, results);
+		if (Iterables.size(writers) > 1) {
+			processed = SharedBatchCache.share(processed);
+		}
+		if (ringBuffer != null) {
+			publish(ringBuffer, server, query, processed, writers);
+		} else {
+			execute(server, query, processed, writers);
+		}
+	}
 
-		for (final OutputWriter writer : concat(query.getOutputWriterInstances(), server.getOutputWriters())) {
+	private void execute(
+			@Nonnull final Server server, @Nonnull final Query query, @Nonnull final Iterable<Result> results,
+			@Nonnull Iterable<OutputWriter> writers) {
+		final ExecutorService executor = resultExecutorRepository.getExecutor(server);
+
+		for (final OutputWriter writer : writers) {
 			try {
 				executor.submit(new Runnable() {
 					@Override
 					public void run() {
-						try {
-							writer.doWrite(server, query, results);
-						} catch (Exception e) {
-							logger.warn("Could not write results {} of query {} to output writer {}", results, query, writer, e);
-						}
+						writeDispatcher.write(server, query, results, writer);
 					}
 				});
 			} catch (RejectedExecutionException ree) {
@@ -71,4 +113,39 @@ public class ResultProcessor {
 			}
 		}
 	}
+
+	private void publish(ResultRingBuffer ringBuffer, Server server, Query query, Iterable<Result> results, Iterable<OutputWriter> writers) {
+		for (OutputWriter writer : writers) {
+			if (!ringBuffer.tryPublish(server, query, results, writer)) {
+				logger.error("Could not publish results {} of query {} to output writer {}. You could try to size the 'resultRingBufferSize' to a larger size.", results, query, writer);
+			}
+		}
+	}
+
+	/** Writes the results still in the ring buffer, if any, and stops its handlers. */
+	public void stop() {
+		if (ringBuffer != null) {
+			ringBuffer.close();
+		}
+	}
+
+	@Override
+	public long getFailedWrites() {
+		return writeDispatcher.getFailedWrites();
+	}
+
+	@Override
+	public long getRejectedWrites() {
+		return writeDispatcher.getRejectedWrites();
+	}
+
+	@Override
+	public int getAsyncWritesInFlight() {
+		return writeDispatcher.getAsyncWritesInFlight();
+	}
+
+	@Override
+	public ObjectName getObjectName() {
+		return objectName;
+	}
 }
@@ -0,0 +1,320 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Dispatches results to output writers through a pre-allocated ring buffer.
+ *
+ * Collector threads claim slots with a compare-and-set on a shared cursor and
+ * publish them by stamping the slot with its lap around the ring, so that no
+ * lock is taken and nothing is allocated per result. A fixed set of handler
+ * threads consume the ring: handler {@code k} of {@code n} owns every
+ * {@code n}th slot starting at {@code k}, so the writes to a given output
+ * writer are spread over all the handlers. A handler drains all the
+ * consecutive slots it owns that are published before releasing them, and
+ * waits for more with the configured {@link WaitStrategy}.
+ *
+ * When the ring is full, {@link #tryPublish} fails instead of blocking the
+ * collector thread, as a full executor queue rejects tasks.
+ */
+public class ResultRingBuffer implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(ResultRingBuffer.class);
+
+	private final Slot[] slots;
+	private final int mask;
+	private final int indexShift;
+	/** Lap of the last publication of each slot. */
+	private final AtomicIntegerArray publishedLaps;
+	/** Last claimed sequence. */
+	private final AtomicLong cursor = new AtomicLong(-1);
+	/** Last known lowest handler sequence, to avoid scanning handlers on each claim. */
+	private final AtomicLong cachedHandlerSequence = new AtomicLong(-1);
+	private final AtomicLong rejected = new AtomicLong();
+	private final Handler[] handlers;
+	private final Thread[] threads;
+	private final WaitStrategy waitStrategy;
+	private final WriteDispatcher writeDispatcher;
+	private volatile boolean running = true;
+
+	public ResultRingBuffer(
+			int bufferSize,
+			int handlerCount,
+			@Nonnull WaitStrategy waitStrategy,
+			@Nonnull WriteDispatcher writeDispatcher,
+			@Nonnull ThreadFactory threadFactory) {
+		checkArgument(bufferSize > 0 && Integer.bitCount(bufferSize) == 1, "Buffer size must be a power of 2, was %s", bufferSize);
+		checkArgument(handlerCount > 0 && handlerCount <= bufferSize, "Handler count must be between 1 and the buffer size, was %s", handlerCount);
+		this.slots = new Slot[bufferSize];
+		for (int i = 0; i < bufferSize; i++) {
+			slots[i] = new Slot();
+		}
+		this.mask = bufferSize - 1;
+		this.indexShift = Integer.numberOfTrailingZeros(bufferSize);
+		this.publishedLaps = new AtomicIntegerArray(bufferSize);
+		for (int i = 0; i < bufferSize; i++) {
+			publishedLaps.set(i, -1);
+		}
+		this.waitStrategy = waitStrategy;
+		this.writeDispatcher = writeDispatcher;
+		this.handlers = new Handler[handlerCount];
+		this.threads = new Thread[handlerCount];
+		for (int i = 0; i < handlerCount; i++) {
+			handlers[i] = new Handler(i, handlerCount);
+			threads[i] = threadFactory.newThread(handlers[i]);
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+	}
+
+	/**
+	 * Publishes the write of results to an output writer.
+	 *
+	 * @return false if the ring is full or closed, the results are not written
+	 */
+	public boolean tryPublish(
+			@Nonnull Server server,
+			@Nonnull Query query,
+			@Nonnull Iterable<Result> results,
+			@Nonnull OutputWriter writer) {
+		if (!running) {
+			return false;
+		}
+		long sequence = tryClaim();
+		if (sequence < 0) {
+			rejected.incrementAndGet();
+			return false;
+		}
+		int index = (int) sequence & mask;
+		slots[index].set(server, query, results, writer);
+		// a volatile write, so that a handler about to park either sees the
+		// publication or is seen as parked by the signal
+		publishedLaps.set(index, lap(sequence));
+		waitStrategy.signal(this, sequence);
+		return true;
+	}
+
+	private long tryClaim() {
+		long current;
+		long next;
+		do {
+			current = cursor.get();
+			next = current + 1;
+			long wrapPoint = next - slots.length;
+			long handlerSequence = cachedHandlerSequence.get();
+			if (wrapPoint > handlerSequence || handlerSequence > current) {
+				handlerSequence = lowestHandlerSequence(current);
+				cachedHandlerSequence.set(handlerSequence);
+				if (wrapPoint > handlerSequence) {
+					return -1;
+				}
+			}
+		} while (!cursor.compareAndSet(current, next));
+		return next;
+	}
+
+	private long lowestHandlerSequence(long upperBound) {
+		long lowest = upperBound;
+		for (Handler handler : handlers) {
+			lowest = Math.min(lowest, handler.sequence.get());
+		}
+		return lowest;
+	}
+
+	private int lap(long sequence) {
+		return (int) (sequence >>> indexShift);
+	}
+
+	boolean isPublished(long sequence) {
+		return publishedLaps.get((int) sequence & mask) == lap(sequence);
+	}
+
+	boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Parks the handler owning the sequence, which must be the calling thread,
+	 * until the sequence is published or the ring is closed. It may return
+	 * early, callers check again.
+	 */
+	void parkHandler(long sequence) throws InterruptedException {
+		Handler handler = handlers[handlerIndex(sequence)];
+		handler.parked = true;
+		try {
+			if (running && !isPublished(sequence)) {
+				LockSupport.park(this);
+			}
+		} finally {
+			handler.parked = false;
+		}
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+
+	/** Wakes up the handler owning the sequence, if it is parked. */
+	void unparkHandler(long sequence) {
+		int index = handlerIndex(sequence);
+		if (handlers[index].parked) {
+			LockSupport.unpark(threads[index]);
+		}
+	}
+
+	private int handlerIndex(long sequence) {
+		return (int) (sequence % handlers.length);
+	}
+
+	public int getBufferSize() {
+		return slots.length;
+	}
+
+	/** Number of slots that can be claimed before the ring is full. */
+	public long getRemainingCapacity() {
+		long claimed = cursor.get();
+		return slots.length - (claimed - lowestHandlerSequence(claimed));
+	}
+
+	/** Number of writes that could not be published because the ring was full. */
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	/**
+	 * Stops accepting results and waits for the handlers to write the ones
+	 * already published.
+	 */
+	public void close(long timeout, TimeUnit unit) throws InterruptedException {
+		running = false;
+		for (Thread thread : threads) {
+			LockSupport.unpark(thread);
+		}
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (Thread thread : threads) {
+			long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+			if (remainingMillis > 0) {
+				thread.join(remainingMillis);
+			}
+			if (thread.isAlive()) {
+				log.warn("Result handler {} did not stop in time", thread.getName());
+				thread.interrupt();
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			close(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static final class Slot {
+		private Server server;
+		private Query query;
+		private Iterable<Result> results;
+		private OutputWriter writer;
+
+		private void set(Server server, Query query, Iterable<Result> results, OutputWriter writer) {
+			this.server = server;
+			this.query = query;
+			this.results = results;
+			this.writer = writer;
+		}
+
+		private void clear() {
+			set(null, null, null, null);
+		}
+	}
+
+	private final class Handler implements Runnable {
+		private final int stride;
+		/** All slots up to this sequence are released by this handler. */
+		private final AtomicLong sequence;
+		/** Set while the handler is parked by {@link WaitStrategy#BLOCKING}. */
+		private volatile boolean parked;
+
+		private Handler(int index, int stride) {
+			this.stride = stride;
+			this.sequence = new AtomicLong(index - 1);
+		}
+
+		@Override
+		public void run() {
+			long next = sequence.get() + 1;
+			try {
+				while (awaitPublished(next)) {
+					long last;
+					do {
+						write(slots[(int) next & mask]);
+						last = next;
+						next += stride;
+					} while (isPublished(next));
+					sequence.lazySet(last + stride - 1);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private boolean awaitPublished(long next) throws InterruptedException {
+			int counter = WaitStrategy.SPIN_TRIES;
+			while (!isPublished(next)) {
+				if (!running) {
+					// Results published before the close are visible once it is seen.
+					return isPublished(next);
+				}
+				counter = waitStrategy.idle(counter, ResultRingBuffer.this, next);
+			}
+			return true;
+		}
+
+		private void write(Slot slot) {
+			try {
+				writeDispatcher.write(slot.server, slot.query, slot.results, slot.writer);
+			} finally {
+				slot.clear();
+			}
+		}
+	}
+}
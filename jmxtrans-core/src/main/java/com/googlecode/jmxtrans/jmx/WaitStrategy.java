@@ -0,0 +1,97 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How the handlers of a {@link ResultRingBuffer} wait for results to be
+ * published. Strategies spinning longer react faster, at the price of CPU.
+ */
+public enum WaitStrategy {
+	/**
+	 * Park the handler until a result is published. Lowest CPU usage. Only the
+	 * handler owning the published slot is unparked, and only if it is parked,
+	 * so publishing takes no lock.
+	 */
+	BLOCKING {
+		@Override
+		int idle(int counter, ResultRingBuffer ringBuffer, long sequence) throws InterruptedException {
+			ringBuffer.parkHandler(sequence);
+			return counter;
+		}
+
+		@Override
+		void signal(ResultRingBuffer ringBuffer, long sequence) {
+			ringBuffer.unparkHandler(sequence);
+		}
+	},
+	/** Spin, then yield, then sleep for short periods. */
+	SLEEPING {
+		@Override
+		int idle(int counter, ResultRingBuffer ringBuffer, long sequence) {
+			if (counter > SPIN_TRIES / 2) {
+				return counter - 1;
+			}
+			if (counter > 0) {
+				Thread.yield();
+				return counter - 1;
+			}
+			LockSupport.parkNanos(SLEEP_NANOS);
+			return counter;
+		}
+	},
+	/** Spin, then yield the CPU to other threads. */
+	YIELDING {
+		@Override
+		int idle(int counter, ResultRingBuffer ringBuffer, long sequence) {
+			if (counter > 0) {
+				return counter - 1;
+			}
+			Thread.yield();
+			return counter;
+		}
+	},
+	/** Spin without ever giving up the CPU. Only sensible with dedicated cores. */
+	BUSY_SPIN {
+		@Override
+		int idle(int counter, ResultRingBuffer ringBuffer, long sequence) {
+			return counter;
+		}
+	};
+
+	static final int SPIN_TRIES = 200;
+	private static final long SLEEP_NANOS = 100000L;
+
+	/**
+	 * Called in a loop while the result at the given sequence is not published.
+	 *
+	 * @param counter what the previous call returned, {@link #SPIN_TRIES} on the first call
+	 * @return the counter for the next call
+	 */
+	abstract int idle(int counter, ResultRingBuffer ringBuffer, long sequence) throws InterruptedException;
+
+	/** Called after the publication of a sequence, to wake up its handler if it does not spin. */
+	void signal(ResultRingBuffer ringBuffer, long sequence) {
+	}
+}
@@ -0,0 +1,180 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.googlecode.jmxtrans.model.AsyncOutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Calls output writers for the result processor.
+ *
+ * Writes of an {@link AsyncOutputWriter} are started and left to complete on
+ * their own, so that the calling thread can go on with other writes. Each
+ * such writer has at most maxInFlightAsyncWrites writes in flight: past that,
+ * the calling thread waits for one to complete, and gives up the write after
+ * the admission timeout. Failures of both kinds of writers are logged and
+ * counted.
+ */
+@ThreadSafe
+public class WriteDispatcher {
+
+	private static final Logger logger = LoggerFactory.getLogger(WriteDispatcher.class);
+
+	public static final int DEFAULT_MAX_IN_FLIGHT_ASYNC_WRITES = 100;
+	public static final long DEFAULT_ADMISSION_TIMEOUT_MILLIS = 1000;
+
+	private final int maxInFlightAsyncWrites;
+	private final long admissionTimeoutMillis;
+	private final ConcurrentMap<OutputWriter, Semaphore> inFlightPermits = new MapMaker().weakKeys().makeMap();
+
+	private final AtomicInteger asyncWritesInFlight = new AtomicInteger();
+	private final AtomicLong failedWrites = new AtomicLong();
+	private final AtomicLong rejectedWrites = new AtomicLong();
+
+	public WriteDispatcher() {
+		this(DEFAULT_MAX_IN_FLIGHT_ASYNC_WRITES, DEFAULT_ADMISSION_TIMEOUT_MILLIS);
+	}
+
+	public WriteDispatcher(int maxInFlightAsyncWrites, long admissionTimeoutMillis) {
+		checkArgument(maxInFlightAsyncWrites > 0, "maxInFlightAsyncWrites must be positive");
+		this.maxInFlightAsyncWrites = maxInFlightAsyncWrites;
+		this.admissionTimeoutMillis = admissionTimeoutMillis;
+	}
+
+	/** Writes results, never throwing: failures are logged and counted. */
+	public void write(
+			@Nonnull final Server server,
+			@Nonnull final Query query,
+			@Nonnull final Iterable<Result> results,
+			@Nonnull final OutputWriter writer) {
+		if (writer instanceof AsyncOutputWriter) {
+			writeAsync(server, query, results, (AsyncOutputWriter) writer);
+			return;
+		}
+		try {
+			writer.doWrite(server, query, results);
+		} catch (Exception e) {
+			failed(server, query, results, writer, e);
+		}
+	}
+
+	private void writeAsync(
+			@Nonnull final Server server,
+			@Nonnull final Query query,
+			@Nonnull final Iterable<Result> results,
+			@Nonnull final AsyncOutputWriter writer) {
+		final Semaphore permits = permits(writer);
+		try {
+			if (!permits.tryAcquire(admissionTimeoutMillis, MILLISECONDS)) {
+				rejected(query, results, writer);
+				return;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			rejected(query, results, writer);
+			return;
+		}
+		asyncWritesInFlight.incrementAndGet();
+
+		ListenableFuture<?> write;
+		try {
+			write = writer.doWriteAsync(server, query, results);
+		} catch (Exception e) {
+			completed(permits);
+			failed(server, query, results, writer, e);
+			return;
+		}
+		Futures.addCallback(write, new FutureCallback<Object>() {
+			@Override
+			public void onSuccess(Object result) {
+				completed(permits);
+			}
+
+			@Override
+			public void onFailure(@Nonnull Throwable t) {
+				completed(permits);
+				failed(server, query, results, writer, t);
+			}
+		});
+	}
+
+	private Semaphore permits(OutputWriter writer) {
+		Semaphore permits = inFlightPermits.get(writer);
+		if (permits == null) {
+			Semaphore created = new Semaphore(maxInFlightAsyncWrites);
+			permits = inFlightPermits.putIfAbsent(writer, created);
+			if (permits == null) {
+				permits = created;
+			}
+		}
+		return permits;
+	}
+
+	private void completed(Semaphore permits) {
+		asyncWritesInFlight.decrementAndGet();
+		permits.release();
+	}
+
+	private void failed(Server server, Query query, Iterable<Result> results, OutputWriter writer, Throwable cause) {
+		failedWrites.incrementAndGet();
+		logger.warn("Could not write results {} of query {} to output writer {}", results, query, writer, cause);
+	}
+
+	private void rejected(Query query, Iterable<Result> results, OutputWriter writer) {
+		rejectedWrites.incrementAndGet();
+		logger.error("Could not write results {} of query {} to output writer {}, it already has {} writes in flight", results, query, writer, maxInFlightAsyncWrites);
+	}
+
+	/** Writes of asynchronous output writers started and not completed yet. */
+	public int getAsyncWritesInFlight() {
+		return asyncWritesInFlight.get();
+	}
+
+	public long getFailedWrites() {
+		return failedWrites.get();
+	}
+
+	/** Writes given up because their writer had too many writes in flight. */
+	public long getRejectedWrites() {
+		return rejectedWrites.get();
+	}
+}
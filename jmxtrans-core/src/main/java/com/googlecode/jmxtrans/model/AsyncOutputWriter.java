@@ -0,0 +1,52 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Output writer able to start a write and return before it completes,
+ * typically on top of an asynchronous client. The result processor starts
+ * writes of such writers without waiting for them, up to a number of writes
+ * in flight per writer.
+ *
+ * Only the writer handed to the result processor is checked, so decorators
+ * have to implement this interface for their target to be written
+ * asynchronously. The result transforming, processing and suppressing
+ * decorators do so, and run the write before returning when their target is
+ * not asynchronous. The isolating, spooling, batching and aggregating
+ * decorators do not: they write on threads of their own or later on, or need
+ * the outcome of the write before returning, and so call the target
+ * synchronously.
+ */
+public interface AsyncOutputWriter extends OutputWriter {
+
+	/**
+	 * Starts writing results.
+	 *
+	 * @return a future completed once the results are written, or failed with
+	 * the cause of the failure
+	 */
+	ListenableFuture<?> doWriteAsync(Server server, Query query, Iterable<Result> results) throws Exception;
+
+}
@@ -23,14 +23,18 @@
 package com.googlecode.jmxtrans.model;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.googlecode.jmxtrans.jmx.BulkAttributeReader;
 import com.googlecode.jmxtrans.model.naming.typename.PrependingTypeNameValuesStringBuilder;
 import com.googlecode.jmxtrans.model.naming.typename.TypeNameValuesStringBuilder;
 import com.googlecode.jmxtrans.model.naming.typename.UseAllTypeNameValuesStringBuilder;
+import com.googlecode.jmxtrans.model.results.Processor;
+import com.googlecode.jmxtrans.model.results.ProcessorChain;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
@@ -40,15 +44,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.management.AttributeList;
 import javax.management.InstanceNotFoundException;
 import javax.management.IntrospectionException;
 import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
 import javax.management.MBeanInfo;
 import javax.management.MBeanServerConnection;
 import javax.management.MalformedObjectNameException;
+import javax.management.NotificationFilter;
+import javax.management.NotificationFilterSupport;
 import javax.management.ObjectInstance;
 import javax.management.ObjectName;
 import javax.management.ReflectionException;
@@ -58,6 +66,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static com.fasterxml.jackson.databind.annotation.JsonSerialize.Inclusion.NON_NULL;
@@ -73,10 +82,10 @@ import static java.util.Arrays.asList;
  * @author jon
  */
 @JsonSerialize(include = NON_NULL)
-@JsonPropertyOrder(value = {"obj", "attr", "typeNames", "resultAlias", "keys", "allowDottedKeys", "useAllTypeNames", "outputWriters"})
+@JsonPropertyOrder(value = {"obj", "attr", "typeNames", "resultAlias", "keys", "allowDottedKeys", "useAllTypeNames", "notificationTypes", "runPeriodSeconds", "maxPollIntervalSeconds", "processors", "outputWriters"})
 @ThreadSafe
-@EqualsAndHashCode(exclude = {"outputWriters", "outputWriterInstances"})
-@ToString(exclude = {"outputWriters", "typeNameValuesStringBuilder"})
+@EqualsAndHashCode(exclude = {"outputWriters", "outputWriterInstances", "processorChain"})
+@ToString(exclude = {"outputWriters", "typeNameValuesStringBuilder", "processorChain"})
 public class Query {
 
 	private static final Logger logger = LoggerFactory.getLogger(Query.class);
@@ -115,6 +124,34 @@ public class Query {
 	@Getter private final boolean useObjDomainAsKey;
 	@Getter private final boolean allowDottedKeys;
 	@Getter private final boolean useAllTypeNames;
+
+	/**
+	 * Notification types (or type prefixes, the empty string matching every
+	 * type) this query subscribes to. When not empty, the query is not polled:
+	 * results are built from the notifications emitted by the matching MBeans
+	 * and pushed to the output writers as they arrive.
+	 */
+	@Nonnull @Getter private final ImmutableList<String> notificationTypes;
+
+	/**
+	 * Run period of this query, when it should differ from the one of its
+	 * server. Queries of a server sharing the same period run together.
+	 */
+	@Getter @Nullable private final Integer runPeriodSeconds;
+
+	/**
+	 * When longer than the run period, MBeans whose values do not change are
+	 * fetched less and less often, down to once per this period. See
+	 * {@link com.googlecode.jmxtrans.jmx.AdaptivePolling}.
+	 */
+	@Getter @Nullable private final Integer maxPollIntervalSeconds;
+
+	/**
+	 * Processors filtering, renaming and scaling the results of this query,
+	 * once before they are handed to the output writers.
+	 */
+	@Nonnull @Getter private final ImmutableList<Processor> processors;
+	@JsonIgnore @Nonnull @Getter private final ProcessorChain processorChain;
 	@Nonnull @Getter private final ImmutableList<OutputWriterFactory> outputWriters;
 	@Nonnull @Getter private final Iterable<OutputWriter> outputWriterInstances;
 	private final TypeNameValuesStringBuilder typeNameValuesStringBuilder;
@@ -129,12 +166,16 @@ public class Query {
 			@JsonProperty("useObjDomainAsKey") boolean useObjDomainAsKey,
 			@JsonProperty("allowDottedKeys") boolean allowDottedKeys,
 			@JsonProperty("useAllTypeNames") boolean useAllTypeNames,
+			@JsonProperty("notificationTypes") List<String> notificationTypes,
+			@JsonProperty("runPeriodSeconds") Integer runPeriodSeconds,
+			@JsonProperty("maxPollIntervalSeconds") Integer maxPollIntervalSeconds,
+			@JsonProperty("processors") List<Processor> processors,
 			@JsonProperty("outputWriters") List<OutputWriterFactory> outputWriters
 	) {
 		// For typeName, note the using copyOf does not change the order of
 		// the elements.
 		this(obj, keys, attr, ImmutableSet.copyOf(firstNonNull(typeNames, Collections.<String>emptySet())), resultAlias, useObjDomainAsKey, allowDottedKeys, useAllTypeNames,
-				outputWriters, ImmutableList.<OutputWriter>of());
+				notificationTypes, runPeriodSeconds, maxPollIntervalSeconds, processors, outputWriters, ImmutableList.<OutputWriter>of());
 	}
 
 	public Query(
@@ -149,7 +190,7 @@ public class Query {
 			List<OutputWriterFactory> outputWriters
 	) {
 		this(obj, keys, attr, typeNames, resultAlias, useObjDomainAsKey, allowDottedKeys, useAllTypeNames,
-				outputWriters, ImmutableList.<OutputWriter>of());
+				null, null, null, null, outputWriters, ImmutableList.<OutputWriter>of());
 	}
 
 	public Query(
@@ -164,7 +205,7 @@ public class Query {
 			ImmutableList<OutputWriter> outputWriters
 	) {
 		this(obj, keys, attr, typeNames, resultAlias, useObjDomainAsKey, allowDottedKeys, useAllTypeNames,
-				ImmutableList.<OutputWriterFactory>of(), outputWriters);
+				null, null, null, null, ImmutableList.<OutputWriterFactory>of(), outputWriters);
 	}
 
 	private Query(
@@ -176,6 +217,10 @@ public class Query {
 			boolean useObjDomainAsKey,
 			boolean allowDottedKeys,
 			boolean useAllTypeNames,
+			List<String> notificationTypes,
+			Integer runPeriodSeconds,
+			Integer maxPollIntervalSeconds,
+			List<Processor> processors,
 			List<OutputWriterFactory> outputWriterFactories,
 			List<OutputWriter> outputWriters
 	) {
@@ -190,6 +235,11 @@ public class Query {
 		this.keys = copyOf(firstNonNull(keys, Collections.<String>emptyList()));
 		this.allowDottedKeys = allowDottedKeys;
 		this.useAllTypeNames = useAllTypeNames;
+		this.notificationTypes = copyOf(firstNonNull(notificationTypes, Collections.<String>emptyList()));
+		this.runPeriodSeconds = runPeriodSeconds;
+		this.maxPollIntervalSeconds = maxPollIntervalSeconds;
+		this.processors = copyOf(firstNonNull(processors, Collections.<Processor>emptyList()));
+		this.processorChain = ProcessorChain.compile(this.processors);
 		this.outputWriters = copyOf(firstNonNull(outputWriterFactories, ImmutableList.<OutputWriterFactory>of()));
 		// We need to preserve the order of typeNames. So note that copyOf
 		// does not mess with the order. 
@@ -204,6 +254,24 @@ public class Query {
 		return this.typeNameValuesStringBuilder.build(typeNames, typeNameStr);
 	}
 
+	@JsonIgnore
+	public boolean isNotificationDriven() {
+		return !notificationTypes.isEmpty();
+	}
+
+	/**
+	 * Filter sent to the monitored JVM, so that only the notification types of
+	 * this query travel over the wire.
+	 */
+	@Nonnull
+	public NotificationFilter notificationFilter() {
+		NotificationFilterSupport filter = new NotificationFilterSupport();
+		for (String notificationType : notificationTypes) {
+			filter.enableType(notificationType);
+		}
+		return filter;
+	}
+
 	public Iterable<ObjectName> queryNames(MBeanServerConnection mbeanServer) throws IOException {
 		return mbeanServer.queryNames(objectName, null);
 	}
@@ -241,6 +309,28 @@ public class Query {
 		return ImmutableList.of();
 	}
 
+	/**
+	 * Fetches the results of all the MBeans matching this query with a single
+	 * call to the {@link BulkAttributeReader} registered on the given connection.
+	 */
+	public Iterable<Result> fetchResultsInBulk(MBeanServerConnection mbeanServer) throws InstanceNotFoundException, MBeanException, ReflectionException, IOException {
+		logger.debug("Executing bulk fetch of query [{}]", this);
+
+		@SuppressWarnings("unchecked")
+		Map<ObjectInstance, AttributeList> values = (Map<ObjectInstance, AttributeList>) mbeanServer.invoke(
+				BulkAttributeReader.OBJECT_NAME,
+				BulkAttributeReader.FETCH_OPERATION,
+				new Object[]{new ObjectName[]{objectName}, new String[][]{attr.toArray(new String[attr.size()])}},
+				BulkAttributeReader.FETCH_SIGNATURE);
+
+		ImmutableList.Builder<Result> results = ImmutableList.builder();
+		for (Map.Entry<ObjectInstance, AttributeList> entry : values.entrySet()) {
+			ObjectInstance oi = entry.getKey();
+			results.addAll(new JmxResultProcessor(this, oi, entry.getValue().asList(), oi.getClassName(), oi.getObjectName().getDomain()).getResults());
+		}
+		return results.build();
+	}
+
 	private TypeNameValuesStringBuilder makeTypeNameValuesStringBuilder() {
 		String separator = isAllowDottedKeys() ? "." : TypeNameValuesStringBuilder.DEFAULT_SEPARATOR;
 		Set<String> typeNames = getTypeNames();
@@ -262,8 +352,9 @@ public class Query {
 	}
 
 	public void runOutputWritersForQuery(Server server, Iterable<Result> results) throws Exception {
+		Iterable<Result> processed = processorChain.process(server, results);
 		for (OutputWriter writer : getOutputWriterInstances()) {
-			writer.doWrite(server, this, results);
+			writer.doWrite(server, this, processed);
 		}
 		logger.debug("Finished running outputWriters for query: {}", this);
 	}
@@ -278,6 +369,10 @@ public class Query {
 		@Setter private boolean useObjDomainAsKey;
 		@Setter private boolean allowDottedKeys;
 		@Setter private boolean useAllTypeNames;
+		private final List<String> notificationTypes = newArrayList();
+		@Setter private Integer runPeriodSeconds;
+		@Setter private Integer maxPollIntervalSeconds;
+		private final List<Processor> processors = newArrayList();
 		private final List<OutputWriterFactory> outputWriterFactories = newArrayList();
 		private final List<OutputWriter> outputWriters = newArrayList();
 		// We need to pick an order preserving Set implementation here to
@@ -295,6 +390,10 @@ public class Query {
 			this.useObjDomainAsKey = query.useObjDomainAsKey;
 			this.allowDottedKeys = query.allowDottedKeys;
 			this.useAllTypeNames = query.useAllTypeNames;
+			this.notificationTypes.addAll(query.notificationTypes);
+			this.runPeriodSeconds = query.runPeriodSeconds;
+			this.maxPollIntervalSeconds = query.maxPollIntervalSeconds;
+			this.processors.addAll(query.processors);
 			this.typeNames.addAll(query.typeNames);
 		}
 
@@ -312,6 +411,16 @@ public class Query {
 			return this;
 		}
 
+		public Builder addNotificationTypes(String... notificationTypes) {
+			this.notificationTypes.addAll(asList(notificationTypes));
+			return this;
+		}
+
+		public Builder addProcessors(Processor... processors) {
+			this.processors.addAll(asList(processors));
+			return this;
+		}
+
 		public Builder addOutputWriterFactory(OutputWriterFactory outputWriterFactory) {
 			return addOutputWriterFactories(outputWriterFactory);
 		}
@@ -342,7 +451,12 @@ public class Query {
 						this.useObjDomainAsKey,
 						this.allowDottedKeys,
 						this.useAllTypeNames,
-						this.outputWriterFactories
+						this.notificationTypes,
+						this.runPeriodSeconds,
+						this.maxPollIntervalSeconds,
+						this.processors,
+						this.outputWriterFactories,
+						ImmutableList.<OutputWriter>of()
 				);
 			}
 			return new Query(
@@ -354,6 +468,11 @@ public class Query {
 					this.useObjDomainAsKey,
 					this.allowDottedKeys,
 					this.useAllTypeNames,
+					this.notificationTypes,
+					this.runPeriodSeconds,
+					this.maxPollIntervalSeconds,
+					this.processors,
+					ImmutableList.<OutputWriterFactory>of(),
 					copyOf(this.outputWriters)
 			);
 		}
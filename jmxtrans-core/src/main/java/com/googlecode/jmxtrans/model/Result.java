@@ -70,6 +70,16 @@ public class Result {
 		this.keyAlias = keyAlias;
 	}
 
+	/**
+	 * @return this result stamped with another time
+	 */
+	public Result withEpoch(long epoch) {
+		if (epoch == this.epoch) {
+			return this;
+		}
+		return new Result(epoch, attributeName, className, objDomain, keyAlias, typeName, valuePath, value);
+	}
+
 	/**
 	 * Get typeName split into a Map
      */
@@ -34,6 +34,9 @@ import com.google.common.collect.ImmutableSet;
 import com.google.inject.name.Named;
 import com.googlecode.jmxtrans.connections.JMXConnection;
 import com.googlecode.jmxtrans.connections.JmxConnectionProvider;
+import com.googlecode.jmxtrans.connections.NotificationSubscription;
+import com.googlecode.jmxtrans.jmx.AdaptivePolling;
+import com.googlecode.jmxtrans.jmx.BulkAttributeReader;
 import com.sun.tools.attach.VirtualMachine;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -49,8 +52,10 @@ import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.NotThreadSafe;
 import javax.annotation.concurrent.ThreadSafe;
+import javax.management.JMException;
 import javax.management.MBeanServer;
 import javax.management.MBeanServerConnection;
+import javax.management.NotificationListener;
 import javax.management.ObjectName;
 import javax.management.remote.JMXConnector;
 import javax.management.remote.JMXConnectorFactory;
@@ -60,6 +65,7 @@ import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.rmi.UnmarshalException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -274,14 +280,43 @@ public class Server implements JmxConnectionProvider {
 	}
 
 	public Iterable<Result> execute(Query query) throws Exception {
+		return execute(query, null);
+	}
+
+	/**
+	 * @param adaptivePolling when given, only the MBeans it says are due are
+	 *                        fetched, one at a time: a bulk fetch would read
+	 *                        the stable MBeans anyway.
+	 */
+	public Iterable<Result> execute(Query query, @Nullable AdaptivePolling adaptivePolling) throws Exception {
 		JMXConnection jmxConnection = null;
 		try {
 			jmxConnection = pool.borrowObject(this);
-			ImmutableList.Builder<Result> results = ImmutableList.builder();
 			MBeanServerConnection connection = jmxConnection.getMBeanServerConnection();
 
-			for (ObjectName queryName : query.queryNames(connection)) {
-				results.addAll(query.fetchResults(connection, queryName));
+			if (adaptivePolling == null && jmxConnection.isBulkAttributeReaderAvailable()) {
+				Iterable<Result> results = executeInBulk(jmxConnection, query);
+				if (results != null) {
+					return results;
+				}
+			}
+
+			ImmutableList.Builder<Result> results = ImmutableList.builder();
+			if (adaptivePolling == null) {
+				for (ObjectName queryName : query.queryNames(connection)) {
+					results.addAll(query.fetchResults(connection, queryName));
+				}
+			} else {
+				long now = System.currentTimeMillis();
+				List<ObjectName> queryNames = ImmutableList.copyOf(query.queryNames(connection));
+				adaptivePolling.retain(queryNames);
+				for (ObjectName queryName : queryNames) {
+					if (adaptivePolling.isDue(queryName, now)) {
+						Iterable<Result> fetched = query.fetchResults(connection, queryName);
+						adaptivePolling.fetched(queryName, fetched, now);
+						results.addAll(fetched);
+					}
+				}
 			}
 
 			return results.build();
@@ -299,6 +334,47 @@ public class Server implements JmxConnectionProvider {
 		}
 	}
 
+	/**
+	 * Opens a connection and leaves it idle in the pool, ready for the next
+	 * query.
+	 */
+	public void warmUpConnection() throws Exception {
+		JMXConnection jmxConnection = pool.borrowObject(this);
+		pool.returnObject(this, jmxConnection);
+	}
+
+	/**
+	 * Registers the listener on all the MBeans matching a notification driven
+	 * query. A connection stays borrowed from the pool until the subscription
+	 * is closed.
+	 */
+	@Nonnull
+	public NotificationSubscription subscribe(@Nonnull Query query, @Nonnull NotificationListener listener) throws Exception {
+		checkArgument(query.isNotificationDriven(), "Query %s does not define any notification type", query);
+		return NotificationSubscription.subscribe(pool, this, query.getObjectName(), query.notificationFilter(), listener);
+	}
+
+	/**
+	 * Runs the query with a single call to the remote {@link BulkAttributeReader}.
+	 *
+	 * @return the results, or null if the caller should fall back to fetching
+	 * each MBean separately
+	 */
+	@Nullable
+	private Iterable<Result> executeInBulk(JMXConnection jmxConnection, Query query) throws IOException {
+		try {
+			return ImmutableList.copyOf(query.fetchResultsInBulk(jmxConnection.getMBeanServerConnection()));
+		} catch (UnmarshalException ue) {
+			// one of the values cannot be deserialized here, the per MBean path will skip only that MBean
+			logger.debug("Could not unmarshall bulk results of query {} on server {}, falling back to per MBean fetch", query, this, ue);
+			return null;
+		} catch (JMException e) {
+			logger.warn("Bulk attribute reader failed on server {}, falling back to per MBean fetch: {}", this, e.getMessage());
+			jmxConnection.disableBulkAttributeReader();
+			return null;
+		}
+	}
+
 	/**
 	 * Generates the proper username/password environment for JMX connections.
 	 */
@@ -26,22 +26,35 @@ import lombok.EqualsAndHashCode;
 import lombok.ToString;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
 
-@ToString
+/**
+ * Creates the output writer of the wrapped factory once, and always returns it.
+ *
+ * The output writer is only created on the first call to {@link #create()}:
+ * equal factories met while building the server list are discarded, and must
+ * not leave an output writer holding resources behind them.
+ */
+@ThreadSafe
+@ToString(of = "outputWriterFactory")
 @EqualsAndHashCode(of = "outputWriterFactory")
 public class SingletonOutputWriterFactory<T extends OutputWriter> implements OutputWriterFactory<T> {
 
-	@Nonnull private final T outputWriter;
+	@GuardedBy("this") @Nullable private T outputWriter;
 
 	@Nonnull private final OutputWriterFactory<T> outputWriterFactory;
 
 	public SingletonOutputWriterFactory(@Nonnull OutputWriterFactory<T> outputWriterFactory) {
 		this.outputWriterFactory = outputWriterFactory;
-		outputWriter = outputWriterFactory.create();
 	}
 
 	@Override
-	public T create() {
+	public synchronized T create() {
+		if (outputWriter == null) {
+			outputWriter = outputWriterFactory.create();
+		}
 		return outputWriter;
 	}
 }
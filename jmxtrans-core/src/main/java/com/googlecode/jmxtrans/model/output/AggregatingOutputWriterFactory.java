@@ -0,0 +1,130 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableSet;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriterFactory;
+import com.googlecode.jmxtrans.model.output.support.AggregatingOutputWriter;
+import com.googlecode.jmxtrans.model.output.support.Aggregation;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Writes the sum, min, max, average and count of the results of groups of
+ * servers, per time window, instead of the results of each server. For
+ * example, to aggregate servers web-01, web-02... into group "web":
+ *
+ * <pre>
+ * {
+ *   "@class" : "com.googlecode.jmxtrans.model.output.AggregatingOutputWriterFactory",
+ *   "groupPattern" : "(web)-\\d+",
+ *   "aggregations" : [ "sum", "avg", "count" ],
+ *   "windowSeconds" : 60,
+ *   "maxWaitMillis" : 60000,
+ *   "writeRawResults" : false,
+ *   "outputWriter" : { "@class" : "com.googlecode.jmxtrans.model.output.GraphiteWriterFactory", ... }
+ * }
+ * </pre>
+ *
+ * Without groupPattern, all the servers belong to the group named groupName,
+ * "all" by default. The aggregates are written for the first server of the
+ * group with its alias set to the name of the group.
+ *
+ * @see AggregatingOutputWriter
+ */
+@ThreadSafe
+@EqualsAndHashCode
+@ToString
+public class AggregatingOutputWriterFactory implements OutputWriterFactory {
+
+	@Nonnull private final OutputWriterFactory outputWriter;
+	@Nullable private final String groupPattern;
+	@Nonnull private final String groupName;
+	@Nonnull private final ImmutableSet<Aggregation> aggregations;
+	private final int windowSeconds;
+	private final long maxWaitMillis;
+	private final boolean writeRawResults;
+
+	@JsonCreator
+	public AggregatingOutputWriterFactory(
+			@JsonProperty("outputWriter") OutputWriterFactory outputWriter,
+			@JsonProperty("groupPattern") String groupPattern,
+			@JsonProperty("groupName") String groupName,
+			@JsonProperty("aggregations") List<String> aggregations,
+			@JsonProperty("windowSeconds") Integer windowSeconds,
+			@JsonProperty("maxWaitMillis") Long maxWaitMillis,
+			@JsonProperty("writeRawResults") Boolean writeRawResults) {
+		this.outputWriter = checkNotNull(outputWriter, "Output writer cannot be null.");
+		this.groupPattern = groupPattern;
+		if (groupPattern != null) {
+			Pattern.compile(groupPattern);
+		}
+		this.groupName = firstNonNull(groupName, "all");
+		this.aggregations = parseAggregations(aggregations);
+		this.windowSeconds = firstNonNull(windowSeconds, 60);
+		this.maxWaitMillis = firstNonNull(maxWaitMillis, SECONDS.toMillis(this.windowSeconds));
+		this.writeRawResults = firstNonNull(writeRawResults, false);
+		checkArgument(this.windowSeconds > 0, "windowSeconds must be positive");
+		checkArgument(this.maxWaitMillis >= 0, "maxWaitMillis cannot be negative");
+	}
+
+	private static ImmutableSet<Aggregation> parseAggregations(@Nullable List<String> names) {
+		if (names == null) {
+			return ImmutableSet.copyOf(EnumSet.allOf(Aggregation.class));
+		}
+		checkArgument(!names.isEmpty(), "aggregations cannot be empty");
+		EnumSet<Aggregation> aggregations = EnumSet.noneOf(Aggregation.class);
+		for (String name : names) {
+			aggregations.add(Aggregation.fromName(name));
+		}
+		return ImmutableSet.copyOf(aggregations);
+	}
+
+	@Nonnull
+	@Override
+	public AggregatingOutputWriter<OutputWriter> create() {
+		return new AggregatingOutputWriter<>(
+				outputWriter.create(),
+				groupPattern == null ? null : Pattern.compile(groupPattern),
+				groupName,
+				aggregations,
+				SECONDS.toMillis(windowSeconds),
+				maxWaitMillis,
+				writeRawResults);
+	}
+}
@@ -33,6 +33,7 @@ import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.Server;
 import com.googlecode.jmxtrans.model.naming.typename.TypeNameValuesStringBuilder;
+import com.googlecode.jmxtrans.model.output.support.SharedBatchCache;
 import com.googlecode.jmxtrans.model.results.BooleanAsNumberValueTransformer;
 import com.googlecode.jmxtrans.model.results.IdentityValueTransformer;
 import com.googlecode.jmxtrans.model.results.ResultValuesTransformer;
@@ -49,7 +50,6 @@ import java.util.List;
 import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.collect.FluentIterable.from;
 import static com.google.common.collect.ImmutableList.copyOf;
 import static com.google.common.collect.ImmutableMap.copyOf;
 import static com.googlecode.jmxtrans.model.output.Settings.getBooleanSetting;
@@ -154,7 +154,7 @@ public abstract class BaseOutputWriter implements OutputWriter, OutputWriterFact
 
 	@Override
 	public final void doWrite(Server server, Query query, Iterable<Result> results) throws Exception {
-		internalWrite(server, query, from(results).transform(new ResultValuesTransformer(valueTransformer)).toList());
+		internalWrite(server, query, SharedBatchCache.transform(results, new ResultValuesTransformer(valueTransformer)));
 	}
 
 	protected abstract void internalWrite(Server server, Query query, ImmutableList<Result> results) throws Exception;
@@ -0,0 +1,86 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriterFactory;
+import com.googlecode.jmxtrans.model.output.support.BatchingOutputWriter;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Sends the results of all queries and servers to an output writer in
+ * batches, when the writer supports them. For example:
+ *
+ * <pre>
+ * {
+ *   "@class" : "com.googlecode.jmxtrans.model.output.BatchingOutputWriterFactory",
+ *   "maxBatchResults" : 5000,
+ *   "maxBatchEntries" : 500,
+ *   "lingerMillis" : 1000,
+ *   "outputWriter" : { "@class" : "com.googlecode.jmxtrans.model.output.InfluxDbWriterFactory", ... }
+ * }
+ * </pre>
+ *
+ * @see com.googlecode.jmxtrans.model.BatchOutputWriter
+ */
+@ThreadSafe
+@EqualsAndHashCode
+@ToString
+public class BatchingOutputWriterFactory implements OutputWriterFactory {
+
+	@Nonnull private final OutputWriterFactory outputWriter;
+	private final int maxBatchResults;
+	private final int maxBatchEntries;
+	private final long lingerMillis;
+
+	@JsonCreator
+	public BatchingOutputWriterFactory(
+			@JsonProperty("outputWriter") OutputWriterFactory outputWriter,
+			@JsonProperty("maxBatchResults") Integer maxBatchResults,
+			@JsonProperty("maxBatchEntries") Integer maxBatchEntries,
+			@JsonProperty("lingerMillis") Long lingerMillis) {
+		this.outputWriter = checkNotNull(outputWriter, "Output writer cannot be null.");
+		this.maxBatchResults = firstNonNull(maxBatchResults, 5000);
+		this.maxBatchEntries = firstNonNull(maxBatchEntries, 500);
+		this.lingerMillis = firstNonNull(lingerMillis, 1000L);
+		checkArgument(this.maxBatchResults > 0, "maxBatchResults must be positive");
+		checkArgument(this.maxBatchEntries > 0, "maxBatchEntries must be positive");
+		checkArgument(this.lingerMillis >= 0, "lingerMillis cannot be negative");
+	}
+
+	@Nonnull
+	@Override
+	public BatchingOutputWriter<OutputWriter> create() {
+		return new BatchingOutputWriter<>(outputWriter.create(), maxBatchResults, maxBatchEntries, lingerMillis);
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output;
+
+import com.fasterxml.jackson.annotation.JacksonInject;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.googlecode.jmxtrans.cli.JmxTransConfiguration;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriterFactory;
+import com.googlecode.jmxtrans.model.output.support.IsolatedOutputWriter;
+import com.googlecode.jmxtrans.model.output.support.OverloadPolicy;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Gives an output writer its own threads and queue, so that it can be slow
+ * without slowing down the other writers. The queue holds at most
+ * maxQueuedResults results, the overloadPolicy deciding what happens to the
+ * results which do not fit. For example:
+ *
+ * <pre>
+ * {
+ *   "@class" : "com.googlecode.jmxtrans.model.output.IsolatedOutputWriterFactory",
+ *   "maxConcurrentWrites" : 2,
+ *   "maxQueuedResults" : 100000,
+ *   "overloadPolicy" : "BLOCK",
+ *   "blockTimeoutMillis" : 500,
+ *   "outputWriter" : { "@class" : "com.googlecode.jmxtrans.model.output.elastic.ElasticWriter", ... }
+ * }
+ * </pre>
+ *
+ * The writer threads run at the executorThreadPriority of the configuration.
+ */
+@ThreadSafe
+@EqualsAndHashCode
+@ToString
+public class IsolatedOutputWriterFactory implements OutputWriterFactory {
+
+	@Nonnull private final OutputWriterFactory outputWriter;
+	private final int maxConcurrentWrites;
+	private final long maxQueuedResults;
+	@Nonnull private final OverloadPolicy overloadPolicy;
+	private final long blockTimeoutMillis;
+	private final int threadPriority;
+
+	public IsolatedOutputWriterFactory(
+			OutputWriterFactory outputWriter,
+			Integer maxConcurrentWrites,
+			Long maxQueuedResults,
+			OverloadPolicy overloadPolicy,
+			Long blockTimeoutMillis) {
+		this(outputWriter, maxConcurrentWrites, maxQueuedResults, overloadPolicy, blockTimeoutMillis, null);
+	}
+
+	@JsonCreator
+	public IsolatedOutputWriterFactory(
+			@JsonProperty("outputWriter") OutputWriterFactory outputWriter,
+			@JsonProperty("maxConcurrentWrites") Integer maxConcurrentWrites,
+			@JsonProperty("maxQueuedResults") Long maxQueuedResults,
+			@JsonProperty("overloadPolicy") OverloadPolicy overloadPolicy,
+			@JsonProperty("blockTimeoutMillis") Long blockTimeoutMillis,
+			@JacksonInject @Nullable JmxTransConfiguration configuration) {
+		this.outputWriter = checkNotNull(outputWriter, "Output writer cannot be null.");
+		this.maxConcurrentWrites = firstNonNull(maxConcurrentWrites, 1);
+		this.maxQueuedResults = firstNonNull(maxQueuedResults, 100000L);
+		this.overloadPolicy = firstNonNull(overloadPolicy, OverloadPolicy.DROP_NEWEST);
+		this.blockTimeoutMillis = firstNonNull(blockTimeoutMillis, 1000L);
+		this.threadPriority = configuration == null ? Thread.NORM_PRIORITY : configuration.getExecutorThreadPriority();
+		checkArgument(this.maxConcurrentWrites > 0, "maxConcurrentWrites must be positive");
+		checkArgument(this.maxQueuedResults > 0, "maxQueuedResults must be positive");
+		checkArgument(this.blockTimeoutMillis >= 0, "blockTimeoutMillis cannot be negative");
+	}
+
+	@Nonnull
+	@Override
+	public IsolatedOutputWriter<OutputWriter> create() {
+		return new IsolatedOutputWriter<>(outputWriter.create(), maxConcurrentWrites, maxQueuedResults, overloadPolicy, blockTimeoutMillis, threadPriority);
+	}
+}
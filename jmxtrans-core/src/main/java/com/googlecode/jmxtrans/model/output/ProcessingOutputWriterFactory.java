@@ -0,0 +1,79 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriterFactory;
+import com.googlecode.jmxtrans.model.output.support.ProcessingOutputWriter;
+import com.googlecode.jmxtrans.model.results.Processor;
+import com.googlecode.jmxtrans.model.results.ProcessorChain;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Runs processors on the results before they reach an output writer, on top
+ * of the processors of the query. For example:
+ *
+ * <pre>
+ * {
+ *   "@class" : "com.googlecode.jmxtrans.model.output.ProcessingOutputWriterFactory",
+ *   "processors" : [
+ *     { "type" : "match", "part" : "attributeName", "pattern" : "HeapMemoryUsage" },
+ *     { "type" : "scale", "factor" : 0.000001 }
+ *   ],
+ *   "outputWriter" : { "@class" : "com.googlecode.jmxtrans.model.output.GraphiteWriterFactory", ... }
+ * }
+ * </pre>
+ *
+ * @see Processor
+ */
+@ThreadSafe
+@EqualsAndHashCode
+@ToString
+public class ProcessingOutputWriterFactory implements OutputWriterFactory {
+
+	@Nonnull private final OutputWriterFactory outputWriter;
+	@Nonnull private final ProcessorChain processorChain;
+
+	@JsonCreator
+	public ProcessingOutputWriterFactory(
+			@JsonProperty("outputWriter") OutputWriterFactory outputWriter,
+			@JsonProperty("processors") List<Processor> processors) {
+		this.outputWriter = checkNotNull(outputWriter, "Output writer cannot be null.");
+		this.processorChain = ProcessorChain.compile(processors);
+	}
+
+	@Nonnull
+	@Override
+	public ProcessingOutputWriter<OutputWriter> create() {
+		return new ProcessingOutputWriter<>(processorChain, outputWriter.create());
+	}
+}
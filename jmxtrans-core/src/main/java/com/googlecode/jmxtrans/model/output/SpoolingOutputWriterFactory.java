@@ -0,0 +1,99 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriterFactory;
+import com.googlecode.jmxtrans.model.output.support.SpoolingOutputWriter;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.File;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Spools to disk the results an output writer fails to write, and replays
+ * them once its sink is reachable again. The spool takes at most maxSpoolBytes
+ * of disk, in segments of segmentBytes, and is replayed at
+ * replayResultsPerSecond. Each output writer needs a spool directory of its
+ * own. For example:
+ *
+ * <pre>
+ * {
+ *   "@class" : "com.googlecode.jmxtrans.model.output.SpoolingOutputWriterFactory",
+ *   "spoolDirectory" : "/var/spool/jmxtrans/graphite",
+ *   "maxSpoolBytes" : 1073741824,
+ *   "replayResultsPerSecond" : 5000,
+ *   "outputWriter" : { "@class" : "com.googlecode.jmxtrans.model.output.GraphiteWriterFactory", ... }
+ * }
+ * </pre>
+ *
+ * Only writers reporting failures with an exception can be spooled. Writers
+ * which log and drop the results they cannot write are not.
+ */
+@ThreadSafe
+@EqualsAndHashCode
+@ToString
+public class SpoolingOutputWriterFactory implements OutputWriterFactory {
+
+	@Nonnull private final OutputWriterFactory outputWriter;
+	@Nonnull private final String spoolDirectory;
+	private final int segmentBytes;
+	private final long maxSpoolBytes;
+	private final double replayResultsPerSecond;
+	private final long replayIntervalMillis;
+
+	@JsonCreator
+	public SpoolingOutputWriterFactory(
+			@JsonProperty("outputWriter") OutputWriterFactory outputWriter,
+			@JsonProperty("spoolDirectory") String spoolDirectory,
+			@JsonProperty("segmentBytes") Integer segmentBytes,
+			@JsonProperty("maxSpoolBytes") Long maxSpoolBytes,
+			@JsonProperty("replayResultsPerSecond") Double replayResultsPerSecond,
+			@JsonProperty("replayIntervalMillis") Long replayIntervalMillis) {
+		this.outputWriter = checkNotNull(outputWriter, "Output writer cannot be null.");
+		this.spoolDirectory = checkNotNull(spoolDirectory, "Spool directory cannot be null.");
+		this.segmentBytes = firstNonNull(segmentBytes, 16 * 1024 * 1024);
+		this.maxSpoolBytes = firstNonNull(maxSpoolBytes, 1024L * 1024 * 1024);
+		this.replayResultsPerSecond = firstNonNull(replayResultsPerSecond, 1000.0);
+		this.replayIntervalMillis = firstNonNull(replayIntervalMillis, 5000L);
+		checkArgument(this.segmentBytes > 0, "segmentBytes must be positive");
+		checkArgument(this.maxSpoolBytes >= this.segmentBytes, "maxSpoolBytes must be at least segmentBytes");
+		checkArgument(this.replayResultsPerSecond > 0, "replayResultsPerSecond must be positive");
+		checkArgument(this.replayIntervalMillis > 0, "replayIntervalMillis must be positive");
+	}
+
+	@Nonnull
+	@Override
+	public SpoolingOutputWriter<OutputWriter> create() {
+		return new SpoolingOutputWriter<>(outputWriter.create(), new File(spoolDirectory),
+				segmentBytes, maxSpoolBytes, replayResultsPerSecond, replayIntervalMillis);
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriterFactory;
+import com.googlecode.jmxtrans.model.output.support.SuppressingOutputWriter;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Writes to an output writer only the values which changed since they were
+ * last written, and every value at least once every refreshCycles polls. For
+ * example:
+ *
+ * <pre>
+ * {
+ *   "@class" : "com.googlecode.jmxtrans.model.output.SuppressingOutputWriterFactory",
+ *   "refreshCycles" : 10,
+ *   "outputWriter" : { "@class" : "com.googlecode.jmxtrans.model.output.GraphiteWriterFactory", ... }
+ * }
+ * </pre>
+ *
+ * A refreshCycles of 1 writes every value. Sinks drawing gaps where points
+ * are missing should be given a refresh period shorter than their gap
+ * detection.
+ */
+@ThreadSafe
+@EqualsAndHashCode
+@ToString
+public class SuppressingOutputWriterFactory implements OutputWriterFactory {
+
+	@Nonnull private final OutputWriterFactory outputWriter;
+	private final int refreshCycles;
+
+	@JsonCreator
+	public SuppressingOutputWriterFactory(
+			@JsonProperty("outputWriter") OutputWriterFactory outputWriter,
+			@JsonProperty("refreshCycles") Integer refreshCycles) {
+		this.outputWriter = checkNotNull(outputWriter, "Output writer cannot be null.");
+		this.refreshCycles = firstNonNull(refreshCycles, 10);
+		checkArgument(this.refreshCycles >= 1, "refreshCycles must be at least 1");
+	}
+
+	@Nonnull
+	@Override
+	public SuppressingOutputWriter<OutputWriter> create() {
+		return new SuppressingOutputWriter<>(outputWriter.create(), refreshCycles);
+	}
+}
@@ -0,0 +1,496 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.googlecode.jmxtrans.exceptions.LifecycleException;
+import com.googlecode.jmxtrans.executors.ExecutorFactory;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.ValidationException;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Rolls up the results of the servers of a group into their sum, min, max,
+ * average and count, per metric and per time window, and writes those
+ * aggregates instead of, or besides, the results of each server.
+ * <p>
+ * Servers belong to the group captured by a pattern from their alias, or
+ * their host when they have none. Servers not matching the pattern are not
+ * aggregated and their results are written as they are.
+ * <p>
+ * A server polled more than once in a window only counts once, with its last
+ * value, so that the aggregates stay across servers whatever the run period
+ * of the query.
+ * <p>
+ * A window is written as soon as all the servers of its group reported, the
+ * group being the servers which reported during the last few windows, or at
+ * the latest once it waited the maximum wait time, by a timer thread of this
+ * writer. Results arriving for a window already written are dropped, so that
+ * servers late or gone do not keep windows in memory.
+ */
+@ThreadSafe
+@ToString(of = {"target", "groupPattern", "groupName", "aggregations", "windowMillis", "maxWaitMillis", "writeRawResults"})
+public class AggregatingOutputWriter<T extends OutputWriter> implements OutputWriter {
+
+	private static final Logger log = LoggerFactory.getLogger(AggregatingOutputWriter.class);
+
+	/** Servers which did not report for that many windows are not waited for anymore. */
+	@VisibleForTesting static final int MEMBERSHIP_WINDOWS = 3;
+
+	@Nonnull private final T target;
+	@Nullable private final Pattern groupPattern;
+	@Nonnull private final String groupName;
+	@Nonnull private final ImmutableSet<Aggregation> aggregations;
+	private final long windowMillis;
+	private final long maxWaitMillis;
+	private final boolean writeRawResults;
+
+	private final Object lifecycleLock = new Object();
+	@Nullable private volatile ScheduledExecutorService maxWaitTimer;
+
+	@GuardedBy("this") private final Map<GroupKey, Group> groups = new HashMap<>();
+	private final AtomicLong lateResults = new AtomicLong();
+
+	/**
+	 * @param groupPattern pattern matched against the alias or host of servers,
+	 *                     its first group, or the whole match when it has none,
+	 *                     naming the group of the server; when null, all the
+	 *                     servers belong to the group named groupName
+	 */
+	public AggregatingOutputWriter(
+			@Nonnull T target,
+			@Nullable Pattern groupPattern,
+			@Nonnull String groupName,
+			@Nonnull ImmutableSet<Aggregation> aggregations,
+			long windowMillis,
+			long maxWaitMillis,
+			boolean writeRawResults) {
+		this.target = target;
+		this.groupPattern = groupPattern;
+		this.groupName = groupName;
+		this.aggregations = aggregations;
+		this.windowMillis = windowMillis;
+		this.maxWaitMillis = maxWaitMillis;
+		this.writeRawResults = writeRawResults;
+	}
+
+	/**
+	 * Starts the timer writing the windows which waited too long. Equal
+	 * writers of a configuration share one instance, started once per query
+	 * using it, so only the first start does so.
+	 */
+	@Override
+	public void start() throws LifecycleException {
+		synchronized (lifecycleLock) {
+			if (maxWaitTimer == null) {
+				maxWaitTimer = Executors.newSingleThreadScheduledExecutor(
+						ExecutorFactory.threadFactory("aggregate-" + target.getClass().getSimpleName()));
+			}
+		}
+		target.start();
+	}
+
+	@Override
+	public void doWrite(Server server, Query query, Iterable<Result> results) throws Exception {
+		ScheduledExecutorService maxWaitTimer = this.maxWaitTimer;
+		if (maxWaitTimer == null) {
+			throw new IllegalStateException("Output writer " + target + " is not running");
+		}
+		String group = groupOf(server);
+		if (writeRawResults || group == null) {
+			target.doWrite(server, query, results);
+		}
+		if (group == null) {
+			return;
+		}
+
+		List<Window> complete = new ArrayList<>();
+		synchronized (this) {
+			GroupKey key = new GroupKey(group, query);
+			Group aggregated = groups.get(key);
+			if (aggregated == null) {
+				aggregated = new Group(key);
+				groups.put(key, aggregated);
+			}
+			Set<Window> touched = newHashSet();
+			for (Result result : results) {
+				if (!(result.getValue() instanceof Number)) {
+					continue;
+				}
+				long tick = result.getEpoch() / windowMillis;
+				aggregated.reported(server, tick);
+				if (tick <= aggregated.lastWrittenTick) {
+					lateResults.incrementAndGet();
+					continue;
+				}
+				Window window = aggregated.windows.get(tick);
+				if (window == null) {
+					window = new Window(aggregated, tick, server, query);
+					aggregated.windows.put(tick, window);
+					scheduleMaxWait(maxWaitTimer, window);
+				}
+				window.add(server, result);
+				touched.add(window);
+			}
+			for (Window window : touched) {
+				if (aggregated.isComplete(window)) {
+					complete.addAll(aggregated.takeUpTo(window.tick));
+				}
+			}
+			if (aggregated.isEmpty()) {
+				groups.remove(key);
+			}
+		}
+		write(complete);
+	}
+
+	@Nullable
+	private String groupOf(Server server) {
+		if (groupPattern == null) {
+			return groupName;
+		}
+		String label = server.getSource();
+		if (label == null) {
+			return null;
+		}
+		Matcher matcher = groupPattern.matcher(label);
+		if (!matcher.matches()) {
+			return null;
+		}
+		return matcher.groupCount() > 0 ? matcher.group(1) : matcher.group();
+	}
+
+	/** A window which cannot be scheduled anymore is written when the writer is closed. */
+	@GuardedBy("this")
+	private void scheduleMaxWait(ScheduledExecutorService maxWaitTimer, final Window window) {
+		try {
+			maxWaitTimer.schedule(new Runnable() {
+				@Override
+				public void run() {
+					List<Window> expired;
+					synchronized (AggregatingOutputWriter.this) {
+						Group group = window.group;
+						if (group.windows.get(window.tick) != window) {
+							return;
+						}
+						expired = group.takeUpTo(window.tick);
+						if (group.isEmpty()) {
+							groups.remove(group.key);
+						}
+					}
+					write(expired);
+				}
+			}, maxWaitMillis, MILLISECONDS);
+		} catch (RejectedExecutionException ree) {
+			log.debug("Output writer {} is closing, window {} of group {} is written on close", target, window.tick, window.group.key.group);
+		}
+	}
+
+	private void write(List<Window> windows) {
+		for (Window window : windows) {
+			ImmutableList<Result> aggregates = window.aggregates(aggregations, windowMillis);
+			Server groupServer = Server.builder(window.server)
+					.setAlias(window.group.key.group)
+					.clearQueries()
+					.build();
+			try {
+				target.doWrite(groupServer, window.query, aggregates);
+			} catch (Exception e) {
+				log.warn("Could not write {} aggregates of group {} to output writer {}", aggregates.size(), window.group.key.group, target, e);
+			}
+		}
+	}
+
+	/**
+	 * Writes the windows still waiting for servers.
+	 */
+	public void flush() {
+		List<Window> pending = new ArrayList<>();
+		synchronized (this) {
+			Iterator<Group> all = groups.values().iterator();
+			while (all.hasNext()) {
+				Group group = all.next();
+				if (!group.windows.isEmpty()) {
+					pending.addAll(group.takeUpTo(group.windows.lastKey()));
+				}
+				if (group.isEmpty()) {
+					all.remove();
+				}
+			}
+		}
+		write(pending);
+	}
+
+	@Override
+	public void close() throws LifecycleException {
+		ScheduledExecutorService maxWaitTimer;
+		synchronized (lifecycleLock) {
+			maxWaitTimer = this.maxWaitTimer;
+			this.maxWaitTimer = null;
+		}
+		if (maxWaitTimer != null) {
+			maxWaitTimer.shutdownNow();
+		}
+		flush();
+		target.close();
+	}
+
+	@Override
+	@Deprecated
+	public Map<String, Object> getSettings() {
+		return target.getSettings();
+	}
+
+	@Override
+	public void validateSetup(Server server, Query query) throws ValidationException {
+		target.validateSetup(server, query);
+	}
+
+	@Nonnull
+	public T getTarget() {
+		return target;
+	}
+
+	/** @return the number of results dropped because their window was already written */
+	public long getLateResults() {
+		return lateResults.get();
+	}
+
+	@VisibleForTesting
+	synchronized int getOpenWindows() {
+		int open = 0;
+		for (Group group : groups.values()) {
+			open += group.windows.size();
+		}
+		return open;
+	}
+
+	@EqualsAndHashCode
+	@ToString
+	private static final class GroupKey {
+		@Nonnull private final String group;
+		@Nonnull private final Query query;
+
+		private GroupKey(@Nonnull String group, @Nonnull Query query) {
+			this.group = group;
+			this.query = query;
+		}
+	}
+
+	/** The windows and servers of a group, for one query. */
+	private static final class Group {
+		@Nonnull private final GroupKey key;
+		@Nonnull private final TreeMap<Long, Window> windows = new TreeMap<>();
+		/** Last window each server reported for. */
+		@Nonnull private final Map<Server, Long> members = new HashMap<>();
+		private long lastWrittenTick = Long.MIN_VALUE;
+
+		private Group(@Nonnull GroupKey key) {
+			this.key = key;
+		}
+
+		private void reported(Server server, long tick) {
+			Long last = members.get(server);
+			if (last == null || last < tick) {
+				members.put(server, tick);
+			}
+		}
+
+		/**
+		 * A window is complete when the servers which reported recently all
+		 * reported for it. The first window of a group is never complete, as
+		 * its servers are not known yet.
+		 */
+		private boolean isComplete(Window window) {
+			if (lastWrittenTick == Long.MIN_VALUE) {
+				return false;
+			}
+			for (Map.Entry<Server, Long> member : members.entrySet()) {
+				if (member.getValue() > window.tick - MEMBERSHIP_WINDOWS && !window.servers.contains(member.getKey())) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/** Takes the windows up to the given one, and forgets servers gone since. */
+		private List<Window> takeUpTo(long tick) {
+			List<Window> taken = new ArrayList<>(windows.headMap(tick, true).values());
+			windows.headMap(tick, true).clear();
+			lastWrittenTick = Math.max(lastWrittenTick, tick);
+			Iterator<Long> lastTicks = members.values().iterator();
+			while (lastTicks.hasNext()) {
+				if (lastTicks.next() <= tick - MEMBERSHIP_WINDOWS) {
+					lastTicks.remove();
+				}
+			}
+			return taken;
+		}
+
+		private boolean isEmpty() {
+			return windows.isEmpty() && members.isEmpty();
+		}
+	}
+
+	private static final class Window {
+		@Nonnull private final Group group;
+		private final long tick;
+		/** Server the aggregates are written for, renamed after the group. */
+		@Nonnull private final Server server;
+		@Nonnull private final Query query;
+		@Nonnull private final Set<Server> servers = newHashSet();
+		/** Last result of each server, by metric. */
+		@Nonnull private final Map<MetricKey, Map<Server, Result>> metrics = new LinkedHashMap<>();
+
+		private Window(@Nonnull Group group, long tick, @Nonnull Server server, @Nonnull Query query) {
+			this.group = group;
+			this.tick = tick;
+			this.server = server;
+			this.query = query;
+		}
+
+		private void add(Server server, Result result) {
+			servers.add(server);
+			MetricKey key = new MetricKey(result);
+			Map<Server, Result> lastResults = metrics.get(key);
+			if (lastResults == null) {
+				lastResults = new HashMap<>();
+				metrics.put(key, lastResults);
+			}
+			Result last = lastResults.get(server);
+			if (last == null || last.getEpoch() <= result.getEpoch()) {
+				lastResults.put(server, result);
+			}
+		}
+
+		private ImmutableList<Result> aggregates(Set<Aggregation> aggregations, long windowMillis) {
+			long epoch = tick * windowMillis;
+			ImmutableList.Builder<Result> results = ImmutableList.builder();
+			for (Map.Entry<MetricKey, Map<Server, Result>> metric : metrics.entrySet()) {
+				Result result = metric.getKey().result;
+				Aggregate aggregate = new Aggregate();
+				for (Result last : metric.getValue().values()) {
+					aggregate.add((Number) last.getValue());
+				}
+				for (Aggregation aggregation : aggregations) {
+					results.add(new Result(
+							epoch,
+							result.getAttributeName(),
+							result.getClassName(),
+							result.getObjDomain(),
+							result.getKeyAlias(),
+							result.getTypeName(),
+							ImmutableList.<String>builder().addAll(result.getValuePath()).add(aggregation.getName()).build(),
+							aggregate.get(aggregation)));
+				}
+			}
+			return results.build();
+		}
+	}
+
+	/** Identity of a metric, whatever the server and the time of its results. */
+	@EqualsAndHashCode(of = {"attributeName", "className", "objDomain", "keyAlias", "typeName", "valuePath"})
+	private static final class MetricKey {
+		@Nonnull private final Result result;
+		private final String attributeName;
+		private final String className;
+		private final String objDomain;
+		private final String keyAlias;
+		private final String typeName;
+		private final ImmutableList<String> valuePath;
+
+		private MetricKey(@Nonnull Result result) {
+			this.result = result;
+			this.attributeName = result.getAttributeName();
+			this.className = result.getClassName();
+			this.objDomain = result.getObjDomain();
+			this.keyAlias = result.getKeyAlias();
+			this.typeName = result.getTypeName();
+			this.valuePath = result.getValuePath();
+		}
+	}
+
+	private static final class Aggregate {
+		private double sum;
+		private double min = Double.POSITIVE_INFINITY;
+		private double max = Double.NEGATIVE_INFINITY;
+		private long count;
+		private boolean integral = true;
+
+		private void add(Number value) {
+			double current = value.doubleValue();
+			sum += current;
+			min = Math.min(min, current);
+			max = Math.max(max, current);
+			count++;
+			integral &= value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+		}
+
+		private Number get(Aggregation aggregation) {
+			switch (aggregation) {
+				case SUM:
+					return integral ? (Number) (long) sum : sum;
+				case MIN:
+					return integral ? (Number) (long) min : min;
+				case MAX:
+					return integral ? (Number) (long) max : max;
+				case AVG:
+					return sum / count;
+				case COUNT:
+					return count;
+				default:
+					throw new IllegalArgumentException("Unknown aggregation " + aggregation);
+			}
+		}
+	}
+}
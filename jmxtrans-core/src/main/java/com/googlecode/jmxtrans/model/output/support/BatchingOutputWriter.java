@@ -0,0 +1,235 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.exceptions.LifecycleException;
+import com.googlecode.jmxtrans.executors.ExecutorFactory;
+import com.googlecode.jmxtrans.model.BatchOutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.QueryResults;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.ValidationException;
+import lombok.ToString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Collects the results of all queries and servers written to a
+ * {@link BatchOutputWriter}, and hands them over in batches.
+ *
+ * A batch is written as soon as it holds the maximum number of results or of
+ * query results, by the thread adding to it, or when its oldest results have
+ * waited the linger time, by a timer thread of this writer. A batch written by
+ * the thread adding to it reports its failure to that thread, so that it can
+ * be spooled or counted, while the failures of the timer thread are logged.
+ * Output writers not supporting batches are written to directly, one query at
+ * a time.
+ */
+@ThreadSafe
+@ToString(of = {"target", "maxBatchResults", "maxBatchEntries", "lingerMillis"})
+public class BatchingOutputWriter<T extends OutputWriter> implements OutputWriter {
+
+	private static final Logger log = LoggerFactory.getLogger(BatchingOutputWriter.class);
+
+	@Nonnull private final T target;
+	private final int maxBatchResults;
+	private final int maxBatchEntries;
+	private final long lingerMillis;
+	private final boolean batching;
+
+	private final Object lifecycleLock = new Object();
+	@Nullable private volatile ScheduledExecutorService lingerTimer;
+
+	@GuardedBy("this") private List<QueryResults> pending = new ArrayList<>();
+	@GuardedBy("this") private int pendingResults = 0;
+	@GuardedBy("this") private long batchNumber = 0;
+
+	public BatchingOutputWriter(@Nonnull T target, int maxBatchResults, int maxBatchEntries, long lingerMillis) {
+		this.target = target;
+		this.maxBatchResults = maxBatchResults;
+		this.maxBatchEntries = maxBatchEntries;
+		this.lingerMillis = lingerMillis;
+		this.batching = supportsBatches(target);
+		if (!batching) {
+			log.info("Output writer {} does not support batches, its results are written one query at a time", target);
+		}
+	}
+
+	/**
+	 * Writers wrapping a batch writer implement {@link BatchOutputWriter} to
+	 * pass batches through, but only write batches at once if their target does.
+	 */
+	static boolean supportsBatches(@Nonnull OutputWriter writer) {
+		if (writer instanceof ResultTransformerOutputWriter) {
+			return ((ResultTransformerOutputWriter<?>) writer).supportsBatches();
+		}
+		return writer instanceof BatchOutputWriter;
+	}
+
+	/** @return true if results are written to the target in batches */
+	public boolean isBatching() {
+		return batching;
+	}
+
+	/**
+	 * Starts the timer writing the batches which lingered. Equal writers of a
+	 * configuration share one instance, started once per query using it, so
+	 * only the first start does so.
+	 */
+	@Override
+	public void start() throws LifecycleException {
+		synchronized (lifecycleLock) {
+			if (batching && lingerTimer == null) {
+				lingerTimer = Executors.newSingleThreadScheduledExecutor(
+						ExecutorFactory.threadFactory("batch-" + target.getClass().getSimpleName()));
+			}
+		}
+		target.start();
+	}
+
+	@Override
+	public void doWrite(Server server, Query query, Iterable<Result> results) throws Exception {
+		if (!batching) {
+			target.doWrite(server, query, results);
+			return;
+		}
+		ScheduledExecutorService lingerTimer = this.lingerTimer;
+		if (lingerTimer == null) {
+			throw new IllegalStateException("Output writer " + target + " is not running");
+		}
+
+		QueryResults queryResults = new QueryResults(server, query, results);
+		ImmutableList<QueryResults> batch = null;
+		synchronized (this) {
+			pending.add(queryResults);
+			pendingResults += queryResults.getResults().size();
+			if (pending.size() >= maxBatchEntries || pendingResults >= maxBatchResults
+					|| (pending.size() == 1 && !scheduleLinger(lingerTimer, batchNumber))) {
+				batch = takeBatch();
+			}
+		}
+		if (batch != null) {
+			((BatchOutputWriter) target).doWriteBatch(batch);
+		}
+	}
+
+	/** @return false if the writer is closing, and the batch should be written right away */
+	@GuardedBy("this")
+	private boolean scheduleLinger(ScheduledExecutorService lingerTimer, final long lingeringBatch) {
+		try {
+			lingerTimer.schedule(new Runnable() {
+				@Override
+				public void run() {
+					ImmutableList<QueryResults> batch;
+					synchronized (BatchingOutputWriter.this) {
+						if (lingeringBatch != batchNumber || pending.isEmpty()) {
+							return;
+						}
+						batch = takeBatch();
+					}
+					writeBatch(batch);
+				}
+			}, lingerMillis, MILLISECONDS);
+			return true;
+		} catch (RejectedExecutionException ree) {
+			return false;
+		}
+	}
+
+	@GuardedBy("this")
+	private ImmutableList<QueryResults> takeBatch() {
+		ImmutableList<QueryResults> batch = ImmutableList.copyOf(pending);
+		pending = new ArrayList<>();
+		pendingResults = 0;
+		batchNumber++;
+		return batch;
+	}
+
+	private void writeBatch(ImmutableList<QueryResults> batch) {
+		try {
+			((BatchOutputWriter) target).doWriteBatch(batch);
+		} catch (Exception e) {
+			log.warn("Could not write batch of {} query results to output writer {}", batch.size(), target, e);
+		}
+	}
+
+	/**
+	 * Writes the results still waiting for their batch to be complete.
+	 */
+	public void flush() {
+		ImmutableList<QueryResults> batch;
+		synchronized (this) {
+			if (pending.isEmpty()) {
+				return;
+			}
+			batch = takeBatch();
+		}
+		writeBatch(batch);
+	}
+
+	@Override
+	public void close() throws LifecycleException {
+		ScheduledExecutorService lingerTimer;
+		synchronized (lifecycleLock) {
+			lingerTimer = this.lingerTimer;
+			this.lingerTimer = null;
+		}
+		if (lingerTimer != null) {
+			lingerTimer.shutdownNow();
+			flush();
+		}
+		target.close();
+	}
+
+	@Override
+	@Deprecated
+	public Map<String, Object> getSettings() {
+		return target.getSettings();
+	}
+
+	@Override
+	public void validateSetup(Server server, Query query) throws ValidationException {
+		target.validateSetup(server, query);
+	}
+
+	@Nonnull
+	public T getTarget() {
+		return target;
+	}
+}
@@ -0,0 +1,330 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.exceptions.LifecycleException;
+import com.googlecode.jmxtrans.executors.ExecutorFactory;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.ValidationException;
+import com.googlecode.jmxtrans.monitoring.OutputWriterQueueMXBean;
+import lombok.ToString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.ObjectName;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Runs the writes of an output writer on threads of its own.
+ *
+ * {@link #doWrite(Server, Query, Iterable)} only queues the write and returns,
+ * so a slow or stalled sink does not hold the result executor threads needed
+ * by the other writers. The queue is bounded by a number of results rather
+ * than of writes, and the {@link OverloadPolicy} decides what happens to
+ * results which do not fit. Dropped results are counted, and exported with
+ * the state of the queue as an MBean.
+ */
+@ThreadSafe
+@ToString(of = {"target", "overloadPolicy", "maxQueuedResults"})
+public class IsolatedOutputWriter<T extends OutputWriter> implements OutputWriter, OutputWriterQueueMXBean {
+
+	private static final Logger log = LoggerFactory.getLogger(IsolatedOutputWriter.class);
+	private static final AtomicInteger instances = new AtomicInteger();
+	private static final long DROP_WARNING_INTERVAL_NANOS = SECONDS.toNanos(60);
+
+	@Nonnull private final T target;
+	private final int maxConcurrentWrites;
+	@Nonnull private final OverloadPolicy overloadPolicy;
+	private final long maxQueuedResults;
+	private final long blockTimeoutMillis;
+	private final int threadPriority;
+
+	private final Object lifecycleLock = new Object();
+	@Nullable private volatile ThreadPoolExecutor executor;
+	@Nullable private volatile ObjectName objectName;
+
+	@GuardedBy("this") private long queuedResults = 0;
+	private final AtomicLong droppedWrites = new AtomicLong();
+	private final AtomicLong droppedResults = new AtomicLong();
+	private final AtomicLong lastDropWarning = new AtomicLong(System.nanoTime() - DROP_WARNING_INTERVAL_NANOS);
+
+	public IsolatedOutputWriter(@Nonnull T target, int maxConcurrentWrites, long maxQueuedResults) {
+		this(target, maxConcurrentWrites, maxQueuedResults, OverloadPolicy.DROP_NEWEST, 0);
+	}
+
+	public IsolatedOutputWriter(
+			@Nonnull T target, int maxConcurrentWrites, long maxQueuedResults,
+			@Nonnull OverloadPolicy overloadPolicy, long blockTimeoutMillis) {
+		this(target, maxConcurrentWrites, maxQueuedResults, overloadPolicy, blockTimeoutMillis, Thread.NORM_PRIORITY);
+	}
+
+	public IsolatedOutputWriter(
+			@Nonnull T target, int maxConcurrentWrites, long maxQueuedResults,
+			@Nonnull OverloadPolicy overloadPolicy, long blockTimeoutMillis, int threadPriority) {
+		this.target = target;
+		this.maxConcurrentWrites = maxConcurrentWrites;
+		this.overloadPolicy = overloadPolicy;
+		this.maxQueuedResults = maxQueuedResults;
+		this.blockTimeoutMillis = blockTimeoutMillis;
+		this.threadPriority = threadPriority;
+	}
+
+	/**
+	 * Starts the writer threads and exports the queue. Equal writers of a
+	 * configuration share one instance, started once per query using it, so
+	 * only the first start does so.
+	 */
+	@Override
+	public void start() throws LifecycleException {
+		synchronized (lifecycleLock) {
+			if (executor == null) {
+				// the queue is bounded by the number of results it holds, see admit()
+				executor = new ThreadPoolExecutor(
+						maxConcurrentWrites, maxConcurrentWrites, 0L, MILLISECONDS,
+						new LinkedBlockingQueue<Runnable>(),
+						ExecutorFactory.threadFactory("writer-" + target.getClass().getSimpleName(), threadPriority));
+				objectName = OutputWriterMBeans.register(this, "OutputWriterQueue", target.getClass().getSimpleName() + "-" + instances.incrementAndGet());
+			}
+		}
+		target.start();
+	}
+
+	@Override
+	public void doWrite(Server server, Query query, Iterable<Result> results) throws Exception {
+		ThreadPoolExecutor executor = this.executor;
+		if (executor == null) {
+			throw new IllegalStateException("Output writer " + target + " is not running");
+		}
+		WriteTask task = new WriteTask(server, query, ImmutableList.copyOf(results));
+		if (!admit(executor, task)) {
+			dropped(task);
+			return;
+		}
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException ree) {
+			release(task);
+			dropped(task);
+		}
+	}
+
+	/**
+	 * Reserves room in the queue for the results of a write, applying the
+	 * overload policy when they do not fit.
+	 *
+	 * @return false if the write should be dropped
+	 */
+	private synchronized boolean admit(ThreadPoolExecutor executor, WriteTask task) throws InterruptedException {
+		switch (overloadPolicy) {
+			case BLOCK:
+				long deadline = System.nanoTime() + MILLISECONDS.toNanos(blockTimeoutMillis);
+				while (!fits(task)) {
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0) {
+						return false;
+					}
+					NANOSECONDS.timedWait(this, remaining);
+				}
+				break;
+			case DROP_OLDEST:
+				while (!fits(task)) {
+					Runnable oldest = executor.getQueue().poll();
+					if (oldest == null) {
+						return false;
+					}
+					WriteTask evicted = (WriteTask) oldest;
+					queuedResults -= evicted.size();
+					dropped(evicted);
+				}
+				break;
+			case SAMPLE:
+				if (!fits(task)) {
+					return false;
+				}
+				double fill = (double) queuedResults / maxQueuedResults;
+				if (fill > 0.5 && ThreadLocalRandom.current().nextDouble() < (fill - 0.5) * 2) {
+					return false;
+				}
+				break;
+			case DROP_NEWEST:
+			default:
+				if (!fits(task)) {
+					return false;
+				}
+		}
+		queuedResults += task.size();
+		return true;
+	}
+
+	/** A write larger than the whole budget still goes through an empty queue. */
+	@GuardedBy("this")
+	private boolean fits(WriteTask task) {
+		return queuedResults == 0 || queuedResults + task.size() <= maxQueuedResults;
+	}
+
+	private synchronized void release(WriteTask task) {
+		queuedResults -= task.size();
+		notifyAll();
+	}
+
+	/**
+	 * Counts a dropped write. An overloaded writer drops on every poll, so
+	 * only a summary is logged at warn level, at most once a minute.
+	 */
+	private void dropped(WriteTask task) {
+		long writes = droppedWrites.incrementAndGet();
+		long results = droppedResults.addAndGet(task.size());
+		log.debug("Dropped {} results of query {}, the queue of output writer {} is full", task.size(), task.query, target);
+		long now = System.nanoTime();
+		long last = lastDropWarning.get();
+		if (now - last >= DROP_WARNING_INTERVAL_NANOS && lastDropWarning.compareAndSet(last, now)) {
+			log.warn("The queue of output writer {} is full, {} writes ({} results) dropped so far", target, writes, results);
+		}
+	}
+
+	@Override
+	public void close() throws LifecycleException {
+		ThreadPoolExecutor executor;
+		synchronized (lifecycleLock) {
+			executor = this.executor;
+			this.executor = null;
+		}
+		if (executor != null) {
+			executor.shutdown();
+			try {
+				if (!executor.awaitTermination(10, SECONDS)) {
+					log.warn("Output writer {} did not complete its queued writes, dropping them", target);
+					executor.shutdownNow();
+				}
+			} catch (InterruptedException e) {
+				executor.shutdownNow();
+				Thread.currentThread().interrupt();
+			}
+			OutputWriterMBeans.unregister(objectName);
+		}
+		target.close();
+	}
+
+	@Override
+	@Deprecated
+	public Map<String, Object> getSettings() {
+		return target.getSettings();
+	}
+
+	@Override
+	public void validateSetup(Server server, Query query) throws ValidationException {
+		target.validateSetup(server, query);
+	}
+
+	@Override
+	public String getOutputWriter() {
+		return target.toString();
+	}
+
+	@Override
+	public String getOverloadPolicy() {
+		return overloadPolicy.name();
+	}
+
+	@Override
+	public int getQueuedWrites() {
+		ThreadPoolExecutor executor = this.executor;
+		return executor == null ? 0 : executor.getQueue().size();
+	}
+
+	@Override
+	public synchronized long getQueuedResults() {
+		return queuedResults;
+	}
+
+	@Override
+	public long getMaxQueuedResults() {
+		return maxQueuedResults;
+	}
+
+	@Override
+	public long getDroppedWrites() {
+		return droppedWrites.get();
+	}
+
+	@Override
+	public long getDroppedResults() {
+		return droppedResults.get();
+	}
+
+	/** @return the name of the MBean of the queue, null until the writer is started */
+	@Override
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+
+	@Nonnull
+	public T getTarget() {
+		return target;
+	}
+
+
+	private final class WriteTask implements Runnable {
+		private final Server server;
+		private final Query query;
+		private final ImmutableList<Result> results;
+
+		private WriteTask(Server server, Query query, ImmutableList<Result> results) {
+			this.server = server;
+			this.query = query;
+			this.results = results;
+		}
+
+		private int size() {
+			return results.size();
+		}
+
+		@Override
+		public void run() {
+			release(this);
+			try {
+				target.doWrite(server, query, results);
+			} catch (Exception e) {
+				log.warn("Could not write results {} of query {} to output writer {}", results, query, target, e);
+			}
+		}
+	}
+}
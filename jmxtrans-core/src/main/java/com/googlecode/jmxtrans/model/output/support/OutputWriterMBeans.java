@@ -0,0 +1,76 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Exports the state of output writer wrappers as MBeans of the platform MBean
+ * server. A wrapper which cannot be exported still writes its results.
+ */
+final class OutputWriterMBeans {
+
+	private static final Logger log = LoggerFactory.getLogger(OutputWriterMBeans.class);
+
+	private OutputWriterMBeans() {}
+
+	/**
+	 * @param type of the MBean, as in com.googlecode.jmxtrans:Type=type
+	 * @param name of the MBean, quoted as it may hold any character
+	 * @return the name the MBean is registered under
+	 */
+	@Nonnull
+	static ObjectName register(@Nonnull Object mbean, @Nonnull String type, @Nonnull String name) {
+		ObjectName objectName;
+		try {
+			objectName = new ObjectName("com.googlecode.jmxtrans:Type=" + type + ",Name=" + ObjectName.quote(name));
+		} catch (MalformedObjectNameException e) {
+			throw new IllegalArgumentException("Invalid mbean name " + name, e);
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, objectName);
+		} catch (JMException e) {
+			log.error("Could not register mbean {} of {}", objectName, mbean, e);
+		}
+		return objectName;
+	}
+
+	static void unregister(@Nullable ObjectName objectName) {
+		if (objectName == null) {
+			return;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e) {
+			log.debug("Could not unregister mbean {}", objectName, e);
+		}
+	}
+}
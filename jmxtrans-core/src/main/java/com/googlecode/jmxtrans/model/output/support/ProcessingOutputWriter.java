@@ -0,0 +1,102 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.googlecode.jmxtrans.exceptions.LifecycleException;
+import com.googlecode.jmxtrans.model.AsyncOutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriterAdapter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.ValidationException;
+import com.googlecode.jmxtrans.model.results.ProcessorChain;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.Callable;
+
+/**
+ * Runs a chain of processors on the results before writing them. Writers with
+ * equal chains process each batch only once, unless the chains keep state
+ * about previous results. Writes are passed asynchronously to a target which
+ * is an {@link AsyncOutputWriter}.
+ */
+@ThreadSafe
+public class ProcessingOutputWriter<T extends OutputWriter> extends OutputWriterAdapter implements AsyncOutputWriter {
+
+	@Nonnull private final ProcessorChain processorChain;
+	@Nonnull private final T target;
+
+	public ProcessingOutputWriter(@Nonnull ProcessorChain processorChain, @Nonnull T target) {
+		this.processorChain = processorChain;
+		this.target = target;
+	}
+
+	@Override
+	public void start() throws LifecycleException {
+		target.start();
+	}
+
+	@Override
+	public void validateSetup(Server server, Query query) throws ValidationException {
+		target.validateSetup(server, query);
+	}
+
+	@Override
+	public void doWrite(Server server, Query query, Iterable<Result> results) throws Exception {
+		target.doWrite(server, query, process(server, results));
+	}
+
+	@Override
+	public ListenableFuture<?> doWriteAsync(Server server, Query query, Iterable<Result> results) throws Exception {
+		return AsyncWrites.write(target, server, query, process(server, results));
+	}
+
+	private Iterable<Result> process(final Server server, final Iterable<Result> results) throws Exception {
+		if (processorChain.isEmpty()) {
+			return results;
+		}
+		if (processorChain.isStateful()) {
+			return processorChain.process(server, results);
+		}
+		return SharedBatchCache.get(results, processorChain, new Callable<Iterable<Result>>() {
+			@Override
+			public Iterable<Result> call() {
+				return processorChain.process(server, results);
+			}
+		});
+	}
+
+	@Override
+	public void close() throws LifecycleException {
+		target.close();
+	}
+
+	@VisibleForTesting
+	T getTarget() {
+		return target;
+	}
+}
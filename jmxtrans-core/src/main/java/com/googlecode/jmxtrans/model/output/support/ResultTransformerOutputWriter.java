@@ -23,9 +23,14 @@
 package com.googlecode.jmxtrans.model.output.support;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.googlecode.jmxtrans.model.AsyncOutputWriter;
+import com.googlecode.jmxtrans.model.BatchOutputWriter;
 import com.googlecode.jmxtrans.model.OutputWriter;
 import com.googlecode.jmxtrans.model.OutputWriterAdapter;
 import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.QueryResults;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.Server;
 import com.googlecode.jmxtrans.model.results.BooleanAsNumberValueTransformer;
@@ -36,9 +41,13 @@ import com.googlecode.jmxtrans.exceptions.LifecycleException;
 
 import javax.annotation.Nonnull;
 
-import static com.google.common.collect.FluentIterable.from;
-
-public class ResultTransformerOutputWriter<T extends OutputWriter> extends OutputWriterAdapter {
+/**
+ * Transforms the values of results before handing them to an output writer.
+ * Batches are transformed query by query, and handed over as batches when the
+ * target supports them. Writes are passed asynchronously to a target which is
+ * an {@link AsyncOutputWriter}.
+ */
+public class ResultTransformerOutputWriter<T extends OutputWriter> extends OutputWriterAdapter implements BatchOutputWriter, AsyncOutputWriter {
 
 	@Nonnull private final ResultValuesTransformer resultValuesTransformer;
 	@Nonnull private final T target;
@@ -50,10 +59,33 @@ public class ResultTransformerOutputWriter<T extends OutputWriter> extends Outpu
 
 	@Override
 	public void doWrite(Server server, Query query, Iterable<Result> results) throws Exception {
-		target.doWrite(
-				server,
-				query,
-				from(results).transform(resultValuesTransformer).toList());
+		target.doWrite(server, query, SharedBatchCache.transform(results, resultValuesTransformer));
+	}
+
+	@Override
+	public ListenableFuture<?> doWriteAsync(Server server, Query query, Iterable<Result> results) throws Exception {
+		return AsyncWrites.write(target, server, query, SharedBatchCache.transform(results, resultValuesTransformer));
+	}
+
+	@Override
+	public void doWriteBatch(ImmutableList<QueryResults> batch) throws Exception {
+		if (!(target instanceof BatchOutputWriter)) {
+			for (QueryResults queryResults : batch) {
+				doWrite(queryResults.getServer(), queryResults.getQuery(), queryResults.getResults());
+			}
+			return;
+		}
+		ImmutableList.Builder<QueryResults> transformed = ImmutableList.builder();
+		for (QueryResults queryResults : batch) {
+			transformed.add(new QueryResults(queryResults.getServer(), queryResults.getQuery(),
+					SharedBatchCache.transform(queryResults.getResults(), resultValuesTransformer)));
+		}
+		((BatchOutputWriter) target).doWriteBatch(transformed.build());
+	}
+
+	/** @return true if the target, and so this writer, writes batches with a single call */
+	public boolean supportsBatches() {
+		return BatchingOutputWriter.supportsBatches(target);
 	}
 
 	public static <T extends OutputWriter> ResultTransformerOutputWriter<T> booleanToNumber(boolean booleanToNumber, T target) {
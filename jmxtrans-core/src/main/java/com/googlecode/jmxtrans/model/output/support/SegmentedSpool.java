@@ -0,0 +1,358 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Append-only log of records, kept in memory-mapped segment files.
+ *
+ * Each segment starts with the offset of its first unread record, followed by
+ * records made of their length and their bytes. The length is written after
+ * the bytes, so a record interrupted by a crash is ignored when the segment is
+ * opened again. Segments are deleted once read. When the segments would take
+ * more than the allowed disk space, the oldest one is dropped with the records
+ * it still holds. Segments are unmapped when deleted or closed, as a mapped
+ * file keeps its disk blocks until the garbage collector finds its buffer.
+ */
+@ThreadSafe
+public class SegmentedSpool implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(SegmentedSpool.class);
+
+	private static final String SEGMENT_SUFFIX = ".spool";
+	private static final String LOCK_FILE = "spool.lock";
+	private static final int SEGMENT_HEADER_BYTES = 8;
+	private static final int RECORD_HEADER_BYTES = 4;
+
+	@Nonnull private final File directory;
+	private final int segmentBytes;
+	private final long maxBytes;
+	@Nonnull private final RandomAccessFile lockFile;
+	@Nonnull private final FileLock lock;
+
+	@GuardedBy("this") private final Deque<Segment> segments = new ArrayDeque<>();
+	@GuardedBy("this") private long nextSegmentId;
+	@GuardedBy("this") private long records;
+	private final AtomicLong droppedRecords = new AtomicLong();
+
+	public SegmentedSpool(@Nonnull File directory, int segmentBytes, long maxBytes) throws IOException {
+		checkArgument(segmentBytes > SEGMENT_HEADER_BYTES + RECORD_HEADER_BYTES, "Segments of %s bytes are too small", segmentBytes);
+		checkArgument(maxBytes >= segmentBytes, "The spool must hold at least one segment");
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create spool directory " + directory);
+		}
+		this.directory = directory;
+		this.segmentBytes = segmentBytes;
+		this.maxBytes = maxBytes;
+		this.lockFile = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+		this.lock = lock(lockFile, directory);
+
+		File[] files = directory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.getName().endsWith(SEGMENT_SUFFIX);
+			}
+		});
+		long[] ids = new long[files == null ? 0 : files.length];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = segmentId(files[i]);
+		}
+		Arrays.sort(ids);
+		for (long id : ids) {
+			Segment segment = new Segment(id, segmentFile(id), segmentBytes);
+			segments.addLast(segment);
+			records += segment.unread;
+			nextSegmentId = id + 1;
+		}
+		if (records > 0) {
+			log.info("Found {} spooled records in {}", records, directory);
+		}
+	}
+
+	private static FileLock lock(RandomAccessFile lockFile, File directory) throws IOException {
+		FileLock lock;
+		try {
+			lock = lockFile.getChannel().tryLock();
+		} catch (OverlappingFileLockException e) {
+			lock = null;
+		}
+		if (lock == null) {
+			lockFile.close();
+			throw new IOException("Spool directory " + directory + " is already used by another output writer");
+		}
+		return lock;
+	}
+
+	private static long segmentId(File file) throws IOException {
+		String name = file.getName();
+		try {
+			return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			throw new IOException("Unexpected file in spool directory: " + file, e);
+		}
+	}
+
+	private File segmentFile(long id) {
+		return new File(directory, String.format("%020d%s", id, SEGMENT_SUFFIX));
+	}
+
+	/**
+	 * @return false if the record is larger than a segment and cannot be spooled
+	 */
+	public synchronized boolean append(@Nonnull byte[] record) throws IOException {
+		if (RECORD_HEADER_BYTES + record.length > segmentBytes - SEGMENT_HEADER_BYTES) {
+			return false;
+		}
+		Segment tail = segments.peekLast();
+		if (tail == null || !tail.fits(record.length)) {
+			while (!segments.isEmpty() && (segments.size() + 1L) * segmentBytes > maxBytes) {
+				dropOldestSegment();
+			}
+			long id = nextSegmentId++;
+			tail = new Segment(id, segmentFile(id), segmentBytes);
+			segments.addLast(tail);
+		}
+		tail.append(record);
+		records++;
+		return true;
+	}
+
+	private void dropOldestSegment() throws IOException {
+		Segment oldest = segments.removeFirst();
+		records -= oldest.unread;
+		droppedRecords.addAndGet(oldest.unread);
+		log.warn("Spool {} is full, dropping {} records", directory, oldest.unread);
+		oldest.delete();
+	}
+
+	/** @return the oldest record, or null if the spool is empty */
+	@CheckForNull
+	public synchronized Record peek() throws IOException {
+		Segment head = head();
+		return head == null ? null : new Record(head.id, head.readOffset, head.peek());
+	}
+
+	/**
+	 * Removes a record returned by {@link #peek()}, once it has been handled.
+	 * The record may have been dropped meanwhile with the oldest segment,
+	 * in which case nothing is removed.
+	 *
+	 * @return false if the record was not the oldest one anymore
+	 */
+	public synchronized boolean remove(@Nonnull Record record) throws IOException {
+		Segment head = head();
+		if (head == null || head.id != record.segmentId || head.readOffset != record.offset) {
+			return false;
+		}
+		head.advance();
+		records--;
+		head();
+		return true;
+	}
+
+	/** Oldest segment with unread records, deleting the segments fully read on the way. */
+	@GuardedBy("this")
+	@CheckForNull
+	private Segment head() throws IOException {
+		Segment head = segments.peekFirst();
+		while (head != null && head.unread == 0 && segments.size() > 1) {
+			segments.removeFirst().delete();
+			head = segments.peekFirst();
+		}
+		return head == null || head.unread == 0 ? null : head;
+	}
+
+	public synchronized long getRecords() {
+		return records;
+	}
+
+	/** Number of bytes of unread records. */
+	public synchronized long getBytes() {
+		long bytes = 0;
+		for (Segment segment : segments) {
+			bytes += segment.writeOffset - segment.readOffset;
+		}
+		return bytes;
+	}
+
+	public synchronized int getSegments() {
+		return segments.size();
+	}
+
+	/** Number of records lost because the spool was full. */
+	public long getDroppedRecords() {
+		return droppedRecords.get();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		for (Segment segment : segments) {
+			segment.close();
+		}
+		segments.clear();
+		lock.release();
+		lockFile.close();
+	}
+
+	/** A record, with its position in the spool. */
+	public static final class Record {
+		private final long segmentId;
+		private final int offset;
+		@Nonnull private final byte[] bytes;
+
+		private Record(long segmentId, int offset, @Nonnull byte[] bytes) {
+			this.segmentId = segmentId;
+			this.offset = offset;
+			this.bytes = bytes;
+		}
+
+		@Nonnull
+		public byte[] getBytes() {
+			return bytes;
+		}
+	}
+
+	private static final class Segment {
+		private final long id;
+		private final File file;
+		private final RandomAccessFile randomAccessFile;
+		private final MappedByteBuffer buffer;
+		private int readOffset;
+		private int writeOffset;
+		private long unread;
+
+		private Segment(long id, File file, int size) throws IOException {
+			this.id = id;
+			this.file = file;
+			this.randomAccessFile = new RandomAccessFile(file, "rw");
+			this.buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			int offset = SEGMENT_HEADER_BYTES;
+			long readFrom = Math.max(buffer.getLong(0), SEGMENT_HEADER_BYTES);
+			while (offset + RECORD_HEADER_BYTES <= size) {
+				int length = buffer.getInt(offset);
+				if (length <= 0 || length > size - offset - RECORD_HEADER_BYTES) {
+					break;
+				}
+				if (offset >= readFrom) {
+					unread++;
+				}
+				offset += RECORD_HEADER_BYTES + length;
+			}
+			this.writeOffset = offset;
+			this.readOffset = (int) Math.min(readFrom, offset);
+		}
+
+		private boolean fits(int length) {
+			return writeOffset + RECORD_HEADER_BYTES + length <= buffer.capacity();
+		}
+
+		private void append(byte[] record) {
+			ByteBuffer data = buffer.duplicate();
+			data.position(writeOffset + RECORD_HEADER_BYTES);
+			data.put(record);
+			buffer.putInt(writeOffset, record.length);
+			writeOffset += RECORD_HEADER_BYTES + record.length;
+			unread++;
+		}
+
+		private byte[] peek() {
+			byte[] record = new byte[buffer.getInt(readOffset)];
+			ByteBuffer data = buffer.duplicate();
+			data.position(readOffset + RECORD_HEADER_BYTES);
+			data.get(record);
+			return record;
+		}
+
+		private void advance() {
+			readOffset += RECORD_HEADER_BYTES + buffer.getInt(readOffset);
+			buffer.putLong(0, readOffset);
+			unread--;
+		}
+
+		private void close() throws IOException {
+			buffer.force();
+			randomAccessFile.close();
+			unmap(buffer);
+		}
+
+		private void delete() throws IOException {
+			randomAccessFile.close();
+			unmap(buffer);
+			if (!file.delete()) {
+				log.warn("Could not delete spool segment {}", file);
+			}
+		}
+	}
+
+	/**
+	 * Releases the mapping of a buffer which is not used anymore. Java has no
+	 * public API for this, so this relies on Unsafe.invokeCleaner on Java 9
+	 * and later, and on the cleaner of the buffer before. If neither is
+	 * available, the mapping is released by the garbage collector.
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		try {
+			try {
+				Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+				Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+				Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+				theUnsafe.setAccessible(true);
+				invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			} catch (NoSuchMethodException beforeJava9) {
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			}
+		} catch (Exception e) {
+			log.debug("Could not unmap spool segment, leaving it to the garbage collector", e);
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.collect.ForwardingObject;
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.results.ResultValuesTransformer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.collect.FluentIterable.from;
+
+/**
+ * Shares what output writers derive from a batch of results.
+ *
+ * All the output writers of a query receive the same batch of results. When
+ * the batch goes to more than one writer, the result processor marks it as
+ * shared with {@link #share(Iterable)}. When several writers then transform or
+ * format that batch the same way, the first one to ask computes the value and
+ * the others reuse it. The values are held by the batch, and dropped with it.
+ * Batches going to a single writer are not shared, and values are computed
+ * without any bookkeeping.
+ *
+ * Keys must implement equals and hashCode on everything that changes the
+ * computed value, typically the settings of the formatter.
+ */
+public final class SharedBatchCache {
+
+	private SharedBatchCache() {}
+
+	/** @return the batch, keeping the values derived from it for the writers it goes to */
+	@Nonnull
+	public static Iterable<Result> share(@Nonnull Iterable<Result> batch) {
+		return batch instanceof SharedBatch ? batch : new SharedBatch(batch);
+	}
+
+	@Nonnull
+	@SuppressWarnings("unchecked")
+	public static <V> V get(@Nonnull Iterable<Result> batch, @Nonnull Object key, @Nonnull Callable<? extends V> loader) throws Exception {
+		if (!(batch instanceof SharedBatch)) {
+			return loader.call();
+		}
+		ConcurrentMap<Object, Object> values = ((SharedBatch) batch).values();
+		Object value = values.get(key);
+		if (value == null) {
+			// writers asking at the same time may both compute it, the first one wins
+			value = loader.call();
+			Object previous = values.putIfAbsent(key, value);
+			if (previous != null) {
+				value = previous;
+			}
+		}
+		return (V) value;
+	}
+
+	/**
+	 * Same as {@link #get(Iterable, Object, Callable)}, for values that also
+	 * depend on the server and query the batch was collected for.
+	 */
+	@Nonnull
+	public static <V> V get(
+			@Nonnull Server server,
+			@Nonnull Query query,
+			@Nonnull Iterable<Result> batch,
+			@Nonnull Object key,
+			@Nonnull Callable<? extends V> loader) throws Exception {
+		return get(batch, new QueryKey(server, query, key), loader);
+	}
+
+	/** Transforms the values of a batch, once for all the writers using an equal transformer. */
+	@Nonnull
+	public static ImmutableList<Result> transform(@Nonnull final Iterable<Result> batch, @Nonnull final ResultValuesTransformer transformer) throws Exception {
+		return get(batch, transformer, new Callable<ImmutableList<Result>>() {
+			@Override
+			public ImmutableList<Result> call() {
+				return from(batch).transform(transformer).toList();
+			}
+		});
+	}
+
+	@ThreadSafe
+	private static final class SharedBatch extends ForwardingObject implements Iterable<Result> {
+		@Nonnull private final Iterable<Result> batch;
+		@Nullable private volatile ConcurrentMap<Object, Object> values;
+
+		private SharedBatch(@Nonnull Iterable<Result> batch) {
+			this.batch = batch;
+		}
+
+		/** Created on first use, most writers do not derive anything from the batch. */
+		private ConcurrentMap<Object, Object> values() {
+			ConcurrentMap<Object, Object> values = this.values;
+			if (values == null) {
+				synchronized (this) {
+					values = this.values;
+					if (values == null) {
+						values = new ConcurrentHashMap<>(4);
+						this.values = values;
+					}
+				}
+			}
+			return values;
+		}
+
+		@Override
+		protected Iterable<Result> delegate() {
+			return batch;
+		}
+
+		@Override
+		public Iterator<Result> iterator() {
+			return batch.iterator();
+		}
+	}
+
+	/** Servers and queries are compared by identity, they are the same objects for the whole batch. */
+	private static final class QueryKey {
+		private final Server server;
+		private final Query query;
+		private final Object key;
+
+		private QueryKey(Server server, Query query, Object key) {
+			this.server = server;
+			this.query = query;
+			this.key = key;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof QueryKey)) return false;
+			QueryKey other = (QueryKey) o;
+			return server == other.server && query == other.query && key.equals(other.key);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * System.identityHashCode(server) + System.identityHashCode(query)) + key.hashCode();
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.Result;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static com.google.common.base.Charsets.UTF_8;
+
+/**
+ * A batch of results as stored in a {@link SegmentedSpool}: the time it was
+ * spooled, the server and query it was collected for, and the results.
+ */
+final class SpooledBatch {
+
+	private static final byte VERSION = 1;
+
+	private static final byte NULL = 0;
+	private static final byte LONG = 1;
+	private static final byte INTEGER = 2;
+	private static final byte DOUBLE = 3;
+	private static final byte FLOAT = 4;
+	private static final byte BOOLEAN = 5;
+	private static final byte STRING = 6;
+
+	final long spooledAt;
+	@Nonnull final String destination;
+	@Nonnull final ImmutableList<Result> results;
+
+	private SpooledBatch(long spooledAt, @Nonnull String destination, @Nonnull ImmutableList<Result> results) {
+		this.spooledAt = spooledAt;
+		this.destination = destination;
+		this.results = results;
+	}
+
+	static byte[] encode(long spooledAt, @Nonnull String destination, @Nonnull Iterable<Result> results) throws IOException {
+		ImmutableList<Result> list = ImmutableList.copyOf(results);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 128 * list.size());
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeLong(spooledAt);
+		out.writeByte(VERSION);
+		writeString(out, destination);
+		out.writeInt(list.size());
+		for (Result result : list) {
+			out.writeLong(result.getEpoch());
+			writeString(out, result.getAttributeName());
+			writeString(out, result.getClassName());
+			writeString(out, result.getObjDomain());
+			writeString(out, result.getKeyAlias());
+			writeString(out, result.getTypeName());
+			ImmutableList<String> valuePath = result.getValuePath();
+			out.writeInt(valuePath.size());
+			for (String element : valuePath) {
+				writeString(out, element);
+			}
+			writeValue(out, result.getValue());
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/** Reads only the time a record was spooled. */
+	static long spooledAt(@Nonnull byte[] record) {
+		return ByteBuffer.wrap(record).getLong(0);
+	}
+
+	static SpooledBatch decode(@Nonnull byte[] record) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		long spooledAt = in.readLong();
+		byte version = in.readByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported spool record version " + version);
+		}
+		String destination = readString(in);
+		int size = in.readInt();
+		ImmutableList.Builder<Result> results = ImmutableList.builder();
+		for (int i = 0; i < size; i++) {
+			long epoch = in.readLong();
+			String attributeName = readString(in);
+			String className = readString(in);
+			String objDomain = readString(in);
+			String keyAlias = readString(in);
+			String typeName = readString(in);
+			int pathSize = in.readInt();
+			ImmutableList.Builder<String> valuePath = ImmutableList.builder();
+			for (int j = 0; j < pathSize; j++) {
+				valuePath.add(readString(in));
+			}
+			Object value = readValue(in);
+			results.add(new Result(epoch, attributeName, className, objDomain, keyAlias, typeName, valuePath.build(), value));
+		}
+		return new SpooledBatch(spooledAt, destination, results.build());
+	}
+
+	private static void writeString(DataOutputStream out, @Nullable String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	@Nullable
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	/** Numbers and booleans keep their type, other values are stored as strings. */
+	private static void writeValue(DataOutputStream out, @Nullable Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		} else if (value instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			out.writeByte(INTEGER);
+			out.writeInt(((Number) value).intValue());
+		} else if (value instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Float) {
+			out.writeByte(FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else {
+			out.writeByte(STRING);
+			writeString(out, value.toString());
+		}
+	}
+
+	@Nullable
+	private static Object readValue(DataInputStream in) throws IOException {
+		byte type = in.readByte();
+		switch (type) {
+			case NULL:
+				return null;
+			case LONG:
+				return in.readLong();
+			case INTEGER:
+				return in.readInt();
+			case DOUBLE:
+				return in.readDouble();
+			case FLOAT:
+				return in.readFloat();
+			case BOOLEAN:
+				return in.readBoolean();
+			case STRING:
+				return readString(in);
+			default:
+				throw new IOException("Unknown value type " + type);
+		}
+	}
+}
@@ -0,0 +1,342 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.googlecode.jmxtrans.exceptions.LifecycleException;
+import com.googlecode.jmxtrans.executors.ExecutorFactory;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.ValidationException;
+import com.googlecode.jmxtrans.monitoring.OutputWriterSpoolMXBean;
+import lombok.ToString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Keeps the results an output writer could not write on disk, and writes them
+ * again once the sink is back.
+ *
+ * A write failing with an exception is appended to a {@link SegmentedSpool}.
+ * A background thread replays the spool, oldest batch first, at a bounded
+ * number of results per second. A replay stops at the first failure and is
+ * tried again after the replay interval. The depth and lag of the spool are
+ * exported as an MBean.
+ *
+ * Spooled batches only reference the server and query they were collected
+ * for. They are replayed to the server and query last seen with the same
+ * identity, and dropped if none is seen for a while, for example after a
+ * configuration change.
+ */
+@ThreadSafe
+@ToString(of = {"target", "spoolDirectory"})
+public class SpoolingOutputWriter<T extends OutputWriter> implements OutputWriter, OutputWriterSpoolMXBean {
+
+	private static final Logger log = LoggerFactory.getLogger(SpoolingOutputWriter.class);
+
+	/** How long batches of servers and queries not seen yet are kept at the head of the spool. */
+	private static final long UNKNOWN_DESTINATION_GRACE_MILLIS = MINUTES.toMillis(5);
+
+	@Nonnull private final T target;
+	@Nonnull private final File spoolDirectory;
+	private final int segmentBytes;
+	private final long maxSpoolBytes;
+	private final long replayIntervalMillis;
+	@Nonnull private final RateLimiter replayRateLimiter;
+
+	private final Object lifecycleLock = new Object();
+	@Nullable private volatile SegmentedSpool spool;
+	@Nullable private volatile ScheduledExecutorService replayExecutor;
+	@Nullable private volatile ObjectName objectName;
+	private volatile long startedAt;
+
+	private final ConcurrentMap<String, Destination> destinations = new ConcurrentHashMap<>();
+	private final AtomicLong spooledBatches = new AtomicLong();
+	private final AtomicLong replayedBatches = new AtomicLong();
+	private final AtomicLong droppedBatches = new AtomicLong();
+
+	public SpoolingOutputWriter(
+			@Nonnull T target,
+			@Nonnull File spoolDirectory,
+			int segmentBytes,
+			long maxSpoolBytes,
+			double replayResultsPerSecond,
+			long replayIntervalMillis) {
+		this.target = target;
+		this.spoolDirectory = spoolDirectory;
+		this.segmentBytes = segmentBytes;
+		this.maxSpoolBytes = maxSpoolBytes;
+		this.replayIntervalMillis = replayIntervalMillis;
+		this.replayRateLimiter = RateLimiter.create(replayResultsPerSecond);
+	}
+
+	/**
+	 * Opens the spool, starts its replay and exports it. Equal writers of a
+	 * configuration share one instance, started once per query using it, so
+	 * only the first start does so.
+	 */
+	@Override
+	public void start() throws LifecycleException {
+		synchronized (lifecycleLock) {
+			if (spool == null) {
+				final SegmentedSpool spool;
+				try {
+					spool = new SegmentedSpool(spoolDirectory, segmentBytes, maxSpoolBytes);
+				} catch (IOException e) {
+					throw new LifecycleException("Could not open spool " + spoolDirectory, e);
+				}
+				startedAt = System.currentTimeMillis();
+				objectName = OutputWriterMBeans.register(this, "OutputWriterSpool", spoolDirectory.getPath());
+				replayExecutor = Executors.newSingleThreadScheduledExecutor(
+						ExecutorFactory.threadFactory("spool-" + target.getClass().getSimpleName()));
+				replayExecutor.scheduleWithFixedDelay(new Runnable() {
+					@Override
+					public void run() {
+						replay(spool);
+					}
+				}, replayIntervalMillis, replayIntervalMillis, MILLISECONDS);
+				this.spool = spool;
+			}
+		}
+		target.start();
+	}
+
+	@Override
+	public void doWrite(Server server, Query query, Iterable<Result> results) throws Exception {
+		SegmentedSpool spool = this.spool;
+		if (spool == null) {
+			throw new IllegalStateException("Output writer " + target + " is not running");
+		}
+		String destination = destination(server, query);
+		destinations.put(destination, new Destination(server, query));
+		try {
+			target.doWrite(server, query, results);
+		} catch (Exception e) {
+			log.warn("Could not write results of query {} to output writer {}, spooling them", query, target, e);
+			spool(spool, destination, results);
+		}
+	}
+
+	private void spool(SegmentedSpool spool, String destination, Iterable<Result> results) {
+		try {
+			if (spool.append(SpooledBatch.encode(System.currentTimeMillis(), destination, results))) {
+				spooledBatches.incrementAndGet();
+			} else {
+				droppedBatches.incrementAndGet();
+				log.warn("Dropped results {}, they do not fit in a spool segment", results);
+			}
+		} catch (IOException e) {
+			droppedBatches.incrementAndGet();
+			log.error("Could not spool results {}", results, e);
+		}
+	}
+
+	private static String destination(Server server, Query query) {
+		return server.getId() + '\n' + query;
+	}
+
+	/** Writes spooled batches until the spool is empty or a write fails. */
+	private void replay(SegmentedSpool spool) {
+		try {
+			SegmentedSpool.Record record;
+			while (!Thread.currentThread().isInterrupted() && (record = spool.peek()) != null) {
+				SpooledBatch batch;
+				try {
+					batch = SpooledBatch.decode(record.getBytes());
+				} catch (IOException e) {
+					log.error("Dropping unreadable spooled batch", e);
+					dropHead(spool, record);
+					continue;
+				}
+				Destination destination = destinations.get(batch.destination);
+				if (destination == null) {
+					if (System.currentTimeMillis() - startedAt < UNKNOWN_DESTINATION_GRACE_MILLIS) {
+						return;
+					}
+					log.warn("Dropping spooled results {}, their query is not run anymore", batch.results);
+					dropHead(spool, record);
+					continue;
+				}
+				replayRateLimiter.acquire(Math.max(1, batch.results.size()));
+				try {
+					target.doWrite(destination.server, destination.query, batch.results);
+				} catch (Exception e) {
+					log.debug("Output writer {} is still failing, {} batches left in spool", target, spool.getRecords(), e);
+					return;
+				}
+				// the batch may have been dropped with a full spool while it was written
+				spool.remove(record);
+				replayedBatches.incrementAndGet();
+			}
+		} catch (IOException | RuntimeException e) {
+			log.error("Could not replay spool {}", spoolDirectory, e);
+		}
+	}
+
+	private void dropHead(SegmentedSpool spool, SegmentedSpool.Record record) throws IOException {
+		if (spool.remove(record)) {
+			droppedBatches.incrementAndGet();
+		}
+	}
+
+	@Override
+	public void close() throws LifecycleException {
+		SegmentedSpool spool;
+		ScheduledExecutorService replayExecutor;
+		synchronized (lifecycleLock) {
+			spool = this.spool;
+			replayExecutor = this.replayExecutor;
+			this.spool = null;
+			this.replayExecutor = null;
+		}
+		if (spool != null) {
+			replayExecutor.shutdownNow();
+			try {
+				if (!replayExecutor.awaitTermination(10, SECONDS)) {
+					log.warn("Replay of spool {} did not stop in time", spoolDirectory);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			try {
+				spool.close();
+			} catch (IOException e) {
+				log.error("Could not close spool {}", spoolDirectory, e);
+			}
+			OutputWriterMBeans.unregister(objectName);
+		}
+		target.close();
+	}
+
+	@Override
+	@Deprecated
+	public Map<String, Object> getSettings() {
+		return target.getSettings();
+	}
+
+	@Override
+	public void validateSetup(Server server, Query query) throws ValidationException {
+		target.validateSetup(server, query);
+	}
+
+	@Override
+	public String getOutputWriter() {
+		return target.toString();
+	}
+
+	@Override
+	public String getSpoolDirectory() {
+		return spoolDirectory.getPath();
+	}
+
+	@Override
+	public long getSpoolDepth() {
+		SegmentedSpool spool = this.spool;
+		return spool == null ? 0 : spool.getRecords();
+	}
+
+	@Override
+	public long getSpoolBytes() {
+		SegmentedSpool spool = this.spool;
+		return spool == null ? 0 : spool.getBytes();
+	}
+
+	@Override
+	public int getSpoolSegments() {
+		SegmentedSpool spool = this.spool;
+		return spool == null ? 0 : spool.getSegments();
+	}
+
+	/** Age of the oldest spooled batch, 0 when the spool is empty. */
+	@Override
+	public long getLagMillis() {
+		SegmentedSpool spool = this.spool;
+		if (spool == null) {
+			return 0;
+		}
+		try {
+			SegmentedSpool.Record oldest = spool.peek();
+			return oldest == null ? 0 : System.currentTimeMillis() - SpooledBatch.spooledAt(oldest.getBytes());
+		} catch (IOException e) {
+			log.debug("Could not read spool {}", spoolDirectory, e);
+			return -1;
+		}
+	}
+
+	@Override
+	public long getSpooledBatches() {
+		return spooledBatches.get();
+	}
+
+	@Override
+	public long getReplayedBatches() {
+		return replayedBatches.get();
+	}
+
+	@Override
+	public long getDroppedBatches() {
+		SegmentedSpool spool = this.spool;
+		return droppedBatches.get() + (spool == null ? 0 : spool.getDroppedRecords());
+	}
+
+	/** @return the name of the MBean of the spool, null until the writer is started */
+	@Override
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+
+	@Nonnull
+	public T getTarget() {
+		return target;
+	}
+
+
+	private static final class Destination {
+		private final Server server;
+		private final Query query;
+
+		private Destination(Server server, Query query) {
+			this.server = server;
+			this.query = query;
+		}
+	}
+}
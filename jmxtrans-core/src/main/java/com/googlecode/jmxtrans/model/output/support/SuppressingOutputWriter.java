@@ -0,0 +1,279 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.googlecode.jmxtrans.exceptions.LifecycleException;
+import com.googlecode.jmxtrans.model.AsyncOutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.ValidationException;
+import com.googlecode.jmxtrans.model.results.MetricIds;
+import com.googlecode.jmxtrans.monitoring.OutputWriterSuppressionMXBean;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.ObjectName;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes only the results whose value changed since it was last written.
+ *
+ * A fingerprint of the last value written is kept for each metric, by server
+ * and result key. A result with the same value is suppressed, unless its
+ * metric was already suppressed for refreshCycles - 1 cycles: every metric is
+ * written at least once every refreshCycles polls, so that sinks relying on
+ * regular points still see it. The numbers of written and suppressed results
+ * are exported as an MBean.
+ *
+ * Values written to a target which then fails are written again on the next
+ * cycle, whether they changed or not. Writes are passed asynchronously to a
+ * target which is an {@link AsyncOutputWriter}.
+ */
+@ThreadSafe
+@ToString(of = {"target", "refreshCycles"})
+public class SuppressingOutputWriter<T extends OutputWriter> implements AsyncOutputWriter, OutputWriterSuppressionMXBean {
+
+	private static final AtomicInteger instances = new AtomicInteger();
+
+	@Nonnull private final T target;
+	private final int refreshCycles;
+
+	private final Object lifecycleLock = new Object();
+	@GuardedBy("lifecycleLock") private boolean started;
+	@Nullable private volatile ObjectName objectName;
+
+	@GuardedBy("fingerprints") private final FingerprintTable fingerprints = new FingerprintTable();
+	private final AtomicLong writtenResults = new AtomicLong();
+	private final AtomicLong suppressedResults = new AtomicLong();
+
+	public SuppressingOutputWriter(@Nonnull T target, int refreshCycles) {
+		this.target = target;
+		this.refreshCycles = refreshCycles;
+	}
+
+	/**
+	 * Exports the suppression counts. Equal writers of a configuration share
+	 * one instance, started once per query using it, so only the first start
+	 * does so.
+	 */
+	@Override
+	public void start() throws LifecycleException {
+		synchronized (lifecycleLock) {
+			if (!started) {
+				objectName = OutputWriterMBeans.register(this, "OutputWriterSuppression",
+						target.getClass().getSimpleName() + "-" + instances.incrementAndGet());
+				started = true;
+			}
+		}
+		target.start();
+	}
+
+	@Override
+	public void doWrite(Server server, Query query, Iterable<Result> results) throws Exception {
+		Changes changes = changes(server, results);
+		if (changes == null) {
+			return;
+		}
+		try {
+			target.doWrite(server, query, changes.results);
+			writtenResults.addAndGet(changes.count);
+		} catch (Exception e) {
+			expire(changes);
+			throw e;
+		}
+	}
+
+	@Override
+	public ListenableFuture<?> doWriteAsync(Server server, Query query, Iterable<Result> results) throws Exception {
+		final Changes changes = changes(server, results);
+		if (changes == null) {
+			return Futures.immediateFuture(null);
+		}
+		ListenableFuture<?> write;
+		try {
+			write = AsyncWrites.write(target, server, query, changes.results);
+		} catch (Exception e) {
+			expire(changes);
+			throw e;
+		}
+		Futures.addCallback(write, new FutureCallback<Object>() {
+			@Override
+			public void onSuccess(Object result) {
+				writtenResults.addAndGet(changes.count);
+			}
+
+			@Override
+			public void onFailure(@Nonnull Throwable t) {
+				expire(changes);
+			}
+		});
+		return write;
+	}
+
+	/** @return the results whose value changed, or null if all are suppressed */
+	@Nullable
+	private Changes changes(Server server, Iterable<Result> results) {
+		long scope = MetricIds.scope(server);
+		ImmutableList.Builder<Result> changed = ImmutableList.builder();
+		long[] ids = new long[16];
+		int written = 0;
+		int suppressed = 0;
+		synchronized (fingerprints) {
+			for (Result result : results) {
+				long id = MetricIds.of(scope, result);
+				if (fingerprints.changed(id, fingerprint(result.getValue()), result.getEpoch(), refreshCycles)) {
+					if (written == ids.length) {
+						ids = Arrays.copyOf(ids, written * 2);
+					}
+					ids[written++] = id;
+					changed.add(result);
+				} else {
+					suppressed++;
+				}
+			}
+		}
+		suppressedResults.addAndGet(suppressed);
+		return written == 0 ? null : new Changes(changed.build(), ids, written);
+	}
+
+	/** Forgets the values of a failed write, so that they are written again. */
+	private void expire(Changes changes) {
+		synchronized (fingerprints) {
+			for (int i = 0; i < changes.count; i++) {
+				fingerprints.expire(changes.ids[i]);
+			}
+		}
+	}
+
+	/**
+	 * Integral values are compared exactly, other numbers by their bits as
+	 * doubles, and any other value by a hash of its string representation.
+	 */
+	@VisibleForTesting
+	static long fingerprint(@Nullable Object value) {
+		if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return ((Number) value).longValue();
+		}
+		if (value instanceof Number) {
+			return Double.doubleToLongBits(((Number) value).doubleValue());
+		}
+		if (value == null) {
+			return 0;
+		}
+		return MetricIds.hash(0, value.toString());
+	}
+
+	@Override
+	public void close() throws LifecycleException {
+		synchronized (lifecycleLock) {
+			if (started) {
+				OutputWriterMBeans.unregister(objectName);
+				started = false;
+			}
+		}
+		target.close();
+	}
+
+	@Override
+	@Deprecated
+	public Map<String, Object> getSettings() {
+		return target.getSettings();
+	}
+
+	@Override
+	public void validateSetup(Server server, Query query) throws ValidationException {
+		target.validateSetup(server, query);
+	}
+
+	@Override
+	public String getOutputWriter() {
+		return target.toString();
+	}
+
+	@Override
+	public int getRefreshCycles() {
+		return refreshCycles;
+	}
+
+	@Override
+	public int getTrackedMetrics() {
+		synchronized (fingerprints) {
+			return fingerprints.size();
+		}
+	}
+
+	@Override
+	public long getWrittenResults() {
+		return writtenResults.get();
+	}
+
+	@Override
+	public long getSuppressedResults() {
+		return suppressedResults.get();
+	}
+
+	/** @return the share of the results which were suppressed, 0 before any write */
+	@Override
+	public double getSuppressionRatio() {
+		long suppressed = suppressedResults.get();
+		long total = suppressed + writtenResults.get();
+		return total == 0 ? 0 : (double) suppressed / total;
+	}
+
+	/** @return the name of the MBean of the suppression counts, null until the writer is started */
+	@Override
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+
+	@Nonnull
+	public T getTarget() {
+		return target;
+	}
+
+	/** Results of a write whose value changed, with their metric ids. */
+	private static final class Changes {
+		@Nonnull private final ImmutableList<Result> results;
+		@Nonnull private final long[] ids;
+		private final int count;
+
+		private Changes(@Nonnull ImmutableList<Result> results, @Nonnull long[] ids, int count) {
+			this.results = results;
+			this.ids = ids;
+			this.count = count;
+		}
+	}
+}
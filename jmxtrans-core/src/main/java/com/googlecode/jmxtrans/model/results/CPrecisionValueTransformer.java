@@ -22,9 +22,12 @@
  */
 package com.googlecode.jmxtrans.model.results;
 
+import lombok.EqualsAndHashCode;
+
 import javax.annotation.Nullable;
 import java.math.BigDecimal;
 
+@EqualsAndHashCode
 public class CPrecisionValueTransformer implements ValueTransformer {
 
 	private static final BigDecimal C_PRECISION = new BigDecimal("1E-308");
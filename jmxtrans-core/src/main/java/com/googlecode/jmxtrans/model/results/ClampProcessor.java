@@ -0,0 +1,87 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.googlecode.jmxtrans.model.results.ScaleProcessor.isIntegral;
+
+/**
+ * Brings numeric values back within [min, max], either bound being optional.
+ * When a part and a pattern are given, only the matching results are clamped.
+ */
+@Immutable
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper = true)
+public class ClampProcessor extends KeyPartProcessor {
+
+	@Nullable @Getter private final Double min;
+	@Nullable @Getter private final Double max;
+
+	@JsonCreator
+	public ClampProcessor(
+			@JsonProperty("part") KeyPart part,
+			@JsonProperty("pattern") String pattern,
+			@JsonProperty("min") Double min,
+			@JsonProperty("max") Double max) {
+		super(part, pattern);
+		checkArgument(min != null || max != null, "min or max must be given");
+		checkArgument(min == null || max == null || min <= max, "min cannot be greater than max");
+		this.min = min;
+		this.max = max;
+	}
+
+	public ClampProcessor(@Nullable Double min, @Nullable Double max) {
+		this(null, null, min, max);
+	}
+
+	@Override
+	boolean process(@Nonnull ResultDraft result) {
+		if (result.value instanceof Number && applies(result)) {
+			Number value = (Number) result.value;
+			double current = value.doubleValue();
+			if (min != null && current < min) {
+				result.setValue(bound(value, min));
+			} else if (max != null && current > max) {
+				result.setValue(bound(value, max));
+			}
+		}
+		return true;
+	}
+
+	private static Number bound(Number value, double bound) {
+		if (isIntegral(value) && bound == Math.rint(bound)) {
+			return (long) bound;
+		}
+		return bound;
+	}
+}
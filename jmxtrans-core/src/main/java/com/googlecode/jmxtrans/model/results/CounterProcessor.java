@@ -0,0 +1,116 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Turns monotonically increasing counters, such as {@code CollectionCount},
+ * into the change since the previous result of the same counter. The first
+ * result of a counter only sets its baseline and is dropped, as are results
+ * showing that the counter was reset. Counters of 32 or 64 bits that wrap
+ * around, going from their maximum to their minimum value, are handled.
+ * Without part and pattern, all numeric results are derived.
+ * <p>
+ * Counters are kept as doubles, so that differences are exact as long as
+ * counters stay below 2^53.
+ */
+@ThreadSafe
+@EqualsAndHashCode(callSuper = true, exclude = "counters")
+@ToString(callSuper = true, exclude = "counters")
+public abstract class CounterProcessor extends KeyPartProcessor {
+
+	private static final double INT_RANGE = Math.pow(2, 32);
+	private static final double LONG_RANGE = Math.pow(2, 64);
+
+	@GuardedBy("counters")
+	private final CounterTable counters = new CounterTable();
+
+	CounterProcessor(@Nullable KeyPart part, @Nullable String pattern) {
+		super(part, pattern);
+	}
+
+	@Override
+	boolean isStateful() {
+		return true;
+	}
+
+	@Override
+	boolean process(@Nonnull ResultDraft result) {
+		if (!(result.value instanceof Number) || !applies(result)) {
+			return true;
+		}
+		Number value = (Number) result.value;
+		double current = value.doubleValue();
+		long epoch = result.getEpoch();
+		long id = result.metricId();
+
+		double previous;
+		long previousEpoch;
+		synchronized (counters) {
+			int slot = counters.slot(id, epoch);
+			previous = counters.value(slot);
+			previousEpoch = counters.epoch(slot);
+			if (previousEpoch != CounterTable.NO_EPOCH && epoch <= previousEpoch) {
+				// same or older result than the one already seen
+				return false;
+			}
+			counters.update(slot, current, epoch);
+		}
+		if (previousEpoch == CounterTable.NO_EPOCH) {
+			return false;
+		}
+
+		double delta = current - previous;
+		if (delta < 0) {
+			if (value instanceof Integer && previous >= 0 && current < 0) {
+				delta += INT_RANGE;
+			} else if (value instanceof Long && previous >= 0 && current < 0) {
+				delta += LONG_RANGE;
+			} else {
+				return false;
+			}
+		}
+		result.setValue(derive(value, delta, epoch - previousEpoch));
+		return true;
+	}
+
+	/**
+	 * @param delta         positive change of the counter
+	 * @param intervalMillis time between the two results, always positive
+	 */
+	@Nonnull
+	abstract Object derive(@Nonnull Number current, double delta, long intervalMillis);
+
+	int trackedCounters() {
+		synchronized (counters) {
+			return counters.size();
+		}
+	}
+}
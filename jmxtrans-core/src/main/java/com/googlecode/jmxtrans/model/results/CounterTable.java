@@ -0,0 +1,64 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Last value and time of the counters followed by a {@link CounterProcessor},
+ * by metric id. A counter costs between 32 and 64 bytes.
+ */
+@NotThreadSafe
+final class CounterTable extends MetricTable {
+
+	private double[] values = new double[capacity()];
+
+	/**
+	 * @return the slot of the counter, created with {@link #NO_EPOCH} when it
+	 * was not followed yet
+	 */
+	int slot(long id, long now) {
+		int slot = lookup(id);
+		return slot >= 0 ? slot : insert(id, now);
+	}
+
+	double value(int slot) {
+		return values[slot];
+	}
+
+	void update(int slot, double value, long epoch) {
+		values[slot] = value;
+		epoch(slot, epoch);
+	}
+
+	@Override
+	protected void relocate(int capacity, int[] slots) {
+		double[] oldValues = values;
+		values = new double[capacity];
+		for (int i = 0; i < slots.length; i++) {
+			if (slots[i] >= 0) {
+				values[slots[i]] = oldValues[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import javax.annotation.Nullable;
+import java.util.Locale;
+
+/**
+ * The parts of a {@link com.googlecode.jmxtrans.model.Result} key that
+ * processors can match and rename. In configurations, parts are named after
+ * the result properties: {@code attributeName}, {@code className},
+ * {@code objDomain}, {@code keyAlias}, {@code typeName} and
+ * {@code valuePath} (path elements joined by dots).
+ */
+public enum KeyPart {
+	ATTRIBUTE_NAME("attributeName") {
+		@Override
+		String get(ResultDraft result) {
+			return result.attributeName;
+		}
+
+		@Override
+		void set(ResultDraft result, String value) {
+			result.attributeName = value;
+			result.changed();
+		}
+	},
+	CLASS_NAME("className") {
+		@Override
+		String get(ResultDraft result) {
+			return result.className;
+		}
+
+		@Override
+		void set(ResultDraft result, String value) {
+			result.className = value;
+			result.changed();
+		}
+	},
+	OBJ_DOMAIN("objDomain") {
+		@Override
+		String get(ResultDraft result) {
+			return result.objDomain;
+		}
+
+		@Override
+		void set(ResultDraft result, String value) {
+			result.objDomain = value;
+			result.changed();
+		}
+	},
+	KEY_ALIAS("keyAlias") {
+		@Override
+		String get(ResultDraft result) {
+			return result.keyAlias;
+		}
+
+		@Override
+		void set(ResultDraft result, String value) {
+			result.keyAlias = value;
+			result.changed();
+		}
+	},
+	TYPE_NAME("typeName") {
+		@Override
+		String get(ResultDraft result) {
+			return result.typeName;
+		}
+
+		@Override
+		void set(ResultDraft result, String value) {
+			result.typeName = value;
+			result.changed();
+		}
+	},
+	VALUE_PATH("valuePath") {
+		@Override
+		String get(ResultDraft result) {
+			return result.getValuePath();
+		}
+
+		@Override
+		void set(ResultDraft result, String value) {
+			result.setValuePath(value);
+		}
+	};
+
+	private final String propertyName;
+
+	KeyPart(String propertyName) {
+		this.propertyName = propertyName;
+	}
+
+	@JsonValue
+	public String getPropertyName() {
+		return propertyName;
+	}
+
+	@Nullable
+	abstract String get(ResultDraft result);
+
+	abstract void set(ResultDraft result, @Nullable String value);
+
+	@JsonCreator
+	public static KeyPart fromPropertyName(String name) {
+		for (KeyPart part : values()) {
+			if (part.propertyName.equalsIgnoreCase(name)) {
+				return part;
+			}
+		}
+		return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableSet;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Predicates.in;
+import static com.google.common.base.Strings.nullToEmpty;
+
+/**
+ * Processor selecting the results it applies to with a regular expression,
+ * which has to match the whole of a part of their key. Patterns that are only
+ * literals, alternatives of literals or literals surrounded by {@code .*} are
+ * compiled to plain string comparisons, which are much cheaper than running
+ * the regular expression.
+ */
+@EqualsAndHashCode(callSuper = false, exclude = {"compiledPattern", "literalMatch"})
+@ToString(exclude = {"compiledPattern", "literalMatch"})
+public abstract class KeyPartProcessor extends Processor {
+
+	private static final String ANY = ".*";
+	private static final CharMatcher REGEX_SPECIAL_CHARACTERS = CharMatcher.anyOf("\\^$.?*+()[]{}");
+
+	@Nullable @Getter private final KeyPart part;
+	@Nullable @Getter private final String pattern;
+	@Nullable private final Pattern compiledPattern;
+	@Nullable private final Predicate<String> literalMatch;
+
+	KeyPartProcessor(@Nullable KeyPart part, @Nullable String pattern) {
+		checkArgument((part == null) == (pattern == null), "part and pattern must be given together");
+		this.part = part;
+		this.pattern = pattern;
+		this.compiledPattern = pattern == null ? null : Pattern.compile(pattern);
+		this.literalMatch = pattern == null ? null : literalMatch(pattern);
+	}
+
+	/** @return true when this processor has no pattern or when its pattern matches the result */
+	boolean applies(@Nonnull ResultDraft result) {
+		if (compiledPattern == null) {
+			return true;
+		}
+		if (literalMatch != null) {
+			return literalMatch.apply(nullToEmpty(part.get(result)));
+		}
+		return matcher(result) != null;
+	}
+
+	/** @return a matcher of the part of the result, or null when it does not match */
+	@Nullable
+	Matcher matcher(@Nonnull ResultDraft result) {
+		Matcher matcher = compiledPattern.matcher(nullToEmpty(part.get(result)));
+		return matcher.matches() ? matcher : null;
+	}
+
+	int groupCount() {
+		return compiledPattern == null ? 0 : compiledPattern.matcher("").groupCount();
+	}
+
+	@Nullable
+	private static Predicate<String> literalMatch(String pattern) {
+		if (isLiteral(pattern)) {
+			return in(ImmutableSet.copyOf(pattern.split("\\|", -1)));
+		}
+		boolean anyPrefix = pattern.startsWith(ANY);
+		boolean anySuffix = pattern.endsWith(ANY) && pattern.length() >= 2 * ANY.length();
+		final String literal = pattern.substring(anyPrefix ? ANY.length() : 0, pattern.length() - (anySuffix ? ANY.length() : 0));
+		if ((!anyPrefix && !anySuffix) || !isLiteral(literal) || literal.indexOf('|') >= 0) {
+			return null;
+		}
+		if (anyPrefix && anySuffix) {
+			return new Predicate<String>() {
+				@Override
+				public boolean apply(@Nullable String input) {
+					return input.contains(literal);
+				}
+			};
+		}
+		if (anyPrefix) {
+			return new Predicate<String>() {
+				@Override
+				public boolean apply(@Nullable String input) {
+					return input.endsWith(literal);
+				}
+			};
+		}
+		return new Predicate<String>() {
+			@Override
+			public boolean apply(@Nullable String input) {
+				return input.startsWith(literal);
+			}
+		};
+	}
+
+	/** @return true when the pattern has no special character, except for alternatives */
+	private static boolean isLiteral(String pattern) {
+		return REGEX_SPECIAL_CHARACTERS.matchesNoneOf(pattern);
+	}
+}
@@ -0,0 +1,103 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * 64 bits ids of metrics, hashing the server they come from and the key of
+ * their results with the FNV-1a function. Unlike {@link String#hashCode()},
+ * it does not make keys as close as "Aa" and "BB" collide, so that tables of
+ * per metric state can be keyed by the id alone.
+ */
+public final class MetricIds {
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private MetricIds() {}
+
+	/** @return the id of the server in metric ids, 0 for results of no specific server */
+	public static long scope(@Nullable Server server) {
+		if (server == null) {
+			return 0;
+		}
+		return hash(hash(FNV_OFFSET_BASIS ^ server.hashCode(), server.getUrl()), server.getAlias());
+	}
+
+	/** @return the id of the metric of the result, for the given {@link #scope(Server)} */
+	public static long of(long scope, @Nonnull Result result) {
+		long hash = keyHash(scope, result.getClassName(), result.getObjDomain(), result.getTypeName(),
+				result.getAttributeName(), result.getKeyAlias());
+		List<String> valuePath = result.getValuePath();
+		if (valuePath != null) {
+			// same as hashing the joined path, without joining it
+			for (int i = 0; i < valuePath.size(); i++) {
+				if (i > 0) {
+					hash = (hash ^ '.') * FNV_PRIME;
+				}
+				hash = chars(hash, valuePath.get(i));
+			}
+		}
+		return end(hash);
+	}
+
+	static long of(long scope, String className, String objDomain, String typeName,
+			String attributeName, String keyAlias, String valuePath) {
+		return hash(keyHash(scope, className, objDomain, typeName, attributeName, keyAlias), valuePath);
+	}
+
+	private static long keyHash(long scope, String className, String objDomain, String typeName,
+			String attributeName, String keyAlias) {
+		long hash = FNV_OFFSET_BASIS ^ scope;
+		hash = hash(hash, className);
+		hash = hash(hash, objDomain);
+		hash = hash(hash, typeName);
+		hash = hash(hash, attributeName);
+		return hash(hash, keyAlias);
+	}
+
+	/** @return the given hash, continued with the characters of the value */
+	public static long hash(long hash, @Nullable String value) {
+		return end(chars(hash, value));
+	}
+
+	private static long chars(long hash, @Nullable String value) {
+		if (value != null) {
+			for (int i = 0; i < value.length(); i++) {
+				hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+			}
+		}
+		return hash;
+	}
+
+	// separator, so that moving characters from one part to the next changes the hash
+	private static long end(long hash) {
+		return (hash ^ 0xffff) * FNV_PRIME;
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+
+/**
+ * Slots of metrics by id, for tables keeping what they track about each metric
+ * in parallel primitive arrays. Ids are placed with open addressing, so that
+ * no object is allocated per metric or per lookup. Metrics not seen for an
+ * hour are forgotten when the table has to grow.
+ *
+ * Subclasses index their arrays by slot, and move their values to new arrays
+ * in {@link #relocate(int, int[])} when the table is rebuilt.
+ */
+@NotThreadSafe
+public abstract class MetricTable {
+
+	public static final long STALE_MILLIS = HOURS.toMillis(1);
+	/** Epoch of entries that were just inserted and were not seen yet. */
+	public static final long NO_EPOCH = Long.MIN_VALUE;
+	private static final int MIN_CAPACITY = 16;
+	private static final long EMPTY = 0;
+
+	private long[] ids = new long[MIN_CAPACITY];
+	private long[] epochs = new long[MIN_CAPACITY];
+	private int size;
+
+	/** @return the slot of the metric, or -1 if it is not in the table */
+	protected final int lookup(long id) {
+		id = id == EMPTY ? 1 : id;
+		int slot = find(ids, id);
+		return ids[slot] == id ? slot : -1;
+	}
+
+	/**
+	 * Adds a metric which is not in the table, first forgetting the metrics
+	 * last seen before now - {@link #STALE_MILLIS} if the table has to grow.
+	 *
+	 * @return the slot of the metric, with {@link #NO_EPOCH} as its epoch
+	 */
+	protected final int insert(long id, long now) {
+		id = id == EMPTY ? 1 : id;
+		if ((size + 1) * 4 > ids.length * 3) {
+			rebuild(now - STALE_MILLIS);
+		}
+		int slot = find(ids, id);
+		ids[slot] = id;
+		epochs[slot] = NO_EPOCH;
+		size++;
+		return slot;
+	}
+
+	/** @return when the metric of the slot was last seen */
+	protected final long epoch(int slot) {
+		return epochs[slot];
+	}
+
+	protected final void epoch(int slot, long epoch) {
+		epochs[slot] = epoch;
+	}
+
+	/**
+	 * Moves the values of the metrics to new arrays of the given capacity.
+	 *
+	 * @param slots the new slot of the metric of each old slot, -1 for empty
+	 *              slots and forgotten metrics
+	 */
+	protected abstract void relocate(int capacity, int[] slots);
+
+	public final int size() {
+		return size;
+	}
+
+	public final int capacity() {
+		return ids.length;
+	}
+
+	/** @return the slot holding the id, or the empty slot where it belongs */
+	private static int find(long[] ids, long id) {
+		int mask = ids.length - 1;
+		int slot = (int) (id ^ (id >>> 32)) & mask;
+		while (ids[slot] != EMPTY && ids[slot] != id) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void rebuild(long staleBefore) {
+		long[] oldIds = ids;
+		long[] oldEpochs = epochs;
+
+		int live = 0;
+		for (int i = 0; i < oldIds.length; i++) {
+			if (oldIds[i] != EMPTY && oldEpochs[i] >= staleBefore) {
+				live++;
+			}
+		}
+		int capacity = MIN_CAPACITY;
+		while ((live + 1) * 2 > capacity) {
+			capacity *= 2;
+		}
+
+		ids = new long[capacity];
+		epochs = new long[capacity];
+		int[] slots = new int[oldIds.length];
+		for (int i = 0; i < oldIds.length; i++) {
+			if (oldIds[i] != EMPTY && oldEpochs[i] >= staleBefore) {
+				int slot = find(ids, oldIds[i]);
+				ids[slot] = oldIds[i];
+				epochs[slot] = oldEpochs[i];
+				slots[i] = slot;
+			} else {
+				slots[i] = -1;
+			}
+		}
+		size = live;
+		relocate(capacity, slots);
+	}
+}
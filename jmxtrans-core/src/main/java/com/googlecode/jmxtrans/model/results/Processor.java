@@ -0,0 +1,71 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A step of a {@link ProcessorChain}, configured on queries and output writers
+ * as an element of their {@code processors} list, for example:
+ *
+ * <pre>
+ * "processors" : [
+ *   { "type" : "drop", "part" : "attributeName", "pattern" : "Committed|Init" },
+ *   { "type" : "rename", "part" : "keyAlias", "pattern" : "(.*)Memory", "template" : "{1}.{attributeName}" },
+ *   { "type" : "scale", "factor" : 0.000001 },
+ *   { "type" : "clamp", "min" : 0 },
+ *   { "type" : "rate", "part" : "attributeName", "pattern" : "CollectionCount|RequestCount" }
+ * ]
+ * </pre>
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+@JsonSubTypes({
+		@JsonSubTypes.Type(value = MatchProcessor.class, name = "match"),
+		@JsonSubTypes.Type(value = DropProcessor.class, name = "drop"),
+		@JsonSubTypes.Type(value = RenameProcessor.class, name = "rename"),
+		@JsonSubTypes.Type(value = ScaleProcessor.class, name = "scale"),
+		@JsonSubTypes.Type(value = ClampProcessor.class, name = "clamp"),
+		@JsonSubTypes.Type(value = RateProcessor.class, name = "rate"),
+		@JsonSubTypes.Type(value = DeltaProcessor.class, name = "delta")
+})
+public abstract class Processor {
+
+	Processor() {
+	}
+
+	/**
+	 * @return false when the result should be dropped
+	 */
+	abstract boolean process(@Nonnull ResultDraft result);
+
+	/**
+	 * @return true when the processor remembers previous results, so that its
+	 * output cannot be shared with other processors, even equal ones
+	 */
+	boolean isStateful() {
+		return false;
+	}
+}
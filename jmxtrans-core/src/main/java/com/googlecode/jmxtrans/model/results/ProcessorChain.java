@@ -0,0 +1,126 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+
+/**
+ * The processors of a query or an output writer, compiled once when the
+ * configuration is loaded: patterns and templates are parsed up front and
+ * each result goes through all the processors in a single pass, being copied
+ * at most once however many of them rename or scale it.
+ */
+@ThreadSafe
+@EqualsAndHashCode(exclude = {"steps", "stateful"})
+@ToString(exclude = {"steps", "stateful"})
+public final class ProcessorChain {
+
+	public static final ProcessorChain EMPTY = new ProcessorChain(ImmutableList.<Processor>of());
+
+	@Nonnull @Getter private final ImmutableList<Processor> processors;
+	@Nonnull private final Processor[] steps;
+	private final boolean stateful;
+
+	private ProcessorChain(@Nonnull ImmutableList<Processor> processors) {
+		this.processors = processors;
+		this.steps = processors.toArray(new Processor[processors.size()]);
+		boolean stateful = false;
+		for (Processor step : steps) {
+			stateful |= step.isStateful();
+		}
+		this.stateful = stateful;
+	}
+
+	@Nonnull
+	public static ProcessorChain compile(@Nullable List<? extends Processor> processors) {
+		ImmutableList<Processor> copy = ImmutableList.copyOf(firstNonNull(processors, ImmutableList.<Processor>of()));
+		if (copy.isEmpty()) {
+			return EMPTY;
+		}
+		return new ProcessorChain(copy);
+	}
+
+	public boolean isEmpty() {
+		return steps.length == 0;
+	}
+
+	/** @return true when the chain remembers previous results, e.g. to compute rates */
+	public boolean isStateful() {
+		return stateful;
+	}
+
+	/** @return the processed result, or null when it was dropped */
+	@Nullable
+	public Result process(@Nonnull Result result) {
+		return process(result, new ResultDraft().scope(null));
+	}
+
+	/** @return the results that were not dropped, processed, or the results themselves when there are no processors */
+	@Nonnull
+	public Iterable<Result> process(@Nonnull Iterable<Result> results) {
+		return process(null, results);
+	}
+
+	/**
+	 * Same as {@link #process(Iterable)}, for results collected from a
+	 * server: processors following counters tell apart those of each server.
+	 */
+	@Nonnull
+	public Iterable<Result> process(@Nullable Server server, @Nonnull Iterable<Result> results) {
+		if (isEmpty()) {
+			return results;
+		}
+		ResultDraft draft = new ResultDraft().scope(server);
+		ImmutableList.Builder<Result> processed = ImmutableList.builder();
+		for (Result result : results) {
+			Result output = process(result, draft);
+			if (output != null) {
+				processed.add(output);
+			}
+		}
+		return processed.build();
+	}
+
+	@Nullable
+	private Result process(Result result, ResultDraft draft) {
+		draft.reset(result);
+		for (Processor step : steps) {
+			if (!step.process(draft)) {
+				return null;
+			}
+		}
+		return draft.toResult();
+	}
+}
@@ -0,0 +1,144 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import java.util.regex.Matcher;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Replaces a part of the key of the results by a template, in which
+ * {@code {n}} stands for the n-th group of the pattern and {@code {part}}
+ * for the current value of a key part, e.g. {@code {1}_{attributeName}}.
+ * Without pattern, every result is renamed.
+ */
+@Immutable
+@EqualsAndHashCode(callSuper = true, exclude = {"segments", "usesGroups"})
+@ToString(callSuper = true, exclude = {"segments", "usesGroups"})
+public class RenameProcessor extends KeyPartProcessor {
+
+	@Nonnull @Getter private final String template;
+	/** Literal strings, group numbers and key parts, concatenated when renaming. */
+	@Nonnull private final ImmutableList<Object> segments;
+	/** When the template only uses the whole part, the pattern can be checked without capturing groups. */
+	private final boolean usesGroups;
+
+	@JsonCreator
+	public RenameProcessor(
+			@JsonProperty("part") KeyPart part,
+			@JsonProperty("pattern") String pattern,
+			@JsonProperty("template") String template) {
+		super(checkNotNull(part, "part cannot be null"), pattern == null ? ".*" : pattern);
+		this.template = checkNotNull(template, "template cannot be null");
+		this.segments = parse(template, groupCount());
+		this.usesGroups = usesGroups(segments);
+	}
+
+	@Override
+	boolean process(@Nonnull ResultDraft result) {
+		Matcher matcher = null;
+		if (usesGroups) {
+			matcher = matcher(result);
+			if (matcher == null) {
+				return true;
+			}
+		} else if (!applies(result)) {
+			return true;
+		}
+		StringBuilder name = new StringBuilder(template.length() + 16);
+		for (Object segment : segments) {
+			if (segment instanceof Integer) {
+				String group = matcher == null ? getPart().get(result) : matcher.group((Integer) segment);
+				if (group != null) {
+					name.append(group);
+				}
+			} else if (segment instanceof KeyPart) {
+				String value = ((KeyPart) segment).get(result);
+				if (value != null) {
+					name.append(value);
+				}
+			} else {
+				name.append(segment);
+			}
+		}
+		getPart().set(result, name.toString());
+		return true;
+	}
+
+	private static boolean usesGroups(ImmutableList<Object> segments) {
+		for (Object segment : segments) {
+			if (segment instanceof Integer && (Integer) segment > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static ImmutableList<Object> parse(String template, int groupCount) {
+		ImmutableList.Builder<Object> segments = ImmutableList.builder();
+		int position = 0;
+		while (position < template.length()) {
+			int open = template.indexOf('{', position);
+			if (open < 0) {
+				segments.add(template.substring(position));
+				break;
+			}
+			int close = template.indexOf('}', open);
+			checkArgument(close > open, "Unclosed placeholder in template %s", template);
+			if (open > position) {
+				segments.add(template.substring(position, open));
+			}
+			segments.add(placeholder(template, template.substring(open + 1, close), groupCount));
+			position = close + 1;
+		}
+		return segments.build();
+	}
+
+	private static Object placeholder(String template, String name, int groupCount) {
+		if (!name.isEmpty() && Character.isDigit(name.charAt(0))) {
+			int group;
+			try {
+				group = Integer.parseInt(name);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid group {" + name + "} in template " + template, e);
+			}
+			checkArgument(group <= groupCount, "Template %s refers to group %s but the pattern has %s groups", template, group, groupCount);
+			return group;
+		}
+		try {
+			return KeyPart.fromPropertyName(name);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown placeholder {" + name + "} in template " + template, e);
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Mutable copy of a {@link Result} going through a {@link ProcessorChain}, so
+ * that a result renamed and scaled by several processors is copied only once.
+ */
+@NotThreadSafe
+final class ResultDraft {
+
+	private static final Joiner VALUE_PATH_JOINER = Joiner.on('.');
+	private static final Splitter VALUE_PATH_SPLITTER = Splitter.on('.').omitEmptyStrings();
+
+	/** Identifies where the results come from, usually the server, in metric ids. */
+	private long scope;
+	private Result source;
+	private boolean changed;
+
+	String attributeName;
+	String className;
+	String objDomain;
+	String keyAlias;
+	String typeName;
+	private ImmutableList<String> valuePath;
+	private String joinedValuePath;
+	Object value;
+
+	ResultDraft reset(@Nonnull Result result) {
+		this.source = result;
+		this.changed = false;
+		this.attributeName = result.getAttributeName();
+		this.className = result.getClassName();
+		this.objDomain = result.getObjDomain();
+		this.keyAlias = result.getKeyAlias();
+		this.typeName = result.getTypeName();
+		this.valuePath = result.getValuePath();
+		this.joinedValuePath = null;
+		this.value = result.getValue();
+		return this;
+	}
+
+	ResultDraft scope(@Nullable Server server) {
+		this.scope = MetricIds.scope(server);
+		return this;
+	}
+
+	long getEpoch() {
+		return source.getEpoch();
+	}
+
+	/** @return the {@link MetricIds metric id} of the current key of the result */
+	long metricId() {
+		return MetricIds.of(scope, className, objDomain, typeName, attributeName, keyAlias, getValuePath());
+	}
+
+	String getValuePath() {
+		if (joinedValuePath == null) {
+			if (valuePath == null || valuePath.isEmpty()) {
+				joinedValuePath = "";
+			} else if (valuePath.size() == 1) {
+				joinedValuePath = valuePath.get(0);
+			} else {
+				joinedValuePath = VALUE_PATH_JOINER.join(valuePath);
+			}
+		}
+		return joinedValuePath;
+	}
+
+	void setValuePath(@Nullable String valuePath) {
+		this.valuePath = valuePath == null ? ImmutableList.<String>of() : ImmutableList.copyOf(VALUE_PATH_SPLITTER.split(valuePath));
+		this.joinedValuePath = valuePath;
+		changed();
+	}
+
+	void setValue(@Nonnull Object value) {
+		this.value = value;
+		changed();
+	}
+
+	void changed() {
+		this.changed = true;
+	}
+
+	/** @return the processed result, the original one if nothing changed */
+	Result toResult() {
+		if (!changed) {
+			return source;
+		}
+		return new Result(source.getEpoch(), attributeName, className, objDomain, keyAlias, typeName, valuePath, value);
+	}
+}
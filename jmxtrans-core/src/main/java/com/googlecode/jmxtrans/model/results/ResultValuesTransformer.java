@@ -24,9 +24,11 @@ package com.googlecode.jmxtrans.model.results;
 
 import com.google.common.base.Function;
 import com.googlecode.jmxtrans.model.Result;
+import lombok.EqualsAndHashCode;
 
 import javax.annotation.Nullable;
 
+@EqualsAndHashCode
 public class ResultValuesTransformer implements Function<Result, Result> {
 
 	private final ValueTransformer valueTransformer;
@@ -0,0 +1,81 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Multiplies numeric values by a factor, e.g. 0.001 to turn milliseconds into
+ * seconds. Integral values stay integral when the factor is an integer. When a
+ * part and a pattern are given, only the matching results are scaled.
+ */
+@Immutable
+@EqualsAndHashCode(callSuper = true, exclude = "integralFactor")
+@ToString(callSuper = true, exclude = "integralFactor")
+public class ScaleProcessor extends KeyPartProcessor {
+
+	@Getter private final double factor;
+	private final boolean integralFactor;
+
+	@JsonCreator
+	public ScaleProcessor(
+			@JsonProperty("part") KeyPart part,
+			@JsonProperty("pattern") String pattern,
+			@JsonProperty("factor") Double factor) {
+		super(part, pattern);
+		this.factor = checkNotNull(factor, "factor cannot be null");
+		checkArgument(!factor.isNaN() && !factor.isInfinite(), "factor must be finite");
+		this.integralFactor = factor == Math.rint(factor) && Math.abs(factor) <= Long.MAX_VALUE;
+	}
+
+	public ScaleProcessor(double factor) {
+		this(null, null, factor);
+	}
+
+	@Override
+	boolean process(@Nonnull ResultDraft result) {
+		if (result.value instanceof Number && applies(result)) {
+			Number value = (Number) result.value;
+			if (integralFactor && isIntegral(value)) {
+				result.setValue(value.longValue() * (long) factor);
+			} else {
+				result.setValue(value.doubleValue() * factor);
+			}
+		}
+		return true;
+	}
+
+	static boolean isIntegral(Number value) {
+		return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+	}
+}
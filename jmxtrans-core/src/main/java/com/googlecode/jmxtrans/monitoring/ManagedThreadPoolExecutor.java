@@ -22,6 +22,7 @@
  */
 package com.googlecode.jmxtrans.monitoring;
 
+import com.googlecode.jmxtrans.executors.AdaptiveThreadPoolExecutor;
 import lombok.Getter;
 
 import javax.annotation.Nonnull;
@@ -111,6 +112,36 @@ public class ManagedThreadPoolExecutor implements ThreadPoolExecutorMXBean {
 		return executor.getQueue().size();
 	}
 
+	@Override
+	public boolean isAdaptive() {
+		return executor instanceof AdaptiveThreadPoolExecutor;
+	}
+
+	@Override
+	public long getAverageQueueWaitMillis() {
+		return isAdaptive() ? ((AdaptiveThreadPoolExecutor) executor).getAverageQueueWaitMillis() : 0;
+	}
+
+	@Override
+	public double getCompletionRatePerSecond() {
+		return isAdaptive() ? ((AdaptiveThreadPoolExecutor) executor).getCompletionRatePerSecond() : 0;
+	}
+
+	@Override
+	public int getEstimatedPoolSize() {
+		return isAdaptive() ? ((AdaptiveThreadPoolExecutor) executor).getEstimatedPoolSize() : 0;
+	}
+
+	@Override
+	public long getResizeCount() {
+		return isAdaptive() ? ((AdaptiveThreadPoolExecutor) executor).getResizeCount() : 0;
+	}
+
+	@Override
+	public String getLastResizeDecision() {
+		return isAdaptive() ? ((AdaptiveThreadPoolExecutor) executor).getLastResizeDecision() : "";
+	}
+
 	@Override
 	public ObjectName getObjectName() {
 		return objectName;
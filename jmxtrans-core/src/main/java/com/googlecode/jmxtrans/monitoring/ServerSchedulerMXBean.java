@@ -0,0 +1,51 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.monitoring;
+
+import javax.management.ObjectName;
+import java.util.Map;
+
+public interface ServerSchedulerMXBean {
+	int getScheduledServerCount();
+
+	String getOverrunPolicy();
+
+	/** Runs started while queries of the previous run were still queued or running, per server. */
+	Map<String, Long> getOverrunCycles();
+
+	/** Runs which did not submit any query because of the overrun policy, per server. */
+	Map<String, Long> getSkippedCycles();
+
+	/** MBean fetches skipped by adaptive polling because their values were stable, per server. */
+	Map<String, Long> getSkippedFetches();
+
+	String getTimerType();
+
+	/** Delay of the last tick of the hashed wheel timer, 0 for other timers. */
+	long getLastTickDriftMillis();
+
+	/** Largest delay of a tick of the hashed wheel timer, 0 for other timers. */
+	long getMaxTickDriftMillis();
+
+	ObjectName getObjectName();
+}
@@ -53,5 +53,21 @@ public interface ThreadPoolExecutorMXBean {
 
 	int workQueueSize();
 
+	/**
+	 * @return true if the pool resizes itself, the adaptive attributes below
+	 * are zero or empty otherwise.
+	 */
+	boolean isAdaptive();
+
+	long getAverageQueueWaitMillis();
+
+	double getCompletionRatePerSecond();
+
+	int getEstimatedPoolSize();
+
+	long getResizeCount();
+
+	String getLastResizeDecision();
+
 	ObjectName getObjectName();
 }
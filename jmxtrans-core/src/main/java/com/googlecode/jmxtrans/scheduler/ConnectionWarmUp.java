@@ -0,0 +1,266 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.scheduler;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.googlecode.jmxtrans.cli.JmxTransConfiguration;
+import com.googlecode.jmxtrans.executors.ExecutorFactory;
+import com.googlecode.jmxtrans.executors.HostConcurrencyGovernor;
+import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.monitoring.ConnectionWarmUpMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Opens the connections to the servers ahead of their first run, so that a
+ * start or a reload does not open every connection at the same instant.
+ *
+ * Each connection is opened shortly before the first run of its server, as
+ * planned by the {@link ServerScheduler}: a quarter of the server run period
+ * ahead, and at most {@link #MAX_LEAD_MILLIS}. When server runs are neither
+ * spread nor aligned, they all start one run period after being scheduled,
+ * so connection attempts are spread evenly until then. At most
+ * {@code startup.connection.parallelism} of them run at the same time, on
+ * threads of their own so the query executor is left alone. Warm ups go
+ * through the {@link HostConcurrencyGovernor}, so they count against the per
+ * host limits like queries do. Connections end up idle in the pool, ready
+ * for the first run. Local servers are skipped.
+ */
+@Singleton
+@ThreadSafe
+public class ConnectionWarmUp implements ConnectionWarmUpMXBean {
+
+	private static final Logger log = LoggerFactory.getLogger(ConnectionWarmUp.class);
+
+	static final long MAX_LEAD_MILLIS = SECONDS.toMillis(10);
+
+	private final JmxTransConfiguration configuration;
+	private final ScheduledExecutorService scheduledExecutor;
+	private final ThreadPoolExecutor connectExecutor;
+	private final HostConcurrencyGovernor hostConcurrencyGovernor;
+	private final int parallelism;
+	private final ObjectName objectName;
+
+	private final List<ScheduledFuture<?>> scheduledConnections = new ArrayList<>();
+	private final AtomicInteger generation = new AtomicInteger();
+	private final AtomicInteger serverCount = new AtomicInteger();
+	private final AtomicInteger pendingCount = new AtomicInteger();
+	private final AtomicInteger connectingCount = new AtomicInteger();
+	private final AtomicInteger connectedCount = new AtomicInteger();
+	private final AtomicInteger failedCount = new AtomicInteger();
+
+	@Inject
+	public ConnectionWarmUp(
+			@Nonnull JmxTransConfiguration configuration,
+			@Nonnull ScheduledExecutorService scheduledExecutor,
+			@Nonnull HostConcurrencyGovernor hostConcurrencyGovernor) throws MalformedObjectNameException {
+		this.configuration = configuration;
+		this.scheduledExecutor = scheduledExecutor;
+		this.hostConcurrencyGovernor = hostConcurrencyGovernor;
+		this.parallelism = configuration.getStartupConnectionParallelism();
+		this.connectExecutor = new ThreadPoolExecutor(
+				Math.max(parallelism, 1), Math.max(parallelism, 1), 10, SECONDS,
+				new LinkedBlockingQueue<Runnable>(),
+				ExecutorFactory.threadFactory("connect", configuration.getExecutorThreadPriority()));
+		this.connectExecutor.allowCoreThreadTimeOut(true);
+		this.objectName = new ObjectName("com.googlecode.jmxtrans:Type=ConnectionWarmUp");
+	}
+
+	/**
+	 * Cancels any warm up in progress, then plans the connections to the
+	 * given servers ahead of their first run.
+	 */
+	public synchronized void start(@Nonnull List<Server> servers) {
+		cancel();
+		if (parallelism <= 0) {
+			return;
+		}
+
+		List<Server> remoteServers = new ArrayList<>();
+		for (Server server : servers) {
+			if (!server.isLocal()) {
+				remoteServers.add(server);
+			}
+		}
+		if (remoteServers.isEmpty()) {
+			return;
+		}
+
+		serverCount.set(remoteServers.size());
+		pendingCount.set(remoteServers.size());
+		connectingCount.set(0);
+		connectedCount.set(0);
+		failedCount.set(0);
+
+		final int currentGeneration = generation.get();
+		boolean runsSpread = configuration.isAlignServerJobs() || configuration.isSpreadServerJobs();
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < remoteServers.size(); i++) {
+			final Server server = remoteServers.get(i);
+			long runPeriodMillis = SECONDS.toMillis(Collections.min(ServerScheduler.runPeriodsSeconds(server, configuration.getRunPeriod())));
+			long delay = warmUpDelay(ServerScheduler.firstRunDelay(configuration, server, now), runPeriodMillis);
+			if (!runsSpread) {
+				delay = delay * i / remoteServers.size();
+			}
+			scheduledConnections.add(scheduledExecutor.schedule(new Runnable() {
+				@Override
+				public void run() {
+					submitConnection(server, currentGeneration);
+				}
+			}, delay, MILLISECONDS));
+		}
+		log.info("Opening connections to {} servers ahead of their first run, {} at a time", remoteServers.size(), parallelism);
+	}
+
+	/**
+	 * Delay until the connection to a server is opened, a quarter of its run
+	 * period before its first run, or right away when the run is closer.
+	 */
+	@VisibleForTesting
+	static long warmUpDelay(long firstRunDelayMillis, long runPeriodMillis) {
+		long lead = Math.min(MAX_LEAD_MILLIS, runPeriodMillis / 4);
+		return Math.max(0, firstRunDelayMillis - lead);
+	}
+
+	/**
+	 * Cancels the connections not started yet. Connections already handed to
+	 * the host concurrency governor are left in their queues, where they hold
+	 * a slot of their host, and return as soon as they run.
+	 */
+	public synchronized void cancel() {
+		generation.incrementAndGet();
+		for (ScheduledFuture<?> scheduledConnection : scheduledConnections) {
+			scheduledConnection.cancel(false);
+		}
+		scheduledConnections.clear();
+		pendingCount.set(0);
+		connectingCount.set(0);
+	}
+
+	private void submitConnection(final Server server, final int connectionGeneration) {
+		try {
+			hostConcurrencyGovernor.execute(server, connectExecutor, new Runnable() {
+				@Override
+				public void run() {
+					connect(server, connectionGeneration);
+				}
+			});
+		} catch (RejectedExecutionException ree) {
+			log.warn("Could not open connection to {} ahead of its first run", server, ree);
+			if (connectionGeneration == generation.get()) {
+				pendingCount.decrementAndGet();
+			}
+		}
+	}
+
+	private void connect(Server server, int connectionGeneration) {
+		// a reload or a stop happened since this connection was planned
+		if (connectionGeneration != generation.get()) {
+			return;
+		}
+		pendingCount.decrementAndGet();
+		connectingCount.incrementAndGet();
+		boolean connected = false;
+		try {
+			server.warmUpConnection();
+			connected = true;
+			log.debug("Opened connection to {}", server);
+		} catch (Exception e) {
+			log.warn("Could not open connection to {} ahead of its first run: {}", server, e.getMessage());
+		} finally {
+			if (connectionGeneration == generation.get()) {
+				connectingCount.decrementAndGet();
+				if (connected) {
+					connectedCount.incrementAndGet();
+				} else {
+					failedCount.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	/** Cancels the connections not started yet, queued ones return without connecting. */
+	public void stop() {
+		cancel();
+		connectExecutor.shutdown();
+	}
+
+	@Override
+	public boolean isInProgress() {
+		return pendingCount.get() > 0 || connectingCount.get() > 0;
+	}
+
+	@Override
+	public int getServerCount() {
+		return serverCount.get();
+	}
+
+	@Override
+	public int getPendingCount() {
+		return pendingCount.get();
+	}
+
+	@Override
+	public int getConnectingCount() {
+		return connectingCount.get();
+	}
+
+	@Override
+	public int getConnectedCount() {
+		return connectedCount.get();
+	}
+
+	@Override
+	public int getFailedCount() {
+		return failedCount.get();
+	}
+
+	@Override
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	@Override
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+}
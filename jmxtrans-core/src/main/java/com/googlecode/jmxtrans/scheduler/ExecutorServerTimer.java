@@ -0,0 +1,88 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.scheduler;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Schedules each command as a task of a {@link ScheduledExecutorService}.
+ */
+@ThreadSafe
+public class ExecutorServerTimer implements ServerTimer {
+
+	private final ScheduledExecutorService scheduledExecutor;
+	private final Set<ScheduledFuture<?>> scheduledFutures =
+			Collections.newSetFromMap(new ConcurrentHashMap<ScheduledFuture<?>, Boolean>());
+
+	public ExecutorServerTimer(@Nonnull ScheduledExecutorService scheduledExecutor) {
+		this.scheduledExecutor = scheduledExecutor;
+	}
+
+	@Nonnull
+	@Override
+	public Cancellable scheduleAtFixedRate(@Nonnull Runnable command, long initialDelayMillis, long periodMillis) {
+		final ScheduledFuture<?> scheduledFuture = scheduledExecutor.scheduleAtFixedRate(command, initialDelayMillis, periodMillis, MILLISECONDS);
+		scheduledFutures.add(scheduledFuture);
+		return new Cancellable() {
+			@Override
+			public void cancel() {
+				scheduledFuture.cancel(true);
+				scheduledFutures.remove(scheduledFuture);
+			}
+		};
+	}
+
+	@Override
+	public void cancelAll() {
+		for (ScheduledFuture<?> scheduledFuture : scheduledFutures) {
+			scheduledFuture.cancel(true);
+		}
+		scheduledFutures.clear();
+	}
+
+	/**
+	 * Cancels the commands, the executor is shared and left to its owner.
+	 */
+	@Override
+	public void stop() {
+		cancelAll();
+	}
+
+	@Override
+	public long getLastTickDriftMillis() {
+		return 0;
+	}
+
+	@Override
+	public long getMaxTickDriftMillis() {
+		return 0;
+	}
+}
@@ -0,0 +1,256 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A hashed timing wheel, for very large numbers of servers.
+ *
+ * Scheduling and cancelling a command are O(1): new commands are queued and
+ * placed in their bucket by the wheel thread on its next tick, cancelled
+ * commands are only flagged and dropped when their bucket comes around.
+ * Cancelling every command is O(1) as well, by moving to a new generation.
+ * The price is a precision of one tick.
+ *
+ * The wheel thread only hands expired commands over to the dispatch executor.
+ * Runs missed because the wheel fell behind are skipped, not caught up.
+ */
+@ThreadSafe
+public class HashedWheelServerTimer implements ServerTimer {
+
+	private static final Logger log = LoggerFactory.getLogger(HashedWheelServerTimer.class);
+
+	private final long tickNanos;
+	private final int mask;
+	private final List<LinkedList<WheelTimeout>> wheel;
+	private final Queue<WheelTimeout> newTimeouts = new ConcurrentLinkedQueue<>();
+	private final Executor dispatcher;
+	private final Thread worker;
+	private final long startNanos = System.nanoTime();
+	private final AtomicInteger generation = new AtomicInteger();
+	private volatile boolean stopped = false;
+
+	private volatile long lastTickDriftMillis = 0;
+	private volatile long maxTickDriftMillis = 0;
+	private volatile long tickCount = 0;
+
+	public HashedWheelServerTimer(long tickMillis, int wheelSize, @Nonnull Executor dispatcher, @Nonnull ThreadFactory threadFactory) {
+		if (tickMillis <= 0) {
+			throw new IllegalArgumentException("Tick duration must be positive: " + tickMillis);
+		}
+		if (wheelSize <= 0 || Integer.bitCount(wheelSize) != 1) {
+			throw new IllegalArgumentException("Wheel size must be a power of 2: " + wheelSize);
+		}
+		this.tickNanos = MILLISECONDS.toNanos(tickMillis);
+		this.mask = wheelSize - 1;
+		this.wheel = new ArrayList<>(wheelSize);
+		for (int i = 0; i < wheelSize; i++) {
+			wheel.add(new LinkedList<WheelTimeout>());
+		}
+		this.dispatcher = dispatcher;
+		this.worker = threadFactory.newThread(new Worker());
+		this.worker.start();
+	}
+
+	@Nonnull
+	@Override
+	public Cancellable scheduleAtFixedRate(@Nonnull Runnable command, long initialDelayMillis, long periodMillis) {
+		if (stopped) {
+			throw new RejectedExecutionException("Timer is stopped");
+		}
+		WheelTimeout timeout = new WheelTimeout(
+				command,
+				System.nanoTime() - startNanos + MILLISECONDS.toNanos(Math.max(initialDelayMillis, 0)),
+				MILLISECONDS.toNanos(periodMillis),
+				generation.get());
+		newTimeouts.add(timeout);
+		return timeout;
+	}
+
+	@Override
+	public void cancelAll() {
+		generation.incrementAndGet();
+		newTimeouts.clear();
+	}
+
+	@Override
+	public void stop() {
+		stopped = true;
+		cancelAll();
+		worker.interrupt();
+	}
+
+	@Override
+	public long getLastTickDriftMillis() {
+		return lastTickDriftMillis;
+	}
+
+	@Override
+	public long getMaxTickDriftMillis() {
+		return maxTickDriftMillis;
+	}
+
+	public long getTickCount() {
+		return tickCount;
+	}
+
+	private static final class WheelTimeout implements Cancellable {
+		private final Runnable command;
+		private final long periodNanos;
+		private final int generation;
+		private long deadlineNanos;
+		private long remainingRounds;
+		private volatile boolean cancelled = false;
+
+		private WheelTimeout(Runnable command, long deadlineNanos, long periodNanos, int generation) {
+			this.command = command;
+			this.deadlineNanos = deadlineNanos;
+			this.periodNanos = periodNanos;
+			this.generation = generation;
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+		}
+	}
+
+	private final class Worker implements Runnable {
+		private long tick = 0;
+
+		@Override
+		public void run() {
+			while (!stopped) {
+				long tickDeadline = (tick + 1) * tickNanos;
+				if (!waitFor(tickDeadline)) {
+					return;
+				}
+				recordDrift(System.nanoTime() - startNanos - tickDeadline);
+
+				transferNewTimeouts();
+				expire(wheel.get((int) (tick & mask)), tickDeadline);
+				tick++;
+				tickCount = tick;
+			}
+		}
+
+		private boolean waitFor(long tickDeadline) {
+			while (true) {
+				long sleepNanos = tickDeadline - (System.nanoTime() - startNanos);
+				if (sleepNanos <= 0) {
+					return true;
+				}
+				try {
+					NANOSECONDS.sleep(sleepNanos);
+				} catch (InterruptedException e) {
+					if (stopped) {
+						return false;
+					}
+				}
+			}
+		}
+
+		private void recordDrift(long driftNanos) {
+			long driftMillis = NANOSECONDS.toMillis(Math.max(driftNanos, 0));
+			lastTickDriftMillis = driftMillis;
+			if (driftMillis > maxTickDriftMillis) {
+				maxTickDriftMillis = driftMillis;
+			}
+		}
+
+		private void transferNewTimeouts() {
+			WheelTimeout timeout;
+			while ((timeout = newTimeouts.poll()) != null) {
+				if (isLive(timeout)) {
+					place(timeout, tick);
+				}
+			}
+		}
+
+		/**
+		 * @param fromTick first tick whose bucket has not been processed yet
+		 */
+		private void place(WheelTimeout timeout, long fromTick) {
+			long calculated = timeout.deadlineNanos / tickNanos;
+			timeout.remainingRounds = (calculated - fromTick) / wheel.size();
+			long ticks = Math.max(calculated, fromTick);
+			wheel.get((int) (ticks & mask)).add(timeout);
+		}
+
+		private void expire(LinkedList<WheelTimeout> bucket, long tickDeadline) {
+			List<WheelTimeout> rescheduled = new ArrayList<>();
+			for (Iterator<WheelTimeout> iterator = bucket.iterator(); iterator.hasNext(); ) {
+				WheelTimeout timeout = iterator.next();
+				if (!isLive(timeout)) {
+					iterator.remove();
+				} else if (timeout.remainingRounds <= 0) {
+					iterator.remove();
+					dispatch(timeout);
+					if (timeout.periodNanos > 0) {
+						do {
+							timeout.deadlineNanos += timeout.periodNanos;
+						} while (timeout.deadlineNanos < tickDeadline);
+						rescheduled.add(timeout);
+					}
+				} else {
+					timeout.remainingRounds--;
+				}
+			}
+			for (WheelTimeout timeout : rescheduled) {
+				place(timeout, tick + 1);
+			}
+		}
+
+		private boolean isLive(WheelTimeout timeout) {
+			return !timeout.cancelled && timeout.generation == generation.get();
+		}
+
+		private void dispatch(WheelTimeout timeout) {
+			try {
+				dispatcher.execute(timeout.command);
+			} catch (RejectedExecutionException ree) {
+				log.warn("Could not run scheduled command {}", timeout.command, ree);
+			} catch (RuntimeException e) {
+				log.error("Error running scheduled command {}", timeout.command, e);
+			}
+		}
+	}
+}
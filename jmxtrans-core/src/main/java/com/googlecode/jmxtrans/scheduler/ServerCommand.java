@@ -22,7 +22,13 @@
  */
 package com.googlecode.jmxtrans.scheduler;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.math.LongMath;
+import com.googlecode.jmxtrans.connections.NotificationSubscription;
 import com.googlecode.jmxtrans.executors.ExecutorRepository;
+import com.googlecode.jmxtrans.executors.HostConcurrencyGovernor;
+import com.googlecode.jmxtrans.jmx.AdaptivePolling;
+import com.googlecode.jmxtrans.jmx.NotificationResultListener;
 import com.googlecode.jmxtrans.jmx.ProcessQueryThread;
 import com.googlecode.jmxtrans.jmx.ResultProcessor;
 import com.googlecode.jmxtrans.model.Query;
@@ -30,45 +36,168 @@ import com.googlecode.jmxtrans.model.Server;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 /**
- * Per server thread being run periodically
+ * Per server thread being run periodically.
+ *
+ * A server whose queries have different run periods gets one command per
+ * period, each running only the queries of its period.
+ *
+ * Notification driven queries are not polled: each run only makes sure their
+ * subscription is still active, and subscribes again when it is not (first
+ * run, lost connection, or failed subscription).
+ *
+ * The queries submitted by the previous run are tracked, so that a slow server
+ * does not fill the query queue with stale work: see {@link OverrunPolicy}.
+ *
+ * When runs are aligned on the wall clock, the results of a run are all
+ * stamped with its logical tick, so that points of different servers line up.
  */
-public class ServerCommand implements Runnable {
+public class ServerCommand implements Runnable, Closeable {
 	private static final Logger log = LoggerFactory.getLogger(ServerScheduler.class);
 	private final Server server;
 	private final ExecutorRepository queryExecutorRepository;
 	private final ResultProcessor resultProcessor;
+	private final HostConcurrencyGovernor hostConcurrencyGovernor;
+	private final OverrunPolicy overrunPolicy;
+	private final int runPeriodSeconds;
+	private final int defaultRunPeriod;
+	@Nullable private final Long alignmentOffsetMillis;
+	private final Map<Query, NotificationSubscription> subscriptions = new ConcurrentHashMap<>();
+	private final Map<Query, QueryTask> submittedQueries = new ConcurrentHashMap<>();
+	private final Map<Query, AdaptivePolling> adaptivePollings = new ConcurrentHashMap<>();
+	private final AtomicLong overrunCycles = new AtomicLong();
+	private final AtomicLong skippedCycles = new AtomicLong();
+	private volatile boolean closed = false;
 
-	public ServerCommand(Server server, ExecutorRepository queryExecutorRepository, ResultProcessor resultProcessor) {
+	public ServerCommand(
+			Server server,
+			ExecutorRepository queryExecutorRepository,
+			ResultProcessor resultProcessor,
+			HostConcurrencyGovernor hostConcurrencyGovernor,
+			OverrunPolicy overrunPolicy,
+			int runPeriodSeconds,
+			int defaultRunPeriod) {
+		this(server, queryExecutorRepository, resultProcessor, hostConcurrencyGovernor, overrunPolicy, runPeriodSeconds, defaultRunPeriod, null);
+	}
+
+	/**
+	 * @param alignmentOffsetMillis offset of the runs from the multiples of the
+	 *                              run period in wall-clock time, if runs are
+	 *                              aligned. The results of aligned runs are
+	 *                              stamped with the tick they belong to instead
+	 *                              of the time they were collected.
+	 */
+	public ServerCommand(
+			Server server,
+			ExecutorRepository queryExecutorRepository,
+			ResultProcessor resultProcessor,
+			HostConcurrencyGovernor hostConcurrencyGovernor,
+			OverrunPolicy overrunPolicy,
+			int runPeriodSeconds,
+			int defaultRunPeriod,
+			@Nullable Long alignmentOffsetMillis) {
 		this.server = server;
 		this.queryExecutorRepository = queryExecutorRepository;
 		this.resultProcessor = resultProcessor;
+		this.hostConcurrencyGovernor = hostConcurrencyGovernor;
+		this.overrunPolicy = overrunPolicy;
+		this.runPeriodSeconds = runPeriodSeconds;
+		this.defaultRunPeriod = defaultRunPeriod;
+		this.alignmentOffsetMillis = alignmentOffsetMillis;
+	}
+
+	public Server getServer() {
+		return server;
 	}
 
-	public int getRunPeriodSeconds(int defaultRunPeriod) {
+	public int getRunPeriodSeconds() {
+		return runPeriodSeconds;
+	}
+
+	@Nullable
+	public Long getAlignmentOffsetMillis() {
+		return alignmentOffsetMillis;
+	}
+
+	/**
+	 * Start of the run period a run belongs to: the closest tick, once the
+	 * offset of the server is removed. The timer follows the nano time, which
+	 * drifts from the wall clock, so a run may fire a little before or after
+	 * its tick and still belongs to it.
+	 */
+	@VisibleForTesting
+	static long logicalTick(long nowMillis, long runPeriodMillis, long alignmentOffsetMillis) {
+		return LongMath.divide(nowMillis - alignmentOffsetMillis + runPeriodMillis / 2, runPeriodMillis, RoundingMode.FLOOR) * runPeriodMillis;
+	}
+
+	public static int getRunPeriodSeconds(Server server, int defaultRunPeriod) {
 		return server.getRunPeriodSeconds() == null || server.getRunPeriodSeconds().intValue() <= 0 ?
 				defaultRunPeriod :
 				server.getRunPeriodSeconds().intValue();
 	}
 
+	/**
+	 * Run period of a query: its own if defined, the one of its server otherwise.
+	 */
+	public static int getRunPeriodSeconds(Server server, Query query, int defaultRunPeriod) {
+		return query.getRunPeriodSeconds() == null || query.getRunPeriodSeconds().intValue() <= 0 ?
+				getRunPeriodSeconds(server, defaultRunPeriod) :
+				query.getRunPeriodSeconds().intValue();
+	}
+
+	private boolean isRunByThisCommand(Query query) {
+		return getRunPeriodSeconds(server, query, defaultRunPeriod) == runPeriodSeconds;
+	}
+
 	@Override
 	public void run() {
 
 		log.debug("+++++ Started server job {}", server);
 		try {
-			final ThreadPoolExecutor executor = queryExecutorRepository.getExecutor(server);
-
-			for (Query query : server.getQueries()) {
-				ProcessQueryThread pqt = new ProcessQueryThread(resultProcessor, server, query);
-				try {
-					executor.submit(pqt);
-				} catch (RejectedExecutionException ree) {
-					log.error("Could not submit query {}. You could try to size the 'queryProcessorExecutor' to a larger size.", pqt, ree);
+			final ExecutorService executor = queryExecutorRepository.getExecutor(server);
+
+			for (final Query query : server.getQueries()) {
+				if (query.isNotificationDriven() && isRunByThisCommand(query) && !isSubscribed(query)) {
+					submitSubscription(executor, query);
+				}
+			}
+
+			if (isOverrun()) {
+				overrunCycles.incrementAndGet();
+				if (overrunPolicy == OverrunPolicy.SKIP) {
+					skippedCycles.incrementAndGet();
+					log.debug("+++++ Skipped server job {}, previous run still in progress", server);
+					return;
 				}
 			}
+
+			final Long tick = alignmentOffsetMillis == null
+					? null
+					: logicalTick(System.currentTimeMillis(), SECONDS.toMillis(runPeriodSeconds), alignmentOffsetMillis);
+			int due = 0;
+			int submitted = 0;
+			for (final Query query : server.getQueries()) {
+				if (!query.isNotificationDriven() && isRunByThisCommand(query)) {
+					due++;
+					if (submitQuery(executor, query, tick)) {
+						submitted++;
+					}
+				}
+			}
+			if (submitted == 0 && due > 0) {
+				skippedCycles.incrementAndGet();
+			}
 			log.debug("+++++ Finished server job {}", server);
 		} catch (Exception e) {
 			if (log.isDebugEnabled()) {
@@ -80,6 +209,137 @@ public class ServerCommand implements Runnable {
 
 	}
 
+	private boolean isOverrun() {
+		for (QueryTask task : submittedQueries.values()) {
+			if (!task.isDone()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return false if the query was not submitted, because of the overrun
+	 * policy or because the executor rejected it
+	 */
+	private boolean submitQuery(ExecutorService executor, Query query, @Nullable Long tick) {
+		QueryTask previous = submittedQueries.get(query);
+		if (previous != null && !previous.isDone()) {
+			if (overrunPolicy == OverrunPolicy.COALESCE && previous.isQueued()) {
+				return false;
+			}
+			if (overrunPolicy == OverrunPolicy.CANCEL) {
+				previous.cancel(true);
+			}
+		}
+
+		ProcessQueryThread pqt = new ProcessQueryThread(resultProcessor, server, query, tick, adaptivePolling(query));
+		QueryTask task = new QueryTask(pqt);
+		submittedQueries.put(query, task);
+		try {
+			hostConcurrencyGovernor.execute(server, executor, task);
+		} catch (RejectedExecutionException ree) {
+			task.cancel(false);
+			if (previous == null) {
+				submittedQueries.remove(query);
+			} else {
+				submittedQueries.put(query, previous);
+			}
+			log.error("Could not submit query {}. You could try to size the 'queryProcessorExecutor' to a larger size.", pqt, ree);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the adaptive polling state of the query, or null if it is
+	 * fetched on every run
+	 */
+	@Nullable
+	private AdaptivePolling adaptivePolling(Query query) {
+		Integer maxPollIntervalSeconds = query.getMaxPollIntervalSeconds();
+		if (maxPollIntervalSeconds == null || maxPollIntervalSeconds <= runPeriodSeconds) {
+			return null;
+		}
+		AdaptivePolling adaptivePolling = adaptivePollings.get(query);
+		if (adaptivePolling == null) {
+			adaptivePolling = new AdaptivePolling(SECONDS.toMillis(runPeriodSeconds), SECONDS.toMillis(maxPollIntervalSeconds));
+			adaptivePollings.put(query, adaptivePolling);
+		}
+		return adaptivePolling;
+	}
+
+	/**
+	 * @return number of MBean fetches skipped by adaptive polling
+	 */
+	public long getSkippedFetches() {
+		long skippedFetches = 0;
+		for (AdaptivePolling adaptivePolling : adaptivePollings.values()) {
+			skippedFetches += adaptivePolling.getSkippedFetches();
+		}
+		return skippedFetches;
+	}
+
+	public long getOverrunCycles() {
+		return overrunCycles.get();
+	}
+
+	public long getSkippedCycles() {
+		return skippedCycles.get();
+	}
+
+	private boolean isSubscribed(Query query) {
+		NotificationSubscription subscription = subscriptions.get(query);
+		return subscription != null && subscription.isActive();
+	}
+
+	private void submitSubscription(ExecutorService executor, final Query query) {
+		try {
+			hostConcurrencyGovernor.execute(server, executor, new Runnable() {
+				@Override
+				public void run() {
+					subscribe(query);
+				}
+			});
+		} catch (RejectedExecutionException ree) {
+			log.error("Could not submit subscription of query {}. You could try to size the 'queryProcessorExecutor' to a larger size.", query, ree);
+		}
+	}
+
+	private synchronized void subscribe(Query query) {
+		if (closed || isSubscribed(query)) {
+			return;
+		}
+		NotificationSubscription previous = subscriptions.remove(query);
+		if (previous != null) {
+			previous.close();
+		}
+		try {
+			NotificationSubscription subscription = server.subscribe(query, new NotificationResultListener(resultProcessor, server, query));
+			subscriptions.put(query, subscription);
+			log.debug("Subscribed query {} to notifications of {} MBeans on server {}", query, subscription.getListenedMBeanCount(), server);
+		} catch (Exception e) {
+			log.error("Error subscribing query {} on server {}", query, server, e);
+		}
+	}
+
+	/**
+	 * Closes the notification subscriptions of this server, and drops its
+	 * queries still waiting in the queue.
+	 */
+	@Override
+	public synchronized void close() {
+		closed = true;
+		for (QueryTask task : submittedQueries.values()) {
+			task.cancel(false);
+		}
+		submittedQueries.clear();
+		for (NotificationSubscription subscription : subscriptions.values()) {
+			subscription.close();
+		}
+		subscriptions.clear();
+	}
+
 	public String getName() {
 		return server.getHost() + ":" + server.getPort();
 	}
@@ -22,42 +22,76 @@
  */
 package com.googlecode.jmxtrans.scheduler;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import com.google.common.math.LongMath;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import com.googlecode.jmxtrans.cli.JmxTransConfiguration;
+import com.googlecode.jmxtrans.executors.ExecutorFactory;
 import com.googlecode.jmxtrans.executors.ExecutorRepository;
+import com.googlecode.jmxtrans.executors.HostConcurrencyGovernor;
 import com.googlecode.jmxtrans.jmx.ResultProcessor;
+import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.monitoring.ServerSchedulerMXBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 
-public class ServerScheduler {
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.MoreObjects.firstNonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class ServerScheduler implements ServerSchedulerMXBean {
 	private static final Logger log = LoggerFactory.getLogger(ServerScheduler.class);
 
+	private static final int HASHED_WHEEL_SIZE = 512;
+
 	private final JmxTransConfiguration configuration;
 	private final ScheduledExecutorService scheduledExecutor;
+	private final ServerTimer timer;
 	private final List<ScheduledServerCommand> scheduledServerCommands = new ArrayList<>();
 	private final ExecutorRepository queryExecutorRepository;
 	private final ResultProcessor resultProcessor;
+	private final HostConcurrencyGovernor hostConcurrencyGovernor;
+	private final OverrunPolicy overrunPolicy;
+	private final ObjectName objectName;
 
 	@Inject
 	public ServerScheduler(
 			@Nonnull JmxTransConfiguration configuration,
 			@Nonnull ScheduledExecutorService scheduledExecutor,
 			@Nonnull @Named("queryExecutorRepository") ExecutorRepository queryExecutorRepository,
-			@Nonnull ResultProcessor resultProcessor) {
+			@Nonnull ResultProcessor resultProcessor,
+			@Nonnull HostConcurrencyGovernor hostConcurrencyGovernor) throws MalformedObjectNameException {
 		this.configuration = configuration;
 		this.scheduledExecutor = scheduledExecutor;
+		this.timer = configuration.isUseHashedWheelScheduler()
+				? new HashedWheelServerTimer(
+						configuration.getHashedWheelTickMillis(),
+						HASHED_WHEEL_SIZE,
+						scheduledExecutor,
+						ExecutorFactory.threadFactory("timer", configuration.getExecutorThreadPriority()))
+				: new ExecutorServerTimer(scheduledExecutor);
 		this.queryExecutorRepository = queryExecutorRepository;
 		this.resultProcessor = resultProcessor;
+		this.hostConcurrencyGovernor = hostConcurrencyGovernor;
+		this.overrunPolicy = firstNonNull(configuration.getOverrunPolicy(), OverrunPolicy.COALESCE);
+		this.objectName = new ObjectName("com.googlecode.jmxtrans:Type=ServerScheduler");
 	}
 
 	public void start() {
@@ -65,45 +99,202 @@ public class ServerScheduler {
 
 	private static class ScheduledServerCommand {
 		private final ServerCommand serverCommand;
-		private final ScheduledFuture<?> scheduledFuture;
+		private final ServerTimer.Cancellable scheduled;
 
-		private ScheduledServerCommand(ServerCommand serverCommand, ScheduledFuture<?> scheduledFuture) {
+		private ScheduledServerCommand(ServerCommand serverCommand, ServerTimer.Cancellable scheduled) {
 			this.serverCommand = serverCommand;
-			this.scheduledFuture = scheduledFuture;
+			this.scheduled = scheduled;
 		}
 
 		private String getName() {
 			return serverCommand.getName();
 		}
+	}
 
-		private void cancel() {
-			scheduledFuture.cancel(true);
+	/**
+	 * Schedules one command per distinct run period of the server queries, so
+	 * that queries sharing a period run in the same tick.
+	 */
+	public void schedule(Server server) {
+		int defaultRunPeriod = configuration.getRunPeriod();
+		for (int runPeriodSeconds : runPeriodsSeconds(server, defaultRunPeriod)) {
+			Long alignmentOffset = configuration.isAlignServerJobs()
+					? alignmentOffset(configuration, server.getId(), SECONDS.toMillis(runPeriodSeconds))
+					: null;
+			schedule(new ServerCommand(server, queryExecutorRepository, resultProcessor, hostConcurrencyGovernor, overrunPolicy,
+					runPeriodSeconds, defaultRunPeriod, alignmentOffset));
 		}
 	}
 
-	public void schedule(Server server) {
-		ServerCommand serverCommand = new ServerCommand(server, queryExecutorRepository, resultProcessor);
-		long runPeriod = serverCommand.getRunPeriodSeconds(configuration.getRunPeriod());
-		ScheduledFuture<?> scheduledFuture = scheduledExecutor.scheduleAtFixedRate(serverCommand, runPeriod, runPeriod, TimeUnit.SECONDS);
+	private void schedule(ServerCommand serverCommand) {
+		long runPeriod = SECONDS.toMillis(serverCommand.getRunPeriodSeconds());
+		long initialDelay = initialDelay(configuration, serverCommand.getServer().getId(), runPeriod, System.currentTimeMillis());
+		ServerTimer.Cancellable scheduled = timer.scheduleAtFixedRate(serverCommand, initialDelay, runPeriod);
 		synchronized (this.scheduledServerCommands) {
-			this.scheduledServerCommands.add(new ScheduledServerCommand(serverCommand, scheduledFuture));
+			this.scheduledServerCommands.add(new ScheduledServerCommand(serverCommand, scheduled));
+		}
+
+		log.debug("Scheduled job for server {} every {}s, starting in {}ms", serverCommand.getName(), serverCommand.getRunPeriodSeconds(), initialDelay);
+	}
+
+	/**
+	 * Distinct run periods of the queries of a server, in seconds, one command
+	 * being scheduled for each of them.
+	 */
+	static Set<Integer> runPeriodsSeconds(Server server, int defaultRunPeriod) {
+		Set<Integer> runPeriods = new TreeSet<>();
+		for (Query query : firstNonNull(server.getQueries(), ImmutableSet.<Query>of())) {
+			runPeriods.add(ServerCommand.getRunPeriodSeconds(server, query, defaultRunPeriod));
+		}
+		if (runPeriods.isEmpty()) {
+			runPeriods.add(ServerCommand.getRunPeriodSeconds(server, defaultRunPeriod));
+		}
+		return runPeriods;
+	}
+
+	/**
+	 * Delay until the first run of a server scheduled now, over all its run
+	 * periods.
+	 */
+	static long firstRunDelay(JmxTransConfiguration configuration, Server server, long nowMillis) {
+		long firstRunDelay = Long.MAX_VALUE;
+		for (int runPeriodSeconds : runPeriodsSeconds(server, configuration.getRunPeriod())) {
+			firstRunDelay = Math.min(firstRunDelay,
+					initialDelay(configuration, server.getId(), SECONDS.toMillis(runPeriodSeconds), nowMillis));
+		}
+		return firstRunDelay;
+	}
+
+	private static long initialDelay(JmxTransConfiguration configuration, @Nullable String serverId, long runPeriodMillis, long nowMillis) {
+		if (configuration.isAlignServerJobs()) {
+			return delayUntilOffset(alignmentOffset(configuration, serverId, runPeriodMillis), runPeriodMillis, nowMillis);
+		}
+		if (configuration.isSpreadServerJobs()) {
+			return spreadInitialDelay(serverId, runPeriodMillis, nowMillis);
+		}
+		return runPeriodMillis;
+	}
+
+	private static long alignmentOffset(JmxTransConfiguration configuration, @Nullable String serverId, long runPeriodMillis) {
+		return spreadOffset(serverId, Math.min(configuration.getAlignedSpreadMillis(), runPeriodMillis));
+	}
+
+	/**
+	 * Delay until the next run of a server, so that each server runs at a
+	 * fixed offset within the run period. The offset is hashed from the server
+	 * id and counted from the epoch: servers are spread evenly over the
+	 * period, and keep the same slot across reloads and restarts.
+	 */
+	@VisibleForTesting
+	static long spreadInitialDelay(@Nullable String serverId, long runPeriodMillis, long nowMillis) {
+		return delayUntilOffset(spreadOffset(serverId, runPeriodMillis), runPeriodMillis, nowMillis);
+	}
+
+	/**
+	 * Stable offset of a server within a window, hashed from its id.
+	 */
+	@VisibleForTesting
+	static long spreadOffset(@Nullable String serverId, long windowMillis) {
+		if (serverId == null || windowMillis <= 0) {
+			return 0;
 		}
+		return LongMath.mod(Hashing.murmur3_32().hashString(serverId, UTF_8).asInt(), windowMillis);
+	}
 
-		log.debug("Scheduled job for server {}", serverCommand.getName());
+	/**
+	 * Delay until the next time at the given offset from a multiple of the run
+	 * period, counted from the epoch.
+	 */
+	@VisibleForTesting
+	static long delayUntilOffset(long offsetMillis, long runPeriodMillis, long nowMillis) {
+		if (runPeriodMillis <= 0) {
+			return 0;
+		}
+		return LongMath.mod(offsetMillis - nowMillis, runPeriodMillis);
 	}
 
 	public void unscheduleAll() {
 		synchronized (this.scheduledServerCommands) {
+			timer.cancelAll();
 			for (Iterator<ScheduledServerCommand> commandsIterator = scheduledServerCommands.iterator(); commandsIterator.hasNext(); ) {
 				ScheduledServerCommand command = commandsIterator.next();
-				command.cancel();
+				command.serverCommand.close();
 				commandsIterator.remove();
 				log.debug("Deleted scheduled job for server {}", command.getName());
 			}
 		}
 	}
 
+	@Override
+	public int getScheduledServerCount() {
+		synchronized (this.scheduledServerCommands) {
+			return scheduledServerCommands.size();
+		}
+	}
+
+	@Override
+	public String getOverrunPolicy() {
+		return overrunPolicy.name();
+	}
+
+	@Override
+	public Map<String, Long> getOverrunCycles() {
+		Map<String, Long> overrunCycles = new LinkedHashMap<>();
+		synchronized (this.scheduledServerCommands) {
+			for (ScheduledServerCommand command : scheduledServerCommands) {
+				Long previous = overrunCycles.get(command.getName());
+				overrunCycles.put(command.getName(), (previous == null ? 0 : previous) + command.serverCommand.getOverrunCycles());
+			}
+		}
+		return overrunCycles;
+	}
+
+	@Override
+	public Map<String, Long> getSkippedCycles() {
+		Map<String, Long> skippedCycles = new LinkedHashMap<>();
+		synchronized (this.scheduledServerCommands) {
+			for (ScheduledServerCommand command : scheduledServerCommands) {
+				Long previous = skippedCycles.get(command.getName());
+				skippedCycles.put(command.getName(), (previous == null ? 0 : previous) + command.serverCommand.getSkippedCycles());
+			}
+		}
+		return skippedCycles;
+	}
+
+	@Override
+	public Map<String, Long> getSkippedFetches() {
+		Map<String, Long> skippedFetches = new LinkedHashMap<>();
+		synchronized (this.scheduledServerCommands) {
+			for (ScheduledServerCommand command : scheduledServerCommands) {
+				Long previous = skippedFetches.get(command.getName());
+				skippedFetches.put(command.getName(), (previous == null ? 0 : previous) + command.serverCommand.getSkippedFetches());
+			}
+		}
+		return skippedFetches;
+	}
+
+	@Override
+	public String getTimerType() {
+		return timer.getClass().getSimpleName();
+	}
+
+	@Override
+	public long getLastTickDriftMillis() {
+		return timer.getLastTickDriftMillis();
+	}
+
+	@Override
+	public long getMaxTickDriftMillis() {
+		return timer.getMaxTickDriftMillis();
+	}
+
+	@Override
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+
 	public void stop() {
+		timer.stop();
 		if (!scheduledExecutor.isShutdown()) {
 			scheduledExecutor.shutdown();
 			log.debug("Shutdown scheduler");
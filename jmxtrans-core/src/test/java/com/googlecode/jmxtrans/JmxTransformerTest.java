@@ -28,26 +28,13 @@ import org.junit.Test;
 
 import java.io.File;
 import java.net.URISyntaxException;
-import java.util.Date;
 import java.util.List;
 
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
-import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 
 public class JmxTransformerTest {
 
-	@Test
-	public void startDateIsSpreadAccordingToRunPeriod() {
-		JmxTransformer jmxTransformer = createJmxTransformer(new JmxTransConfiguration());
-
-		Date now = new Date();
-
-		assertThat(jmxTransformer.computeSpreadStartDate(60))
-				.isBetween(now, new Date(now.getTime() + MILLISECONDS.convert(60, SECONDS)));
-	}
-
 	@Test
 	public void findProcessConfigFiles() throws URISyntaxException {
 		JmxTransConfiguration configuration = new JmxTransConfiguration();
@@ -60,6 +47,6 @@ public class JmxTransformerTest {
 	}
 
 	private JmxTransformer createJmxTransformer(JmxTransConfiguration configuration) {
-		return new JmxTransformer(null, configuration, null, null, mock(ExecutorRepository.class), mock(ExecutorRepository.class), null);
+		return new JmxTransformer(null, configuration, null, null, mock(ExecutorRepository.class), mock(ExecutorRepository.class), null, null, null);
 	}
 }
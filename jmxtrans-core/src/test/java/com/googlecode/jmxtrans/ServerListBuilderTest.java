@@ -29,9 +29,13 @@ import com.googlecode.jmxtrans.model.OutputWriterFactory;
 import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.output.SpoolingOutputWriterFactory;
+import com.googlecode.jmxtrans.model.output.support.SpoolingOutputWriter;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import javax.annotation.Nonnull;
 import java.util.Iterator;
@@ -45,6 +49,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 public class ServerListBuilderTest {
 
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+
 	@Test
 	public void serversAreMerged() {
 		ImmutableList serverList = new ServerListBuilder()
@@ -123,6 +129,35 @@ public class ServerListBuilderTest {
 				.isSameAs(createdQuery.getOutputWriterInstances().iterator().next());
 	}
 
+	@Test
+	public void spoolingOutputWriterSharedByQueriesOpensItsSpoolOnce() throws Exception {
+		SpoolingOutputWriterFactory spooling = new SpoolingOutputWriterFactory(
+				new DummyOutputWriterFactory("output1"), folder.getRoot().getPath(), 4096, 4096L, null, null);
+		Server server = Server.builder(serverWithNoQuery())
+				.addQuery(Query.builder(dummyQuery())
+						.addOutputWriterFactory(spooling)
+						.build())
+				.addQuery(Query.builder(queryWithAllTypeNames())
+						.addOutputWriterFactory(spooling)
+						.build())
+				.build();
+
+		ImmutableList<Server> servers = new ServerListBuilder().add(singletonList(server)).build();
+
+		Iterator<Query> queryIterator = servers.iterator().next().getQueries().iterator();
+		OutputWriter writer1 = queryIterator.next().getOutputWriterInstances().iterator().next();
+		OutputWriter writer2 = queryIterator.next().getOutputWriterInstances().iterator().next();
+		assertThat(writer1).isSameAs(writer2);
+
+		writer1.start();
+		writer2.start();
+		try {
+			assertThat(((SpoolingOutputWriter) writer1).getObjectName()).isNotNull();
+		} finally {
+			writer1.close();
+		}
+	}
+
 	@EqualsAndHashCode
 	@ToString
 	private static final class DummyOutputWriterFactory implements OutputWriterFactory {
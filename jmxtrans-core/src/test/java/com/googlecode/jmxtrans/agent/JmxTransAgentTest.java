@@ -0,0 +1,73 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.agent;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JmxTransAgentTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void defaultsToSmallLowPriorityThreadBudget() throws IOException {
+		Properties properties = JmxTransAgent.agentProperties(null);
+
+		assertThat(properties.getProperty("query.processor.executor.pool.size")).isEqualTo("2");
+		assertThat(properties.getProperty("result.processor.executor.pool.size")).isEqualTo("1");
+		assertThat(properties.getProperty("scheduled.executor.pool.size")).isEqualTo("1");
+		assertThat(properties.getProperty("executor.thread.priority")).isEqualTo("1");
+	}
+
+	@Test
+	public void inlineArgumentsOverrideConfigFile() throws IOException {
+		File configFile = temporaryFolder.newFile("jmxtrans.properties");
+		try (Writer writer = new FileWriter(configFile)) {
+			writer.write("run.period.in.seconds=30\nquery.processor.executor.pool.size=4\n");
+		}
+
+		Properties properties = JmxTransAgent.agentProperties(
+				"config.file=" + configFile.getAbsolutePath() + "; run.period.in.seconds=10;json.file=/tmp/app.json");
+
+		assertThat(properties.getProperty("run.period.in.seconds")).isEqualTo("10");
+		assertThat(properties.getProperty("query.processor.executor.pool.size")).isEqualTo("4");
+		assertThat(properties.getProperty("json.file")).isEqualTo("/tmp/app.json");
+	}
+
+	@Test
+	public void invalidArgumentsDoNotStopTheMonitoredJvm() {
+		JmxTransAgent.premain("json.file", null);
+		JmxTransAgent.premain("run.period.in.seconds=10;run.period.in.seconds=20", null);
+		JmxTransAgent.premain("agent.startup.delay.seconds=5s", null);
+	}
+}
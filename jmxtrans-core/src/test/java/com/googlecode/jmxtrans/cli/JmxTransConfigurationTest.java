@@ -22,6 +22,7 @@
  */
 package com.googlecode.jmxtrans.cli;
 
+import com.beust.jcommander.ParameterException;
 import org.junit.Test;
 
 import java.io.File;
@@ -51,4 +52,20 @@ public class JmxTransConfigurationTest {
 		}
 	}
 
+	@Test(expected = ParameterException.class)
+	public void threadPriorityAboveMaximumIsRejected() {
+		Properties properties = new Properties();
+		properties.setProperty("executor.thread.priority", "11");
+		new JmxTransConfiguration().loadProperties(properties);
+	}
+
+	@Test
+	public void threadPriorityWithinRangeIsAccepted() {
+		Properties properties = new Properties();
+		properties.setProperty("executor.thread.priority", "10");
+		JmxTransConfiguration configuration = new JmxTransConfiguration();
+		configuration.loadProperties(properties);
+		assertThat(configuration.getExecutorThreadPriority()).isEqualTo(Thread.MAX_PRIORITY);
+	}
+
 }
@@ -0,0 +1,124 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.executors;
+
+import com.googlecode.jmxtrans.monitoring.ManagedThreadPoolExecutor;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveThreadPoolExecutorTest {
+
+	private final CountDownLatch release = new CountDownLatch(1);
+	private AdaptiveThreadPoolExecutor executor;
+
+	@After
+	public void shutdownExecutor() {
+		release.countDown();
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void growsWhenTasksWaitTooLong() throws Exception {
+		executor = createExecutor(1, 1, 4);
+		for (int i = 0; i < 3; i++) {
+			executor.execute(blockingTask());
+		}
+		MILLISECONDS.sleep(50);
+
+		executor.adjust(MILLISECONDS.toNanos(50));
+
+		assertThat(executor.getCorePoolSize()).isEqualTo(2);
+		assertThat(executor.getResizeCount()).isEqualTo(1);
+		assertThat(executor.getLastResizeDecision()).startsWith("grew from 1 to 2 threads");
+	}
+
+	@Test
+	public void neverGrowsOverTheMaximum() throws Exception {
+		executor = createExecutor(2, 1, 2);
+		for (int i = 0; i < 3; i++) {
+			executor.execute(blockingTask());
+		}
+		MILLISECONDS.sleep(50);
+
+		executor.adjust(MILLISECONDS.toNanos(50));
+
+		assertThat(executor.getCorePoolSize()).isEqualTo(2);
+		assertThat(executor.getResizeCount()).isZero();
+	}
+
+	@Test
+	public void shrinksWhenIdle() throws Exception {
+		executor = createExecutor(8, 1, 8);
+		release.countDown();
+		executor.submit(blockingTask()).get(5, SECONDS);
+
+		executor.adjust(SECONDS.toNanos(1));
+
+		assertThat(executor.getCorePoolSize()).isEqualTo(4);
+		assertThat(executor.getLastResizeDecision()).startsWith("shrank from 8 to 4 threads");
+	}
+
+	@Test
+	public void decisionsAreExported() throws Exception {
+		executor = createExecutor(1, 1, 4);
+		ManagedThreadPoolExecutor mbean = new ManagedThreadPoolExecutor(executor, "test");
+		executor.execute(blockingTask());
+		executor.execute(blockingTask());
+		MILLISECONDS.sleep(50);
+
+		executor.adjust(MILLISECONDS.toNanos(50));
+
+		assertThat(mbean.isAdaptive()).isTrue();
+		assertThat(mbean.getResizeCount()).isEqualTo(1);
+		assertThat(mbean.getAverageQueueWaitMillis()).isGreaterThanOrEqualTo(10);
+		assertThat(mbean.getLastResizeDecision()).isEqualTo(executor.getLastResizeDecision());
+	}
+
+	private AdaptiveThreadPoolExecutor createExecutor(int initial, int min, int max) {
+		// adjustments are only made by the test
+		return new AdaptiveThreadPoolExecutor(initial, min, max, 10, TimeUnit.DAYS.toMillis(1),
+				new LinkedBlockingQueue<Runnable>(), Executors.defaultThreadFactory());
+	}
+
+	private Runnable blockingTask() {
+		return new Runnable() {
+			@Override
+			public void run() {
+				try {
+					release.await(5, SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.executors;
+
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static com.googlecode.jmxtrans.model.ServerFixtures.DEFAULT_QUERY;
+import static com.googlecode.jmxtrans.model.ServerFixtures.createServerWithOneQuery;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BulkheadExecutorRepositoryTest {
+
+	private final Server slowServer = createServerWithOneQuery("host1.example.net", "1099", DEFAULT_QUERY);
+	private final Server otherServer = createServerWithOneQuery("host2.example.net", "1099", DEFAULT_QUERY);
+
+	private final CountDownLatch release = new CountDownLatch(1);
+	private BulkheadExecutorRepository repository;
+
+	@Before
+	public void createRepository() throws Exception {
+		repository = new BulkheadExecutorRepository(new ExecutorFactory(4, 100, "test"), 1, 2);
+		repository.put(slowServer);
+		repository.put(otherServer);
+	}
+
+	@After
+	public void shutdownExecutors() {
+		release.countDown();
+		for (ThreadPoolExecutor executor : repository.getExecutors()) {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void serversShareOneExecutor() {
+		assertThat(repository.getExecutors()).hasSize(1);
+		assertThat(repository.getMBeans()).hasSize(1);
+		assertThat(repository.getExecutor(slowServer)).isNotSameAs(repository.getExecutor(otherServer));
+	}
+
+	@Test
+	public void slowServerOnlyHoldsItsOwnPermits() throws Exception {
+		CountDownLatch slowStarted = new CountDownLatch(2);
+		repository.getExecutor(slowServer).execute(blockingTask(slowStarted));
+		repository.getExecutor(slowServer).execute(blockingTask(slowStarted));
+
+		CountDownLatch otherStarted = new CountDownLatch(1);
+		repository.getExecutor(otherServer).execute(blockingTask(otherStarted));
+
+		assertThat(otherStarted.await(5, SECONDS)).isTrue();
+		// one permit per server: the second task of the slow server is still waiting
+		assertThat(slowStarted.getCount()).isEqualTo(1);
+
+		release.countDown();
+		assertThat(slowStarted.await(5, SECONDS)).isTrue();
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void fullQueueRejectsTasksOfThatServerOnly() {
+		ExecutorService executor = repository.getExecutor(slowServer);
+		executor.execute(blockingTask(new CountDownLatch(1)));
+		executor.execute(blockingTask(new CountDownLatch(1)));
+		executor.execute(blockingTask(new CountDownLatch(1)));
+
+		try {
+			repository.getExecutor(otherServer).execute(blockingTask(new CountDownLatch(1)));
+		} catch (RejectedExecutionException ree) {
+			throw new AssertionError("Other server should still accept tasks");
+		}
+		executor.execute(blockingTask(new CountDownLatch(1)));
+	}
+
+	@Test
+	public void removedServerIsShutDown() throws Exception {
+		ExecutorService executor = repository.getExecutor(slowServer);
+		release.countDown();
+
+		repository.remove(slowServer);
+
+		assertThat(repository.getExecutor(slowServer)).isNull();
+		assertThat(executor.isTerminated()).isTrue();
+	}
+
+	private Runnable blockingTask(final CountDownLatch started) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					release.await(5, SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+	}
+}
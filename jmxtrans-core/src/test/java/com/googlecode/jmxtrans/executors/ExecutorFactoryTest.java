@@ -0,0 +1,73 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.executors;
+
+import com.googlecode.jmxtrans.monitoring.ManagedThreadPoolExecutor;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ExecutorFactoryTest {
+
+	@Test
+	public void platformThreadsAreNamedAfterAlias() throws Exception {
+		ManagedThreadPoolExecutor executor = new ExecutorFactory(2, 10, "query", Thread.MIN_PRIORITY).create("server");
+
+		try {
+			Thread thread = runOn(executor.getExecutor());
+			assertThat(thread.getName()).startsWith("jmxtrans-query-server-");
+			assertThat(thread.getPriority()).isEqualTo(Thread.MIN_PRIORITY);
+			assertThat(executor.getMaximumPoolSize()).isEqualTo(2);
+		} finally {
+			executor.getExecutor().shutdownNow();
+		}
+	}
+
+	@Test
+	public void virtualThreadModeKeepsPoolSizeAsConcurrencyLimit() throws Exception {
+		ManagedThreadPoolExecutor executor = new ExecutorFactory(2, 10, "result", Thread.NORM_PRIORITY, true).create(null);
+
+		try {
+			Thread thread = runOn(executor.getExecutor());
+			// virtual threads are only available from Java 21
+			assertThat(thread.getName()).startsWith("jmxtrans-result-");
+			assertThat(executor.getMaximumPoolSize()).isEqualTo(2);
+			assertThat(executor.allowsCoreThreadTimeOut()).isEqualTo(VirtualThreads.isAvailable());
+		} finally {
+			executor.getExecutor().shutdownNow();
+		}
+	}
+
+	private static Thread runOn(ThreadPoolExecutor executor) throws Exception {
+		return executor.submit(new Callable<Thread>() {
+			@Override
+			public Thread call() {
+				return Thread.currentThread();
+			}
+		}).get(5, SECONDS);
+	}
+}
@@ -0,0 +1,163 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.executors;
+
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.googlecode.jmxtrans.model.ServerFixtures.DEFAULT_QUERY;
+import static com.googlecode.jmxtrans.model.ServerFixtures.createServerWithOneQuery;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class HostConcurrencyGovernorTest {
+
+	private ExecutorService executor;
+	private ScheduledExecutorService scheduler;
+
+	private final Server firstJvm = createServerWithOneQuery("host1.example.net", "1099", DEFAULT_QUERY);
+	private final Server secondJvm = createServerWithOneQuery("HOST1.example.net", "2099", DEFAULT_QUERY);
+	private final Server otherHost = createServerWithOneQuery("host2.example.net", "1099", DEFAULT_QUERY);
+
+	@Before
+	public void createExecutors() {
+		executor = Executors.newFixedThreadPool(4);
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+	}
+
+	@After
+	public void shutdownExecutors() {
+		executor.shutdownNow();
+		scheduler.shutdownNow();
+	}
+
+	@Test
+	public void serversOfTheSameHostShareTheLimit() throws Exception {
+		HostConcurrencyGovernor governor = new HostConcurrencyGovernor(1, 0, scheduler);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+
+		governor.execute(firstJvm, executor, blockingTask(started, release));
+		governor.execute(secondJvm, executor, blockingTask(started, release));
+		assertThat(started.await(5, SECONDS)).isTrue();
+
+		assertThat(governor.getInFlightCount(firstJvm)).isEqualTo(1);
+		assertThat(governor.getQueuedCount(secondJvm)).isEqualTo(1);
+
+		release.countDown();
+		waitUntilIdle(governor, firstJvm);
+		assertThat(governor.getQueuedCount(firstJvm)).isEqualTo(0);
+	}
+
+	@Test
+	public void otherHostsAreNotHeldBack() throws Exception {
+		HostConcurrencyGovernor governor = new HostConcurrencyGovernor(1, 0, scheduler);
+		CountDownLatch release = new CountDownLatch(1);
+
+		governor.execute(firstJvm, executor, blockingTask(new CountDownLatch(1), release));
+		CountDownLatch otherStarted = new CountDownLatch(1);
+		governor.execute(otherHost, executor, blockingTask(otherStarted, new CountDownLatch(0)));
+
+		assertThat(otherStarted.await(5, SECONDS)).isTrue();
+		release.countDown();
+	}
+
+	@Test
+	public void tasksOverTheQueueBoundAreRejected() throws Exception {
+		HostConcurrencyGovernor governor = new HostConcurrencyGovernor(1, 0, 1, scheduler);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+
+		governor.execute(firstJvm, executor, blockingTask(started, release));
+		assertThat(started.await(5, SECONDS)).isTrue();
+		governor.execute(firstJvm, executor, blockingTask(new CountDownLatch(1), release));
+
+		try {
+			governor.execute(secondJvm, executor, blockingTask(new CountDownLatch(1), release));
+			fail("The queue of the host is full");
+		} catch (RejectedExecutionException expected) {
+		}
+		assertThat(governor.getQueuedCount(firstJvm)).isEqualTo(1);
+
+		// other hosts have queues of their own
+		CountDownLatch otherStarted = new CountDownLatch(1);
+		governor.execute(otherHost, executor, blockingTask(otherStarted, release));
+		assertThat(otherStarted.await(5, SECONDS)).isTrue();
+
+		release.countDown();
+		waitUntilIdle(governor, firstJvm);
+	}
+
+	@Test
+	public void callRateIsLimited() throws Exception {
+		HostConcurrencyGovernor governor = new HostConcurrencyGovernor(0, 10, scheduler);
+		final AtomicInteger runs = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(5);
+		long start = System.nanoTime();
+
+		for (int i = 0; i < 5; i++) {
+			governor.execute(firstJvm, executor, new Runnable() {
+				@Override
+				public void run() {
+					runs.incrementAndGet();
+					done.countDown();
+				}
+			});
+		}
+
+		assertThat(done.await(5, SECONDS)).isTrue();
+		assertThat(runs.get()).isEqualTo(5);
+		// 5 calls at 10 per second: the last one starts at least 400ms after the first
+		assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(SECONDS.toNanos(1) * 4 / 10);
+	}
+
+	private static Runnable blockingTask(final CountDownLatch started, final CountDownLatch release) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					release.await(5, SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+	}
+
+	private static void waitUntilIdle(HostConcurrencyGovernor governor, Server server) throws InterruptedException {
+		for (int i = 0; i < 500 && (governor.getInFlightCount(server) > 0 || governor.getQueuedCount(server) > 0); i++) {
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.Result;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptivePollingTest {
+
+	private static final long PERIOD = 10000;
+
+	private final AdaptivePolling adaptivePolling = new AdaptivePolling(PERIOD, 4 * PERIOD);
+
+	@Test
+	public void stableMBeansAreFetchedLessOften() throws Exception {
+		ObjectName name = new ObjectName("test:type=Stable");
+
+		fetchEveryRun(name, 0, 10, 42);
+
+		assertThat(adaptivePolling.getPeriodMillis(name)).isEqualTo(4 * PERIOD);
+		assertThat(adaptivePolling.getFetches()).isLessThan(10);
+		assertThat(adaptivePolling.getSkippedFetches()).isEqualTo(10 - adaptivePolling.getFetches());
+	}
+
+	@Test
+	public void changedMBeansAreFetchedEveryRunAgain() throws Exception {
+		ObjectName name = new ObjectName("test:type=Changing");
+		fetchEveryRun(name, 0, 10, 42);
+
+		long now = 10 * PERIOD;
+		while (!adaptivePolling.isDue(name, now)) {
+			now += PERIOD;
+		}
+		adaptivePolling.fetched(name, results(now, 43), now);
+
+		assertThat(adaptivePolling.getPeriodMillis(name)).isEqualTo(PERIOD);
+		assertThat(adaptivePolling.isDue(name, now + PERIOD)).isTrue();
+	}
+
+	@Test
+	public void timestampsAreNotChanges() throws Exception {
+		ObjectName name = new ObjectName("test:type=Stable");
+
+		adaptivePolling.fetched(name, results(0, 42), 0);
+		adaptivePolling.fetched(name, results(PERIOD, 42), PERIOD);
+
+		assertThat(adaptivePolling.getPeriodMillis(name)).isEqualTo(2 * PERIOD);
+	}
+
+	@Test
+	public void unknownMBeansAreDue() throws Exception {
+		ObjectName name = new ObjectName("test:type=Stable");
+		adaptivePolling.fetched(name, results(0, 42), 0);
+		adaptivePolling.fetched(name, results(PERIOD, 42), PERIOD);
+
+		adaptivePolling.retain(ImmutableList.<ObjectName>of());
+
+		assertThat(adaptivePolling.isDue(name, 2 * PERIOD)).isTrue();
+		assertThat(adaptivePolling.getPeriodMillis(name)).isEqualTo(PERIOD);
+	}
+
+	private void fetchEveryRun(ObjectName name, int firstRun, int runs, int value) {
+		for (int run = firstRun; run < firstRun + runs; run++) {
+			long now = run * PERIOD;
+			if (adaptivePolling.isDue(name, now)) {
+				adaptivePolling.fetched(name, results(now, value), now);
+			}
+		}
+	}
+
+	private static ImmutableList<Result> results(long epoch, int value) {
+		return ImmutableList.of(new Result(epoch, "Value", "Test", "test", null, "type=Test", ImmutableList.<String>of(), value));
+	}
+}
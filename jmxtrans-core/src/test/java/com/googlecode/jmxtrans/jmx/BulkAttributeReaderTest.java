@@ -0,0 +1,125 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.AttributeList;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BulkAttributeReaderTest {
+
+	private MBeanServer mBeanServer;
+
+	@Before
+	public void registerMBeans() throws Exception {
+		mBeanServer = MBeanServerFactory.newMBeanServer();
+		BulkAttributeReader.install(mBeanServer);
+		mBeanServer.registerMBean(new Dummy(1), new ObjectName("test:type=Dummy,name=one"));
+		mBeanServer.registerMBean(new Dummy(2), new ObjectName("test:type=Dummy,name=two"));
+	}
+
+	@Test
+	public void installIsIdempotent() throws Exception {
+		BulkAttributeReader.install(mBeanServer);
+
+		assertThat(mBeanServer.isRegistered(BulkAttributeReader.OBJECT_NAME)).isTrue();
+	}
+
+	@Test
+	public void fetchesAllMatchingMBeansInOneCall() throws Exception {
+		Map<ObjectInstance, AttributeList> values = reader().fetchAttributes(
+				new ObjectName[]{new ObjectName("test:type=Dummy,*")},
+				new String[][]{new String[]{"Value"}});
+
+		assertThat(values).hasSize(2);
+		for (AttributeList attributes : values.values()) {
+			assertThat(attributes.asList()).hasSize(1);
+			assertThat(attributes.asList().get(0).getName()).isEqualTo("Value");
+		}
+		assertThat(reader().getFetchCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void emptyAttributeListReadsAllAttributes() throws Exception {
+		Map<ObjectInstance, AttributeList> values = reader().fetchAttributes(
+				new ObjectName[]{new ObjectName("test:type=Dummy,name=one")},
+				new String[][]{new String[0]});
+
+		assertThat(values.values().iterator().next().asList()).hasSize(2);
+	}
+
+	@Test
+	public void queryResultsAreBuiltFromBulkFetch() throws Exception {
+		Query query = Query.builder()
+				.setObj("test:type=Dummy,*")
+				.addAttr("Value")
+				.build();
+
+		ImmutableList<Result> results = ImmutableList.copyOf(query.fetchResultsInBulk(mBeanServer));
+
+		assertThat(results).hasSize(2);
+		assertThat(results.get(0).getAttributeName()).isEqualTo("Value");
+		assertThat(results.get(0).getObjDomain()).isEqualTo("test");
+		assertThat(results.get(0).getClassName()).isEqualTo(Dummy.class.getName());
+	}
+
+	private BulkAttributeReaderMBean reader() {
+		return JMX.newMBeanProxy(mBeanServer, BulkAttributeReader.OBJECT_NAME, BulkAttributeReaderMBean.class);
+	}
+
+	public interface DummyMBean {
+		int getValue();
+
+		String getName();
+	}
+
+	public static class Dummy implements DummyMBean {
+		private final int value;
+
+		public Dummy(int value) {
+			this.value = value;
+		}
+
+		@Override
+		public int getValue() {
+			return value;
+		}
+
+		@Override
+		public String getName() {
+			return "dummy-" + value;
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+
+import javax.management.AttributeChangeNotification;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.Notification;
+import javax.management.NotificationBroadcasterSupport;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServer;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class NotificationResultListenerTest {
+
+	private static final String MBEAN_NAME = "test:type=Emitter";
+
+	private MBeanServer mBeanServer;
+	private ObjectInstance emitterInstance;
+	private Emitter emitter;
+	private ResultProcessor resultProcessor;
+	private Server server;
+
+	@Captor
+	private ArgumentCaptor<Iterable<Result>> resultsCaptor;
+
+	@Before
+	public void registerEmitter() throws Exception {
+		initMocks(this);
+		mBeanServer = MBeanServerFactory.newMBeanServer();
+		emitter = new Emitter();
+		emitterInstance = mBeanServer.registerMBean(emitter, new ObjectName(MBEAN_NAME));
+		resultProcessor = mock(ResultProcessor.class);
+		server = dummyServer();
+	}
+
+	@Test
+	public void attributeChangesAreSubmittedAsResults() throws Exception {
+		Query query = subscribe(Query.builder()
+				.setObj(MBEAN_NAME)
+				.addNotificationTypes(AttributeChangeNotification.ATTRIBUTE_CHANGE)
+				.build());
+
+		emitter.sendNotification(new AttributeChangeNotification(emitterInstance.getObjectName(), 1, 1234L, "changed", "Value", "int", 1, 2));
+
+		verify(resultProcessor).submit(eq(server), eq(query), resultsCaptor.capture());
+		ImmutableList<Result> results = ImmutableList.copyOf(resultsCaptor.getValue());
+		assertThat(results).hasSize(1);
+		assertThat(results.get(0).getAttributeName()).isEqualTo("Value");
+		assertThat(results.get(0).getValue()).isEqualTo(2);
+		assertThat(results.get(0).getEpoch()).isEqualTo(1234L);
+		assertThat(results.get(0).getClassName()).isEqualTo(Emitter.class.getName());
+	}
+
+	@Test
+	public void notificationsOfOtherTypesAreFilteredOut() throws Exception {
+		subscribe(Query.builder()
+				.setObj(MBEAN_NAME)
+				.addNotificationTypes("test.interesting")
+				.build());
+
+		emitter.sendNotification(new Notification("test.other", emitterInstance.getObjectName(), 1));
+
+		verify(resultProcessor, never()).submit(any(Server.class), any(Query.class), any(Iterable.class));
+	}
+
+	@Test
+	public void queryAttributesFilterReportedValues() throws Exception {
+		subscribe(Query.builder()
+				.setObj(MBEAN_NAME)
+				.addAttr("Other")
+				.addNotificationTypes(AttributeChangeNotification.ATTRIBUTE_CHANGE)
+				.build());
+
+		emitter.sendNotification(new AttributeChangeNotification(emitterInstance.getObjectName(), 1, 1234L, "changed", "Value", "int", 1, 2));
+
+		verify(resultProcessor, never()).submit(any(Server.class), any(Query.class), any(Iterable.class));
+	}
+
+	@Test
+	public void notificationWithoutDataReportsSequenceNumber() throws Exception {
+		subscribe(Query.builder()
+				.setObj(MBEAN_NAME)
+				.addNotificationTypes("test")
+				.build());
+
+		emitter.sendNotification(new Notification("test.event", emitterInstance.getObjectName(), 42));
+
+		verify(resultProcessor).submit(any(Server.class), any(Query.class), resultsCaptor.capture());
+		Result result = resultsCaptor.getValue().iterator().next();
+		assertThat(result.getAttributeName()).isEqualTo("SequenceNumber");
+		assertThat(result.getValue()).isEqualTo(42L);
+	}
+
+	private Query subscribe(Query query) throws Exception {
+		mBeanServer.addNotificationListener(
+				emitterInstance.getObjectName(),
+				new NotificationResultListener(resultProcessor, server, query),
+				query.notificationFilter(),
+				emitterInstance);
+		return query;
+	}
+
+	public interface EmitterMBean {
+	}
+
+	public static class Emitter extends NotificationBroadcasterSupport implements EmitterMBean {
+	}
+}
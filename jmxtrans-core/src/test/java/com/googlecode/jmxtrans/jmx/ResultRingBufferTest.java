@@ -0,0 +1,148 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import com.googlecode.jmxtrans.executors.ExecutorFactory;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.CountDownLatch;
+
+import static com.googlecode.jmxtrans.model.QueryFixtures.dummyQuery;
+import static com.googlecode.jmxtrans.model.ResultFixtures.dummyResults;
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServer;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class ResultRingBufferTest {
+
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final OutputWriter writer = mock(OutputWriter.class);
+	private ResultRingBuffer ringBuffer;
+
+	@After
+	public void closeRingBuffer() throws Exception {
+		release.countDown();
+		ringBuffer.close(1, SECONDS);
+	}
+
+	@Test
+	public void resultsAreWrittenWithEachWaitStrategy() throws Exception {
+		for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+			OutputWriter target = mock(OutputWriter.class);
+			ringBuffer = newRingBuffer(8, 3, waitStrategy);
+			Server server = dummyServer();
+			Query query = dummyQuery();
+
+			for (int i = 0; i < 100; i++) {
+				while (!ringBuffer.tryPublish(server, query, dummyResults(), target)) {
+					Thread.yield();
+				}
+			}
+
+			verify(target, timeout(1000).times(100)).doWrite(server, query, dummyResults());
+			ringBuffer.close(1, SECONDS);
+		}
+	}
+
+	@Test
+	public void parkedHandlersAreWokenUpByEachPublication() throws Exception {
+		ringBuffer = newRingBuffer(8, 3, WaitStrategy.BLOCKING);
+
+		for (int i = 1; i <= 10; i++) {
+			// let the handlers park before each publication
+			Thread.sleep(10);
+			assertThat(ringBuffer.tryPublish(dummyServer(), dummyQuery(), dummyResults(), writer)).isTrue();
+			verify(writer, timeout(1000).times(i)).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+		}
+	}
+
+	@Test
+	public void publicationFailsWhenTheRingIsFull() throws Exception {
+		stallWriter();
+		ringBuffer = newRingBuffer(2, 1, WaitStrategy.BLOCKING);
+
+		assertThat(ringBuffer.tryPublish(dummyServer(), dummyQuery(), dummyResults(), writer)).isTrue();
+		assertThat(ringBuffer.tryPublish(dummyServer(), dummyQuery(), dummyResults(), writer)).isTrue();
+		assertThat(ringBuffer.tryPublish(dummyServer(), dummyQuery(), dummyResults(), writer)).isFalse();
+
+		assertThat(ringBuffer.getRemainingCapacity()).isEqualTo(0);
+		assertThat(ringBuffer.getRejected()).isEqualTo(1);
+	}
+
+	@Test
+	public void slotsAreReusedOnceWritten() throws Exception {
+		stallWriter();
+		ringBuffer = newRingBuffer(2, 1, WaitStrategy.BLOCKING);
+		ringBuffer.tryPublish(dummyServer(), dummyQuery(), dummyResults(), writer);
+		ringBuffer.tryPublish(dummyServer(), dummyQuery(), dummyResults(), writer);
+
+		release.countDown();
+		long deadline = System.currentTimeMillis() + 1000;
+		while (ringBuffer.getRemainingCapacity() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+
+		assertThat(ringBuffer.tryPublish(dummyServer(), dummyQuery(), dummyResults(), writer)).isTrue();
+	}
+
+	@Test
+	public void closeWritesPublishedResults() throws Exception {
+		stallWriter();
+		ringBuffer = newRingBuffer(4, 1, WaitStrategy.BLOCKING);
+		ringBuffer.tryPublish(dummyServer(), dummyQuery(), dummyResults(), writer);
+		ringBuffer.tryPublish(dummyServer(), dummyQuery(), dummyResults(), writer);
+
+		release.countDown();
+		ringBuffer.close(1, SECONDS);
+
+		verify(writer, times(2)).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+		assertThat(ringBuffer.tryPublish(dummyServer(), dummyQuery(), dummyResults(), writer)).isFalse();
+	}
+
+	private ResultRingBuffer newRingBuffer(int bufferSize, int handlerCount, WaitStrategy waitStrategy) {
+		return new ResultRingBuffer(bufferSize, handlerCount, waitStrategy, new WriteDispatcher(), ExecutorFactory.threadFactory("test"));
+	}
+
+	@SuppressWarnings("unchecked")
+	private void stallWriter() throws Exception {
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				release.await();
+				return null;
+			}
+		}).when(writer).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.jmx;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.googlecode.jmxtrans.model.AsyncOutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static com.googlecode.jmxtrans.model.QueryFixtures.dummyQuery;
+import static com.googlecode.jmxtrans.model.ResultFixtures.dummyResults;
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServer;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class WriteDispatcherTest {
+
+	private final WriteDispatcher writeDispatcher = new WriteDispatcher(2, 10);
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void failedWritesAreCounted() throws Exception {
+		OutputWriter writer = mock(OutputWriter.class);
+		doThrow(new IOException("sink is down"))
+				.when(writer).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+
+		writeDispatcher.write(dummyServer(), dummyQuery(), dummyResults(), writer);
+
+		assertThat(writeDispatcher.getFailedWrites()).isEqualTo(1);
+	}
+
+	@Test
+	public void asyncWritesDoNotWaitForCompletion() throws Exception {
+		AsyncOutputWriter writer = mock(AsyncOutputWriter.class);
+		SettableFuture<Void> write = SettableFuture.create();
+		doReturn(write).when(writer).doWriteAsync(any(Server.class), any(Query.class), any(Iterable.class));
+
+		writeDispatcher.write(dummyServer(), dummyQuery(), dummyResults(), writer);
+
+		assertThat(writeDispatcher.getAsyncWritesInFlight()).isEqualTo(1);
+		verify(writer).doWriteAsync(any(Server.class), any(Query.class), any(Iterable.class));
+
+		write.set(null);
+
+		assertThat(writeDispatcher.getAsyncWritesInFlight()).isEqualTo(0);
+		assertThat(writeDispatcher.getFailedWrites()).isEqualTo(0);
+	}
+
+	@Test
+	public void failedAsyncWritesAreCounted() throws Exception {
+		AsyncOutputWriter writer = mock(AsyncOutputWriter.class);
+		SettableFuture<Void> write = SettableFuture.create();
+		doReturn(write).when(writer).doWriteAsync(any(Server.class), any(Query.class), any(Iterable.class));
+
+		writeDispatcher.write(dummyServer(), dummyQuery(), dummyResults(), writer);
+		write.setException(new IOException("sink is down"));
+
+		assertThat(writeDispatcher.getFailedWrites()).isEqualTo(1);
+		assertThat(writeDispatcher.getAsyncWritesInFlight()).isEqualTo(0);
+	}
+
+	@Test
+	public void writesInFlightAreBoundedPerWriter() throws Exception {
+		AsyncOutputWriter writer = mock(AsyncOutputWriter.class);
+		AsyncOutputWriter otherWriter = mock(AsyncOutputWriter.class);
+		doReturn(SettableFuture.create()).when(writer).doWriteAsync(any(Server.class), any(Query.class), any(Iterable.class));
+		doReturn(SettableFuture.create()).when(otherWriter).doWriteAsync(any(Server.class), any(Query.class), any(Iterable.class));
+
+		for (int i = 0; i < 3; i++) {
+			writeDispatcher.write(dummyServer(), dummyQuery(), dummyResults(), writer);
+		}
+		writeDispatcher.write(dummyServer(), dummyQuery(), dummyResults(), otherWriter);
+
+		verify(writer, times(2)).doWriteAsync(any(Server.class), any(Query.class), any(Iterable.class));
+		verify(otherWriter).doWriteAsync(any(Server.class), any(Query.class), any(Iterable.class));
+		assertThat(writeDispatcher.getRejectedWrites()).isEqualTo(1);
+		assertThat(writeDispatcher.getAsyncWritesInFlight()).isEqualTo(3);
+	}
+}
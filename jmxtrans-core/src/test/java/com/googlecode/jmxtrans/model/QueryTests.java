@@ -22,6 +22,9 @@
  */
 package com.googlecode.jmxtrans.model;
 
+import com.googlecode.jmxtrans.model.results.DropProcessor;
+import com.googlecode.jmxtrans.model.results.KeyPart;
+
 import java.util.List;
 
 import org.junit.Test;
@@ -112,4 +115,16 @@ public class QueryTests {
 		
 		assertThat(actual).isEqualTo("BAR_FOO");
 	}
+
+	@Test
+	public void processorsAreCompiledAndCopiedByBuilder() {
+		Query query = Query.builder()
+				.setObj("java.lang:type=Memory")
+				.addProcessors(new DropProcessor(KeyPart.ATTRIBUTE_NAME, "Verbose"))
+				.build();
+
+		assertThat(query.getProcessorChain().getProcessors()).containsExactly(new DropProcessor(KeyPart.ATTRIBUTE_NAME, "Verbose"));
+		assertThat(Query.builder(query).build()).isEqualTo(query);
+		assertThat(query.getProcessorChain().process(ResultFixtures.dummyResults())).containsExactly(ResultFixtures.numericResult());
+	}
 }
@@ -28,7 +28,13 @@ import org.junit.Test;
 import javax.annotation.Nonnull;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+@SuppressWarnings("unchecked")
 public class SingletonOutputWriterFactoryTest {
 
 	@Test
@@ -49,6 +55,20 @@ public class SingletonOutputWriterFactoryTest {
 		assertThat(outputWriterFactory1).isEqualTo(outputWriterFactory2);
 	}
 
+	@Test
+	public void outputWriterIsOnlyCreatedWhenFirstNeeded() {
+		OutputWriterFactory<OutputWriter> wrapped = mock(OutputWriterFactory.class);
+		when(wrapped.create()).thenReturn(mock(OutputWriter.class));
+		SingletonOutputWriterFactory<OutputWriter> outputWriterFactory = new SingletonOutputWriterFactory<>(wrapped);
+
+		verify(wrapped, never()).create();
+
+		outputWriterFactory.create();
+		outputWriterFactory.create();
+
+		verify(wrapped, times(1)).create();
+	}
+
 	@EqualsAndHashCode
 	private static final class DummyOutputWriterFactory implements OutputWriterFactory {
 
@@ -0,0 +1,219 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.googlecode.jmxtrans.exceptions.LifecycleException;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.EnumSet;
+import java.util.regex.Pattern;
+
+import static com.googlecode.jmxtrans.model.QueryFixtures.dummyQuery;
+import static com.googlecode.jmxtrans.model.ResultFixtures.numericResult;
+import static com.googlecode.jmxtrans.model.ServerFixtures.DEFAULT_PORT;
+import static com.googlecode.jmxtrans.model.ServerFixtures.DEFAULT_QUERY;
+import static com.googlecode.jmxtrans.model.ServerFixtures.createServerWithOneQuery;
+import static com.googlecode.jmxtrans.model.output.support.AggregatingOutputWriter.MEMBERSHIP_WINDOWS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class AggregatingOutputWriterTest {
+
+	private static final long WINDOW_MILLIS = 60000;
+
+	private final OutputWriter target = mock(OutputWriter.class);
+	private final Server web1 = createServerWithOneQuery("web-1", DEFAULT_PORT, DEFAULT_QUERY);
+	private final Server web2 = createServerWithOneQuery("web-2", DEFAULT_PORT, DEFAULT_QUERY);
+	private final Server db1 = createServerWithOneQuery("db-1", DEFAULT_PORT, DEFAULT_QUERY);
+	private final Query query = dummyQuery();
+	private AggregatingOutputWriter<OutputWriter> writer;
+
+	@After
+	public void closeWriter() throws Exception {
+		writer.close();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void firstWindowIsWrittenAfterMaxWait() throws Exception {
+		writer = writer(50, false);
+
+		writer.doWrite(web1, query, ImmutableList.of(numericResult(10L)));
+		writer.doWrite(web2, query, ImmutableList.of(numericResult(30L)));
+
+		ArgumentCaptor<Server> server = ArgumentCaptor.forClass(Server.class);
+		ArgumentCaptor<Iterable> aggregates = ArgumentCaptor.forClass(Iterable.class);
+		verify(target, timeout(1000)).doWrite(server.capture(), any(Query.class), aggregates.capture());
+		assertThat(server.getValue().getAlias()).isEqualTo("web");
+		assertThat(server.getValue().getHost()).isEqualTo("web-1");
+		assertThat(aggregates.getValue()).containsExactly(
+				aggregate("sum", 40L),
+				aggregate("min", 10L),
+				aggregate("max", 30L),
+				aggregate("avg", 20.0),
+				aggregate("count", 2L));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void serversPolledSeveralTimesInAWindowCountOnce() throws Exception {
+		writer = writer(50, false);
+
+		writer.doWrite(web1, query, ImmutableList.of(numericResult(10L).withEpoch(0)));
+		writer.doWrite(web1, query, ImmutableList.of(numericResult(20L).withEpoch(10000)));
+		writer.doWrite(web2, query, ImmutableList.of(numericResult(30L).withEpoch(5000)));
+		writer.doWrite(web1, query, ImmutableList.of(numericResult(50L).withEpoch(20000)));
+
+		ArgumentCaptor<Iterable> aggregates = ArgumentCaptor.forClass(Iterable.class);
+		verify(target, timeout(1000)).doWrite(any(Server.class), any(Query.class), aggregates.capture());
+		assertThat(aggregates.getValue()).containsExactly(
+				aggregate("sum", 80L),
+				aggregate("min", 30L),
+				aggregate("max", 50L),
+				aggregate("avg", 40.0),
+				aggregate("count", 2L));
+	}
+
+	@Test
+	public void windowIsWrittenOnceAllServersReported() throws Exception {
+		writer = writer(WINDOW_MILLIS, false);
+		writeWindow(0, web1, web2);
+		writer.flush();
+		verify(target).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+
+		writer.doWrite(web1, query, ImmutableList.of(numericResult(10L).withEpoch(WINDOW_MILLIS)));
+		verify(target).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+
+		writer.doWrite(web2, query, ImmutableList.of(numericResult(30L).withEpoch(WINDOW_MILLIS)));
+		verify(target, times(2)).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+		assertThat(writer.getOpenWindows()).isZero();
+	}
+
+	@Test
+	public void serversGoneAreNotWaitedFor() throws Exception {
+		writer = writer(WINDOW_MILLIS, false);
+		writeWindow(0, web1, web2);
+		writer.flush();
+
+		writeWindow(MEMBERSHIP_WINDOWS, web1);
+
+		verify(target, times(2)).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+	}
+
+	@Test
+	public void lateResultsAreDropped() throws Exception {
+		writer = writer(WINDOW_MILLIS, false);
+		writeWindow(0, web1);
+		writer.flush();
+
+		writeWindow(0, web2);
+
+		assertThat(writer.getLateResults()).isEqualTo(1);
+		assertThat(writer.getOpenWindows()).isZero();
+		verify(target).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+	}
+
+	@Test
+	public void serversOutsideGroupsAreWrittenAsTheyAre() throws Exception {
+		writer = writer(WINDOW_MILLIS, false);
+		ImmutableList<Result> results = ImmutableList.of(numericResult(10L));
+
+		writer.doWrite(db1, query, results);
+
+		verify(target).doWrite(db1, query, results);
+		assertThat(writer.getOpenWindows()).isZero();
+	}
+
+	@Test
+	public void rawResultsCanBeWrittenWithAggregates() throws Exception {
+		writer = writer(WINDOW_MILLIS, true);
+		ImmutableList<Result> results = ImmutableList.of(numericResult(10L));
+
+		writer.doWrite(web1, query, results);
+		writer.flush();
+
+		verify(target).doWrite(web1, query, results);
+		verify(target, times(2)).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+	}
+
+	@Test
+	public void pendingWindowsAreWrittenOnClose() throws Exception {
+		writer = writer(WINDOW_MILLIS, false);
+		writeWindow(0, web1);
+
+		writer.close();
+
+		verify(target).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+		verify(target).close();
+	}
+
+	@Test
+	public void nonNumericResultsAreNotAggregated() throws Exception {
+		writer = writer(WINDOW_MILLIS, false);
+
+		writer.doWrite(web1, query, ImmutableList.of(numericResult("text")));
+		writer.flush();
+
+		verify(target, never()).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void closedWriterRejectsWrites() throws Exception {
+		writer = writer(WINDOW_MILLIS, false);
+		writer.close();
+
+		writer.doWrite(web1, query, ImmutableList.of(numericResult(10L)));
+	}
+
+	private AggregatingOutputWriter<OutputWriter> writer(long maxWaitMillis, boolean writeRawResults) throws LifecycleException {
+		AggregatingOutputWriter<OutputWriter> writer = new AggregatingOutputWriter<>(target, Pattern.compile("(web)-\\d+"), "all",
+				ImmutableSet.copyOf(EnumSet.allOf(Aggregation.class)), WINDOW_MILLIS, maxWaitMillis, writeRawResults);
+		writer.start();
+		return writer;
+	}
+
+	private void writeWindow(long tick, Server... servers) throws Exception {
+		for (Server server : servers) {
+			writer.doWrite(server, query, ImmutableList.of(numericResult(10L).withEpoch(tick * WINDOW_MILLIS)));
+		}
+	}
+
+	private static Result aggregate(String aggregation, Object value) {
+		Result result = numericResult(value);
+		return new Result(0, result.getAttributeName(), result.getClassName(), result.getObjDomain(), result.getKeyAlias(),
+				result.getTypeName(), ImmutableList.of(aggregation), value);
+	}
+}
@@ -0,0 +1,165 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.exceptions.LifecycleException;
+import com.googlecode.jmxtrans.model.BatchOutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.QueryResults;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+
+import java.io.IOException;
+
+import static com.googlecode.jmxtrans.model.QueryFixtures.dummyQuery;
+import static com.googlecode.jmxtrans.model.ResultFixtures.booleanTrueResult;
+import static com.googlecode.jmxtrans.model.ResultFixtures.dummyResults;
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServer;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class BatchingOutputWriterTest {
+
+	private final BatchOutputWriter target = mock(BatchOutputWriter.class);
+	private BatchingOutputWriter<OutputWriter> writer;
+
+	@After
+	public void closeWriter() throws Exception {
+		writer.close();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void fullBatchIsWrittenAtOnce() throws Exception {
+		writer = started(new BatchingOutputWriter<OutputWriter>(target, 1000, 3, 60000));
+
+		for (int i = 0; i < 3; i++) {
+			writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+		}
+
+		ArgumentCaptor<ImmutableList> batch = ArgumentCaptor.forClass(ImmutableList.class);
+		verify(target).doWriteBatch(batch.capture());
+		assertThat(batch.getValue()).hasSize(3);
+		assertThat(batch.getValue().get(0)).isEqualTo(new QueryResults(dummyServer(), dummyQuery(), dummyResults()));
+		verify(target, never()).doWrite(any(), any(), any());
+	}
+
+	@Test
+	public void resultCountBoundsTheBatch() throws Exception {
+		writer = started(new BatchingOutputWriter<OutputWriter>(target, dummyResults().size(), 100, 60000));
+
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+
+		verify(target).doWriteBatch(ImmutableList.of(new QueryResults(dummyServer(), dummyQuery(), dummyResults())));
+	}
+
+	@Test
+	public void partialBatchIsWrittenAfterLingerTime() throws Exception {
+		writer = started(new BatchingOutputWriter<OutputWriter>(target, 1000, 100, 50));
+
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+
+		verify(target, timeout(1000)).doWriteBatch(ImmutableList.of(new QueryResults(dummyServer(), dummyQuery(), dummyResults())));
+	}
+
+	@Test
+	public void pendingResultsAreWrittenOnClose() throws Exception {
+		writer = started(new BatchingOutputWriter<OutputWriter>(target, 1000, 100, 60000));
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+
+		writer.close();
+
+		verify(target).doWriteBatch(ImmutableList.of(new QueryResults(dummyServer(), dummyQuery(), dummyResults())));
+		verify(target).close();
+	}
+
+	@Test
+	public void writersWithoutBatchesAreWrittenPerQuery() throws Exception {
+		OutputWriter perQueryTarget = mock(OutputWriter.class);
+		writer = started(new BatchingOutputWriter<>(perQueryTarget, 1000, 100, 10));
+
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+
+		verify(perQueryTarget).doWrite(dummyServer(), dummyQuery(), dummyResults());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void transformedBatchWritersAreWrittenInBatches() throws Exception {
+		writer = started(new BatchingOutputWriter<OutputWriter>(ResultTransformerOutputWriter.booleanToNumber(target), 1000, 2, 60000));
+		assertThat(writer.isBatching()).isTrue();
+
+		writer.doWrite(dummyServer(), dummyQuery(), ImmutableList.of(booleanTrueResult()));
+		writer.doWrite(dummyServer(), dummyQuery(), ImmutableList.of(booleanTrueResult()));
+
+		ArgumentCaptor<ImmutableList> batch = ArgumentCaptor.forClass(ImmutableList.class);
+		verify(target).doWriteBatch(batch.capture());
+		assertThat(batch.getValue()).hasSize(2);
+		QueryResults queryResults = (QueryResults) batch.getValue().get(0);
+		assertThat(queryResults.getResults().get(0).getValue()).isEqualTo(1);
+		verify(target, never()).doWrite(any(), any(), any());
+	}
+
+	@Test
+	public void transformedWritersWithoutBatchesAreWrittenPerQuery() throws Exception {
+		OutputWriter perQueryTarget = mock(OutputWriter.class);
+		writer = started(new BatchingOutputWriter<OutputWriter>(ResultTransformerOutputWriter.identity(perQueryTarget), 1000, 100, 10));
+
+		assertThat(writer.isBatching()).isFalse();
+	}
+
+	@Test
+	public void failuresOfBatchesWrittenInlineAreReported() throws Exception {
+		writer = started(new BatchingOutputWriter<OutputWriter>(target, 1000, 1, 60000));
+		doThrow(new IOException("sink is down")).when(target).doWriteBatch(ArgumentMatchers.<ImmutableList<QueryResults>>any());
+
+		try {
+			writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+			fail("The failure of the batch should be reported");
+		} catch (IOException expected) {
+			// the caller can spool or count the failed write
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void closedWriterRejectsWrites() throws Exception {
+		writer = started(new BatchingOutputWriter<OutputWriter>(target, 1000, 100, 60000));
+		writer.close();
+
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+	}
+
+	private static <T extends OutputWriter> BatchingOutputWriter<T> started(BatchingOutputWriter<T> writer) throws LifecycleException {
+		writer.start();
+		return writer;
+	}
+}
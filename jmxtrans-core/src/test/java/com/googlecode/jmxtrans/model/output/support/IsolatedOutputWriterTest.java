@@ -0,0 +1,200 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.googlecode.jmxtrans.model.QueryFixtures.dummyQuery;
+import static com.googlecode.jmxtrans.model.ResultFixtures.dummyResults;
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServer;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class IsolatedOutputWriterTest {
+
+	private static final long RESULTS = dummyResults().size();
+
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final OutputWriter target = mock(OutputWriter.class);
+	private IsolatedOutputWriter<OutputWriter> writer;
+
+	@After
+	public void closeWriter() throws Exception {
+		release.countDown();
+		writer.close();
+	}
+
+	@Test
+	public void writesAreRunByTheWriterThreads() throws Exception {
+		writer = new IsolatedOutputWriter<>(target, 1, 10);
+		writer.start();
+		Server server = dummyServer();
+		Query query = dummyQuery();
+
+		writer.doWrite(server, query, dummyResults());
+
+		verify(target, timeout(1000)).doWrite(server, query, dummyResults());
+	}
+
+	@Test
+	public void writerThreadsRunAtTheConfiguredPriority() throws Exception {
+		final AtomicInteger priority = new AtomicInteger();
+		final CountDownLatch written = new CountDownLatch(1);
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				priority.set(Thread.currentThread().getPriority());
+				written.countDown();
+				return null;
+			}
+		}).when(target).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+		writer = new IsolatedOutputWriter<>(target, 1, 10, OverloadPolicy.DROP_NEWEST, 0, Thread.MIN_PRIORITY);
+		writer.start();
+
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+
+		assertThat(written.await(5, SECONDS)).isTrue();
+		assertThat(priority.get()).isEqualTo(Thread.MIN_PRIORITY);
+	}
+
+	@Test
+	public void stalledTargetOnlyFillsItsOwnQueue() throws Exception {
+		writer = stalledWriter(OverloadPolicy.DROP_NEWEST, 0);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < 4; i++) {
+			writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+		}
+
+		// the caller never waits for the stalled target
+		assertThat(System.nanoTime() - start).isLessThan(SECONDS.toNanos(1));
+		assertThat(writer.getQueuedResults()).isEqualTo(RESULTS);
+		assertThat(writer.getDroppedWrites()).isEqualTo(3);
+		assertThat(writer.getDroppedResults()).isEqualTo(3 * RESULTS);
+	}
+
+	@Test
+	public void oldestResultsAreDropped() throws Exception {
+		writer = stalledWriter(OverloadPolicy.DROP_OLDEST, 0);
+		Query newestQuery = Query.builder().setObj("test:type=Newest").build();
+
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+		writer.doWrite(dummyServer(), newestQuery, dummyResults());
+		release.countDown();
+
+		assertThat(writer.getDroppedWrites()).isEqualTo(1);
+		verify(target, timeout(1000)).doWrite(dummyServer(), newestQuery, dummyResults());
+	}
+
+	@Test
+	public void producerIsBlockedUntilTimeout() throws Exception {
+		writer = stalledWriter(OverloadPolicy.BLOCK, 100);
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+
+		long start = System.nanoTime();
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+
+		assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(MILLISECONDS.toNanos(100));
+		assertThat(writer.getDroppedWrites()).isEqualTo(1);
+	}
+
+	@Test
+	public void queueIsExportedAsMBean() throws Exception {
+		writer = new IsolatedOutputWriter<>(target, 1, 10);
+		writer.start();
+
+		assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(writer.getObjectName())).isTrue();
+		writer.close();
+		assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(writer.getObjectName())).isFalse();
+	}
+
+	@Test
+	public void nothingIsExportedUntilStarted() throws Exception {
+		writer = new IsolatedOutputWriter<>(target, 1, 10);
+
+		assertThat(writer.getObjectName()).isNull();
+		assertThat(writer.getQueuedWrites()).isZero();
+	}
+
+	@Test
+	public void writerSharedByQueriesIsStartedOnce() throws Exception {
+		writer = new IsolatedOutputWriter<>(target, 1, 10);
+		writer.start();
+		ObjectName objectName = writer.getObjectName();
+
+		writer.start();
+
+		assertThat(writer.getObjectName()).isEqualTo(objectName);
+		verify(target, times(2)).start();
+	}
+
+	/**
+	 * @return a writer whose target is busy with a first write, and with room
+	 * for one more write in its queue
+	 */
+	private IsolatedOutputWriter<OutputWriter> stalledWriter(OverloadPolicy overloadPolicy, long blockTimeoutMillis) throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				started.countDown();
+				release.await(5, SECONDS);
+				return null;
+			}
+		}).when(target).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+
+		IsolatedOutputWriter<OutputWriter> stalledWriter = new IsolatedOutputWriter<>(target, 1, RESULTS, overloadPolicy, blockTimeoutMillis);
+		stalledWriter.start();
+		stalledWriter.doWrite(dummyServer(), dummyQuery(), dummyResults());
+		assertThat(started.await(5, SECONDS)).isTrue();
+		return stalledWriter;
+	}
+
+	@Test
+	public void closeClosesTarget() throws Exception {
+		writer = new IsolatedOutputWriter<>(target, 1, 10);
+
+		writer.close();
+
+		verify(target).close();
+	}
+}
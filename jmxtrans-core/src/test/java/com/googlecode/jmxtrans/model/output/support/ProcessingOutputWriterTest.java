@@ -0,0 +1,118 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.googlecode.jmxtrans.model.AsyncOutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.results.DropProcessor;
+import com.googlecode.jmxtrans.model.results.ProcessorChain;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static com.googlecode.jmxtrans.model.QueryFixtures.dummyQuery;
+import static com.googlecode.jmxtrans.model.ResultFixtures.dummyResults;
+import static com.googlecode.jmxtrans.model.ResultFixtures.numericResult;
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServer;
+import static com.googlecode.jmxtrans.model.results.KeyPart.ATTRIBUTE_NAME;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProcessingOutputWriterTest {
+
+	@Mock private OutputWriter target;
+	@Mock private OutputWriter otherTarget;
+	@Captor private ArgumentCaptor<Iterable<Result>> results;
+	@Captor private ArgumentCaptor<Iterable<Result>> otherResults;
+
+	private final ProcessorChain dropBooleans = ProcessorChain.compile(ImmutableList.of(new DropProcessor(ATTRIBUTE_NAME, "Verbose")));
+
+	@Test
+	public void resultsAreProcessedBeforeBeingWritten() throws Exception {
+		Server server = dummyServer();
+		Query query = dummyQuery();
+
+		new ProcessingOutputWriter<>(dropBooleans, target).doWrite(server, query, dummyResults());
+
+		verify(target).doWrite(same(server), same(query), results.capture());
+		assertThat(results.getValue()).containsExactly(numericResult());
+	}
+
+	@Test
+	public void processedResultsArePassedToAsyncTargets() throws Exception {
+		AsyncOutputWriter asyncTarget = mock(AsyncOutputWriter.class);
+		SettableFuture<Void> write = SettableFuture.create();
+		doReturn(write).when(asyncTarget).doWriteAsync(any(Server.class), any(Query.class), any(Iterable.class));
+
+		ListenableFuture<?> started = new ProcessingOutputWriter<>(dropBooleans, asyncTarget).doWriteAsync(dummyServer(), dummyQuery(), dummyResults());
+
+		assertThat(started).isSameAs(write);
+		verify(asyncTarget).doWriteAsync(any(Server.class), any(Query.class), results.capture());
+		assertThat(results.getValue()).containsExactly(numericResult());
+	}
+
+	@Test
+	public void syncTargetsAreWrittenBeforeReturning() throws Exception {
+		ListenableFuture<?> write = new ProcessingOutputWriter<>(dropBooleans, target).doWriteAsync(dummyServer(), dummyQuery(), dummyResults());
+
+		verify(target).doWrite(any(Server.class), any(Query.class), results.capture());
+		assertThat(results.getValue()).containsExactly(numericResult());
+		assertThat(write.isDone()).isTrue();
+	}
+
+	@Test
+	public void resultsArePassedAsIsWithoutProcessors() throws Exception {
+		ImmutableList<Result> batch = dummyResults();
+
+		new ProcessingOutputWriter<>(ProcessorChain.EMPTY, target).doWrite(dummyServer(), dummyQuery(), batch);
+
+		verify(target).doWrite(any(Server.class), any(Query.class), same(batch));
+	}
+
+	@Test
+	public void writersWithEqualProcessorsShareProcessedResults() throws Exception {
+		ImmutableList<Result> batch = dummyResults();
+		ProcessorChain sameProcessors = ProcessorChain.compile(ImmutableList.of(new DropProcessor(ATTRIBUTE_NAME, "Verbose")));
+
+		new ProcessingOutputWriter<>(dropBooleans, target).doWrite(dummyServer(), dummyQuery(), batch);
+		new ProcessingOutputWriter<>(sameProcessors, otherTarget).doWrite(dummyServer(), dummyQuery(), batch);
+
+		verify(target).doWrite(any(Server.class), any(Query.class), results.capture());
+		verify(otherTarget).doWrite(any(Server.class), any(Query.class), otherResults.capture());
+		assertThat(otherResults.getValue()).isSameAs(results.getValue());
+	}
+}
@@ -0,0 +1,178 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class SegmentedSpoolTest {
+
+	private static final int SEGMENT_BYTES = 64;
+
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+
+	private SegmentedSpool spool;
+
+	@After
+	public void closeSpool() throws IOException {
+		if (spool != null) {
+			spool.close();
+		}
+	}
+
+	@Test
+	public void recordsAreReadInAppendOrder() throws IOException {
+		spool = new SegmentedSpool(folder.getRoot(), SEGMENT_BYTES, 10 * SEGMENT_BYTES);
+
+		for (int i = 0; i < 10; i++) {
+			spool.append(record("record " + i));
+		}
+
+		assertThat(spool.getRecords()).isEqualTo(10);
+		assertThat(spool.getSegments()).isGreaterThan(1);
+		for (int i = 0; i < 10; i++) {
+			SegmentedSpool.Record record = spool.peek();
+			assertThat(read(record)).isEqualTo("record " + i);
+			assertThat(spool.remove(record)).isTrue();
+		}
+		assertThat(spool.peek()).isNull();
+		assertThat(spool.getSegments()).isEqualTo(1);
+	}
+
+	@Test
+	public void unreadRecordsSurviveReopening() throws IOException {
+		File directory = folder.getRoot();
+		spool = new SegmentedSpool(directory, SEGMENT_BYTES, 10 * SEGMENT_BYTES);
+		for (int i = 0; i < 5; i++) {
+			spool.append(record("record " + i));
+		}
+		spool.remove(spool.peek());
+		spool.remove(spool.peek());
+		spool.close();
+
+		spool = new SegmentedSpool(directory, SEGMENT_BYTES, 10 * SEGMENT_BYTES);
+
+		assertThat(spool.getRecords()).isEqualTo(3);
+		assertThat(read(spool.peek())).isEqualTo("record 2");
+	}
+
+	@Test
+	public void oldestSegmentIsDroppedWhenSpoolIsFull() throws IOException {
+		spool = new SegmentedSpool(folder.getRoot(), SEGMENT_BYTES, 2 * SEGMENT_BYTES);
+
+		for (int i = 0; i < 20; i++) {
+			spool.append(record("record " + i));
+		}
+
+		assertThat(spool.getSegments()).isEqualTo(2);
+		assertThat(spool.getDroppedRecords()).isEqualTo(20 - spool.getRecords());
+		assertThat(read(spool.peek())).isNotEqualTo("record 0");
+	}
+
+	@Test
+	public void recordDroppedWhileHandledIsNotRemovedAgain() throws IOException {
+		spool = new SegmentedSpool(folder.getRoot(), SEGMENT_BYTES, 2 * SEGMENT_BYTES);
+		spool.append(record("record 0"));
+		SegmentedSpool.Record handled = spool.peek();
+
+		for (int i = 1; i < 20; i++) {
+			spool.append(record("record " + i));
+		}
+		SegmentedSpool.Record oldest = spool.peek();
+		long records = spool.getRecords();
+
+		assertThat(spool.remove(handled)).isFalse();
+		assertThat(spool.getRecords()).isEqualTo(records);
+		assertThat(read(spool.peek())).isEqualTo(read(oldest));
+	}
+
+	@Test
+	public void recordLargerThanASegmentIsRejected() throws IOException {
+		spool = new SegmentedSpool(folder.getRoot(), SEGMENT_BYTES, 2 * SEGMENT_BYTES);
+
+		assertThat(spool.append(new byte[SEGMENT_BYTES])).isFalse();
+		assertThat(spool.getRecords()).isEqualTo(0);
+	}
+
+	@Test
+	public void deletedSegmentsDoNotKeepTheirDiskSpace() throws IOException {
+		File directory = folder.getRoot();
+		spool = new SegmentedSpool(directory, SEGMENT_BYTES, 3 * SEGMENT_BYTES);
+
+		for (int i = 0; i < 1000; i++) {
+			spool.append(record("record " + i));
+			if (i % 3 == 0) {
+				spool.remove(spool.peek());
+			}
+		}
+
+		File[] segmentFiles = directory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".spool");
+			}
+		});
+		long bytesOnDisk = 0;
+		for (File segmentFile : segmentFiles) {
+			bytesOnDisk += segmentFile.length();
+		}
+		assertThat(segmentFiles).hasSize(spool.getSegments());
+		assertThat(spool.getSegments()).isLessThanOrEqualTo(3);
+		assertThat(bytesOnDisk).isLessThanOrEqualTo(3 * SEGMENT_BYTES);
+
+		// a deleted file still mapped keeps its blocks, and shows in the mappings of the process
+		File mappings = new File("/proc/self/maps");
+		assumeTrue(mappings.canRead());
+		for (String mapping : Files.readLines(mappings, UTF_8)) {
+			if (mapping.contains(directory.getPath())) {
+				assertThat(mapping).doesNotContain("(deleted)");
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void directoryCannotBeSharedBySpools() throws IOException {
+		spool = new SegmentedSpool(folder.getRoot(), SEGMENT_BYTES, 2 * SEGMENT_BYTES);
+
+		new SegmentedSpool(folder.getRoot(), SEGMENT_BYTES, 2 * SEGMENT_BYTES);
+	}
+
+	private static byte[] record(String value) {
+		return value.getBytes(UTF_8);
+	}
+
+	private static String read(SegmentedSpool.Record record) {
+		return new String(record.getBytes(), UTF_8);
+	}
+}
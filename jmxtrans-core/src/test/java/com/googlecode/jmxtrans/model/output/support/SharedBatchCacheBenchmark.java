@@ -0,0 +1,107 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.results.BooleanAsNumberValueTransformer;
+import com.googlecode.jmxtrans.model.results.ResultValuesTransformer;
+
+import java.util.List;
+
+import static com.google.common.collect.FluentIterable.from;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Compares the cost of transforming batches through the shared batch cache to
+ * transforming them directly, for batches going to a single writer, which are
+ * not shared, and for batches going to two writers, which are. Not run as part
+ * of the build:
+ *
+ * <pre>
+ * java -cp ... com.googlecode.jmxtrans.model.output.support.SharedBatchCacheBenchmark
+ * </pre>
+ */
+public final class SharedBatchCacheBenchmark {
+
+	private static final int BATCH_SIZE = 200;
+	private static final int BATCHES = 500;
+	private static final int ROUNDS = 10;
+
+	private static volatile Object sink;
+
+	private SharedBatchCacheBenchmark() {}
+
+	public static void main(String[] args) throws Exception {
+		List<ImmutableList<Result>> batches = batches();
+		ResultValuesTransformer transformer = new ResultValuesTransformer(new BooleanAsNumberValueTransformer(1, 0));
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			long directNanos = direct(batches, transformer, 1);
+			long singleNanos = cached(batches, transformer, 1);
+			long directTwiceNanos = direct(batches, transformer, 2);
+			long sharedNanos = cached(batches, transformer, 2);
+			System.out.printf("round %2d: 1 writer direct %6.1f cached %6.1f ns/result, 2 writers direct %6.1f shared %6.1f ns/result%n",
+					round, perResult(directNanos), perResult(singleNanos), perResult(directTwiceNanos), perResult(sharedNanos));
+		}
+	}
+
+	private static long direct(List<ImmutableList<Result>> batches, ResultValuesTransformer transformer, int writers) {
+		long start = System.nanoTime();
+		for (ImmutableList<Result> batch : batches) {
+			for (int w = 0; w < writers; w++) {
+				sink = from(batch).transform(transformer).toList();
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long cached(List<ImmutableList<Result>> batches, ResultValuesTransformer transformer, int writers) throws Exception {
+		long start = System.nanoTime();
+		for (ImmutableList<Result> batch : batches) {
+			Iterable<Result> fanOut = writers > 1 ? SharedBatchCache.share(batch) : batch;
+			for (int w = 0; w < writers; w++) {
+				sink = SharedBatchCache.transform(fanOut, transformer);
+			}
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static double perResult(long nanos) {
+		return (double) nanos / (BATCH_SIZE * BATCHES);
+	}
+
+	private static List<ImmutableList<Result>> batches() {
+		long epoch = SECONDS.toMillis(1500000000);
+		ImmutableList.Builder<ImmutableList<Result>> batches = ImmutableList.builder();
+		for (int b = 0; b < BATCHES; b++) {
+			ImmutableList.Builder<Result> batch = ImmutableList.builder();
+			for (int r = 0; r < BATCH_SIZE; r++) {
+				batch.add(new Result(epoch, "Enabled", "com.example.Feature", "com.example", null,
+						"name=Feature" + r + ",type=Feature", ImmutableList.<String>of(), r % 3 == 0));
+			}
+			batches.add(batch.build());
+		}
+		return batches.build();
+	}
+}
@@ -0,0 +1,130 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import com.googlecode.jmxtrans.model.results.BooleanAsNumberValueTransformer;
+import com.googlecode.jmxtrans.model.results.ResultValuesTransformer;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.googlecode.jmxtrans.model.QueryFixtures.dummyQuery;
+import static com.googlecode.jmxtrans.model.ResultFixtures.dummyResults;
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServer;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SharedBatchCacheTest {
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	@Test
+	public void valueIsComputedOncePerBatchAndKey() throws Exception {
+		Iterable<Result> batch = SharedBatchCache.share(dummyResults());
+
+		String first = SharedBatchCache.get(batch, "graphite", loader("payload"));
+		String second = SharedBatchCache.get(batch, "graphite", loader("other payload"));
+
+		assertThat(second).isSameAs(first);
+		assertThat(loads.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void differentKeysAreComputedSeparately() throws Exception {
+		Iterable<Result> batch = SharedBatchCache.share(dummyResults());
+
+		SharedBatchCache.get(batch, "graphite", loader("graphite payload"));
+		String other = SharedBatchCache.get(batch, "opentsdb", loader("opentsdb payload"));
+
+		assertThat(other).isEqualTo("opentsdb payload");
+		assertThat(loads.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void equalBatchesAreNotShared() throws Exception {
+		SharedBatchCache.get(SharedBatchCache.share(dummyResults()), "graphite", loader("payload"));
+		SharedBatchCache.get(SharedBatchCache.share(dummyResults()), "graphite", loader("payload"));
+
+		assertThat(loads.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void valuesDependingOnTheQueryAreNotSharedAcrossQueries() throws Exception {
+		Iterable<Result> batch = SharedBatchCache.share(dummyResults());
+		Server server = dummyServer();
+		Query query = dummyQuery();
+
+		SharedBatchCache.get(server, query, batch, "graphite", loader("payload"));
+		SharedBatchCache.get(server, query, batch, "graphite", loader("payload"));
+		SharedBatchCache.get(server, dummyQuery(), batch, "graphite", loader("payload"));
+
+		assertThat(loads.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void transformationIsSharedByEqualTransformers() throws Exception {
+		Iterable<Result> batch = SharedBatchCache.share(dummyResults());
+
+		ImmutableList<Result> first = SharedBatchCache.transform(batch, new ResultValuesTransformer(new BooleanAsNumberValueTransformer(1, 0)));
+		ImmutableList<Result> second = SharedBatchCache.transform(batch, new ResultValuesTransformer(new BooleanAsNumberValueTransformer(1, 0)));
+
+		assertThat(second).isSameAs(first);
+		assertThat(first.get(1).getValue()).isEqualTo(1);
+	}
+
+	@Test
+	public void batchesOfASingleWriterAreNotCached() throws Exception {
+		ImmutableList<Result> batch = dummyResults();
+
+		String first = SharedBatchCache.get(batch, "graphite", loader("payload"));
+		String second = SharedBatchCache.get(batch, "graphite", loader("other payload"));
+
+		assertThat(first).isEqualTo("payload");
+		assertThat(second).isEqualTo("other payload");
+		assertThat(loads.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void sharedBatchesHoldTheSameResults() {
+		ImmutableList<Result> batch = dummyResults();
+
+		Iterable<Result> shared = SharedBatchCache.share(batch);
+
+		assertThat(shared).containsExactlyElementsOf(batch);
+		assertThat(SharedBatchCache.share(shared)).isSameAs(shared);
+	}
+
+	private Callable<String> loader(final String value) {
+		return new Callable<String>() {
+			@Override
+			public String call() {
+				loads.incrementAndGet();
+				return value;
+			}
+		};
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.exceptions.LifecycleException;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import static com.googlecode.jmxtrans.model.QueryFixtures.dummyQuery;
+import static com.googlecode.jmxtrans.model.ResultFixtures.dummyResults;
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServer;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class SpoolingOutputWriterTest {
+
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+
+	private final OutputWriter target = mock(OutputWriter.class);
+	private SpoolingOutputWriter<OutputWriter> writer;
+
+	@After
+	public void closeWriter() throws Exception {
+		writer.close();
+	}
+
+	@Test
+	public void successfulWritesAreNotSpooled() throws Exception {
+		writer = newWriter();
+
+		writer.doWrite(dummyServer(), dummyQuery(), dummyResults());
+
+		assertThat(writer.getSpoolDepth()).isEqualTo(0);
+		assertThat(writer.getLagMillis()).isEqualTo(0);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void failedWritesAreSpooledAndReplayed() throws Exception {
+		doThrow(new IOException("sink is down"))
+				.when(target).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+		writer = newWriter();
+		Server server = dummyServer();
+		Query query = dummyQuery();
+		ImmutableList<Result> results = dummyResults();
+
+		writer.doWrite(server, query, results);
+
+		assertThat(writer.getSpoolDepth()).isEqualTo(1);
+		assertThat(writer.getSpooledBatches()).isEqualTo(1);
+		assertThat(writer.getLagMillis()).isGreaterThanOrEqualTo(0);
+
+		doNothing().when(target).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+
+		long deadline = System.currentTimeMillis() + 2000;
+		while (writer.getReplayedBatches() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(writer.getReplayedBatches()).isEqualTo(1);
+		assertThat(writer.getSpoolDepth()).isEqualTo(0);
+		verify(target, times(2)).doWrite(server, query, results);
+	}
+
+	@Test
+	public void spooledResultsKeepTheirValues() throws Exception {
+		ImmutableList<Result> results = dummyResults();
+
+		SpooledBatch batch = SpooledBatch.decode(SpooledBatch.encode(42L, "destination", results));
+
+		assertThat(batch.spooledAt).isEqualTo(42L);
+		assertThat(batch.destination).isEqualTo("destination");
+		assertThat(batch.results).isEqualTo(results);
+	}
+
+	@Test
+	public void spoolIsOnlyOpenedOnce() throws Exception {
+		writer = newWriter();
+
+		writer.start();
+
+		assertThat(writer.getObjectName()).isNotNull();
+		verify(target, times(2)).start();
+	}
+
+	@Test(expected = LifecycleException.class)
+	public void spoolDirectoryCannotBeShared() throws Exception {
+		writer = newWriter();
+
+		SpoolingOutputWriter<OutputWriter> other = new SpoolingOutputWriter<>(target, folder.getRoot(), 4096, 4 * 4096, 1000, 50);
+		other.start();
+	}
+
+	private SpoolingOutputWriter<OutputWriter> newWriter() throws LifecycleException {
+		SpoolingOutputWriter<OutputWriter> writer = new SpoolingOutputWriter<>(target, folder.getRoot(), 4096, 4 * 4096, 1000, 50);
+		writer.start();
+		return writer;
+	}
+}
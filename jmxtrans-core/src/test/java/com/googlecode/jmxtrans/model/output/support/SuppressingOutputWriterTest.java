@@ -0,0 +1,186 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output.support;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.googlecode.jmxtrans.model.AsyncOutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static com.googlecode.jmxtrans.model.QueryFixtures.dummyQuery;
+import static com.googlecode.jmxtrans.model.ResultFixtures.numericResult;
+import static com.googlecode.jmxtrans.model.ServerFixtures.DEFAULT_PORT;
+import static com.googlecode.jmxtrans.model.ServerFixtures.DEFAULT_QUERY;
+import static com.googlecode.jmxtrans.model.ServerFixtures.createServerWithOneQuery;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class SuppressingOutputWriterTest {
+
+	private final OutputWriter target = mock(OutputWriter.class);
+	private final Server server = createServerWithOneQuery("host", DEFAULT_PORT, DEFAULT_QUERY);
+	private final Query query = dummyQuery();
+	private final SuppressingOutputWriter<OutputWriter> writer = new SuppressingOutputWriter<>(target, 3);
+
+	@After
+	public void closeWriter() throws Exception {
+		writer.close();
+	}
+
+	@Test
+	public void unchangedValuesAreSuppressed() throws Exception {
+		writer.doWrite(server, query, ImmutableList.of(numericResult("a", 1).withEpoch(1000), numericResult("b", 2).withEpoch(1000)));
+		writer.doWrite(server, query, ImmutableList.of(numericResult("a", 1).withEpoch(2000), numericResult("b", 3).withEpoch(2000)));
+
+		assertThat(written()).extracting("value").containsExactly(1, 2, 3);
+		assertThat(writer.getWrittenResults()).isEqualTo(3);
+		assertThat(writer.getSuppressedResults()).isEqualTo(1);
+		assertThat(writer.getSuppressionRatio()).isEqualTo(0.25);
+		assertThat(writer.getTrackedMetrics()).isEqualTo(2);
+	}
+
+	@Test
+	public void unchangedValuesAreRefreshedEveryRefreshCycles() throws Exception {
+		for (int cycle = 0; cycle < 7; cycle++) {
+			writer.doWrite(server, query, ImmutableList.of(numericResult("a", 1).withEpoch(cycle * 1000)));
+		}
+
+		assertThat(written()).extracting("epoch").containsExactly(0L, 3000L, 6000L);
+		assertThat(writer.getSuppressedResults()).isEqualTo(4);
+	}
+
+	@Test
+	public void fullySuppressedWritesDoNotReachTheTarget() throws Exception {
+		writer.doWrite(server, query, ImmutableList.of(numericResult("a", 1).withEpoch(1000)));
+		writer.doWrite(server, query, ImmutableList.of(numericResult("a", 1).withEpoch(2000)));
+
+		verify(target).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+	}
+
+	@Test
+	public void metricsAreTrackedByServer() throws Exception {
+		Server other = createServerWithOneQuery("other", DEFAULT_PORT, DEFAULT_QUERY);
+
+		writer.doWrite(server, query, ImmutableList.of(numericResult("a", 1).withEpoch(1000)));
+		writer.doWrite(other, query, ImmutableList.of(numericResult("a", 1).withEpoch(1000)));
+
+		assertThat(writer.getWrittenResults()).isEqualTo(2);
+		assertThat(writer.getTrackedMetrics()).isEqualTo(2);
+	}
+
+	@Test
+	public void valuesOfFailedWritesAreWrittenAgain() throws Exception {
+		doThrow(new IOException("down")).doNothing()
+				.when(target).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+
+		try {
+			writer.doWrite(server, query, ImmutableList.of(numericResult("a", 1).withEpoch(1000)));
+			fail("The failure of the target should be reported");
+		} catch (IOException expected) {
+			// the value should not be suppressed next time
+		}
+		writer.doWrite(server, query, ImmutableList.of(numericResult("a", 1).withEpoch(2000)));
+
+		assertThat(written()).extracting("epoch").containsExactly(1000L, 2000L);
+		assertThat(writer.getWrittenResults()).isEqualTo(1);
+	}
+
+	@Test
+	public void valuesOfFailedAsyncWritesAreWrittenAgain() throws Exception {
+		AsyncOutputWriter asyncTarget = mock(AsyncOutputWriter.class);
+		SettableFuture<Void> failedWrite = SettableFuture.create();
+		doReturn(failedWrite).doReturn(Futures.immediateFuture(null))
+				.when(asyncTarget).doWriteAsync(any(Server.class), any(Query.class), any(Iterable.class));
+		SuppressingOutputWriter<AsyncOutputWriter> asyncWriter = new SuppressingOutputWriter<>(asyncTarget, 3);
+
+		ListenableFuture<?> write = asyncWriter.doWriteAsync(server, query, ImmutableList.of(numericResult("a", 1).withEpoch(1000)));
+		assertThat(write).isSameAs(failedWrite);
+		failedWrite.setException(new IOException("down"));
+		asyncWriter.doWriteAsync(server, query, ImmutableList.of(numericResult("a", 1).withEpoch(2000)));
+
+		verify(asyncTarget, times(2)).doWriteAsync(any(Server.class), any(Query.class), any(Iterable.class));
+		verify(asyncTarget, never()).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+		assertThat(asyncWriter.getWrittenResults()).isEqualTo(1);
+	}
+
+	@Test
+	public void fingerprintsDistinguishCloseValues() {
+		assertThat(SuppressingOutputWriter.fingerprint(Long.MAX_VALUE))
+				.isNotEqualTo(SuppressingOutputWriter.fingerprint(Long.MAX_VALUE - 1));
+		assertThat(SuppressingOutputWriter.fingerprint(0.1))
+				.isNotEqualTo(SuppressingOutputWriter.fingerprint(0.1000000001));
+		assertThat(SuppressingOutputWriter.fingerprint("Aa"))
+				.isNotEqualTo(SuppressingOutputWriter.fingerprint("BB"));
+		assertThat(SuppressingOutputWriter.fingerprint(5)).isEqualTo(SuppressingOutputWriter.fingerprint(5L));
+	}
+
+	@Test
+	public void mbeanIsRegisteredUntilClosed() throws Exception {
+		SuppressingOutputWriter<OutputWriter> other = new SuppressingOutputWriter<>(target, 3);
+		assertThat(other.getObjectName()).isNull();
+
+		other.start();
+		ObjectName objectName = other.getObjectName();
+		other.start();
+
+		assertThat(other.getObjectName()).isEqualTo(objectName);
+		assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(other.getObjectName())).isTrue();
+
+		other.close();
+
+		assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(other.getObjectName())).isFalse();
+		verify(target, never()).doWrite(any(Server.class), any(Query.class), any(Iterable.class));
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Result> written() throws Exception {
+		ArgumentCaptor<Iterable> captor = ArgumentCaptor.forClass(Iterable.class);
+		verify(target, atLeastOnce()).doWrite(any(Server.class), any(Query.class), captor.capture());
+		ImmutableList.Builder<Result> results = ImmutableList.builder();
+		for (Iterable<Result> batch : captor.getAllValues()) {
+			results.addAll(batch);
+		}
+		return results.build();
+	}
+}
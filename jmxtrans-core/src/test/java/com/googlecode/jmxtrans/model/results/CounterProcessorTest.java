@@ -0,0 +1,170 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.Test;
+
+import static com.googlecode.jmxtrans.model.ServerFixtures.DEFAULT_PORT;
+import static com.googlecode.jmxtrans.model.ServerFixtures.DEFAULT_QUERY;
+import static com.googlecode.jmxtrans.model.ServerFixtures.createServerWithOneQuery;
+import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServer;
+import static com.googlecode.jmxtrans.model.results.KeyPart.ATTRIBUTE_NAME;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CounterProcessorTest {
+
+	private final Server server = dummyServer();
+	private final Server otherServer = createServerWithOneQuery("other.example.net", DEFAULT_PORT, DEFAULT_QUERY);
+
+	@Test
+	public void firstResultOnlySetsTheBaseline() {
+		ProcessorChain chain = chain(new RateProcessor(null, null));
+
+		assertThat(chain.process(server, batch(count(1000, 10L)))).isEmpty();
+	}
+
+	@Test
+	public void countersAreTurnedIntoRatesPerSecond() {
+		ProcessorChain chain = chain(new RateProcessor(null, null));
+
+		chain.process(server, batch(count(1000, 10L)));
+
+		assertThat(values(chain.process(server, batch(count(3000, 50L))))).containsExactly(20.0);
+		assertThat(values(chain.process(server, batch(count(3500, 55L))))).containsExactly(10.0);
+	}
+
+	@Test
+	public void countersAreTurnedIntoDeltas() {
+		ProcessorChain chain = chain(new DeltaProcessor(null, null));
+
+		chain.process(server, batch(count(1000, 10L), bytes(1000, 1.5)));
+
+		assertThat(values(chain.process(server, batch(count(2000, 50L), bytes(2000, 4.0))))).containsExactly(40L, 2.5);
+	}
+
+	@Test
+	public void onlyMatchingCountersAreDerived() {
+		ProcessorChain chain = chain(new DeltaProcessor(ATTRIBUTE_NAME, "CollectionCount"));
+
+		chain.process(server, batch(count(1000, 10L), bytes(1000, 1.5)));
+
+		assertThat(values(chain.process(server, batch(count(2000, 50L), bytes(2000, 4.0))))).containsExactly(40L, 4.0);
+	}
+
+	@Test
+	public void countersOfEachServerAreFollowedSeparately() {
+		ProcessorChain chain = chain(new DeltaProcessor(null, null));
+
+		chain.process(server, batch(count(1000, 10L)));
+		chain.process(otherServer, batch(count(1000, 100L)));
+
+		assertThat(values(chain.process(server, batch(count(2000, 15L))))).containsExactly(5L);
+		assertThat(values(chain.process(otherServer, batch(count(2000, 130L))))).containsExactly(30L);
+	}
+
+	@Test
+	public void resetsAreDroppedAndStartANewBaseline() {
+		ProcessorChain chain = chain(new DeltaProcessor(null, null));
+
+		chain.process(server, batch(count(1000, 500L)));
+
+		assertThat(chain.process(server, batch(count(2000, 20L)))).isEmpty();
+		assertThat(values(chain.process(server, batch(count(3000, 25L))))).containsExactly(5L);
+	}
+
+	@Test
+	public void wrapAroundsAreHandled() {
+		ProcessorChain chain = chain(new DeltaProcessor(null, null));
+
+		chain.process(server, batch(count(1000, Integer.MAX_VALUE - 1)));
+		assertThat(values(chain.process(server, batch(count(2000, Integer.MIN_VALUE + 1))))).containsExactly(3L);
+
+		chain.process(server, batch(bytes(1000, Long.MAX_VALUE - 4096)));
+		assertThat(values(chain.process(server, batch(bytes(2000, Long.MIN_VALUE + 4096))))).containsExactly(8192L);
+	}
+
+	@Test
+	public void olderResultsAreDropped() {
+		ProcessorChain chain = chain(new RateProcessor(null, null));
+
+		chain.process(server, batch(count(2000, 10L)));
+
+		assertThat(chain.process(server, batch(count(2000, 20L)))).isEmpty();
+		assertThat(chain.process(server, batch(count(1000, 5L)))).isEmpty();
+		assertThat(values(chain.process(server, batch(count(3000, 20L))))).containsExactly(10.0);
+	}
+
+	@Test
+	public void nonNumericResultsAreKept() {
+		Result text = new Result(1000, "Name", "sun.management.RuntimeImpl", "java.lang", null, "type=Runtime", ImmutableList.<String>of(), "jvm");
+
+		assertThat(chain(new RateProcessor(null, null)).process(server, batch(text))).containsExactly(text);
+	}
+
+	@Test
+	public void equalChainsDoNotShareState() {
+		RateProcessor rate = new RateProcessor(null, null);
+		rate.process(new ResultDraft().scope(server).reset(count(1000, 10L)));
+
+		assertThat(new RateProcessor(null, null)).isEqualTo(rate);
+		assertThat(new RateProcessor(null, null).trackedCounters()).isZero();
+		assertThat(rate.trackedCounters()).isEqualTo(1);
+		assertThat(chain(rate).isStateful()).isTrue();
+	}
+
+	@Test
+	public void countersAreReadFromConfiguration() throws Exception {
+		Processor processor = new ObjectMapper().readValue(
+				"{ \"type\" : \"rate\", \"part\" : \"attributeName\", \"pattern\" : \"CollectionCount\" }", Processor.class);
+
+		assertThat(processor).isEqualTo(new RateProcessor(ATTRIBUTE_NAME, "CollectionCount"));
+	}
+
+	private static ProcessorChain chain(Processor processor) {
+		return ProcessorChain.compile(ImmutableList.of(processor));
+	}
+
+	private static ImmutableList<Result> batch(Result... results) {
+		return ImmutableList.copyOf(results);
+	}
+
+	private static ImmutableList<Object> values(Iterable<Result> results) {
+		ImmutableList.Builder<Object> values = ImmutableList.builder();
+		for (Result result : results) {
+			values.add(result.getValue());
+		}
+		return values.build();
+	}
+
+	private static Result count(long epoch, Object value) {
+		return new Result(epoch, "CollectionCount", "sun.management.GarbageCollectorImpl", "java.lang", null, "type=GarbageCollector,name=G1 Young Generation", ImmutableList.<String>of(), value);
+	}
+
+	private static Result bytes(long epoch, Object value) {
+		return new Result(epoch, "BytesIn", "org.example.Network", "org.example", null, "type=Network", ImmutableList.<String>of(), value);
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import org.junit.Test;
+
+import static com.googlecode.jmxtrans.model.results.CounterTable.NO_EPOCH;
+import static com.googlecode.jmxtrans.model.results.CounterTable.STALE_MILLIS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CounterTableTest {
+
+	private final CounterTable counters = new CounterTable();
+
+	@Test
+	public void newCountersHaveNoValue() {
+		int slot = counters.slot(42, 1000);
+
+		assertThat(counters.epoch(slot)).isEqualTo(NO_EPOCH);
+		assertThat(counters.size()).isEqualTo(1);
+	}
+
+	@Test
+	public void countersAreFoundAgain() {
+		counters.update(counters.slot(42, 1000), 10, 1000);
+		counters.update(counters.slot(0, 1000), 20, 1000);
+
+		assertThat(counters.value(counters.slot(42, 2000))).isEqualTo(10);
+		assertThat(counters.value(counters.slot(0, 2000))).isEqualTo(20);
+		assertThat(counters.size()).isEqualTo(2);
+	}
+
+	@Test
+	public void tableGrowsKeepingCounters() {
+		for (long id = 1; id <= 10000; id++) {
+			counters.update(counters.slot(id * 31, 1000), id, 1000);
+		}
+
+		for (long id = 1; id <= 10000; id++) {
+			assertThat(counters.value(counters.slot(id * 31, 1000))).isEqualTo(id);
+		}
+		assertThat(counters.size()).isEqualTo(10000);
+		// bytes per counter, in three arrays of 8 bytes per slot
+		assertThat(counters.capacity() * 24 / counters.size()).isLessThanOrEqualTo(64);
+	}
+
+	@Test
+	public void staleCountersAreForgottenWhenGrowing() {
+		for (long id = 1; id <= 12; id++) {
+			counters.update(counters.slot(id, 1000), id, 1000);
+		}
+		long later = 1000 + STALE_MILLIS + 1;
+		for (long id = 13; id <= 24; id++) {
+			counters.update(counters.slot(id, later), id, later);
+		}
+
+		assertThat(counters.size()).isEqualTo(12);
+		assertThat(counters.epoch(counters.slot(1, later))).isEqualTo(NO_EPOCH);
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.Result;
+
+import java.util.List;
+
+import static com.googlecode.jmxtrans.model.results.KeyPart.ATTRIBUTE_NAME;
+import static com.googlecode.jmxtrans.model.results.KeyPart.TYPE_NAME;
+import static com.googlecode.jmxtrans.model.results.KeyPart.VALUE_PATH;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Compares the cost of a typical processor chain to the raw path, where
+ * results are handed to the output writers as they are, and to a plain copy
+ * of each batch. Not run as part of the build:
+ *
+ * <pre>
+ * java -cp ... com.googlecode.jmxtrans.model.results.ProcessorChainBenchmark
+ * </pre>
+ */
+public final class ProcessorChainBenchmark {
+
+	private static final int BATCH_SIZE = 200;
+	private static final int BATCHES = 500;
+	private static final int ROUNDS = 10;
+
+	private static volatile Object sink;
+
+	private ProcessorChainBenchmark() {}
+
+	public static void main(String[] args) {
+		List<ImmutableList<Result>> batches = batches();
+		ProcessorChain raw = ProcessorChain.compile(null);
+		ProcessorChain chain = ProcessorChain.compile(ImmutableList.<Processor>of(
+				new DropProcessor(VALUE_PATH, "committed|init"),
+				new RenameProcessor(ATTRIBUTE_NAME, "(.*)Usage", "{1}"),
+				new ScaleProcessor(TYPE_NAME, ".*Memory.*", 1.0 / (1024 * 1024)),
+				new ClampProcessor(0.0, null)));
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			long rawNanos = run(raw, batches, false);
+			long copyNanos = run(raw, batches, true);
+			long chainNanos = run(chain, batches, false);
+			System.out.printf("round %2d: raw %6.1f ns/result, copy %6.1f ns/result, chain %6.1f ns/result%n",
+					round, perResult(rawNanos), perResult(copyNanos), perResult(chainNanos));
+		}
+	}
+
+	private static long run(ProcessorChain chain, List<ImmutableList<Result>> batches, boolean copy) {
+		long start = System.nanoTime();
+		for (ImmutableList<Result> batch : batches) {
+			sink = copy ? ImmutableList.copyOf(batch.iterator()) : chain.process(batch);
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static double perResult(long nanos) {
+		return (double) nanos / (BATCH_SIZE * BATCHES);
+	}
+
+	private static List<ImmutableList<Result>> batches() {
+		String[] paths = {"used", "committed", "init", "max"};
+		long epoch = SECONDS.toMillis(1500000000);
+		ImmutableList.Builder<ImmutableList<Result>> batches = ImmutableList.builder();
+		for (int b = 0; b < BATCHES; b++) {
+			ImmutableList.Builder<Result> batch = ImmutableList.builder();
+			for (int r = 0; r < BATCH_SIZE; r++) {
+				batch.add(new Result(epoch, "HeapMemoryUsage", "sun.management.MemoryImpl", "java.lang", null,
+						r % 2 == 0 ? "type=Memory" : "name=Pool" + r + ",type=MemoryPool",
+						ImmutableList.of(paths[r % paths.length]), (long) r * 4096));
+			}
+			batches.add(batch.build());
+		}
+		return batches.build();
+	}
+}
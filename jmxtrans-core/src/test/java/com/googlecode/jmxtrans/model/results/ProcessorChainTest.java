@@ -0,0 +1,208 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.results;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.Result;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static com.googlecode.jmxtrans.model.results.KeyPart.ATTRIBUTE_NAME;
+import static com.googlecode.jmxtrans.model.results.KeyPart.KEY_ALIAS;
+import static com.googlecode.jmxtrans.model.results.KeyPart.TYPE_NAME;
+import static com.googlecode.jmxtrans.model.results.KeyPart.VALUE_PATH;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProcessorChainTest {
+
+	private static final Result HEAP_USED = result("HeapMemoryUsage", "type=Memory", ImmutableList.of("used"), 2048L);
+	private static final Result HEAP_MAX = result("HeapMemoryUsage", "type=Memory", ImmutableList.of("max"), 4096L);
+	private static final Result CPU_LOAD = result("ProcessCpuLoad", "type=OperatingSystem", ImmutableList.<String>of(), 1.5);
+
+	@Test
+	public void emptyChainReturnsResultsThemselves() {
+		Iterable<Result> results = ImmutableList.of(HEAP_USED, CPU_LOAD);
+
+		assertThat(ProcessorChain.compile(null).process(results)).isSameAs(results);
+		assertThat(ProcessorChain.compile(null)).isSameAs(ProcessorChain.EMPTY);
+	}
+
+	@Test
+	public void matchKeepsOnlyMatchingResults() {
+		ProcessorChain chain = ProcessorChain.compile(ImmutableList.of(new MatchProcessor(ATTRIBUTE_NAME, "Heap.*")));
+
+		assertThat(chain.process(ImmutableList.of(HEAP_USED, CPU_LOAD, HEAP_MAX))).containsExactly(HEAP_USED, HEAP_MAX);
+	}
+
+	@Test
+	public void dropRemovesMatchingResults() {
+		ProcessorChain chain = ProcessorChain.compile(ImmutableList.of(new DropProcessor(VALUE_PATH, "max")));
+
+		assertThat(chain.process(ImmutableList.of(HEAP_USED, CPU_LOAD, HEAP_MAX))).containsExactly(HEAP_USED, CPU_LOAD);
+	}
+
+	@Test
+	public void patternHasToMatchTheWholePart() {
+		ProcessorChain chain = ProcessorChain.compile(ImmutableList.of(new DropProcessor(ATTRIBUTE_NAME, "Heap")));
+
+		assertThat(chain.process(ImmutableList.of(HEAP_USED))).containsExactly(HEAP_USED);
+	}
+
+	@Test
+	public void literalPatternsMatchLikeRegularExpressions() {
+		String[] patterns = {"HeapMemoryUsage", "Heap", "Heap.*", ".*Usage", ".*Memory.*", ".*Non.*", "Other|HeapMemoryUsage", "Heap.*|Other", ".*", "H.*e"};
+
+		for (String pattern : patterns) {
+			ProcessorChain chain = ProcessorChain.compile(ImmutableList.of(new MatchProcessor(ATTRIBUTE_NAME, pattern)));
+
+			assertThat(chain.process(HEAP_USED) != null).as(pattern).isEqualTo(Pattern.matches(pattern, "HeapMemoryUsage"));
+		}
+	}
+
+	@Test
+	public void unchangedResultsAreNotCopied() {
+		ProcessorChain chain = ProcessorChain.compile(ImmutableList.<Processor>of(
+				new MatchProcessor(ATTRIBUTE_NAME, ".*"),
+				new RenameProcessor(ATTRIBUTE_NAME, "Unknown", "Renamed")));
+
+		assertThat(chain.process(HEAP_USED)).isSameAs(HEAP_USED);
+	}
+
+	@Test
+	public void renameUsesGroupsAndKeyParts() {
+		ProcessorChain chain = ProcessorChain.compile(ImmutableList.of(
+				new RenameProcessor(KEY_ALIAS, "(.*)Memory(.*)", "{1}{2}.{attributeName}")));
+
+		Result renamed = chain.process(result("HeapMemoryUsage", "type=Memory", ImmutableList.of("used"), 2048L, "NonHeapMemoryPool"));
+
+		assertThat(renamed.getKeyAlias()).isEqualTo("NonHeapPool.HeapMemoryUsage");
+		assertThat(renamed.getAttributeName()).isEqualTo("HeapMemoryUsage");
+		assertThat(renamed.getValue()).isEqualTo(2048L);
+	}
+
+	@Test
+	public void renameWithoutPatternRenamesEveryResult() {
+		ProcessorChain chain = ProcessorChain.compile(ImmutableList.of(
+				new RenameProcessor(VALUE_PATH, null, "{0}.bytes")));
+
+		assertThat(chain.process(HEAP_USED).getValuePath()).containsExactly("used", "bytes");
+		assertThat(chain.process(CPU_LOAD).getValuePath()).containsExactly("bytes");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void templateCannotReferToMissingGroups() {
+		new RenameProcessor(ATTRIBUTE_NAME, "(.*)", "{2}");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void templateCannotReferToUnknownParts() {
+		new RenameProcessor(ATTRIBUTE_NAME, null, "{unknown}");
+	}
+
+	@Test
+	public void integralValuesStayIntegralWhenScaledByAnInteger() {
+		ProcessorChain chain = ProcessorChain.compile(ImmutableList.of(new ScaleProcessor(1000)));
+
+		assertThat(chain.process(HEAP_USED).getValue()).isEqualTo(2048000L);
+		assertThat(chain.process(CPU_LOAD).getValue()).isEqualTo(1500.0);
+	}
+
+	@Test
+	public void fractionalScalingGivesDoubles() {
+		ProcessorChain chain = ProcessorChain.compile(ImmutableList.of(new ScaleProcessor(0.5)));
+
+		assertThat(chain.process(HEAP_USED).getValue()).isEqualTo(1024.0);
+	}
+
+	@Test
+	public void onlyMatchingResultsAreScaled() {
+		ProcessorChain chain = ProcessorChain.compile(ImmutableList.of(new ScaleProcessor(TYPE_NAME, ".*Memory", 2.0)));
+
+		assertThat(chain.process(HEAP_USED).getValue()).isEqualTo(4096L);
+		assertThat(chain.process(CPU_LOAD)).isSameAs(CPU_LOAD);
+	}
+
+	@Test
+	public void nonNumericValuesAreNotScaledNorClamped() {
+		Result text = result("Name", "type=Runtime", ImmutableList.<String>of(), "jvm");
+		ProcessorChain chain = ProcessorChain.compile(ImmutableList.<Processor>of(new ScaleProcessor(2), new ClampProcessor(0.0, 1.0)));
+
+		assertThat(chain.process(text)).isSameAs(text);
+	}
+
+	@Test
+	public void valuesAreClamped() {
+		ProcessorChain chain = ProcessorChain.compile(ImmutableList.of(new ClampProcessor(0.0, 1.0)));
+
+		assertThat(chain.process(HEAP_USED).getValue()).isEqualTo(1L);
+		assertThat(chain.process(CPU_LOAD).getValue()).isEqualTo(1.0);
+		assertThat(chain.process(result("SystemCpuLoad", "type=OperatingSystem", ImmutableList.<String>of(), -1.0)).getValue()).isEqualTo(0.0);
+		assertThat(chain.process(result("SystemCpuLoad", "type=OperatingSystem", ImmutableList.<String>of(), 0.5)).getValue()).isEqualTo(0.5);
+	}
+
+	@Test
+	public void processorsRunInOrder() {
+		ProcessorChain chain = ProcessorChain.compile(ImmutableList.<Processor>of(
+				new ScaleProcessor(0.001),
+				new ClampProcessor(null, 3.0),
+				new RenameProcessor(ATTRIBUTE_NAME, "(.*)Usage", "{1}"),
+				new DropProcessor(VALUE_PATH, "used")));
+
+		assertThat(chain.process(ImmutableList.of(HEAP_USED, HEAP_MAX)))
+				.containsExactly(result("HeapMemory", "type=Memory", ImmutableList.of("max"), 3.0));
+	}
+
+	@Test
+	public void processorsAreReadFromConfiguration() throws Exception {
+		String json = "["
+				+ "{ \"type\" : \"match\", \"part\" : \"attributeName\", \"pattern\" : \"Heap.*\" },"
+				+ "{ \"type\" : \"drop\", \"part\" : \"valuePath\", \"pattern\" : \"max\" },"
+				+ "{ \"type\" : \"rename\", \"part\" : \"attributeName\", \"template\" : \"heap\" },"
+				+ "{ \"type\" : \"scale\", \"factor\" : 0.5 },"
+				+ "{ \"type\" : \"clamp\", \"min\" : 0, \"max\" : 100 }"
+				+ "]";
+
+		List<Processor> processors = new ObjectMapper().readValue(json, new TypeReference<List<Processor>>() {});
+
+		assertThat(processors).containsExactly(
+				new MatchProcessor(ATTRIBUTE_NAME, "Heap.*"),
+				new DropProcessor(VALUE_PATH, "max"),
+				new RenameProcessor(ATTRIBUTE_NAME, null, "heap"),
+				new ScaleProcessor(0.5),
+				new ClampProcessor(0.0, 100.0));
+		assertThat(ProcessorChain.compile(processors).process(ImmutableList.of(HEAP_USED, HEAP_MAX, CPU_LOAD)))
+				.containsExactly(result("heap", "type=Memory", ImmutableList.of("used"), 100.0));
+	}
+
+	private static Result result(String attributeName, String typeName, ImmutableList<String> valuePath, Object value) {
+		return result(attributeName, typeName, valuePath, value, null);
+	}
+
+	private static Result result(String attributeName, String typeName, ImmutableList<String> valuePath, Object value, String keyAlias) {
+		return new Result(0, attributeName, "sun.management.MemoryImpl", "java.lang", keyAlias, typeName, valuePath, value);
+	}
+}
@@ -0,0 +1,216 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.scheduler;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.googlecode.jmxtrans.cli.JmxTransConfiguration;
+import com.googlecode.jmxtrans.executors.HostConcurrencyGovernor;
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConnectionWarmUpTest {
+
+	private final JmxTransConfiguration configuration = mock(JmxTransConfiguration.class);
+	private ScheduledExecutorService scheduledExecutor;
+	private ConnectionWarmUp connectionWarmUp;
+
+	@Before
+	public void createWarmUp() throws Exception {
+		when(configuration.getStartupConnectionParallelism()).thenReturn(2);
+		when(configuration.getExecutorThreadPriority()).thenReturn(Thread.NORM_PRIORITY);
+		scheduledExecutor = Executors.newScheduledThreadPool(1);
+		connectionWarmUp = new ConnectionWarmUp(configuration, scheduledExecutor, HostConcurrencyGovernor.unlimited());
+	}
+
+	@After
+	public void stopWarmUp() {
+		connectionWarmUp.stop();
+		scheduledExecutor.shutdownNow();
+	}
+
+	@Test
+	public void connectsToEveryRemoteServer() throws Exception {
+		Server first = mock(Server.class);
+		Server second = mock(Server.class);
+		Server failing = mock(Server.class);
+		doThrow(new RuntimeException("refused")).when(failing).warmUpConnection();
+		Server local = mock(Server.class);
+		when(local.isLocal()).thenReturn(true);
+
+		when(configuration.getRunPeriod()).thenReturn(1);
+		connectionWarmUp.start(ImmutableList.of(first, second, failing, local));
+
+		verify(first, timeout(2000)).warmUpConnection();
+		verify(second, timeout(2000)).warmUpConnection();
+		verify(failing, timeout(2000)).warmUpConnection();
+		verify(local, never()).warmUpConnection();
+		waitUntilDone();
+
+		assertThat(connectionWarmUp.getServerCount()).isEqualTo(3);
+		assertThat(connectionWarmUp.getConnectedCount()).isEqualTo(2);
+		assertThat(connectionWarmUp.getFailedCount()).isEqualTo(1);
+		assertThat(connectionWarmUp.isInProgress()).isFalse();
+	}
+
+	@Test
+	public void cancelledConnectionsAreNotOpened() throws Exception {
+		Server first = mock(Server.class);
+		Server late = mock(Server.class);
+
+		when(configuration.getRunPeriod()).thenReturn(10);
+		connectionWarmUp.start(ImmutableList.of(first, late));
+		verify(first, timeout(2000)).warmUpConnection();
+		connectionWarmUp.cancel();
+
+		assertThat(connectionWarmUp.getPendingCount()).isEqualTo(0);
+		Thread.sleep(100);
+		verify(late, never()).warmUpConnection();
+	}
+
+	@Test
+	public void spreadServersAreWarmedUpBeforeTheirOwnFirstRun() throws Exception {
+		when(configuration.getRunPeriod()).thenReturn(60);
+		when(configuration.isSpreadServerJobs()).thenReturn(true);
+		Server server = mock(Server.class);
+		when(server.getId()).thenReturn("host1_1099_null");
+		when(server.getRunPeriodSeconds()).thenReturn(2);
+		long now = System.currentTimeMillis();
+		long firstRunDelay = ServerScheduler.firstRunDelay(configuration, server, now);
+
+		connectionWarmUp.start(ImmutableList.of(server));
+
+		// the warm up follows the 2s period of the server, not the 60s default one
+		assertThat(firstRunDelay).isLessThan(2000);
+		verify(server, timeout(2000)).warmUpConnection();
+	}
+
+	@Test
+	public void warmUpsLeadTheFirstRunByAQuarterOfTheRunPeriod() {
+		assertThat(ConnectionWarmUp.warmUpDelay(5000, 4000)).isEqualTo(4000);
+		assertThat(ConnectionWarmUp.warmUpDelay(500, 4000)).isZero();
+		assertThat(ConnectionWarmUp.warmUpDelay(300000, 3600000)).isEqualTo(300000 - ConnectionWarmUp.MAX_LEAD_MILLIS);
+	}
+
+	@Test
+	public void warmUpsCountAgainstTheHostLimit() throws Exception {
+		HostConcurrencyGovernor governor = new HostConcurrencyGovernor(1, 0, null);
+		connectionWarmUp.stop();
+		connectionWarmUp = new ConnectionWarmUp(configuration, scheduledExecutor, governor);
+		Server server = mock(Server.class);
+		final CountDownLatch release = new CountDownLatch(1);
+		ExecutorService queryExecutor = Executors.newSingleThreadExecutor();
+		try {
+			governor.execute(server, queryExecutor, new Runnable() {
+				@Override
+				public void run() {
+					Uninterruptibles.awaitUninterruptibly(release);
+				}
+			});
+
+			when(configuration.getRunPeriod()).thenReturn(1);
+			connectionWarmUp.start(ImmutableList.of(server));
+			for (int i = 0; i < 200 && governor.getQueuedCount(server) == 0; i++) {
+				Thread.sleep(10);
+			}
+
+			assertThat(governor.getQueuedCount(server)).isEqualTo(1);
+			verify(server, never()).warmUpConnection();
+			release.countDown();
+			verify(server, timeout(2000)).warmUpConnection();
+		} finally {
+			release.countDown();
+			queryExecutor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void reloadsDuringAWarmUpGiveTheHostSlotsBack() throws Exception {
+		when(configuration.getStartupConnectionParallelism()).thenReturn(1);
+		HostConcurrencyGovernor governor = new HostConcurrencyGovernor(3, 0, null);
+		connectionWarmUp.stop();
+		connectionWarmUp = new ConnectionWarmUp(configuration, scheduledExecutor, governor);
+		final CountDownLatch release = new CountDownLatch(1);
+		Server slow = mock(Server.class);
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) {
+				Uninterruptibles.awaitUninterruptibly(release);
+				return null;
+			}
+		}).when(slow).warmUpConnection();
+		Server queued1 = mock(Server.class);
+		Server queued2 = mock(Server.class);
+		ExecutorService queryExecutor = Executors.newSingleThreadExecutor();
+		try {
+			when(configuration.getRunPeriod()).thenReturn(1);
+			connectionWarmUp.start(ImmutableList.of(slow, queued1, queued2));
+			// the slow connection holds the only connect thread, the others wait in its queue
+			for (int i = 0; i < 200 && governor.getInFlightCount(slow) < 3; i++) {
+				Thread.sleep(10);
+			}
+			assertThat(governor.getInFlightCount(slow)).isEqualTo(3);
+
+			connectionWarmUp.start(ImmutableList.<Server>of());
+			release.countDown();
+
+			for (int i = 0; i < 200 && governor.getInFlightCount(slow) > 0; i++) {
+				Thread.sleep(10);
+			}
+			assertThat(governor.getInFlightCount(slow)).isZero();
+			verify(queued1, never()).warmUpConnection();
+			verify(queued2, never()).warmUpConnection();
+
+			Runnable query = mock(Runnable.class);
+			governor.execute(slow, queryExecutor, query);
+			verify(query, timeout(2000)).run();
+		} finally {
+			release.countDown();
+			queryExecutor.shutdownNow();
+		}
+	}
+
+	private void waitUntilDone() throws InterruptedException {
+		for (int i = 0; i < 200 && connectionWarmUp.isInProgress(); i++) {
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.scheduler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HashedWheelServerTimerTest {
+
+	private ExecutorService dispatcher;
+	private HashedWheelServerTimer timer;
+
+	@Before
+	public void startTimer() {
+		dispatcher = Executors.newSingleThreadExecutor();
+		// a small wheel, so that periods span several rounds
+		timer = new HashedWheelServerTimer(10, 8, dispatcher, Executors.defaultThreadFactory());
+	}
+
+	@After
+	public void stopTimer() {
+		timer.stop();
+		dispatcher.shutdownNow();
+	}
+
+	@Test
+	public void commandsRunPeriodically() throws Exception {
+		CountDownLatch runs = new CountDownLatch(3);
+
+		timer.scheduleAtFixedRate(countDown(runs), 0, 150);
+
+		long start = System.nanoTime();
+		assertThat(runs.await(2, SECONDS)).isTrue();
+		assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(SECONDS.toNanos(1) * 28 / 100);
+		assertThat(timer.getTickCount()).isGreaterThan(0);
+	}
+
+	@Test
+	public void cancelledCommandsDoNotRun() throws Exception {
+		AtomicInteger cancelledRuns = new AtomicInteger();
+		CountDownLatch otherRuns = new CountDownLatch(3);
+
+		timer.scheduleAtFixedRate(increment(cancelledRuns), 50, 50).cancel();
+		timer.scheduleAtFixedRate(countDown(otherRuns), 50, 50);
+
+		assertThat(otherRuns.await(2, SECONDS)).isTrue();
+		assertThat(cancelledRuns.get()).isEqualTo(0);
+	}
+
+	@Test
+	public void cancelAllStopsEveryCommand() throws Exception {
+		AtomicInteger runs = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		timer.scheduleAtFixedRate(countDown(started), 0, 20);
+		for (int i = 0; i < 100; i++) {
+			timer.scheduleAtFixedRate(increment(runs), i, 20);
+		}
+		assertThat(started.await(2, SECONDS)).isTrue();
+
+		timer.cancelAll();
+		Thread.sleep(50);
+		int runsAfterCancel = runs.get();
+		Thread.sleep(200);
+
+		assertThat(runs.get()).isEqualTo(runsAfterCancel);
+	}
+
+	private static Runnable countDown(final CountDownLatch latch) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+		};
+	}
+
+	private static Runnable increment(final AtomicInteger counter) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				counter.incrementAndGet();
+			}
+		};
+	}
+}
@@ -0,0 +1,204 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.scheduler;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.googlecode.jmxtrans.executors.ExecutorRepository;
+import com.googlecode.jmxtrans.executors.HostConcurrencyGovernor;
+import com.googlecode.jmxtrans.jmx.ResultProcessor;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ServerCommandTest {
+
+	private final Query query = Query.builder().setObj("test:type=Slow").build();
+	private final CountDownLatch release = new CountDownLatch(1);
+	private ThreadPoolExecutor executor;
+	private Server server;
+	private ExecutorRepository queryExecutorRepository;
+
+	@Before
+	public void createSlowServer() throws Exception {
+		executor = new ThreadPoolExecutor(1, 1, 0, MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+		queryExecutorRepository = mock(ExecutorRepository.class);
+
+		server = mock(Server.class);
+		when(server.getQueries()).thenReturn(ImmutableSet.of(query));
+		when(server.execute(query)).then(new Answer<Iterable<Result>>() {
+			@Override
+			public Iterable<Result> answer(InvocationOnMock invocation) throws Throwable {
+				release.await(5, SECONDS);
+				return ImmutableList.of();
+			}
+		});
+		when(queryExecutorRepository.getExecutor(server)).thenReturn(executor);
+	}
+
+	@After
+	public void shutdownExecutor() {
+		release.countDown();
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void skipPolicySkipsRunsWhilePreviousOneIsInProgress() throws Exception {
+		ServerCommand command = command(OverrunPolicy.SKIP);
+
+		command.run();
+		verify(server, timeout(1000)).execute(query);
+		command.run();
+		command.run();
+
+		assertThat(command.getOverrunCycles()).isEqualTo(2);
+		assertThat(command.getSkippedCycles()).isEqualTo(2);
+		assertThat(executor.getQueue()).isEmpty();
+	}
+
+	@Test
+	public void coalescePolicyKeepsAtMostOneQueuedRun() throws Exception {
+		ServerCommand command = command(OverrunPolicy.COALESCE);
+
+		command.run();
+		verify(server, timeout(1000)).execute(query);
+		command.run();
+		command.run();
+		command.run();
+
+		assertThat(executor.getQueue()).hasSize(1);
+		assertThat(command.getOverrunCycles()).isEqualTo(3);
+		assertThat(command.getSkippedCycles()).isEqualTo(2);
+
+		release.countDown();
+		verify(server, timeout(1000).times(2)).execute(query);
+	}
+
+	@Test
+	public void cancelPolicyInterruptsPreviousRun() throws Exception {
+		ServerCommand command = command(OverrunPolicy.CANCEL);
+
+		command.run();
+		verify(server, timeout(1000)).execute(query);
+		command.run();
+
+		// the first run is interrupted, which lets the second one start
+		verify(server, timeout(1000).times(2)).execute(query);
+		assertThat(command.getOverrunCycles()).isEqualTo(1);
+		assertThat(command.getSkippedCycles()).isEqualTo(0);
+	}
+
+	@Test
+	public void closeDropsQueuedRuns() throws Exception {
+		ServerCommand command = command(OverrunPolicy.NONE);
+
+		command.run();
+		verify(server, timeout(1000)).execute(query);
+		command.run();
+		command.close();
+		release.countDown();
+
+		Thread.sleep(100);
+		verify(server, times(1)).execute(query);
+	}
+
+	@Test
+	public void rejectedRunsAreSkippedCycles() throws Exception {
+		ServerCommand command = command(OverrunPolicy.NONE);
+		executor.shutdown();
+
+		command.run();
+		command.run();
+
+		assertThat(command.getOverrunCycles()).isEqualTo(0);
+		assertThat(command.getSkippedCycles()).isEqualTo(2);
+	}
+
+	@Test
+	public void runsOnlyQueriesOfItsRunPeriod() throws Exception {
+		Query frequentQuery = Query.builder().setObj("test:type=Frequent").setRunPeriodSeconds(10).build();
+		when(server.getQueries()).thenReturn(ImmutableSet.of(query, frequentQuery));
+		release.countDown();
+
+		new ServerCommand(server, queryExecutorRepository, mock(ResultProcessor.class), HostConcurrencyGovernor.unlimited(), OverrunPolicy.NONE, 10, 60)
+				.run();
+
+		verify(server, timeout(1000)).execute(frequentQuery);
+		Thread.sleep(100);
+		verify(server, times(0)).execute(query);
+	}
+
+	@Test
+	public void logicalTickIsTheClosestTick() {
+		assertThat(ServerCommand.logicalTick(1500000060123L, 60000, 0)).isEqualTo(1500000060000L);
+		// runs spread within the period still belong to the tick before them
+		assertThat(ServerCommand.logicalTick(1500000065123L, 60000, 5000)).isEqualTo(1500000060000L);
+		// a run firing a little early, as the timer drifts from the wall clock, belongs to the next tick
+		assertThat(ServerCommand.logicalTick(1500000064999L, 60000, 5000)).isEqualTo(1500000060000L);
+		assertThat(ServerCommand.logicalTick(1500000059997L, 60000, 0)).isEqualTo(1500000060000L);
+		assertThat(ServerCommand.logicalTick(1500000089999L, 60000, 0)).isEqualTo(1500000060000L);
+		assertThat(ServerCommand.logicalTick(1500000090000L, 60000, 0)).isEqualTo(1500000120000L);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void alignedRunsStampResultsWithTheirTick() throws Exception {
+		Result result = new Result(1L, "Value", "Test", "test", null, "type=Slow", ImmutableList.<String>of(), 1);
+		when(server.execute(query)).thenReturn(ImmutableList.of(result));
+		ResultProcessor resultProcessor = mock(ResultProcessor.class);
+
+		new ServerCommand(server, queryExecutorRepository, resultProcessor, HostConcurrencyGovernor.unlimited(), OverrunPolicy.NONE, 60, 60, 0L)
+				.run();
+
+		ArgumentCaptor<Iterable> results = ArgumentCaptor.forClass(Iterable.class);
+		verify(resultProcessor, timeout(1000)).submit(same(server), same(query), results.capture());
+		Result stamped = (Result) Iterables.getOnlyElement(results.getValue());
+		assertThat(stamped.getEpoch() % 60000).isZero();
+		assertThat(stamped.getValue()).isEqualTo(1);
+	}
+
+	private ServerCommand command(OverrunPolicy overrunPolicy) {
+		return new ServerCommand(server, queryExecutorRepository, mock(ResultProcessor.class), HostConcurrencyGovernor.unlimited(), overrunPolicy, 60, 60);
+	}
+}
@@ -25,6 +25,7 @@ package com.googlecode.jmxtrans.scheduler;
 import com.google.common.collect.ImmutableSet;
 import com.googlecode.jmxtrans.cli.JmxTransConfiguration;
 import com.googlecode.jmxtrans.executors.ExecutorRepository;
+import com.googlecode.jmxtrans.executors.HostConcurrencyGovernor;
 import com.googlecode.jmxtrans.jmx.ResultProcessor;
 import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Server;
@@ -37,8 +38,11 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.Executors;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.*;
 
@@ -55,8 +59,8 @@ public class ServerSchedulerTest {
 	private ServerScheduler serverScheduler;
 
 	@Before
-	public void setUp() {
-		serverScheduler = new ServerScheduler(configuration, Executors.newScheduledThreadPool(2), queryExecutorRepository, resultProcessor);
+	public void setUp() throws Exception {
+		serverScheduler = new ServerScheduler(configuration, Executors.newScheduledThreadPool(2), queryExecutorRepository, resultProcessor, HostConcurrencyGovernor.unlimited());
 		serverScheduler.start();
 	}
 
@@ -117,4 +121,64 @@ public class ServerSchedulerTest {
 		verify(queryExecutorRepository, timeout(6000L).atLeastOnce()).getExecutor(same(server1));
 		verify(queryExecutorRepository, timeout(6000L).atLeast(2)).getExecutor(same(server2));
 	}
+
+	@Test
+	public void queriesAreGroupedByRunPeriod() throws Exception {
+		when(configuration.getRunPeriod()).thenReturn(60);
+		Server server = mock(Server.class);
+		when(server.getQueries()).thenReturn(ImmutableSet.of(
+				Query.builder().setObj("test:type=Default").build(),
+				Query.builder().setObj("test:type=Heap").setRunPeriodSeconds(10).build(),
+				Query.builder().setObj("test:type=NonHeap").setRunPeriodSeconds(10).build()));
+
+		serverScheduler.schedule(server);
+
+		assertThat(serverScheduler.getScheduledServerCount()).isEqualTo(2);
+		serverScheduler.unscheduleAll();
+	}
+
+	@Test
+	public void stopLeavesResultsOfRunningQueriesToTheResultProcessor() {
+		serverScheduler.stop();
+
+		// the result processor is stopped once the query executors are drained
+		verify(resultProcessor, never()).stop();
+	}
+
+	@Test
+	public void spreadDelayIsStableAndWithinRunPeriod() {
+		long period = 60000;
+		long now = 1500000000123L;
+
+		long delay = ServerScheduler.spreadInitialDelay("host1_1099_null", period, now);
+
+		assertThat(delay).isBetween(0L, period - 1);
+		// a reload some time later keeps the same slot in the period
+		assertThat((now + delay) % period)
+				.isEqualTo((now + 12345 + ServerScheduler.spreadInitialDelay("host1_1099_null", period, now + 12345)) % period);
+	}
+
+	@Test
+	public void alignedRunsStartOnTicksWithinTheSpread() {
+		long period = 60000;
+		long offset = ServerScheduler.spreadOffset("host1_1099_null", 2000);
+		long now = 1500000000123L;
+
+		long delay = ServerScheduler.delayUntilOffset(offset, period, now);
+
+		assertThat(offset).isBetween(0L, 1999L);
+		assertThat((now + delay) % period).isEqualTo(offset);
+		assertThat(ServerScheduler.spreadOffset("host1_1099_null", 0)).isZero();
+	}
+
+	@Test
+	public void serversAreSpreadOverRunPeriod() {
+		long period = 60000;
+		Set<Long> slots = new HashSet<>();
+		for (int i = 0; i < 100; i++) {
+			slots.add(ServerScheduler.spreadInitialDelay("host" + i + "_1099_null", period, 0) / 6000);
+		}
+
+		assertThat(slots).hasSize(10);
+	}
 }
@@ -27,8 +27,10 @@ import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.Server;
 import com.googlecode.jmxtrans.model.naming.KeyUtils;
+import com.googlecode.jmxtrans.model.output.support.SharedBatchCache;
 import com.googlecode.jmxtrans.model.output.support.WriterBasedOutputWriter;
 import com.googlecode.jmxtrans.util.OnlyOnceLogger;
+import lombok.EqualsAndHashCode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,12 +39,14 @@ import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.concurrent.Callable;
 
 import static com.googlecode.jmxtrans.util.NumberUtils.isValidNumber;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 @ThreadSafe
+@EqualsAndHashCode(exclude = "onlyOnceLogger")
 public class GraphiteWriter2 implements WriterBasedOutputWriter {
 	private static final Logger log = LoggerFactory.getLogger(GraphiteWriter2.class);
 	private final OnlyOnceLogger onlyOnceLogger = new OnlyOnceLogger(log);
@@ -61,7 +65,35 @@ public class GraphiteWriter2 implements WriterBasedOutputWriter {
 			@Nonnull Server server,
 			@Nonnull Query query,
 			@Nonnull Iterable<Result> results) throws IOException {
+		for (String line : lines(server, query, results)) {
+			writer.write(line);
+		}
+	}
+
+	/**
+	 * Lines are built once per batch of results and shared by all the equal
+	 * writers, for example when the same results go to several Graphite servers.
+	 */
+	private ImmutableList<String> lines(
+			@Nonnull final Server server,
+			@Nonnull final Query query,
+			@Nonnull final Iterable<Result> results) throws IOException {
+		try {
+			return SharedBatchCache.get(server, query, results, this, new Callable<ImmutableList<String>>() {
+				@Override
+				public ImmutableList<String> call() {
+					return format(server, query, results);
+				}
+			});
+		} catch (IOException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
 
+	private ImmutableList<String> format(Server server, Query query, Iterable<Result> results) {
+		ImmutableList.Builder<String> lines = ImmutableList.builder();
 		for (Result result : results) {
 			log.debug("Query result: {}", result);
 			Object value = result.getValue();
@@ -71,10 +103,11 @@ public class GraphiteWriter2 implements WriterBasedOutputWriter {
 						.replaceAll("[()]", "_") + " " + value.toString() + " "
 						+ SECONDS.convert(result.getEpoch(), MILLISECONDS) + "\n";
 				log.debug("Graphite Message: {}", line);
-				writer.write(line);
+				lines.add(line);
 			} else {
 				onlyOnceLogger.infoOnce("Unable to submit non-numeric value to Graphite: [{}] from result [{}]", value, result);
 			}
 		}
+		return lines.build();
 	}
 }
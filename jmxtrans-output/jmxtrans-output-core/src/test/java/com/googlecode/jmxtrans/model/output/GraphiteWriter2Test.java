@@ -23,6 +23,9 @@
 package com.googlecode.jmxtrans.model.output;
 
 import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.Result;
+import com.googlecode.jmxtrans.model.Server;
 import com.googlecode.jmxtrans.model.output.support.WriterBasedOutputWriter;
 import org.junit.Test;
 
@@ -84,4 +87,32 @@ public class GraphiteWriter2Test {
 			.startsWith("servers.host_example_net_4321.MemoryAlias.NonHeapMemoryUsage_ObjectPendingFinalizationCount 10 0");
 	}
 
+	@Test
+	public void equalWritersShareTheLinesOfABatch() throws Exception {
+		Server server = dummyServer();
+		Query query = dummyQuery();
+		ImmutableList<Result> results = dummyResults();
+		StringWriter first = new StringWriter();
+		StringWriter second = new StringWriter();
+
+		new GraphiteWriter2(ImmutableList.<String>of(), "servers").write(first, server, query, results);
+		new GraphiteWriter2(ImmutableList.<String>of(), "servers").write(second, server, query, results);
+
+		assertThat(second.toString()).isEqualTo(first.toString());
+	}
+
+	@Test
+	public void writersWithOtherSettingsDoNotShareLines() throws Exception {
+		Server server = dummyServer();
+		Query query = dummyQuery();
+		ImmutableList<Result> results = dummyResults();
+		StringWriter first = new StringWriter();
+		StringWriter second = new StringWriter();
+
+		new GraphiteWriter2(ImmutableList.<String>of(), "servers").write(first, server, query, results);
+		new GraphiteWriter2(ImmutableList.<String>of(), "relay").write(second, server, query, results);
+
+		assertThat(second.toString()).startsWith("relay");
+	}
+
 }
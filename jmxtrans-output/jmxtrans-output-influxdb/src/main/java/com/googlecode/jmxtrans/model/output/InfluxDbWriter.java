@@ -25,8 +25,10 @@ package com.googlecode.jmxtrans.model.output;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableList;
+import com.googlecode.jmxtrans.model.BatchOutputWriter;
 import com.googlecode.jmxtrans.model.OutputWriterAdapter;
 import com.googlecode.jmxtrans.model.Query;
+import com.googlecode.jmxtrans.model.QueryResults;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.ResultAttribute;
 import com.googlecode.jmxtrans.model.Server;
@@ -40,6 +42,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.HashMap;
 import java.util.Map;
@@ -57,7 +60,7 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
  *         <a href="https://github.com/sihutch">github.com/sihutch</a>
  */
 @ThreadSafe
-public class InfluxDbWriter extends OutputWriterAdapter {
+public class InfluxDbWriter extends OutputWriterAdapter implements BatchOutputWriter {
 	private static final Logger log = LoggerFactory.getLogger(InfluxDbWriter.class);
 
 	public static final String TAG_HOSTNAME = "hostname";
@@ -163,15 +166,42 @@ public class InfluxDbWriter extends OutputWriterAdapter {
 	public void doWrite(Server server, Query query, Iterable<Result> results) throws Exception {
 		// Creates only if it doesn't already exist
 		if (createDatabase) influxDB.createDatabase(database);
-		BatchPoints.Builder batchPointsBuilder = BatchPoints.database(database).retentionPolicy(retentionPolicy)
-				.tag(TAG_HOSTNAME, server.getSource());
+		BatchPoints batchPoints = batchPointsBuilder(server.getSource())
+				.consistency(writeConsistency)
+				.build();
+		addPoints(batchPoints, server, query, results, false);
+		influxDB.write(batchPoints);
+	}
+
+	/**
+	 * Writes the results of several queries and servers with a single request.
+	 * As servers differ, the {@link #TAG_HOSTNAME} tag is set on each point
+	 * instead of on the whole batch.
+	 */
+	@Override
+	public void doWriteBatch(ImmutableList<QueryResults> batch) throws Exception {
+		if (createDatabase) influxDB.createDatabase(database);
+		BatchPoints batchPoints = batchPointsBuilder(null)
+				.consistency(writeConsistency)
+				.build();
+		for (QueryResults queryResults : batch) {
+			addPoints(batchPoints, queryResults.getServer(), queryResults.getQuery(), queryResults.getResults(), true);
+		}
+		influxDB.write(batchPoints);
+	}
 
+	private BatchPoints.Builder batchPointsBuilder(@Nullable String hostname) {
+		BatchPoints.Builder batchPointsBuilder = BatchPoints.database(database).retentionPolicy(retentionPolicy);
+		if (hostname != null) {
+			batchPointsBuilder.tag(TAG_HOSTNAME, hostname);
+		}
 		for(Map.Entry<String,String> tag : tags.entrySet()) {
 			batchPointsBuilder.tag(tag.getKey(),tag.getValue());
 		}
+		return batchPointsBuilder;
+	}
 
-		BatchPoints batchPoints = batchPointsBuilder.consistency(writeConsistency).build();
-		
+	private void addPoints(BatchPoints batchPoints, Server server, Query query, Iterable<Result> results, boolean tagHostname) {
 		ImmutableList<String> typeNamesParam = null;
 		// if not typeNamesAsTag, we concat typeName in values.
 		if (!typeNamesAsTags) {
@@ -192,6 +222,9 @@ public class InfluxDbWriter extends OutputWriterAdapter {
 			// send the point if filteredValues isn't empty
 			if (!filteredValues.isEmpty()) {
 				Map<String, String> resultTagsToApply = buildResultTagMap(result);
+				if (tagHostname) {
+					resultTagsToApply.put(TAG_HOSTNAME, server.getSource());
+				}
 				if (reportJmxPortAsTag) {
 					resultTagsToApply.put(JMX_PORT_KEY, server.getPort());
 				} else {
@@ -204,8 +237,6 @@ public class InfluxDbWriter extends OutputWriterAdapter {
 				batchPoints.point(point);
 			}
 		}
-
-		influxDB.write(batchPoints);
 	}
 
 	private Map<String, String> buildResultTagMap(Result result) {
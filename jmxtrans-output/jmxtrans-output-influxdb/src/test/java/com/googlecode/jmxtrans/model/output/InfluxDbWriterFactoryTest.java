@@ -0,0 +1,57 @@
+/**
+ * The MIT License
+ * Copyright © 2010 JmxTrans team
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.googlecode.jmxtrans.model.output;
+
+import com.googlecode.jmxtrans.model.BatchOutputWriter;
+import com.googlecode.jmxtrans.model.OutputWriter;
+import com.googlecode.jmxtrans.model.output.support.BatchingOutputWriter;
+import com.googlecode.jmxtrans.model.output.support.ResultTransformerOutputWriter;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InfluxDbWriterFactoryTest {
+
+	@Test
+	public void createdWritersSupportBatches() throws Exception {
+		ResultTransformerOutputWriter<InfluxDbWriter> writer = influxDbWriterFactory(true).create();
+
+		assertThat(writer).isInstanceOf(BatchOutputWriter.class);
+		assertThat(writer.supportsBatches()).isTrue();
+	}
+
+	@Test
+	public void batchingWriterWritesInfluxDbResultsInBatches() throws Exception {
+		BatchingOutputWriter<OutputWriter> writer = new BatchingOutputWriterFactory(influxDbWriterFactory(false), null, null, null).create();
+		try {
+			assertThat(writer.isBatching()).isTrue();
+		} finally {
+			writer.close();
+		}
+	}
+
+	private InfluxDbWriterFactory influxDbWriterFactory(boolean booleanAsNumber) {
+		return new InfluxDbWriterFactory(null, booleanAsNumber, "http://localhost:8086", "user", "password", "database",
+				null, null, null, null, false, null, null, null);
+	}
+}
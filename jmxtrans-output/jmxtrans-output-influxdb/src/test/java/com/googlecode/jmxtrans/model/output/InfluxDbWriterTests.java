@@ -29,9 +29,11 @@ import com.google.inject.Injector;
 import com.googlecode.jmxtrans.cli.JmxTransConfiguration;
 import com.googlecode.jmxtrans.guice.JmxTransModule;
 import com.googlecode.jmxtrans.model.JmxProcess;
+import com.googlecode.jmxtrans.model.QueryResults;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.ResultAttribute;
 import com.googlecode.jmxtrans.model.ResultAttributes;
+import com.googlecode.jmxtrans.model.Server;
 import com.googlecode.jmxtrans.util.ProcessConfigUtils;
 import org.influxdb.InfluxDB;
 import org.influxdb.InfluxDB.ConsistencyLevel;
@@ -56,6 +58,7 @@ import java.util.TreeMap;
 
 import static com.googlecode.jmxtrans.model.QueryFixtures.dummyQuery;
 import static com.googlecode.jmxtrans.model.ServerFixtures.DEFAULT_PORT;
+import static com.googlecode.jmxtrans.model.ServerFixtures.createServerWithOneQuery;
 import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServer;
 import static com.googlecode.jmxtrans.model.output.InfluxDbWriter.JMX_PORT_KEY;
 import static com.googlecode.jmxtrans.model.output.InfluxDbWriter.TAG_HOSTNAME;
@@ -123,6 +126,22 @@ public class InfluxDbWriterTests {
 		assertThat(point.lineProtocol()).startsWith(lineProtocol);
 	}
 
+	@Test
+	public void batchesAreWrittenWithOneRequest() throws Exception {
+		InfluxDbWriter writer = getTestInfluxDbWriterWithDefaultSettings();
+		Server otherServer = createServerWithOneQuery("other.example.net", DEFAULT_PORT, "java.lang:type=Memory");
+
+		writer.doWriteBatch(ImmutableList.of(
+				new QueryResults(dummyServer(), dummyQuery(), results),
+				new QueryResults(otherServer, dummyQuery(), results)));
+
+		verify(influxDB).write(messageCaptor.capture());
+		List<Point> points = messageCaptor.getValue().getPoints();
+		assertThat(points).hasSize(2);
+		assertThat(points.get(0).lineProtocol()).contains(TAG_HOSTNAME + "=" + HOST);
+		assertThat(points.get(1).lineProtocol()).contains(TAG_HOSTNAME + "=other.example.net");
+	}
+
 	@Test
 	public void customTagsAreWrittenToDb() throws Exception {
 		ImmutableMap<String, String> tags = ImmutableMap.of("customTag", "customValue");
@@ -23,21 +23,27 @@
 package com.googlecode.jmxtrans.model.output.kafka;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.googlecode.jmxtrans.model.AsyncOutputWriter;
 import com.googlecode.jmxtrans.model.OutputWriterAdapter;
 import com.googlecode.jmxtrans.model.Query;
 import com.googlecode.jmxtrans.model.Result;
 import com.googlecode.jmxtrans.model.Server;
 import com.googlecode.jmxtrans.model.output.ResultSerializer;
 import lombok.Getter;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
 
 import javax.annotation.Nonnull;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class KafkaWriter2 extends OutputWriterAdapter {
+public class KafkaWriter2 extends OutputWriterAdapter implements AsyncOutputWriter {
 	@Nonnull
 	@Getter
 	private final Map<String, Object> producerConfig;
@@ -74,6 +80,35 @@ public class KafkaWriter2 extends OutputWriterAdapter {
 		}
 	}
 
+	/** Completes once all the messages are acknowledged, or fails with the first send failure. */
+	@Override
+	public ListenableFuture<?> doWriteAsync(Server server, Query query, Iterable<Result> results) throws Exception {
+		final SettableFuture<Void> written = SettableFuture.create();
+		// one more than the messages in flight, until they are all sent
+		final AtomicInteger pending = new AtomicInteger(1);
+		Callback callback = new Callback() {
+			@Override
+			public void onCompletion(RecordMetadata metadata, Exception exception) {
+				if (exception != null) {
+					written.setException(exception);
+				} else if (pending.decrementAndGet() == 0) {
+					written.set(null);
+				}
+			}
+		};
+		for (Result result : results) {
+			String message = resultSerializer.serialize(server, query, result);
+			if (message != null) {
+				pending.incrementAndGet();
+				producer.send(new ProducerRecord<String, String>(topic, message), callback);
+			}
+		}
+		if (pending.decrementAndGet() == 0) {
+			written.set(null);
+		}
+		return written;
+	}
+
 	@Override
 	public void close() {
 		producer.close();
@@ -30,7 +30,9 @@ import static com.googlecode.jmxtrans.model.ResultFixtures.dummyResults;
 import static com.googlecode.jmxtrans.model.ServerFixtures.dummyServer;
 import static com.googlecode.jmxtrans.model.ServerFixtures.DEFAULT_HOST;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.googlecode.jmxtrans.model.output.ResultSerializer;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.junit.Test;
@@ -38,9 +40,12 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
 import static org.mockito.Mockito.*;
 
 @RunWith(org.mockito.junit.MockitoJUnitRunner.class)
@@ -101,4 +106,54 @@ public class KafkaWriter2Test {
 		verifyNoMoreInteractions(producerMock);
 	}
 
+	@Test
+	public void asyncWriteCompletesWhenAllMessagesAreAcknowledged() throws Exception {
+		KafkaWriter2 writer = new KafkaWriter2(
+				producerMock,
+				TOPIC,
+				new DetailedResultSerializer());
+		ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+
+		ListenableFuture<?> written = writer.doWriteAsync(dummyServer(), dummyQuery(), dummyResults());
+
+		verify(producerMock, times(3)).send(any(ProducerRecord.class), callbackCaptor.capture());
+		callbackCaptor.getAllValues().get(0).onCompletion(null, null);
+		callbackCaptor.getAllValues().get(1).onCompletion(null, null);
+		assertThat(written.isDone()).isFalse();
+		callbackCaptor.getAllValues().get(2).onCompletion(null, null);
+		assertThat(written.isDone()).isTrue();
+	}
+
+	@Test
+	public void asyncWriteFailsWhenAMessageCannotBeSent() throws Exception {
+		KafkaWriter2 writer = new KafkaWriter2(
+				producerMock,
+				TOPIC,
+				new DetailedResultSerializer());
+		ArgumentCaptor<Callback> callbackCaptor = ArgumentCaptor.forClass(Callback.class);
+
+		ListenableFuture<?> written = writer.doWriteAsync(dummyServer(), dummyQuery(), dummyResults());
+
+		verify(producerMock, times(3)).send(any(ProducerRecord.class), callbackCaptor.capture());
+		callbackCaptor.getAllValues().get(1).onCompletion(null, new IOException("broker is down"));
+		assertThat(written.isDone()).isTrue();
+		try {
+			written.get();
+			failBecauseExceptionWasNotThrown(ExecutionException.class);
+		} catch (ExecutionException e) {
+			assertThat(e.getCause()).isInstanceOf(IOException.class);
+		}
+	}
+
+	@Test
+	public void asyncWriteOfFilteredResultsIsAlreadyComplete() throws Exception {
+		KafkaWriter2 writer = new KafkaWriter2(
+				producerMock,
+				TOPIC,
+				mock(ResultSerializer.class));
+
+		assertThat(writer.doWriteAsync(dummyServer(), dummyQuery(), dummyResults()).isDone()).isTrue();
+		verifyNoMoreInteractions(producerMock);
+	}
+
 }